@@ -0,0 +1,261 @@
+package htsjdk.samtools;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.StringUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact alternative to {@link SAMRecordSparkCodec} for shuffling reads on Spark.
+ *
+ * The reference names and read groups found in the dictionary given at construction (normally the sequences and read
+ * groups of the SAMFileHeader of the reads) are written as indices into the dictionary instead of strings, and the
+ * integer fields are written as variable-length integers. Bases are packed at 4 bits per base as in BAM, and the
+ * base qualities are run-length encoded when that is smaller, which is the usual case for binned qualities.
+ *
+ * Names that are not in the dictionary are written out in full, so every record can be encoded. Records are decoded
+ * as headerless BAMRecords. Like SAMRecordSparkCodec, the reference indices are not preserved.
+ */
+public final class SAMRecordDictionarySparkCodec {
+    // codes for the names, dictionary indices follow
+    private static final int NO_NAME = 0;
+    private static final int LITERAL_NAME = 1;
+    private static final int FIRST_DICTIONARY_CODE = 2;
+
+    private static final byte NO_QUALITIES = 0;
+    private static final byte RAW_QUALITIES = 1;
+    private static final byte RUN_LENGTH_QUALITIES = 2;
+
+    private static final short READ_GROUP_TAG = SAMTagUtil.getSingleton().RG;
+
+    private final List<String> referenceNames;
+    private final Map<String, Integer> referenceCodes;
+    private final List<String> readGroupIds;
+    private final Map<String, Integer> readGroupCodes;
+
+    private final ByteArrayOutputStream tagBuffer = new ByteArrayOutputStream();
+    private final BinaryTagCodec binaryTagCodec = new BinaryTagCodec(new BinaryCodec(tagBuffer));
+    private final SAMRecordFactory samRecordFactory = new DefaultSAMRecordFactory();
+
+    /**
+     * @param referenceNames the reference names to encode as indices, usually in the order of the sequence dictionary
+     * @param readGroupIds the read group ids to encode as indices
+     */
+    public SAMRecordDictionarySparkCodec(final List<String> referenceNames, final List<String> readGroupIds) {
+        this.referenceNames = new ArrayList<>(referenceNames);
+        this.referenceCodes = codesFor(this.referenceNames);
+        this.readGroupIds = new ArrayList<>(readGroupIds);
+        this.readGroupCodes = codesFor(this.readGroupIds);
+    }
+
+    private static Map<String, Integer> codesFor(final List<String> names) {
+        final Map<String, Integer> codes = new HashMap<>(names.size() * 2);
+        for (int i = 0; i < names.size(); i++) {
+            codes.putIfAbsent(names.get(i), FIRST_DICTIONARY_CODE + i);
+        }
+        return codes;
+    }
+
+    /**
+     * Write the record to the output.
+     */
+    public void encode(final SAMRecord record, final Output output) {
+        final byte[] bases = record.getReadBases();
+        final byte[] qualities = record.getBaseQualities();
+        if (qualities.length != 0 && qualities.length != bases.length) {
+            throw new SAMFormatException("Mismatch between read length and quals length writing read " +
+                    record.getReadName() + "; read length: " + bases.length +
+                    "; quals length: " + qualities.length);
+        }
+
+        output.writeString(record.getReadName());
+        output.writeVarInt(record.getFlags(), true);
+        writeName(output, referenceNameOrNull(record.getReferenceName()), referenceCodes);
+        output.writeVarInt(record.getAlignmentStart(), true);
+        output.writeByte(record.getMappingQuality());
+        writeName(output, referenceNameOrNull(record.getMateReferenceName()), referenceCodes);
+        output.writeVarInt(record.getMateAlignmentStart(), true);
+        output.writeVarInt(record.getInferredInsertSize(), false);
+
+        final int[] binaryCigar = BinaryCigarCodec.encode(record.getCigar());
+        output.writeVarInt(binaryCigar.length, true);
+        for (final int cigarElement : binaryCigar) {
+            output.writeVarInt(cigarElement, true);
+        }
+
+        output.writeVarInt(bases.length, true);
+        output.writeBytes(SAMUtils.bytesToCompressedBases(bases));
+        writeQualities(output, qualities);
+
+        // the read group is written separately so it can be encoded with the dictionary, the other tags as in BAM
+        final Object readGroup = record.getAttribute(SAMTag.RG.name());
+        final boolean encodeReadGroup = readGroup instanceof String;
+        writeName(output, encodeReadGroup ? (String) readGroup : null, readGroupCodes);
+        tagBuffer.reset();
+        for (SAMBinaryTagAndValue attribute = record.getBinaryAttributes(); attribute != null; attribute = attribute.getNext()) {
+            if (attribute.tag != READ_GROUP_TAG || !encodeReadGroup) {
+                binaryTagCodec.writeTag(attribute.tag, attribute.value, attribute.isUnsignedArray());
+            }
+        }
+        output.writeVarInt(tagBuffer.size(), true);
+        try {
+            tagBuffer.writeTo(output);
+        } catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
+    /**
+     * Read the next record from the input.
+     */
+    public SAMRecord decode(final Input input) {
+        final byte[] readName = StringUtil.stringToBytes(input.readString());
+        final int flags = input.readVarInt(true);
+        final String referenceName = referenceNameOrDefault(readName(input, referenceNames));
+        final int alignmentStart = input.readVarInt(true);
+        final short mappingQuality = (short) (input.readByte() & 0xFF);
+        final String mateReferenceName = referenceNameOrDefault(readName(input, referenceNames));
+        final int mateAlignmentStart = input.readVarInt(true);
+        final int insertSize = input.readVarInt(false);
+
+        final int cigarLength = input.readVarInt(true);
+        final int[] binaryCigar = new int[cigarLength];
+        for (int i = 0; i < cigarLength; i++) {
+            binaryCigar[i] = input.readVarInt(true);
+        }
+
+        final int readLength = input.readVarInt(true);
+        final byte[] compressedBases = input.readBytes((readLength + 1) / 2);
+        final byte[] qualities = readQualities(input, readLength);
+
+        final String readGroup = readName(input, readGroupIds);
+        final byte[] readGroupTag = readGroup == null ? new byte[0] : encodeReadGroupTag(readGroup);
+        final int tagsLength = input.readVarInt(true);
+
+        // rebuild the variable length part of the BAM record, so that BAMRecord can decode it lazily as usual
+        final ByteBuffer restOfRecord = ByteBuffer.allocate(readName.length + 1 + cigarLength * 4 + compressedBases.length +
+                qualities.length + tagsLength + readGroupTag.length).order(ByteOrder.LITTLE_ENDIAN);
+        restOfRecord.put(readName).put((byte) 0);
+        for (final int cigarElement : binaryCigar) {
+            restOfRecord.putInt(cigarElement);
+        }
+        restOfRecord.put(compressedBases).put(qualities);
+        input.readBytes(restOfRecord.array(), restOfRecord.position(), tagsLength);
+        restOfRecord.position(restOfRecord.position() + tagsLength);
+        restOfRecord.put(readGroupTag);
+
+        final SAMRecord record = samRecordFactory.createBAMRecord(
+                null, SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX, alignmentStart, (short) (readName.length + 1), mappingQuality,
+                0, cigarLength, flags, readLength, SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX, mateAlignmentStart, insertSize,
+                restOfRecord.array());
+        record.setReferenceName(referenceName);
+        record.setMateReferenceName(mateReferenceName);
+        return record;
+    }
+
+    private static String referenceNameOrNull(final String referenceName) {
+        return SAMRecord.NO_ALIGNMENT_REFERENCE_NAME.equals(referenceName) ? null : referenceName;
+    }
+
+    private static String referenceNameOrDefault(final String referenceName) {
+        return referenceName == null ? SAMRecord.NO_ALIGNMENT_REFERENCE_NAME : referenceName;
+    }
+
+    private static void writeName(final Output output, final String name, final Map<String, Integer> codes) {
+        if (name == null) {
+            output.writeVarInt(NO_NAME, true);
+            return;
+        }
+        final Integer code = codes.get(name);
+        if (code != null) {
+            output.writeVarInt(code, true);
+        } else {
+            output.writeVarInt(LITERAL_NAME, true);
+            output.writeString(name);
+        }
+    }
+
+    private static String readName(final Input input, final List<String> dictionary) {
+        final int code = input.readVarInt(true);
+        switch (code) {
+            case NO_NAME: return null;
+            case LITERAL_NAME: return input.readString();
+            default: return dictionary.get(code - FIRST_DICTIONARY_CODE);
+        }
+    }
+
+    private static void writeQualities(final Output output, final byte[] qualities) {
+        if (qualities.length == 0) {
+            output.writeByte(NO_QUALITIES);
+            return;
+        }
+        int runs = 1;
+        for (int i = 1; i < qualities.length; i++) {
+            if (qualities[i] != qualities[i - 1]) {
+                runs++;
+            }
+        }
+        // each run takes at least two bytes, the quality and the length of the run
+        if (2 * runs >= qualities.length) {
+            output.writeByte(RAW_QUALITIES);
+            output.writeBytes(qualities);
+            return;
+        }
+        output.writeByte(RUN_LENGTH_QUALITIES);
+        int runStart = 0;
+        for (int i = 1; i <= qualities.length; i++) {
+            if (i == qualities.length || qualities[i] != qualities[runStart]) {
+                output.writeByte(qualities[runStart]);
+                output.writeVarInt(i - runStart, true);
+                runStart = i;
+            }
+        }
+    }
+
+    /**
+     * @return the qualities, or an array filled with 0xFF as in BAM if the record has no qualities
+     */
+    private static byte[] readQualities(final Input input, final int readLength) {
+        final byte mode = input.readByte();
+        switch (mode) {
+            case NO_QUALITIES: {
+                final byte[] qualities = new byte[readLength];
+                Arrays.fill(qualities, (byte) 0xFF);
+                return qualities;
+            }
+            case RAW_QUALITIES:
+                return input.readBytes(readLength);
+            case RUN_LENGTH_QUALITIES: {
+                final byte[] qualities = new byte[readLength];
+                int position = 0;
+                while (position < readLength) {
+                    final byte quality = input.readByte();
+                    final int runLength = input.readVarInt(true);
+                    Arrays.fill(qualities, position, position + runLength, quality);
+                    position += runLength;
+                }
+                return qualities;
+            }
+            default:
+                throw new SAMFormatException("Invalid quality encoding: " + mode);
+        }
+    }
+
+    private static byte[] encodeReadGroupTag(final String readGroup) {
+        final byte[] value = StringUtil.stringToBytes(readGroup);
+        final ByteBuffer tag = ByteBuffer.allocate(value.length + 4).order(ByteOrder.LITTLE_ENDIAN);
+        tag.putShort(READ_GROUP_TAG).put((byte) 'Z').put(value).put((byte) 0);
+        return tag.array();
+    }
+}
@@ -6,6 +6,7 @@ import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
 import org.broadinstitute.hellbender.engine.AuthHolder;
 import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.engine.spark.datasources.ReferencePackedSource;
 import org.broadinstitute.hellbender.engine.spark.datasources.ReferenceTwoBitSource;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
@@ -42,6 +43,12 @@ public class ReferenceMultiSource implements ReferenceSource, Serializable {
             } catch (IOException e) {
                 throw new UserException("Failed to create a ReferenceTwoBitSource object" + e.getMessage());
             }
+        } else if (ReferencePackedSource.isPacked(referenceURL)) {
+            try {
+                referenceSource = new ReferencePackedSource(referenceURL);
+            } catch (IOException e) {
+                throw new UserException.CouldNotReadInputFile(referenceURL, e.getMessage());
+            }
         } else if (isFasta(referenceURL)) {
             if (BucketUtils.isHadoopUrl(referenceURL)) {
                 referenceSource = new ReferenceHadoopSource(referenceURL);
@@ -64,7 +71,7 @@ public class ReferenceMultiSource implements ReferenceSource, Serializable {
         this(auth.asPipelineOptionsDeprecated(), referenceURL, referenceWindowFunction);
     }
 
-    private static boolean isFasta(String reference) {
+    public static boolean isFasta(String reference) {
         for (final String ext : ReferenceSequenceFileFactory.FASTA_EXTENSIONS) {
             if (reference.endsWith(ext)) {
                 return true;
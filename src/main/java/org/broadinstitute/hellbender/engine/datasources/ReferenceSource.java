@@ -17,7 +17,8 @@ public interface ReferenceSource {
 
     /**
      * Returns whether this reference source can be used with Spark broadcast.
-     * Currently, only {@link ReferenceTwoBitSource} is compatible with the Spark broadcast implementation.
+     * Currently, only {@link ReferenceTwoBitSource} and {@link org.broadinstitute.hellbender.engine.spark.datasources.ReferencePackedSource}
+     * are compatible with the Spark broadcast implementation.
      */
     default public boolean isCompatibleWithSparkBroadcast(){
         return this instanceof ReferenceTwoBitSource;
@@ -40,6 +40,13 @@ public class AddContextDataToReadSpark {
             JavaPairRDD<GATKRead, Iterable<GATKVariant>> withVariants = ShuffleJoinReadsWithVariants.join(mappedReads, variants);
             // Join Reads with ReferenceBases
             withVariantsWithRef = ShuffleJoinReadsWithRefBases.addBases(referenceDataflowSource, withVariants);
+        } else if (joinStrategy.equals(JoinStrategy.SORTED_MERGE)) {
+            // Join Reads and Variants
+            JavaPairRDD<GATKRead, Iterable<GATKVariant>> withVariants = SortedMergeJoinReadsWithVariants.join(mappedReads, variants);
+            // Join Reads with ReferenceBases
+            withVariantsWithRef = referenceDataflowSource.isCompatibleWithSparkBroadcast() ?
+                    BroadcastJoinReadsWithRefBases.addBases(referenceDataflowSource, withVariants) :
+                    ShuffleJoinReadsWithRefBases.addBases(referenceDataflowSource, withVariants);
         } else {
             throw new UserException("Unknown JoinStrategy");
         }
@@ -4,8 +4,13 @@ import com.google.api.services.storage.Storage;
 import org.broadinstitute.hellbender.utils.SerializableFunction;
 import com.google.cloud.genomics.dataflow.readers.bam.BAMIO;
 
+import htsjdk.samtools.BAMFileSpan;
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.BAMIndexMetaData;
+import htsjdk.samtools.Chunk;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.ValidationStringency;
@@ -39,6 +44,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.ToDoubleFunction;
 
 
 public final class AddContextDataToReadSparkOptimized implements Serializable {
@@ -52,7 +58,16 @@ public final class AddContextDataToReadSparkOptimized implements Serializable {
     // will end within "margin" of the shard. This allows us to split the computation
     // across machines.
     public static final int margin = 1000;
+    // the number of reads we aim for in each big shard, when the shards are cut by read density.
+    public static final int defaultTargetReadsPerShard = 200_000;
+    // the granularity at which the read density is estimated, the size of the windows of the linear BAM index.
+    public static final int densityWindowSize = 16_384;
+    // the limits on the size of the big shards that are cut by read density. Shards are not made larger
+    // because all the variants of a shard are held in memory, and not smaller so a read rarely spans several.
+    public static final int maxDensityShardSize = 10 * bigShardSize;
+    public static final int minDensityShardSize = 1_000;
 
+    private static final Logger logger = LogManager.getLogger(AddContextDataToReadSparkOptimized.class);
 
     /**
      * Create shards with reads, variants, and reference bases, using default values for shard sizes and margin.
@@ -61,8 +76,20 @@ public final class AddContextDataToReadSparkOptimized implements Serializable {
      public static JavaRDD<ContextShard> add(JavaSparkContext ctx, final List<SimpleInterval> intervals,
                                              String bam, final List<GATKVariant> variants, AuthHolder auth,
                                              final ReadFilter optFilter, final ReferenceMultiSource rds) {
+        return add(ctx, intervals, bam, variants, auth, optFilter, rds, defaultTargetReadsPerShard);
+    }
+
+    /**
+     * Create shards with reads, variants, and reference bases, using default values for the output shard size and margin.
+     * The big shards are cut to hold about targetReadsPerShard reads each, if the bam is local and indexed (see
+     * {@link #cutToShardsByReadDensity(List, String, int)}), or else are bigShardSize long.
+     * See the other methods here for an explanation of the other arguments.
+     */
+    public static JavaRDD<ContextShard> add(JavaSparkContext ctx, final List<SimpleInterval> intervals,
+                                            String bam, final List<GATKVariant> variants, AuthHolder auth,
+                                            final ReadFilter optFilter, final ReferenceMultiSource rds, final int targetReadsPerShard) {
         // prepare shards for the intervals of interest
-        List<SimpleInterval> shardedIntervals = IntervalUtils.cutToShards(intervals, bigShardSize);
+        List<SimpleInterval> shardedIntervals = cutToShardsByReadDensity(intervals, bam, targetReadsPerShard);
         // add variants
         ArrayList<ContextShard> localShards = AddContextDataToReadSparkOptimized.fillVariants(shardedIntervals, variants, margin);
         // ship to cluster
@@ -81,6 +108,119 @@ public final class AddContextDataToReadSparkOptimized implements Serializable {
     }
 
 
+    /**
+     * Cuts the intervals into shards that hold about targetReadsPerShard reads each, estimated from the index of the bam,
+     * so that coverage spikes are spread over several tasks and regions of low coverage are put together in one task.
+     * Falls back to shards of bigShardSize if targetReadsPerShard is not positive, or the bam is not a local indexed file.
+     */
+    public static List<SimpleInterval> cutToShardsByReadDensity(final List<SimpleInterval> intervals, final String bam, final int targetReadsPerShard) {
+        if (targetReadsPerShard > 0 && !BucketUtils.isRemoteStorageUrl(bam)) {
+            final File bamFile = new File(bam);
+            try (final SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(bamFile)) {
+                if (reader.hasIndex()) {
+                    final ToDoubleFunction<SimpleInterval> estimatedReads =
+                            estimateReadsFromIndex(reader.indexing().getIndex(), reader.getFileHeader().getSequenceDictionary());
+                    final List<SimpleInterval> shards = cutToShardsByReadDensity(intervals, estimatedReads, targetReadsPerShard);
+                    logShardSizes(shards, estimatedReads);
+                    return shards;
+                }
+            } catch (IOException x) {
+                throw new UserException.CouldNotReadInputFile(bamFile, x);
+            }
+        }
+        logger.info("Cutting the intervals into shards of " + bigShardSize + " bases, since the reads are not in a local indexed file");
+        return IntervalUtils.cutToShards(intervals, bigShardSize);
+    }
+
+    /**
+     * Cuts the intervals into shards that hold about targetReadsPerShard reads each, by adding up the estimated number of
+     * reads in windows of densityWindowSize. Windows with more reads than the target are cut into several shards.
+     * The shards are between minDensityShardSize and maxDensityShardSize long, except at the ends of the intervals.
+     *
+     * @param estimatedReads gives the estimated number of reads that overlap a window
+     */
+    public static List<SimpleInterval> cutToShardsByReadDensity(final List<SimpleInterval> intervals,
+                                                                final ToDoubleFunction<SimpleInterval> estimatedReads, final int targetReadsPerShard) {
+        final List<SimpleInterval> shards = new ArrayList<>();
+        for (final SimpleInterval interval : intervals) {
+            final String contig = interval.getContig();
+            int shardStart = interval.getStart();
+            double shardReads = 0;
+            int windowStart = interval.getStart();
+            while (windowStart <= interval.getEnd()) {
+                final int windowEnd = Math.min(interval.getEnd(), IntervalUtils.endOfShard(IntervalUtils.shardIndex(windowStart, densityWindowSize), densityWindowSize));
+                final double windowReads = estimatedReads.applyAsDouble(new SimpleInterval(contig, windowStart, windowEnd));
+                if (shardStart < windowStart && (shardReads + windowReads > targetReadsPerShard || windowEnd - shardStart + 1 > maxDensityShardSize)) {
+                    shards.add(new SimpleInterval(contig, shardStart, windowStart - 1));
+                    shardStart = windowStart;
+                    shardReads = 0;
+                }
+                if (windowReads > targetReadsPerShard) {
+                    // a coverage spike: the shard starts with this window, which we cut into pieces of about the target
+                    final int windowLength = windowEnd - windowStart + 1;
+                    final int pieces = (int) Math.max(1, Math.min(Math.ceil(windowReads / targetReadsPerShard), windowLength / minDensityShardSize));
+                    for (int piece = 1; piece < pieces; piece++) {
+                        final int pieceEnd = windowStart + (int) ((long) windowLength * piece / pieces) - 1;
+                        shards.add(new SimpleInterval(contig, shardStart, pieceEnd));
+                        shardStart = pieceEnd + 1;
+                    }
+                    shardReads = windowReads / pieces;
+                } else {
+                    shardReads += windowReads;
+                }
+                windowStart = windowEnd + 1;
+            }
+            shards.add(new SimpleInterval(contig, shardStart, interval.getEnd()));
+        }
+        return shards;
+    }
+
+    /**
+     * Estimates the number of reads in a window from the size of the part of the file that the index gives for the window,
+     * and the average size of the reads of the contig in the file (the size of the part of the file that the index gives
+     * for the whole contig, over the number of reads that the index metadata counts for it).
+     */
+    static ToDoubleFunction<SimpleInterval> estimateReadsFromIndex(final BAMIndex index, final SAMSequenceDictionary dictionary) {
+        final double[] bytesPerRead = new double[dictionary.size()];
+        for (int i = 0; i < dictionary.size(); i++) {
+            final BAMIndexMetaData metaData = index.getMetaData(i);
+            if (metaData != null && metaData.getAlignedRecordCount() > 0) {
+                final BAMFileSpan contigSpan = index.getSpanOverlapping(i, 1, dictionary.getSequence(i).getSequenceLength());
+                bytesPerRead[i] = (double) compressedBytes(contigSpan) / metaData.getAlignedRecordCount();
+            }
+        }
+        return window -> {
+            final int referenceIndex = dictionary.getSequenceIndex(window.getContig());
+            if (referenceIndex == -1 || bytesPerRead[referenceIndex] == 0) {
+                return 0;
+            }
+            return compressedBytes(index.getSpanOverlapping(referenceIndex, window.getStart(), window.getEnd())) / bytesPerRead[referenceIndex];
+        };
+    }
+
+    private static long compressedBytes(final BAMFileSpan span) {
+        if (span == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (final Chunk chunk : span.getChunks()) {
+            bytes += (chunk.getChunkEnd() >>> 16) - (chunk.getChunkStart() >>> 16);
+        }
+        return bytes;
+    }
+
+    private static void logShardSizes(final List<SimpleInterval> shards, final ToDoubleFunction<SimpleInterval> estimatedReads) {
+        if (shards.isEmpty()) {
+            return;
+        }
+        final double[] reads = shards.stream().mapToDouble(estimatedReads).sorted().toArray();
+        final int[] lengths = shards.stream().mapToInt(SimpleInterval::size).sorted().toArray();
+        logger.info(String.format("Cut the intervals into %d shards by read density. Estimated reads per shard: min %.0f, median %.0f, max %.0f. " +
+                "Shard lengths: min %d, median %d, max %d.", shards.size(),
+                reads[0], reads[reads.length / 2], reads[reads.length - 1],
+                lengths[0], lengths[lengths.length / 2], lengths[lengths.length - 1]));
+    }
+
     /**
      * Fill in reads that start in the given shard, and subshard the output to the requested size.
      * Signals an error if any read sticks out more than "margin" outside of the big shard.
@@ -0,0 +1,116 @@
+package org.broadinstitute.hellbender.engine.spark;
+
+import htsjdk.samtools.SAMFlag;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoder;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.SQLContext;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.io.Serializable;
+
+/**
+ * A narrow projection of a read as a flat bean, so that reads can be held in a Spark {@link Dataset} with a bean
+ * {@link Encoder} (see {@link #encoder()}) rather than as Java or Kryo serialized objects. Spark then keeps the
+ * projections as binary rows, and aggregations over the columns (e.g. over {@code flags}) run on them with generated
+ * code, without making objects for the reads.
+ *
+ * Only the fields that read counting tools like CountReadsSpark and FlagStatSpark look at are kept: the SAM flags,
+ * as given by the predicates of {@link GATKRead} (so a read whose position is not set has the unmapped flag), the
+ * mapping quality, the contig of a mapped read and the contig of a mapped mate. A FlatRead can't be turned back into
+ * a read.
+ */
+public final class FlatRead implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int flags;
+    private int mappingQuality;
+    private String contig;
+    private String mateContig;
+
+    /**
+     * For the bean encoder only, use {@link #of(GATKRead)}.
+     */
+    public FlatRead() {
+    }
+
+    /**
+     * @return the bean encoder of FlatReads
+     */
+    public static Encoder<FlatRead> encoder() {
+        return Encoders.bean(FlatRead.class);
+    }
+
+    /**
+     * @return the projections of the reads as a Dataset
+     */
+    public static Dataset<FlatRead> toDataset(final JavaRDD<GATKRead> reads) {
+        final SQLContext sqlContext = SQLContext.getOrCreate(reads.context());
+        return sqlContext.createDataset(reads.map(FlatRead::of).rdd(), encoder());
+    }
+
+    public static FlatRead of(final GATKRead read) {
+        final FlatRead flat = new FlatRead();
+        flat.flags = getFlags(read);
+        flat.mappingQuality = read.getMappingQuality();
+        if (!read.isUnmapped()) {
+            flat.contig = read.getContig();
+        }
+        if (read.isPaired() && !read.mateIsUnmapped()) {
+            flat.mateContig = read.getMateContig();
+        }
+        return flat;
+    }
+
+    private static int getFlags(final GATKRead read) {
+        int flags = 0;
+        if (read.isPaired()) {
+            flags |= SAMFlag.READ_PAIRED.intValue();
+            flags |= read.isProperlyPaired() ? SAMFlag.PROPER_PAIR.intValue() : 0;
+            flags |= read.mateIsUnmapped() ? SAMFlag.MATE_UNMAPPED.intValue() : 0;
+            flags |= read.mateIsReverseStrand() ? SAMFlag.MATE_REVERSE_STRAND.intValue() : 0;
+            flags |= read.isFirstOfPair() ? SAMFlag.FIRST_OF_PAIR.intValue() : 0;
+            flags |= read.isSecondOfPair() ? SAMFlag.SECOND_OF_PAIR.intValue() : 0;
+        }
+        flags |= read.isUnmapped() ? SAMFlag.READ_UNMAPPED.intValue() : 0;
+        flags |= read.isReverseStrand() ? SAMFlag.READ_REVERSE_STRAND.intValue() : 0;
+        flags |= read.isSecondaryAlignment() ? SAMFlag.NOT_PRIMARY_ALIGNMENT.intValue() : 0;
+        flags |= read.failsVendorQualityCheck() ? SAMFlag.READ_FAILS_VENDOR_QUALITY_CHECK.intValue() : 0;
+        flags |= read.isDuplicate() ? SAMFlag.DUPLICATE_READ.intValue() : 0;
+        flags |= read.isSupplementaryAlignment() ? SAMFlag.SUPPLEMENTARY_ALIGNMENT.intValue() : 0;
+        return flags;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public void setFlags(final int flags) {
+        this.flags = flags;
+    }
+
+    public int getMappingQuality() {
+        return mappingQuality;
+    }
+
+    public void setMappingQuality(final int mappingQuality) {
+        this.mappingQuality = mappingQuality;
+    }
+
+    public String getContig() {
+        return contig;
+    }
+
+    public void setContig(final String contig) {
+        this.contig = contig;
+    }
+
+    public String getMateContig() {
+        return mateContig;
+    }
+
+    public void setMateContig(final String mateContig) {
+        this.mateContig = mateContig;
+    }
+}
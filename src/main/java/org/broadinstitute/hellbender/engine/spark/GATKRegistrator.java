@@ -9,7 +9,10 @@ import htsjdk.samtools.SAMRecord;
 import org.apache.spark.serializer.KryoRegistrator;
 import org.bdgenomics.adam.serialization.ADAMKryoRegistrator;
 import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
+import org.broadinstitute.hellbender.utils.read.markduplicates.BinaryReadsKey;
 import org.broadinstitute.hellbender.utils.read.markduplicates.PairedEnds;
+import org.broadinstitute.hellbender.utils.read.markduplicates.PhysicalLocationForMateCigar;
+import org.broadinstitute.hellbender.utils.read.markduplicates.ReadEndSummary;
 
 import java.util.Collections;
 
@@ -51,6 +54,9 @@ public class GATKRegistrator implements KryoRegistrator {
 
         //register to avoid writing the full name of this class over and over
         kryo.register(PairedEnds.class, new FieldSerializer<>(kryo, PairedEnds.class));
+        kryo.register(ReadEndSummary.class, new FieldSerializer<>(kryo, ReadEndSummary.class));
+        kryo.register(BinaryReadsKey.class, new FieldSerializer<>(kryo, BinaryReadsKey.class));
+        kryo.register(PhysicalLocationForMateCigar.class, new FieldSerializer<>(kryo, PhysicalLocationForMateCigar.class));
 
         // register the ADAM data types using Avro serialization, including:
         //     AlignmentRecord
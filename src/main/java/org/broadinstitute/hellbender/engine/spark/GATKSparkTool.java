@@ -15,6 +15,7 @@ import org.broadinstitute.hellbender.engine.filters.ReadFilter;
 import org.broadinstitute.hellbender.engine.filters.WellformedReadFilter;
 import org.broadinstitute.hellbender.engine.spark.datasources.ReadsSparkSink;
 import org.broadinstitute.hellbender.engine.spark.datasources.ReadsSparkSource;
+import org.broadinstitute.hellbender.engine.spark.datasources.ReferencePackedSource;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.SequenceDictionaryUtils;
@@ -24,8 +25,10 @@ import org.broadinstitute.hellbender.utils.io.IOUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.ReadsWriteFormat;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Base class for GATK spark tools that accept standard kinds of inputs (reads, reference, and/or intervals).
@@ -78,6 +81,16 @@ public abstract class GATKSparkTool extends SparkCommandLineProgram {
     @Argument(doc = "For tools that write an output, write the output in multiple pieces (shards)", shortName = "shardedOutput", fullName = "shardedOutput", optional = true)
     protected boolean shardedOutput = false;
 
+    @Argument(doc = "For tools that write a single BAM, also write a splitting index for it, as made by CreateHadoopBamSplittingIndex",
+            shortName = "createOutputBamSplittingIndex", fullName = "createOutputBamSplittingIndex", optional = true)
+    protected boolean createOutputBamSplittingIndex = false;
+
+    @Argument(doc = "For tools that use the reference on the executors, convert a local fasta reference to a packed file once, " +
+            "which the executors memory-map, instead of loading the reference from the fasta for every query. " +
+            "The packed file is written next to the fasta if possible, and reused by later runs.",
+            shortName = "packReference", fullName = "packReference", optional = true)
+    protected boolean packReference = false;
+
     @Argument(doc="For tools that shuffle data or write an output, sets the number of reducers. Defaults to 0, which gives one partition per 10MB of input.",
             shortName = "numReducers", fullName = "numReducers", optional = true)
     protected int numReducers = 0;
@@ -234,7 +247,7 @@ public abstract class GATKSparkTool extends SparkCommandLineProgram {
             ReadsSparkSink.writeReads(ctx, outputFile,
                     hasReference() ? referenceArguments.getReferenceFile().getAbsolutePath() : null,
                     reads, readsHeader, shardedOutput ? ReadsWriteFormat.SHARDED : ReadsWriteFormat.SINGLE,
-                    getRecommendedNumReducers());
+                    getRecommendedNumReducers(), createOutputBamSplittingIndex);
         } catch (IOException e) {
             throw new GATKException("unable to write bam: " + e);
         }
@@ -317,7 +330,7 @@ public abstract class GATKSparkTool extends SparkCommandLineProgram {
      * Initialize standard tool inputs.
      */
     private void initializeToolInputs(final JavaSparkContext sparkContext) {
-        initializeReference();
+        initializeReference(sparkContext);
         initializeReads(sparkContext); // reference must be initialized before reads
         initializeIntervals();
     }
@@ -346,7 +359,7 @@ public abstract class GATKSparkTool extends SparkCommandLineProgram {
     /**
      * Initializes our reference source. Does nothing if no reference was specified.
      */
-    private void initializeReference() {
+    private void initializeReference(final JavaSparkContext sparkContext) {
         final GCSOptions gcsOptions = getAuthenticatedGCSOptions(); // null if we have no api key
         final String referenceURL = referenceArguments.getReferenceFileName();
         if ( referenceURL != null ) {
@@ -355,7 +368,44 @@ public abstract class GATKSparkTool extends SparkCommandLineProgram {
             if (referenceDictionary == null) {
                 throw new UserException.MissingReferenceDictFile(referenceURL);
             }
+            if ( packReference ) {
+                if ( !ReferenceMultiSource.isFasta(referenceURL) || BucketUtils.isRemoteStorageUrl(referenceURL) ) {
+                    throw new UserException.BadArgumentValue("packReference", "true", "only a local fasta reference can be packed");
+                }
+                final File packedReference = getPackedReference(referenceArguments.getReferenceFile());
+                sparkContext.addFile(packedReference.getAbsolutePath());
+                referenceSource = new ReferenceMultiSource(gcsOptions, packedReference.getAbsolutePath(), getReferenceWindowFunction());
+            }
+        }
+    }
+
+    /**
+     * @return the packed form of the fasta, next to the fasta (or in the temporary directory if that is not writable),
+     * which is only written if there is no up to date packed file already
+     */
+    private static File getPackedReference(final File fasta) {
+        final File besideFasta = new File(fasta.getAbsolutePath() + ReferencePackedSource.PACKED_REFERENCE_EXTENSION);
+        if ( besideFasta.exists() && besideFasta.lastModified() >= fasta.lastModified() ) {
+            return besideFasta;
+        }
+        final File packedReference = fasta.getAbsoluteFile().getParentFile().canWrite() ? besideFasta :
+                new File(System.getProperty("java.io.tmpdir"), fasta.getName() + "." + UUID.randomUUID() + ReferencePackedSource.PACKED_REFERENCE_EXTENSION);
+        // write to a temporary file first, so that concurrent runs never see a partial packed file
+        final File partial = new File(packedReference.getAbsolutePath() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            ReferencePackedSource.pack(fasta, partial);
+            if ( !partial.renameTo(packedReference) ) {
+                throw new UserException.CouldNotCreateOutputFile(packedReference, "could not rename " + partial);
+            }
+        } catch ( IOException e ) {
+            throw new UserException.CouldNotCreateOutputFile(packedReference, "could not pack the reference", e);
+        } finally {
+            partial.delete();
+        }
+        if ( packedReference != besideFasta ) {
+            packedReference.deleteOnExit();
         }
+        return packedReference;
     }
 
     /**
@@ -0,0 +1,45 @@
+package org.broadinstitute.hellbender.engine.spark;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordDictionarySparkCodec;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
+
+/**
+ * Compact serializer for SAMRecordToGATKReadAdapters that uses SAMRecordDictionarySparkCodec for encoding/decoding,
+ * so that reference names and read groups are written as indices into a header dictionary.
+ * Assumes that the underlying SAMRecords are headerless (and clears their header if they're not).
+ */
+public final class HeaderDictionaryGATKReadSerializer extends Serializer<SAMRecordToGATKReadAdapter> {
+    private final SAMRecordDictionarySparkCodec codec;
+
+    public HeaderDictionaryGATKReadSerializer(final SAMRecordDictionarySparkCodec codec) {
+        this.codec = Utils.nonNull(codec);
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, SAMRecordToGATKReadAdapter adapter) {
+        final SAMRecord record = adapter.getEncapsulatedSamRecord();
+        // The underlying read is likely to already be headerless, but as a defensive
+        // measure in case it's not, set the header to null explicitly.
+        record.setHeaderStrict(null);
+
+        codec.encode(record, output);
+
+        // clear indexing bin after encoding to ensure all SAMRecords compare properly
+        record.setFlags(record.getFlags());
+    }
+
+    @Override
+    public SAMRecordToGATKReadAdapter read(Kryo kryo, Input input, Class<SAMRecordToGATKReadAdapter> type) {
+        final SAMRecord record = codec.decode(input);
+
+        // clear indexing bin after decoding to ensure all SAMRecords compare properly
+        record.setFlags(record.getFlags());
+        return SAMRecordToGATKReadAdapter.headerlessReadAdapter(record);
+    }
+}
@@ -0,0 +1,63 @@
+package org.broadinstitute.hellbender.engine.spark;
+
+import com.esotericsoftware.kryo.Kryo;
+import htsjdk.samtools.BAMRecord;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordDictionarySparkCodec;
+import htsjdk.samtools.SAMSequenceRecord;
+import org.apache.spark.SparkConf;
+import org.apache.spark.serializer.KryoSerializer;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
+
+import java.util.ArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * A Kryo serializer for Spark that writes reads (SAMRecordToGATKReadAdapters and SAMRecords) compactly, using the
+ * reference names and read groups of a header as a dictionary (see {@link SAMRecordDictionarySparkCodec}). Everything
+ * else is serialized as with the serializer configured for the context, including {@link GATKRegistrator}.
+ *
+ * Spark uses the serializer of the context for every RDD, so this one is set on the shuffles that move reads, with
+ * {@link org.apache.spark.rdd.ShuffledRDD#setSerializer}. The dictionary is a part of the serializer, which is sent to
+ * the executors with the shuffle dependency, so nothing else needs to be broadcast.
+ */
+public final class HeaderDictionaryKryoSerializer extends KryoSerializer {
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<String> referenceNames;
+    private final ArrayList<String> readGroupIds;
+
+    /**
+     * @param conf the configuration of the context, for the Kryo settings and registrator
+     * @param header the header of the reads, whose sequences and read groups are the dictionary
+     */
+    public HeaderDictionaryKryoSerializer(final SparkConf conf, final SAMFileHeader header) {
+        super(Utils.nonNull(conf));
+        Utils.nonNull(header);
+        this.referenceNames = header.getSequenceDictionary().getSequences().stream()
+                .map(SAMSequenceRecord::getSequenceName)
+                .collect(Collectors.toCollection(ArrayList::new));
+        this.readGroupIds = header.getReadGroups().stream()
+                .map(SAMReadGroupRecord::getId)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Override
+    public Kryo newKryo() {
+        final Kryo kryo = super.newKryo();
+        // registering the classes again replaces the serializers set by the registrators;
+        // each serializer has its own codec since the codecs are not thread safe
+        kryo.register(SAMRecordToGATKReadAdapter.class, new HeaderDictionaryGATKReadSerializer(newCodec()));
+        final HeaderDictionarySAMRecordSerializer samRecordSerializer = new HeaderDictionarySAMRecordSerializer(newCodec());
+        kryo.register(SAMRecord.class, samRecordSerializer);
+        kryo.register(BAMRecord.class, samRecordSerializer);
+        return kryo;
+    }
+
+    private SAMRecordDictionarySparkCodec newCodec() {
+        return new SAMRecordDictionarySparkCodec(referenceNames, readGroupIds);
+    }
+}
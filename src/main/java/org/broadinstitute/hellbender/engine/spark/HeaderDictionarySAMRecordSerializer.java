@@ -0,0 +1,43 @@
+package org.broadinstitute.hellbender.engine.spark;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordDictionarySparkCodec;
+import org.broadinstitute.hellbender.utils.Utils;
+
+/**
+ * Compact serializer for SAMRecords that uses SAMRecordDictionarySparkCodec for encoding/decoding, so that
+ * reference names and read groups are written as indices into a header dictionary.
+ * Assumes that the SAMRecords are headerless (and clears their header if they're not).
+ */
+public final class HeaderDictionarySAMRecordSerializer extends Serializer<SAMRecord> {
+    private final SAMRecordDictionarySparkCodec codec;
+
+    public HeaderDictionarySAMRecordSerializer(final SAMRecordDictionarySparkCodec codec) {
+        this.codec = Utils.nonNull(codec);
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, SAMRecord record) {
+        // The read is likely to already be headerless, but as a defensive
+        // measure in case it's not, set the header to null explicitly.
+        record.setHeaderStrict(null);
+
+        codec.encode(record, output);
+
+        // clear indexing bin after encoding to ensure all SAMRecords compare properly
+        record.setFlags(record.getFlags());
+    }
+
+    @Override
+    public SAMRecord read(Kryo kryo, Input input, Class<SAMRecord> type) {
+        final SAMRecord record = codec.decode(input);
+
+        // clear indexing bin after decoding to ensure all SAMRecords compare properly
+        record.setFlags(record.getFlags());
+        return record;
+    }
+}
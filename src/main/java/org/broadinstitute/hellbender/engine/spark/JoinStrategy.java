@@ -12,5 +12,13 @@ public enum JoinStrategy {
     /**
      * Use a shuffle join strategy, where both sides of join are shuffled across the workers.
      */
-    SHUFFLE
+    SHUFFLE,
+
+    /**
+     * Use a sorted merge join strategy, where the variants are sent to the partitions of the reads whose genomic windows
+     * they overlap, and joined with the reads there. Best for coordinate-sorted reads and large sets of variants.
+     * The reads are evaluated twice, once for the windows, so they should be persisted if they are costly to compute.
+     * The reference bases are joined by broadcast if the reference is compatible with it, or else by shuffle.
+     */
+    SORTED_MERGE
 }
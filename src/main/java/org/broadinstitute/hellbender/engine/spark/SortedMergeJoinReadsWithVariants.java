@@ -0,0 +1,180 @@
+package org.broadinstitute.hellbender.engine.spark;
+
+import htsjdk.samtools.util.Locatable;
+import org.apache.spark.Partitioner;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.collections.IntervalsSkipList;
+import org.broadinstitute.hellbender.utils.collections.IntervalsSkipListOneContig;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.variant.GATKVariant;
+import scala.Tuple2;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Joins an RDD of GATKReads to variant data by sending the variants to the partitions of the reads that they overlap.
+ *
+ * The genomic window of each read partition (the span of its reads on each contig) is computed, which needs a pass
+ * over the reads, and only the windows are broadcast. Each variant is then sent to the partitions whose windows it
+ * overlaps, and joined with the reads of the partition, which are streamed through: the variants of the partition are
+ * indexed one contig at a time, as the reads reach the contig.
+ *
+ * This is meant for coordinate-sorted reads (as loaded from a coordinate-sorted BAM), whose partitions have small,
+ * disjoint windows, so each partition only holds the variants in its own part of the genome, and neither side of the
+ * join is shuffled by shard, nor is the whole variant set broadcast. The result is correct for unsorted reads as well,
+ * but then the windows are large and the variants are indexed again at every change of contig.
+ */
+public final class SortedMergeJoinReadsWithVariants {
+    private SortedMergeJoinReadsWithVariants(){}
+
+    /**
+     * The reads are evaluated twice, once here for the windows of the partitions and once when the result is evaluated.
+     * They are not persisted by the join, so a caller whose reads are costly to compute (e.g. loaded from a file) can
+     * persist them before the join, and unpersist them once the result has been evaluated.
+     */
+    public static JavaPairRDD<GATKRead, Iterable<GATKVariant>> join(final JavaRDD<GATKRead> reads, final JavaRDD<GATKVariant> variants) {
+        final JavaSparkContext ctx = new JavaSparkContext(reads.context());
+        final List<PartitionWindow> windows = reads.mapPartitionsWithIndex(SortedMergeJoinReadsWithVariants::getPartitionWindows, false).collect();
+        final Broadcast<IntervalsSkipList<PartitionWindow>> windowsBroadcast = ctx.broadcast(new IntervalsSkipList<>(windows));
+
+        final JavaRDD<GATKVariant> variantsByPartition = variants.flatMapToPair(variant -> {
+            final List<Tuple2<Integer, GATKVariant>> out = new ArrayList<>();
+            for (final PartitionWindow window : windowsBroadcast.getValue().getOverlapping(new SimpleInterval(variant))) {
+                out.add(new Tuple2<>(window.getPartitionIndex(), variant));
+            }
+            return out;
+        }).partitionBy(new PartitionIndexPartitioner(reads.partitions().size())).values();
+
+        // mapToPair rather than JavaPairRDD.fromJavaRDD, which would keep the Object element type of zipPartitions, so
+        // that actions like collectAsMap, which make an array of the pairs, work on the result
+        return reads.zipPartitions(variantsByPartition,
+                (partitionReads, partitionVariants) -> () -> joinPartition(partitionReads, partitionVariants))
+                .mapToPair(readWithVariants -> readWithVariants);
+    }
+
+    /**
+     * @return the span of the reads of the partition on each contig
+     */
+    private static Iterator<PartitionWindow> getPartitionWindows(final int partitionIndex, final Iterator<GATKRead> reads) {
+        final Map<String, PartitionWindow> windows = new LinkedHashMap<>();
+        while (reads.hasNext()) {
+            final GATKRead read = reads.next();
+            if (SimpleInterval.isValid(read.getContig(), read.getStart(), read.getEnd())) {
+                final PartitionWindow window = windows.get(read.getContig());
+                windows.put(read.getContig(), window == null ?
+                        new PartitionWindow(read.getContig(), read.getStart(), read.getEnd(), partitionIndex) :
+                        new PartitionWindow(read.getContig(), Math.min(window.getStart(), read.getStart()), Math.max(window.getEnd(), read.getEnd()), partitionIndex));
+            }
+        }
+        return windows.values().iterator();
+    }
+
+    /**
+     * Pairs each read of a partition with the variants that overlap it.
+     * @param reads the reads of the partition, which are only iterated over once
+     * @param variants the variants that overlap the window of the partition
+     */
+    static Iterator<Tuple2<GATKRead, Iterable<GATKVariant>>> joinPartition(final Iterator<GATKRead> reads, final Iterator<GATKVariant> variants) {
+        final Map<String, List<GATKVariant>> variantsByContig = new LinkedHashMap<>();
+        variants.forEachRemaining(variant -> variantsByContig.computeIfAbsent(variant.getContig(), contig -> new ArrayList<>()).add(variant));
+
+        return new Iterator<Tuple2<GATKRead, Iterable<GATKVariant>>>() {
+            private String currentContig = null;
+            private IntervalsSkipListOneContig<GATKVariant> currentVariants = null;
+
+            @Override
+            public boolean hasNext() {
+                return reads.hasNext();
+            }
+
+            @Override
+            public Tuple2<GATKRead, Iterable<GATKVariant>> next() {
+                final GATKRead read = reads.next();
+                if (!SimpleInterval.isValid(read.getContig(), read.getStart(), read.getEnd())) {
+                    //Sometimes we have reads that do not form valid intervals (reads that do not consume any ref bases, eg CIGAR 61S90I
+                    //In those cases, we'll just say that nothing overlaps the read
+                    return new Tuple2<>(read, Collections.emptyList());
+                }
+                if (!read.getContig().equals(currentContig)) {
+                    currentContig = read.getContig();
+                    final List<GATKVariant> contigVariants = variantsByContig.get(currentContig);
+                    currentVariants = contigVariants == null ? null : new IntervalsSkipListOneContig<>(contigVariants);
+                }
+                if (currentVariants == null) {
+                    return new Tuple2<>(read, Collections.emptyList());
+                }
+                return new Tuple2<>(read, currentVariants.getOverlapping(new SimpleInterval(read)));
+            }
+        };
+    }
+
+    /**
+     * The span of the reads of a partition on one contig.
+     */
+    static final class PartitionWindow implements Locatable, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String contig;
+        private final int start;
+        private final int end;
+        private final int partitionIndex;
+
+        PartitionWindow(final String contig, final int start, final int end, final int partitionIndex) {
+            this.contig = contig;
+            this.start = start;
+            this.end = end;
+            this.partitionIndex = partitionIndex;
+        }
+
+        @Override
+        public String getContig() {
+            return contig;
+        }
+
+        @Override
+        public int getStart() {
+            return start;
+        }
+
+        @Override
+        public int getEnd() {
+            return end;
+        }
+
+        int getPartitionIndex() {
+            return partitionIndex;
+        }
+    }
+
+    /**
+     * Sends each value to the partition given by its key.
+     */
+    private static final class PartitionIndexPartitioner extends Partitioner {
+        private static final long serialVersionUID = 1L;
+        private final int numPartitions;
+
+        PartitionIndexPartitioner(final int numPartitions) {
+            this.numPartitions = numPartitions;
+        }
+
+        @Override
+        public int numPartitions() {
+            return numPartitions;
+        }
+
+        @Override
+        public int getPartition(final Object key) {
+            return (Integer) key;
+        }
+    }
+}
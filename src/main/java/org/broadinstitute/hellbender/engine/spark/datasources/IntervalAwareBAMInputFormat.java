@@ -0,0 +1,211 @@
+package org.broadinstitute.hellbender.engine.spark.datasources;
+
+import htsjdk.samtools.BAMFileSpan;
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.Chunk;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SamInputResource;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.Interval;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.seqdoop.hadoop_bam.BAMInputFormat;
+import org.seqdoop.hadoop_bam.BAMSplitGuesser;
+import org.seqdoop.hadoop_bam.FileVirtualSplit;
+import org.seqdoop.hadoop_bam.SplittingBAMIndex;
+import org.seqdoop.hadoop_bam.SplittingBAMIndexer;
+import org.seqdoop.hadoop_bam.util.WrapSeekable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A BAMInputFormat that plans the splits of a query by intervals with the BAM index, so that only the parts of the
+ * file that overlap the intervals are read.
+ *
+ * BAMInputFormat splits the whole file, locating the first record of every split, before it drops the splits that
+ * don't overlap the intervals. Here the file spans of the intervals are looked up in the BAI instead, and cut into
+ * splits of about the split size at record boundaries, which are taken from the splitting index made by
+ * CreateHadoopBamSplittingIndex if there is one, or found with the Hadoop-BAM split guesser otherwise. Nearby small spans
+ * are packed together into one split, so that many small intervals (as for an exome) don't make many tiny partitions.
+ * A split is read from its start to its end, so the gaps between the packed spans count towards the split size, and
+ * the reads in them are dropped by the record reader, which keeps only the reads that overlap the intervals.
+ *
+ * The intervals are set with {@link BAMInputFormat#setIntervals}. Queries without intervals, and files without a BAI,
+ * are split by BAMInputFormat.
+ */
+public final class IntervalAwareBAMInputFormat extends BAMInputFormat {
+
+    // as in FileInputFormat, a span is only cut if it's larger than the split size by this factor
+    private static final double SPLIT_SLOP = 1.1;
+
+    @FunctionalInterface
+    private interface RecordStartFinder {
+        /**
+         * @return the virtual offset of the first record at or after the file position, or endVirtualOffset if none
+         */
+        long next(long filePosition, long endVirtualOffset) throws IOException;
+    }
+
+    @Override
+    public List<InputSplit> getSplits(final JobContext job) throws IOException {
+        final List<Interval> intervals = parseIntervals(job.getConfiguration());
+        if (intervals == null) {
+            return super.getSplits(job);
+        }
+        final List<InputSplit> splits = new ArrayList<>();
+        for (final FileStatus file : listStatus(job)) {
+            final List<InputSplit> fileSplits = getIntervalSplits(job, file, intervals);
+            if (fileSplits == null) {
+                // no index, so BAMInputFormat has to split the whole input
+                return super.getSplits(job);
+            }
+            splits.addAll(fileSplits);
+        }
+        return splits;
+    }
+
+    /**
+     * @return the splits covering the parts of the file that overlap the intervals, or null if the file has no BAI
+     */
+    private List<InputSplit> getIntervalSplits(final JobContext job, final FileStatus file, final List<Interval> intervals) throws IOException {
+        final Configuration conf = job.getConfiguration();
+        final Path path = file.getPath();
+        final FileSystem fs = path.getFileSystem(conf);
+        final Path indexPath = findIndex(fs, path, BAMIndex.BAMIndexSuffix);
+        if (indexPath == null) {
+            return null;
+        }
+
+        final List<Chunk> chunks = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault()
+                .validationStringency(ValidationStringency.SILENT) // only the header and the index are read
+                .open(SamInputResource.of(WrapSeekable.openPath(conf, path)).index(WrapSeekable.openPath(conf, indexPath)))) {
+            final SAMSequenceDictionary dictionary = reader.getFileHeader().getSequenceDictionary();
+            final BAMIndex index = reader.indexing().getIndex();
+            for (final Interval interval : intervals) {
+                final int referenceIndex = dictionary.getSequenceIndex(interval.getContig());
+                if (referenceIndex != -1) {
+                    final BAMFileSpan span = index.getSpanOverlapping(referenceIndex, interval.getStart(), interval.getEnd());
+                    if (span != null) {
+                        chunks.addAll(span.getChunks());
+                    }
+                }
+            }
+        }
+        final List<Chunk> mergedChunks = Chunk.optimizeChunkList(chunks, 0);
+        final long splitSize = computeSplitSize(file.getBlockSize(), getMinSplitSize(job), getMaxSplitSize(job));
+
+        final Path splittingIndexPath = findIndex(fs, path, SplittingBAMIndexer.OUTPUT_FILE_EXTENSION);
+        if (splittingIndexPath != null) {
+            final SplittingBAMIndex splittingIndex;
+            try (final InputStream in = fs.open(splittingIndexPath)) {
+                splittingIndex = new SplittingBAMIndex(in);
+            }
+            return packSplits(fs, file, mergedChunks, splitSize, (filePosition, endVirtualOffset) -> {
+                final Long next = splittingIndex.nextAlignment(filePosition);
+                return next == null ? endVirtualOffset : next;
+            });
+        }
+        try (final SeekableStream in = WrapSeekable.openPath(conf, path)) {
+            final BAMSplitGuesser guesser = new BAMSplitGuesser(in, conf);
+            return packSplits(fs, file, mergedChunks, splitSize,
+                    (filePosition, endVirtualOffset) -> guesser.guessNextBAMRecordStart(filePosition, endVirtualOffset >>> 16));
+        }
+    }
+
+    /**
+     * Cuts the chunks that are too large and packs the small ones together, into splits of about the split size.
+     */
+    private List<InputSplit> packSplits(final FileSystem fs, final FileStatus file, final List<Chunk> chunks,
+                                        final long splitSize, final RecordStartFinder finder) throws IOException {
+        final BlockLocation[] blocks = fs.getFileBlockLocations(file, 0, file.getLen());
+        final List<InputSplit> splits = new ArrayList<>();
+        Chunk packed = null;
+        for (final Chunk chunk : chunks) {
+            for (final Chunk piece : cutChunk(chunk, splitSize, finder)) {
+                if (packed != null && compressedSize(packed.getChunkStart(), piece.getChunkEnd()) > splitSize) {
+                    splits.add(makeSplit(file.getPath(), packed, blocks));
+                    packed = null;
+                }
+                packed = packed == null ? piece : new Chunk(packed.getChunkStart(), piece.getChunkEnd());
+            }
+        }
+        if (packed != null) {
+            splits.add(makeSplit(file.getPath(), packed, blocks));
+        }
+        return splits;
+    }
+
+    private static List<Chunk> cutChunk(final Chunk chunk, final long splitSize, final RecordStartFinder finder) throws IOException {
+        final List<Chunk> pieces = new ArrayList<>();
+        long start = chunk.getChunkStart();
+        final long end = chunk.getChunkEnd();
+        while ((double) compressedSize(start, end) / splitSize > SPLIT_SLOP) {
+            final long cut = finder.next((start >>> 16) + splitSize, end);
+            if (cut <= start || cut >= end) {
+                break;
+            }
+            pieces.add(new Chunk(start, cut));
+            start = cut;
+        }
+        pieces.add(new Chunk(start, end));
+        return pieces;
+    }
+
+    private static long compressedSize(final long startVirtualOffset, final long endVirtualOffset) {
+        return (endVirtualOffset >>> 16) - (startVirtualOffset >>> 16);
+    }
+
+    private FileVirtualSplit makeSplit(final Path path, final Chunk chunk, final BlockLocation[] blocks) throws IOException {
+        final String[] hosts = blocks.length == 0 ? new String[0] : blocks[getBlockIndex(blocks, chunk.getChunkStart() >>> 16)].getHosts();
+        return new FileVirtualSplit(path, chunk.getChunkStart(), chunk.getChunkEnd(), hosts);
+    }
+
+    /**
+     * Looks for the index next to the file, either with the suffix appended or replacing the .bam extension.
+     */
+    private static Path findIndex(final FileSystem fs, final Path path, final String suffix) throws IOException {
+        final Path appended = path.suffix(suffix);
+        if (fs.exists(appended)) {
+            return appended;
+        }
+        final String name = path.getName();
+        if (name.endsWith(".bam")) {
+            final Path replaced = new Path(path.getParent(), name.substring(0, name.length() - ".bam".length()) + suffix);
+            if (fs.exists(replaced)) {
+                return replaced;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the intervals written by {@link BAMInputFormat#setIntervals} as contig:start-end,..., or null if none
+     */
+    private static List<Interval> parseIntervals(final Configuration conf) {
+        final String property = conf.get(INTERVALS_PROPERTY);
+        if (property == null || property.isEmpty()) {
+            return null;
+        }
+        final List<Interval> intervals = new ArrayList<>();
+        for (final String interval : property.split(",")) {
+            final int colon = interval.lastIndexOf(':');
+            final int dash = interval.lastIndexOf('-');
+            intervals.add(new Interval(interval.substring(0, colon),
+                    Integer.parseInt(interval.substring(colon + 1, dash)),
+                    Integer.parseInt(interval.substring(dash + 1))));
+        }
+        return intervals;
+    }
+}
@@ -1,16 +1,24 @@
 package org.broadinstitute.hellbender.engine.spark.datasources;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
 import htsjdk.samtools.BamFileIoUtils;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.cram.build.CramIO;
 import htsjdk.samtools.cram.common.CramVersions;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedInputStream;
 import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.samtools.util.RuntimeEOFException;
 import org.apache.commons.collections4.iterators.IteratorIterable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapred.FileAlreadyExistsException;
@@ -19,14 +27,20 @@ import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.parquet.avro.AvroParquetOutputFormat;
+import org.apache.spark.RangePartitioner;
+import org.apache.spark.SerializableWritable;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.rdd.ShuffledRDD;
 import org.bdgenomics.adam.models.RecordGroupDictionary;
 import org.bdgenomics.adam.models.SequenceDictionary;
 import org.bdgenomics.formats.avro.AlignmentRecord;
+import org.broadinstitute.hellbender.engine.spark.HeaderDictionaryKryoSerializer;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
@@ -40,22 +54,43 @@ import org.seqdoop.hadoop_bam.KeyIgnoringBAMOutputFormat;
 import org.seqdoop.hadoop_bam.KeyIgnoringCRAMOutputFormat;
 import org.seqdoop.hadoop_bam.SAMFormat;
 import org.seqdoop.hadoop_bam.SAMRecordWritable;
+import org.seqdoop.hadoop_bam.SplittingBAMIndexer;
 import org.seqdoop.hadoop_bam.util.SAMOutputPreparer;
 import scala.Tuple2;
-
+import scala.math.Ordering;
+import scala.math.Ordering$;
+import scala.reflect.ClassTag;
+import scala.reflect.ClassTag$;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 /**
  * ReadsSparkSink writes GATKReads to a file. This code lifts from the HadoopGenomics/Hadoop-BAM
  * read writing code as well as from bigdatagenomics/adam.
  */
 public final class ReadsSparkSink {
+    private static final Logger logger = LogManager.getLogger(ReadsSparkSink.class);
+
+    // one in this many of the partitions of a coordinate sort hold only the unplaced unmapped reads (with fewer
+    // partitions than this, they share the last partition with the last placed reads)
+    private static final int UNPLACED_PARTITIONS_DIVISOR = 16;
 
     // Output format class for writing BAM files through saveAsNewAPIHadoopFile. Must be public.
     public static class SparkBAMOutputFormat extends KeyIgnoringBAMOutputFormat<NullWritable> {
@@ -152,6 +187,25 @@ public final class ReadsSparkSink {
     public static void writeReads(
             final JavaSparkContext ctx, final String outputFile, final String referenceFile, final JavaRDD<GATKRead> reads,
             final SAMFileHeader header, ReadsWriteFormat format, final int numReducers) throws IOException {
+        writeReads(ctx, outputFile, referenceFile, reads, header, format, numReducers, false);
+    }
+
+    /**
+     * writeReads writes rddReads to outputFile with header as the file header.
+     * @param ctx the JavaSparkContext to write.
+     * @param outputFile path to the output bam.
+     * @param referenceFile path to the reference. required for cram output, otherwise may be null.
+     * @param reads reads to write.
+     * @param header the header to put at the top of the files
+     * @param format should the output be a single file, sharded, ADAM, etc.
+     * @param numReducers the number of reducers to use when writing a single file. A value of zero indicates that the default
+     *                    should be used.
+     * @param writeSplittingIndex whether to write a splitting index (as made by CreateHadoopBamSplittingIndex) next to
+     *                            the output, if it is a single BAM file.
+     */
+    public static void writeReads(
+            final JavaSparkContext ctx, final String outputFile, final String referenceFile, final JavaRDD<GATKRead> reads,
+            final SAMFileHeader header, ReadsWriteFormat format, final int numReducers, final boolean writeSplittingIndex) throws IOException {
 
         SAMFormat samOutputFormat = IOUtils.isCramFileName(outputFile) ? SAMFormat.CRAM : SAMFormat.BAM;
 
@@ -168,7 +222,7 @@ public final class ReadsSparkSink {
         final JavaRDD<SAMRecord> samReads = reads.map(read -> read.convertToSAMRecord(null));
 
         if (format == ReadsWriteFormat.SINGLE) {
-            writeReadsSingle(ctx, absoluteOutputFile, absoluteReferenceFile, samOutputFormat, samReads, header, numReducers);
+            writeReadsSingle(ctx, absoluteOutputFile, absoluteReferenceFile, samOutputFormat, samReads, header, numReducers, writeSplittingIndex);
         } else if (format == ReadsWriteFormat.SHARDED) {
             saveAsShardedHadoopFiles(ctx, absoluteOutputFile, absoluteReferenceFile, samOutputFormat, samReads, header, true);
         } else if (format == ReadsWriteFormat.ADAM) {
@@ -241,14 +295,19 @@ public final class ReadsSparkSink {
 
     private static void writeReadsSingle(
             final JavaSparkContext ctx, final String outputFile, final String referenceFile, final SAMFormat samOutputFormat, final JavaRDD<SAMRecord> reads,
-            final SAMFileHeader header, final int numReducers) throws IOException {
+            final SAMFileHeader header, final int numReducers, final boolean writeSplittingIndex) throws IOException {
 
         final JavaRDD<SAMRecord> sortedReads = sortReads(reads, header, numReducers);
         saveAsShardedHadoopFiles(ctx, outputFile, referenceFile, samOutputFormat, sortedReads,  header, false);
-        mergeHeaderlessBamShards(ctx, outputFile, samOutputFormat, header);
+        mergeHeaderlessBamShards(ctx, outputFile, samOutputFormat, header, writeSplittingIndex && samOutputFormat == SAMFormat.BAM);
     }
 
     private static JavaRDD<SAMRecord> sortReads(final JavaRDD<SAMRecord> reads, final SAMFileHeader header, final int numReducers) {
+        if (header.getSortOrder() == SAMFileHeader.SortOrder.coordinate && ReferencePositionPartitioner.canPartition(header.getSequenceDictionary())) {
+            final int numPartitions = numReducers > 0 ? numReducers : reads.partitions().size();
+            return sortByReferencePosition(reads, getSAMRecordComparator(header), numPartitions, header);
+        }
+
         // Turn into key-value pairs so we can sort (by key). Values are null so there is no overhead in the amount
         // of data going through the shuffle.
         final JavaPairRDD<SAMRecord, Void> rddReadPairs = reads.mapToPair(read -> new Tuple2<>(read, (Void) null));
@@ -258,15 +317,92 @@ public final class ReadsSparkSink {
         final JavaPairRDD<SAMRecord, Void> readVoidPairs;
         if (comparator == null){
             readVoidPairs = rddReadPairs; //no sort
-        } else if (numReducers > 0) {
-            readVoidPairs = rddReadPairs.sortByKey(comparator, true, numReducers);
         } else {
-            readVoidPairs = rddReadPairs.sortByKey(comparator);
+            final int numPartitions = numReducers > 0 ? numReducers : rddReadPairs.partitions().size();
+            readVoidPairs = sortByKeyWithHeaderDictionary(rddReadPairs, comparator, numPartitions, header);
         }
 
         return readVoidPairs.map(Tuple2::_1);
     }
 
+    /**
+     * Does the same as {@link JavaPairRDD#sortByKey(Comparator, boolean, int)}, but the reads are shuffled with a
+     * {@link HeaderDictionaryKryoSerializer}, so the reference names and read groups are not spelled out for every read.
+     */
+    private static JavaPairRDD<SAMRecord, Void> sortByKeyWithHeaderDictionary(
+            final JavaPairRDD<SAMRecord, Void> readVoidPairs, final Comparator<SAMRecord> comparator,
+            final int numPartitions, final SAMFileHeader header) {
+        final Ordering<SAMRecord> ordering = Ordering$.MODULE$.comparatorToOrdering(comparator);
+        final ClassTag<SAMRecord> readTag = ClassTag$.MODULE$.apply(SAMRecord.class);
+        final ClassTag<Void> voidTag = ClassTag$.MODULE$.apply(Void.class);
+        final RangePartitioner<SAMRecord, Void> partitioner =
+                new RangePartitioner<>(numPartitions, readVoidPairs.rdd(), true, ordering, readTag);
+        final ShuffledRDD<SAMRecord, Void, Void> sorted =
+                new ShuffledRDD<SAMRecord, Void, Void>(readVoidPairs.rdd(), partitioner, readTag, voidTag, voidTag)
+                        .setKeyOrdering(ordering)
+                        .setSerializer(new HeaderDictionaryKryoSerializer(readVoidPairs.context().getConf(), header));
+        return JavaPairRDD.fromRDD(sorted, readTag, voidTag);
+    }
+
+    /**
+     * Sorts the reads by coordinate, keyed by their packed reference position. The shuffle sorts the compact keys, and
+     * is partitioned by a {@link ReferencePositionPartitioner}, so there is no job to sample the keys as in
+     * {@link JavaPairRDD#sortByKey}. Reads at the same position are then sorted with the comparator, within their partition.
+     * The unplaced unmapped reads are spread over the last 1/{@value #UNPLACED_PARTITIONS_DIVISOR} of the partitions,
+     * rather than all landing in the last one.
+     */
+    private static JavaRDD<SAMRecord> sortByReferencePosition(
+            final JavaRDD<SAMRecord> reads, final Comparator<SAMRecord> comparator, final int numPartitions, final SAMFileHeader header) {
+        final SAMSequenceDictionary dictionary = header.getSequenceDictionary();
+        final JavaPairRDD<Long, SAMRecord> keyedReads = reads.mapToPair(read -> new Tuple2<>(ReferencePositionPartitioner.getKey(read, header), read));
+        final Ordering<Long> ordering = Ordering$.MODULE$.comparatorToOrdering(Comparator.<Long>naturalOrder());
+        final ClassTag<Long> keyTag = ClassTag$.MODULE$.apply(Long.class);
+        final ClassTag<SAMRecord> readTag = ClassTag$.MODULE$.apply(SAMRecord.class);
+        final ShuffledRDD<Long, SAMRecord, SAMRecord> sorted =
+                new ShuffledRDD<Long, SAMRecord, SAMRecord>(keyedReads.rdd(), new ReferencePositionPartitioner(numPartitions, numPartitions / UNPLACED_PARTITIONS_DIVISOR, dictionary), keyTag, readTag, readTag)
+                        .setKeyOrdering(ordering)
+                        .setSerializer(new HeaderDictionaryKryoSerializer(keyedReads.context().getConf(), header));
+        return JavaPairRDD.fromRDD(sorted, keyTag, readTag)
+                .mapPartitions(iter -> () -> sortTiedReads(iter, comparator, dictionary));
+    }
+
+    /**
+     * Sorts the runs of reads with the same key with the comparator, since the key only holds the position.
+     * The unplaced unmapped reads have no position to break ties in, so they are passed through as they come, without
+     * being held in memory.
+     * @param keyedReads reads sorted by key
+     */
+    static Iterator<SAMRecord> sortTiedReads(final Iterator<Tuple2<Long, SAMRecord>> keyedReads, final Comparator<SAMRecord> comparator,
+                                             final SAMSequenceDictionary dictionary) {
+        final PeekingIterator<Tuple2<Long, SAMRecord>> iter = Iterators.peekingIterator(keyedReads);
+        return new AbstractIterator<SAMRecord>() {
+            private final List<SAMRecord> run = new ArrayList<>();
+            private int next = 0;
+
+            @Override
+            protected SAMRecord computeNext() {
+                if (next == run.size()) {
+                    run.clear();
+                    next = 0;
+                    if (!iter.hasNext()) {
+                        return endOfData();
+                    }
+                    final long key = iter.peek()._1();
+                    if (ReferencePositionPartitioner.isUnplacedKey(key, dictionary)) {
+                        return iter.next()._2();
+                    }
+                    while (iter.hasNext() && iter.peek()._1() == key) {
+                        run.add(iter.next()._2());
+                    }
+                    if (run.size() > 1) {
+                        run.sort(comparator);
+                    }
+                }
+                return run.get(next++);
+            }
+        };
+    }
+
     //Returns the comparator to use or null if no sorting is required.
     private static Comparator<SAMRecord> getSAMRecordComparator(final SAMFileHeader header) {
         switch (header.getSortOrder()){
@@ -301,7 +437,8 @@ public final class ReadsSparkSink {
         pathToDelete.getFileSystem(conf).delete(pathToDelete, true);
     }
 
-    private static void mergeHeaderlessBamShards(final JavaSparkContext ctx, final String outputFile, final SAMFormat samOutputFormat, final SAMFileHeader header) throws IOException {
+    private static void mergeHeaderlessBamShards(final JavaSparkContext ctx, final String outputFile, final SAMFormat samOutputFormat,
+                                                 final SAMFileHeader header, final boolean writeSplittingIndex) throws IOException {
         // At this point, the part files (part-r-00000, part-r-00001, etc) are in a directory named outputFile.
         // Each part file is a BAM file with no header or terminating end-of-file marker (Hadoop-BAM does not add
         // end-of-file markers), so to merge into a single BAM we concatenate the header with the part files and a
@@ -325,15 +462,174 @@ public final class ReadsSparkSink {
         fs.rename(outputPath, tmpPath);
         fs.delete(outputPath, true);
 
-        try (final OutputStream out = fs.create(outputPath)) {
-            new SAMOutputPreparer().prepareForRecords(out, samOutputFormat, header); // write the header
-            mergeInto(out, tmpPath, conf);
-            writeTerminatorBlock(out, samOutputFormat);
+        final FileStatus[] parts = getBamFragments(tmpPath, fs);
+        if (parts.length == 0) {
+            throw new GATKException("Could not write bam file because no part files were found.");
+        }
+        final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        new SAMOutputPreparer().prepareForRecords(headerBytes, samOutputFormat, header);
+        final ByteArrayOutputStream terminatorBytes = new ByteArrayOutputStream();
+        writeTerminatorBlock(terminatorBytes, samOutputFormat);
+
+        // the offset of each part in the merged file
+        final long[] partOffsets = new long[parts.length];
+        long outputLength = headerBytes.size();
+        for (int i = 0; i < parts.length; i++) {
+            partOffsets[i] = outputLength;
+            outputLength += parts[i].getLen();
+        }
+        outputLength += terminatorBytes.size();
+
+        if (writeSplittingIndex) {
+            writeSplittingIndex(ctx, new Path(outputFile + SplittingBAMIndexer.OUTPUT_FILE_EXTENSION), parts, partOffsets, outputLength);
+        }
+
+        if (fs instanceof LocalFileSystem) {
+            copyPartsInParallel((LocalFileSystem) fs, outputPath, parts, partOffsets, headerBytes.toByteArray(), terminatorBytes.toByteArray());
+        } else if (!concatParts(fs, outputPath, tmpPath, parts, headerBytes.toByteArray(), terminatorBytes.toByteArray())) {
+            try (final OutputStream out = fs.create(outputPath)) {
+                headerBytes.writeTo(out);
+                mergeInto(out, tmpPath, conf);
+                terminatorBytes.writeTo(out);
+            }
         }
 
         fs.delete(tmpPath, true);
     }
 
+    /**
+     * Merges the parts with FileSystem.concat, which moves the blocks of the parts into the output on HDFS rather than
+     * copying the data through the driver.
+     * @return false if the file system can't concatenate the parts, in which case nothing has been changed
+     */
+    private static boolean concatParts(final FileSystem fs, final Path outputPath, final Path partsDirectory, final FileStatus[] parts,
+                                       final byte[] header, final byte[] terminator) throws IOException {
+        // HDFS requires the files to be in the same directory
+        final Path headerPath = new Path(partsDirectory, "header");
+        final Path terminatorPath = new Path(partsDirectory, "terminator");
+        try (final OutputStream out = fs.create(headerPath)) {
+            out.write(header);
+        }
+        try (final OutputStream out = fs.create(terminatorPath)) {
+            out.write(terminator);
+        }
+        final Path[] sources = new Path[parts.length + 1];
+        for (int i = 0; i < parts.length; i++) {
+            sources[i] = parts[i].getPath();
+        }
+        sources[parts.length] = terminatorPath;
+        try {
+            fs.concat(headerPath, sources);
+        } catch (final UnsupportedOperationException | IOException e) {
+            // not supported by the file system, or the parts are not allowed (e.g. older versions of HDFS require
+            // all but the last block of the parts to be full)
+            logger.debug("Could not concatenate the parts of " + outputPath + ", copying them instead: " + e.getMessage());
+            fs.delete(headerPath, false);
+            fs.delete(terminatorPath, false);
+            return false;
+        }
+        if (!fs.rename(headerPath, outputPath)) {
+            throw new GATKException("Could not rename " + headerPath + " to " + outputPath);
+        }
+        return true;
+    }
+
+    /**
+     * Copies the parts of a local file concurrently, each to its own offset in the output.
+     */
+    private static void copyPartsInParallel(final LocalFileSystem fs, final Path outputPath, final FileStatus[] parts, final long[] partOffsets,
+                                            final byte[] header, final byte[] terminator) throws IOException {
+        final File output = fs.pathToFile(outputPath);
+        try (final FileChannel out = FileChannel.open(output.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, header, 0);
+            // write the terminator first to allocate the whole file, since FileChannel.transferFrom doesn't write past the end
+            final int lastPart = parts.length - 1;
+            writeFully(out, terminator, partOffsets[lastPart] + parts[lastPart].getLen());
+            IntStream.range(0, parts.length).parallel().forEach(i -> {
+                final File part = fs.pathToFile(parts[i].getPath());
+                try (final FileChannel in = FileChannel.open(part.toPath(), StandardOpenOption.READ)) {
+                    final long size = in.size();
+                    long copied = 0;
+                    while (copied < size) {
+                        copied += out.transferFrom(in, partOffsets[i] + copied, size - copied);
+                    }
+                } catch (final IOException e) {
+                    throw new UserException.CouldNotCreateOutputFile(output, "Could not copy " + part + " into the output", e);
+                }
+            });
+        }
+    }
+
+    private static void writeFully(final FileChannel out, final byte[] bytes, final long position) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            out.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Writes a splitting index for the merged BAM. Each part is indexed on the executors, and the entries are shifted
+     * by the offset of the part in the merged file, so the merged file doesn't have to be read again.
+     */
+    private static void writeSplittingIndex(final JavaSparkContext ctx, final Path indexPath, final FileStatus[] parts,
+                                            final long[] partOffsets, final long outputLength) throws IOException {
+        final List<Tuple2<String, Long>> partsWithOffsets = new ArrayList<>(parts.length);
+        for (int i = 0; i < parts.length; i++) {
+            partsWithOffsets.add(new Tuple2<>(parts[i].getPath().toString(), partOffsets[i]));
+        }
+        final SerializableWritable<Configuration> conf = new SerializableWritable<>(ctx.hadoopConfiguration());
+        final List<long[]> fragments = ctx.parallelize(partsWithOffsets, parts.length)
+                .map(part -> getSplittingIndexFragment(new Path(part._1()), part._2(), SplittingBAMIndexer.DEFAULT_GRANULARITY, conf.value()))
+                .collect();
+
+        // the splitting index is a list of big-endian virtual offsets, terminated by the length of the file
+        final FileSystem fs = indexPath.getFileSystem(ctx.hadoopConfiguration());
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fs.create(indexPath)))) {
+            for (final long[] fragment : fragments) {
+                for (final long virtualOffset : fragment) {
+                    out.writeLong(virtualOffset);
+                }
+            }
+            out.writeLong(outputLength << 16);
+        }
+    }
+
+    /**
+     * Returns the virtual offsets of every granularity-th record of a headerless part, as they will be in the merged file.
+     * @param part the part file
+     * @param partOffset the offset of the part in the merged file
+     */
+    @VisibleForTesting
+    static long[] getSplittingIndexFragment(final Path part, final long partOffset, final int granularity, final Configuration conf) throws IOException {
+        final FileSystem fs = part.getFileSystem(conf);
+        final List<Long> virtualOffsets = new ArrayList<>();
+        try (final BlockCompressedInputStream in = new BlockCompressedInputStream(new BufferedInputStream(fs.open(part)))) {
+            final BinaryCodec codec = new BinaryCodec(in);
+            for (long recordIndex = 0; ; recordIndex++) {
+                final long virtualOffset = in.getFilePointer();
+                final int blockSize;
+                try {
+                    blockSize = codec.readInt();
+                } catch (final RuntimeEOFException e) {
+                    break;
+                }
+                if (recordIndex % granularity == 0) {
+                    virtualOffsets.add(((partOffset + (virtualOffset >>> 16)) << 16) | (virtualOffset & 0xFFFF));
+                }
+                long remaining = blockSize;
+                while (remaining > 0) {
+                    final long skipped = in.skip(remaining);
+                    if (skipped <= 0) {
+                        throw new GATKException("Truncated record in " + part);
+                    }
+                    remaining -= skipped;
+                }
+            }
+        }
+        return virtualOffsets.stream().mapToLong(Long::longValue).toArray();
+    }
+
     //Terminate the aggregated output stream with an appropriate SAMOutputFormat-dependent terminator block
     private static void writeTerminatorBlock(final OutputStream out, final SAMFormat samOutputFormat) throws IOException {
         if (SAMFormat.CRAM == samOutputFormat) {
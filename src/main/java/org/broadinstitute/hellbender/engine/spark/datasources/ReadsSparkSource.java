@@ -76,7 +76,7 @@ public final class ReadsSparkSource implements Serializable {
 
     /**
      * Loads Reads using Hadoop-BAM. For local files, bam must have the fully-qualified path,
-     * i.e., file:///path/to/bam.bam.
+     * i.e., file:///path/to/bam.bam. For a BAM with a BAI, only the parts of the file that overlap the intervals are read.
      * @param readFileName file to load
      * @param referencePath Reference path or null if not available. Reference is required for CRAM files.
      * @param intervals intervals of reads to include.
@@ -85,6 +85,15 @@ public final class ReadsSparkSource implements Serializable {
      * @return RDD of (SAMRecord-backed) GATKReads from the file.
      */
     public JavaRDD<GATKRead> getParallelReads(final String readFileName, final String referencePath, final List<SimpleInterval> intervals, final long splitSize) {
+        return getParallelReads(readFileName, referencePath, intervals, splitSize, true);
+    }
+
+    /**
+     * @param planSplitsWithIndex whether to plan the splits of an indexed BAM with the intervals
+     *                            (see {@link IntervalAwareBAMInputFormat}), rather than splitting the whole file
+     */
+    private JavaRDD<GATKRead> getParallelReads(final String readFileName, final String referencePath, final List<SimpleInterval> intervals,
+                                               final long splitSize, final boolean planSplitsWithIndex) {
         // use the Hadoop configuration attached to the Spark context to maintain cumulative settings
         final Configuration conf = ctx.hadoopConfiguration();
         if (splitSize > 0) {
@@ -96,15 +105,22 @@ public final class ReadsSparkSource implements Serializable {
         setHadoopBAMConfigurationProperties(readFileName, referencePath);
 
         boolean isBam = IOUtils.isBamFileName(readFileName);
-        if (isBam && intervals != null && !intervals.isEmpty()) {
+        final boolean hasIntervals = isBam && intervals != null && !intervals.isEmpty();
+        if (hasIntervals) {
             BAMInputFormat.setIntervals(conf, intervals);
         } else {
             conf.unset(BAMInputFormat.INTERVALS_PROPERTY);
         }
 
-        rdd2 = ctx.newAPIHadoopFile(
+        if (hasIntervals && planSplitsWithIndex) {
+            rdd2 = ctx.newAPIHadoopFile(
+                    readFileName, IntervalAwareBAMInputFormat.class, LongWritable.class, SAMRecordWritable.class,
+                    conf);
+        } else {
+            rdd2 = ctx.newAPIHadoopFile(
                     readFileName, AnySAMInputFormat.class, LongWritable.class, SAMRecordWritable.class,
                     conf);
+        }
 
         return rdd2.map(v1 -> {
             SAMRecord sam = v1._2().get();
@@ -138,7 +154,8 @@ public final class ReadsSparkSource implements Serializable {
     public JavaRDD<GATKRead> getParallelReads(final String readFileName, final String referencePath, int splitSize) {
         final SAMFileHeader readsHeader = getHeader(readFileName, referencePath, null);
         List<SimpleInterval> intervals = IntervalUtils.getAllIntervalsForReference(readsHeader.getSequenceDictionary());
-        return getParallelReads(readFileName, referencePath, intervals, splitSize);
+        // the intervals cover the whole reference, so there is nothing to gain from planning the splits with the index
+        return getParallelReads(readFileName, referencePath, intervals, splitSize, false);
     }
 
     /**
@@ -0,0 +1,207 @@
+package org.broadinstitute.hellbender.engine.spark.datasources;
+
+import com.google.cloud.dataflow.sdk.options.PipelineOptions;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import org.apache.spark.SparkFiles;
+import org.broadinstitute.hellbender.engine.datasources.ReferenceSource;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.reference.ReferenceBases;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A ReferenceSource impl that is backed by a packed reference file, made from a FASTA by {@link #pack}, which holds the
+ * bases at 4 bits per base (with the same codes as BAM, so IUPAC ambiguity codes are kept, but not the case of the bases).
+ *
+ * Only the path of the file is serialized with this object, and the file is memory-mapped when it is first queried,
+ * so it is cheap to broadcast. The file is found at the same path on the executors, or else in the files added to the
+ * Spark context with {@link org.apache.spark.api.java.JavaSparkContext#addFile}, so queries are served from the page
+ * cache of each executor rather than from a copy of the reference in each JVM.
+ */
+public final class ReferencePackedSource implements ReferenceSource, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String PACKED_REFERENCE_EXTENSION = ".packedref";
+
+    private static final int MAGIC = 0x47505246; // "GPRF"
+    private static final int VERSION = 1;
+    // the magic number, version and size of the rest of the header
+    private static final int FIXED_HEADER_SIZE = 3 * Integer.BYTES;
+    private static final byte[] BASES = "=ACMGRSVTWYHKDBN".getBytes();
+    private static final byte[] CODES = new byte[256];
+    static {
+        // anything that is not a base code is written as N
+        Arrays.fill(CODES, (byte) (BASES.length - 1));
+        for (int code = 0; code < BASES.length; code++) {
+            CODES[BASES[code]] = (byte) code;
+            CODES[Character.toLowerCase(BASES[code])] = (byte) code;
+        }
+    }
+
+    private final String referencePath;
+    private final SAMSequenceDictionary dictionary;
+    private final Map<String, Long> sequenceOffsets;
+
+    // mapped on first use, on the executors
+    private transient Map<String, ByteBuffer> mappedSequences;
+
+    /**
+     * @param referencePath the local path to the packed reference file
+     */
+    public ReferencePackedSource(final String referencePath) throws IOException {
+        Utils.validateArg(isPacked(referencePath), "ReferencePackedSource can only take " + PACKED_REFERENCE_EXTENSION + " files");
+        this.referencePath = referencePath;
+        final List<SAMSequenceRecord> sequences = new ArrayList<>();
+        this.sequenceOffsets = new LinkedHashMap<>();
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(referencePath)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new UserException.MalformedFile(new File(referencePath), "Not a packed reference file, or made by another version");
+            }
+            final long basesStart = FIXED_HEADER_SIZE + in.readInt();
+            final int numSequences = in.readInt();
+            for (int i = 0; i < numSequences; i++) {
+                final String name = in.readUTF();
+                sequences.add(new SAMSequenceRecord(name, in.readInt()));
+                sequenceOffsets.put(name, basesStart + in.readLong());
+            }
+        }
+        this.dictionary = new SAMSequenceDictionary(sequences);
+    }
+
+    public static boolean isPacked(final String file) {
+        return file.endsWith(PACKED_REFERENCE_EXTENSION);
+    }
+
+    /**
+     * Writes the packed form of a FASTA, which must have a sequence dictionary.
+     * @param fasta the local path to the FASTA
+     * @param output the packed reference file to write
+     */
+    public static void pack(final File fasta, final File output) throws IOException {
+        final ReferenceSequenceFile referenceSequenceFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(fasta);
+        final SAMSequenceDictionary fastaDictionary = referenceSequenceFile.getSequenceDictionary();
+        if (fastaDictionary == null) {
+            throw new UserException.MissingReferenceDictFile(fasta.getAbsolutePath());
+        }
+        // the offsets of the sequences are from the start of the bases, after the header
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try (final DataOutputStream headerOut = new DataOutputStream(header)) {
+            headerOut.writeInt(fastaDictionary.size());
+            long offset = 0;
+            for (final SAMSequenceRecord sequence : fastaDictionary.getSequences()) {
+                headerOut.writeUTF(sequence.getSequenceName());
+                headerOut.writeInt(sequence.getSequenceLength());
+                headerOut.writeLong(offset);
+                offset += packedLength(sequence.getSequenceLength());
+            }
+        }
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(header.size());
+            header.writeTo(out);
+            for (final SAMSequenceRecord sequence : fastaDictionary.getSequences()) {
+                final ReferenceSequence bases = referenceSequenceFile.nextSequence();
+                if (bases == null || !bases.getName().equals(sequence.getSequenceName()) || bases.length() != sequence.getSequenceLength()) {
+                    throw new UserException.MalformedFile(fasta, "The sequences don't match the sequence dictionary at " + sequence.getSequenceName());
+                }
+                out.write(packBases(bases.getBases()));
+            }
+        }
+    }
+
+    private static long packedLength(final long numBases) {
+        return (numBases + 1) / 2;
+    }
+
+    private static byte[] packBases(final byte[] bases) {
+        final byte[] packed = new byte[(int) packedLength(bases.length)];
+        for (int i = 0; i < bases.length; i++) {
+            final int code = CODES[bases[i] & 0xFF];
+            packed[i >>> 1] |= (i & 1) == 0 ? code << 4 : code;
+        }
+        return packed;
+    }
+
+    /**
+     * Gets the reference bases spanning the requested interval. If the interval ends beyond the end of its
+     * contig according to our reference source's dictionary, it will be truncated at the contig end.
+     *
+     * @param pipelineOptions pipeline options (may be null)
+     * @param interval query interval
+     * @return A ReferenceBases containing the reference bases spanning the requested interval, cropped at the
+     *         contig end if necessary
+     */
+    @Override
+    public ReferenceBases getReferenceBases(final PipelineOptions pipelineOptions, final SimpleInterval interval) throws IOException {
+        final SAMSequenceRecord contigRecord = dictionary.getSequence(interval.getContig());
+        Utils.nonNull(contigRecord, () -> "Contig " + interval.getContig() + " not found in reference dictionary");
+        final SimpleInterval queryInterval = new SimpleInterval(interval.getContig(), interval.getStart(), Math.min(interval.getEnd(), contigRecord.getSequenceLength()));
+
+        final ByteBuffer packed = getMappedSequence(contigRecord);
+        final byte[] bases = new byte[queryInterval.size()];
+        for (int i = 0, position = queryInterval.getStart() - 1; i < bases.length; i++, position++) {
+            final int packedBases = packed.get(position >>> 1);
+            bases[i] = BASES[(position & 1) == 0 ? (packedBases >>> 4) & 0xF : packedBases & 0xF];
+        }
+        return new ReferenceBases(bases, queryInterval);
+    }
+
+    @Override
+    public SAMSequenceDictionary getReferenceSequenceDictionary(final SAMSequenceDictionary optReadSequenceDictionaryToMatch) throws IOException {
+        return dictionary;
+    }
+
+    @Override
+    public boolean isCompatibleWithSparkBroadcast() {
+        return true;
+    }
+
+    private synchronized ByteBuffer getMappedSequence(final SAMSequenceRecord contigRecord) throws IOException {
+        if (mappedSequences == null) {
+            mappedSequences = new HashMap<>();
+        }
+        ByteBuffer mapped = mappedSequences.get(contigRecord.getSequenceName());
+        if (mapped == null) {
+            // the mapping stays valid after the channel is closed
+            try (final FileChannel channel = FileChannel.open(getLocalFile().toPath(), StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, sequenceOffsets.get(contigRecord.getSequenceName()),
+                        packedLength(contigRecord.getSequenceLength()));
+            }
+            mappedSequences.put(contigRecord.getSequenceName(), mapped);
+        }
+        return mapped;
+    }
+
+    /**
+     * @return the file at the path given at construction, or the copy added to the Spark context if there is none
+     */
+    private File getLocalFile() {
+        final File file = new File(referencePath);
+        return file.exists() ? file : new File(SparkFiles.get(file.getName()));
+    }
+}
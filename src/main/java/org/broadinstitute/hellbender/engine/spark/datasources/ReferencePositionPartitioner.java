@@ -0,0 +1,125 @@
+package org.broadinstitute.hellbender.engine.spark.datasources;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import org.apache.spark.Partitioner;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.Arrays;
+
+/**
+ * A range partitioner for reads keyed by their packed reference position (see {@link #getKey}), whose ranges are
+ * computed from the lengths of the sequences in the dictionary rather than from a sample of the keys.
+ *
+ * The sequences are laid end to end and cut into ranges of equal length, one per partition, so the partitions are in
+ * coordinate order. Reads without a reference position (unplaced unmapped reads) sort last, so they go to the last
+ * partitions: they are spread over the partitions set aside for them by a hash of their name, which their key holds in
+ * place of a position.
+ */
+public final class ReferencePositionPartitioner extends Partitioner {
+    private static final long serialVersionUID = 1L;
+
+    private final int numPartitions;
+    // the number of partitions at the end that hold the unplaced reads, which share the last partition if there are none
+    private final int numUnplacedPartitions;
+    // the position of the start of each sequence when they are laid end to end, and the total length at the end
+    private final long[] sequenceOffsets;
+
+    /**
+     * @param numPartitions the number of partitions
+     * @param dictionary the sequence dictionary of the reads, which must have the sequence lengths
+     */
+    public ReferencePositionPartitioner(final int numPartitions, final SAMSequenceDictionary dictionary) {
+        this(numPartitions, 0, dictionary);
+    }
+
+    /**
+     * @param numPartitions the number of partitions
+     * @param numUnplacedPartitions the number of the partitions at the end to spread the unplaced reads over, or 0 to
+     *                              put them in the last partition with the last placed reads
+     * @param dictionary the sequence dictionary of the reads, which must have the sequence lengths
+     */
+    public ReferencePositionPartitioner(final int numPartitions, final int numUnplacedPartitions, final SAMSequenceDictionary dictionary) {
+        Utils.validateArg(numPartitions > 0, "numPartitions must be positive");
+        Utils.validateArg(numUnplacedPartitions >= 0 && numUnplacedPartitions < numPartitions,
+                "numUnplacedPartitions must be non-negative and less than numPartitions");
+        Utils.validateArg(canPartition(dictionary), "the sequence dictionary must have the sequence lengths");
+        this.numPartitions = numPartitions;
+        this.numUnplacedPartitions = numUnplacedPartitions;
+        this.sequenceOffsets = new long[dictionary.size() + 1];
+        for (int i = 0; i < dictionary.size(); i++) {
+            sequenceOffsets[i + 1] = sequenceOffsets[i] + dictionary.getSequence(i).getSequenceLength();
+        }
+    }
+
+    /**
+     * @return true if the reads of the dictionary can be partitioned by position, i.e. if the sequence lengths are known
+     */
+    public static boolean canPartition(final SAMSequenceDictionary dictionary) {
+        return dictionary != null && !dictionary.isEmpty() && dictionary.getReferenceLength() > 0;
+    }
+
+    /**
+     * Packs the sequence index and the alignment start of the read into a long, so that the keys sort as the
+     * coordinates of the reads are compared by {@link org.broadinstitute.hellbender.utils.read.HeaderlessSAMRecordCoordinateComparator}.
+     * Reads with a reference that is not in the header are given the largest sequence index, so they sort last, and
+     * a hash of their name in place of the alignment start, so they can be spread over partitions.
+     */
+    public static long getKey(final SAMRecord read, final SAMFileHeader header) {
+        final int sequenceIndex = header.getSequenceIndex(read.getReferenceName());
+        if (sequenceIndex == -1) {
+            return (long) header.getSequenceDictionary().size() << 32 | (read.getReadName().hashCode() & 0xFFFFFFFFL);
+        }
+        return (long) sequenceIndex << 32 | (read.getAlignmentStart() & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return true if the key is that of a read without a reference position, whose key orders it only after the
+     * placed reads, and not among the other unplaced reads
+     */
+    public static boolean isUnplacedKey(final long key, final SAMSequenceDictionary dictionary) {
+        return (key >>> 32) >= dictionary.size();
+    }
+
+    @Override
+    public int numPartitions() {
+        return numPartitions;
+    }
+
+    @Override
+    public int getPartition(final Object key) {
+        final long packed = (Long) key;
+        final int sequenceIndex = (int) (packed >>> 32);
+        final int numPlacedPartitions = numPartitions - numUnplacedPartitions;
+        if (sequenceIndex >= sequenceOffsets.length - 1) {
+            if (numUnplacedPartitions == 0) {
+                return numPartitions - 1;
+            }
+            // the low bits are a hash of the read name
+            return numPlacedPartitions + (int) ((packed & 0xFFFFFFFFL) * numUnplacedPartitions >>> 32);
+        }
+        final long totalLength = sequenceOffsets[sequenceOffsets.length - 1];
+        // alignment starts are 1-based and may run past the end of the sequence, so stay within the sequence
+        final long position = Math.min(sequenceOffsets[sequenceIndex] + Math.max((int) packed - 1, 0), sequenceOffsets[sequenceIndex + 1]);
+        return (int) Math.min(position * numPlacedPartitions / totalLength, numPlacedPartitions - 1);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ReferencePositionPartitioner)) {
+            return false;
+        }
+        final ReferencePositionPartitioner that = (ReferencePositionPartitioner) other;
+        return numPartitions == that.numPartitions && numUnplacedPartitions == that.numUnplacedPartitions
+                && Arrays.equals(sequenceOffsets, that.sequenceOffsets);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * numPartitions + numUnplacedPartitions) + Arrays.hashCode(sequenceOffsets);
+    }
+}
@@ -0,0 +1,128 @@
+package org.broadinstitute.hellbender.metrics;
+
+import htsjdk.samtools.util.Histogram;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A histogram of int values for collectors that count one value per read or per base, which keeps the counts of the
+ * small non-negative values in a long[] rather than in the TreeMap of boxed bins of an htsjdk {@link Histogram}, so
+ * that counting a value allocates nothing.
+ *
+ * The array grows as larger values are counted, up to a maximum number of bins; the values past it, and the negative
+ * values, are counted in a map instead. Histograms can be merged, as the collectors of the Spark tools are, and are
+ * turned into an htsjdk {@link Histogram} only when the metrics are written.
+ */
+public final class IntHistogram implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_MAX_DENSE_BINS = 1 << 16;
+
+    private static final int INITIAL_DENSE_BINS = 64;
+
+    private final int maxDenseBins;
+    private long[] denseCounts = new long[0];
+    private final Map<Integer, Long> sparseCounts = new HashMap<>();
+    private long count = 0;
+
+    public IntHistogram() {
+        this(DEFAULT_MAX_DENSE_BINS);
+    }
+
+    /**
+     * @param maxDenseBins the values from 0 to maxDenseBins - 1 are counted in an array, the others in a map
+     */
+    public IntHistogram(final int maxDenseBins) {
+        Utils.validateArg(maxDenseBins >= 0, "the number of dense bins must not be negative");
+        this.maxDenseBins = maxDenseBins;
+    }
+
+    public void increment(final int value) {
+        increment(value, 1);
+    }
+
+    public void increment(final int value, final long increment) {
+        if (value >= 0 && value < maxDenseBins) {
+            if (value >= denseCounts.length) {
+                growDenseCounts(value + 1);
+            }
+            denseCounts[value] += increment;
+        } else {
+            sparseCounts.merge(value, increment, Long::sum);
+        }
+        count += increment;
+    }
+
+    private void growDenseCounts(final int minLength) {
+        int length = Math.max(denseCounts.length, INITIAL_DENSE_BINS);
+        while (length < minLength) {
+            length *= 2;
+        }
+        denseCounts = Arrays.copyOf(denseCounts, Math.min(length, maxDenseBins));
+    }
+
+    /**
+     * @return the count of a value
+     */
+    public long get(final int value) {
+        if (value >= 0 && value < maxDenseBins) {
+            return value < denseCounts.length ? denseCounts[value] : 0;
+        }
+        return sparseCounts.getOrDefault(value, 0L);
+    }
+
+    /**
+     * @return the total count of all the values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Adds the counts of another histogram to this one.
+     */
+    public void addHistogram(final IntHistogram other) {
+        Utils.nonNull(other);
+        for (int value = 0; value < other.denseCounts.length; value++) {
+            if (other.denseCounts[value] != 0) {
+                increment(value, other.denseCounts[value]);
+            }
+        }
+        other.sparseCounts.forEach(this::increment);
+    }
+
+    /**
+     * @return an htsjdk histogram with a bin for every value that has been counted
+     */
+    public Histogram<Integer> toHistogram(final String binLabel, final String valueLabel) {
+        final Histogram<Integer> histogram = new Histogram<>(binLabel, valueLabel);
+        addTo(histogram);
+        return histogram;
+    }
+
+    /**
+     * @return an htsjdk histogram, without labels, with a bin for every value that has been counted
+     */
+    public Histogram<Integer> toHistogram() {
+        final Histogram<Integer> histogram = new Histogram<>();
+        addTo(histogram);
+        return histogram;
+    }
+
+    private void addTo(final Histogram<Integer> histogram) {
+        for (int value = 0; value < denseCounts.length; value++) {
+            if (denseCounts[value] != 0) {
+                histogram.increment(value, denseCounts[value]);
+            }
+        }
+        sparseCounts.forEach((value, valueCount) -> histogram.increment(value, valueCount));
+    }
+}
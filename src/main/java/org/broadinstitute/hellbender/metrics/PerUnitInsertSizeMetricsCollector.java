@@ -19,8 +19,9 @@ public final class PerUnitInsertSizeMetricsCollector
     private static final long serialVersionUID = 1L;
 
     // kryo can't serialize an EnumMap so use a LinkedHashMap (also so we can maintain order
-    // the insertion order of entries since the combining code below counts on it
-    private final Map<SamPairUtil.PairOrientation, Histogram<Integer>> histograms = new LinkedHashMap<>();
+    // the insertion order of entries since the combining code below counts on it.
+    // The insert sizes are counted in IntHistograms, which are turned into Histograms when the metrics are written.
+    private final Map<SamPairUtil.PairOrientation, IntHistogram> histograms = new LinkedHashMap<>();
 
     private final String sample;
     private final String library;
@@ -56,11 +57,9 @@ public final class PerUnitInsertSizeMetricsCollector
         this.histogramWidth = histogramWidth;
         this.deviations = deviations;
 
-        String prefix = createHistogramValuePrefix();
-
-        histograms.put(SamPairUtil.PairOrientation.FR,     new Histogram<>("insert_size", prefix + "fr_count"));
-        histograms.put(SamPairUtil.PairOrientation.TANDEM, new Histogram<>("insert_size", prefix + "tandem_count"));
-        histograms.put(SamPairUtil.PairOrientation.RF,     new Histogram<>("insert_size", prefix + "rf_count"));
+        histograms.put(SamPairUtil.PairOrientation.FR,     new IntHistogram());
+        histograms.put(SamPairUtil.PairOrientation.TANDEM, new IntHistogram());
+        histograms.put(SamPairUtil.PairOrientation.RF,     new IntHistogram());
     }
 
     @Override
@@ -78,19 +77,19 @@ public final class PerUnitInsertSizeMetricsCollector
     @Override
     public void addMetricsToFile(final MetricsFile<InsertSizeMetrics, Integer> file) {
 
-        for(final Map.Entry<SamPairUtil.PairOrientation, Histogram<Integer>> entry : histograms.entrySet()) {
+        for(final Map.Entry<SamPairUtil.PairOrientation, IntHistogram> entry : histograms.entrySet()) {
             totalInserts += entry.getValue().getCount();
         }
 
-        for(final Map.Entry<SamPairUtil.PairOrientation, Histogram<Integer>> entry : histograms.entrySet()) {
+        final String prefix = createHistogramValuePrefix();
+        for(final Map.Entry<SamPairUtil.PairOrientation, IntHistogram> entry : histograms.entrySet()) {
 
             final SamPairUtil.PairOrientation pairOrientation = entry.getKey();
-            final Histogram<Integer> Histogram = entry.getValue();
-
-            final double total = Histogram.getCount();
+            final double total = entry.getValue().getCount();
 
             // Only include a category if it has a sufficient percentage of the data in it
             if( total > totalInserts * minimumPct ) {
+                final Histogram<Integer> Histogram = entry.getValue().toHistogram("insert_size", prefix + pairOrientation.name().toLowerCase() + "_count");
                 final InsertSizeMetrics metrics = new InsertSizeMetrics();
                 metrics.SAMPLE             = this.sample;
                 metrics.LIBRARY            = this.library;
@@ -177,15 +176,10 @@ public final class PerUnitInsertSizeMetricsCollector
         // code above; though any given entry may be empty
         this.histograms.forEach(
                 (po, targetHist) -> {
-                    Histogram<Integer> sourceHist = sourceCollector.histograms.get(po);
-                    // as a check, make sure the bin and value labels for the histograms for this PO
-                    // are the same in both histograms
-                    if (!targetHist.getBinLabel().equals(sourceHist.getBinLabel()) ||
-                            !targetHist.getValueLabel().equals(sourceHist.getValueLabel())) {
-                        throw new IllegalStateException("Internal error combining collectors: attempt to combine mismatched histograms");
-                    }
-
-                    Histogram<Integer> combinedHist = new Histogram<>(targetHist.getBinLabel(), targetHist.getValueLabel());
+                    IntHistogram sourceHist = sourceCollector.histograms.get(po);
+                    // the labels of the histograms are made from the sample, library and read group
+                    // validated above, so the histograms for this PO can always be combined
+                    IntHistogram combinedHist = new IntHistogram();
                     combinedHist.addHistogram(sourceHist);
                     combinedHist.addHistogram(targetHist);
 
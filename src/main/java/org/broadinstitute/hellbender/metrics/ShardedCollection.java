@@ -0,0 +1,211 @@
+package org.broadinstitute.hellbender.metrics;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFileWalker;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.SequenceUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.IntervalUtils;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Runs a collector over an indexed SAM/BAM/CRAM file on several threads, by cutting the genome into shards and giving
+ * the records of each shard to a collector of its own. The collectors of the shards are then combined, in the order of
+ * the shards, into one collector, which can be finished as if it had seen all the records in a single pass.
+ *
+ * Each record goes to the shard that holds its alignment start, so that no record is seen twice, and the unplaced
+ * unmapped records go to one more shard at the end, if they are wanted. The combine function must be associative, as
+ * {@link MultiLevelReducibleCollector#combine} is, for the result not to depend on the shards.
+ */
+public final class ShardedCollection {
+    private static final Logger logger = LogManager.getLogger(ShardedCollection.class);
+
+    public static final int DEFAULT_SHARD_SIZE = 10_000_000;
+
+    private ShardedCollection(){}
+
+    /**
+     * Collects the input in shards. A {@link MultiLevelReducibleCollector} is collected with
+     * {@code (collector, record) -> collector.acceptRecord(record.getSamRecord(), record.getReferenceSequence())}
+     * and combined with {@code (target, source) -> {target.combine(source); return target;}}.
+     *
+     * @param input an indexed SAM/BAM/CRAM file
+     * @param referenceSequence the reference, or null, in which case the records are given no reference sequence
+     * @param numThreads the number of shards to collect at the same time
+     * @param shardSize the length of the shards, in bases
+     * @param includeUnplacedReads whether to give the unmapped records that have no position to a collector as well
+     * @param newCollector makes an empty collector, once for every shard
+     * @param acceptRecord gives a record, with the sequence of its contig, to a collector
+     * @param combine combines two collectors of adjacent parts of the input, and returns the result
+     * @return the combined collector of all the shards
+     */
+    public static <C> C collect(final File input,
+                                final File referenceSequence,
+                                final int numThreads,
+                                final int shardSize,
+                                final boolean includeUnplacedReads,
+                                final Supplier<C> newCollector,
+                                final BiConsumer<C, SAMRecordAndReference> acceptRecord,
+                                final BinaryOperator<C> combine) {
+        Utils.nonNull(input);
+        Utils.nonNull(newCollector);
+        Utils.nonNull(acceptRecord);
+        Utils.nonNull(combine);
+        Utils.validateArg(numThreads > 0, "the number of threads must be positive");
+        Utils.validateArg(shardSize > 0, "the shard size must be positive");
+        IOUtil.assertFileIsReadable(input);
+        if (referenceSequence != null) {
+            IOUtil.assertFileIsReadable(referenceSequence);
+        }
+
+        final List<SimpleInterval> shards = makeShards(input, referenceSequence, shardSize);
+        final int numShards = shards.size() + (includeUnplacedReads ? 1 : 0);
+        logger.info("Collecting " + numShards + " shards of " + input.getName() + " on " + numThreads + " threads");
+
+        final List<C> collectors = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            collectors.add(null);
+        }
+
+        // each thread takes the next shard that no thread has taken, so the shards of a thread are in genomic order
+        // and the thread can keep one reference walker
+        final AtomicInteger nextShard = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<Void>> results = new ArrayList<>(numThreads);
+            for (int i = 0; i < numThreads; i++) {
+                results.add(executor.submit(() -> {
+                    final SamReader reader = open(input, referenceSequence);
+                    final ReferenceSequenceFileWalker walker = referenceSequence == null ? null : new ReferenceSequenceFileWalker(referenceSequence);
+                    try {
+                        for (int shard = nextShard.getAndIncrement(); shard < numShards; shard = nextShard.getAndIncrement()) {
+                            final C collector = newCollector.get();
+                            if (shard < shards.size()) {
+                                collectShard(reader, walker, shards.get(shard), collector, acceptRecord);
+                            } else {
+                                collectUnplaced(reader, collector, acceptRecord);
+                            }
+                            synchronized (collectors) {
+                                collectors.set(shard, collector);
+                            }
+                        }
+                    } finally {
+                        CloserUtil.close(reader);
+                        CloserUtil.close(walker);
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<Void> result : results) {
+                awaitShards(result);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        C combined = null;
+        synchronized (collectors) {
+            for (final C collector : collectors) {
+                combined = combined == null ? collector : combine.apply(combined, collector);
+            }
+        }
+        return combined == null ? newCollector.get() : combined;
+    }
+
+    /**
+     * @return the shards of all the contigs of the input, which has to be indexed
+     */
+    private static List<SimpleInterval> makeShards(final File input, final File referenceSequence, final int shardSize) {
+        final SamReader reader = open(input, referenceSequence);
+        try {
+            if (!reader.hasIndex()) {
+                throw new UserException.BadInput("The input " + input.getAbsolutePath() + " has to be indexed to be collected in shards");
+            }
+            final SAMSequenceDictionary dictionary = reader.getFileHeader().getSequenceDictionary();
+            if (referenceSequence != null && !dictionary.isEmpty()) {
+                final ReferenceSequenceFileWalker walker = new ReferenceSequenceFileWalker(referenceSequence);
+                try {
+                    SequenceUtil.assertSequenceDictionariesEqual(dictionary, walker.getSequenceDictionary());
+                } finally {
+                    CloserUtil.close(walker);
+                }
+            }
+            final List<SimpleInterval> contigs = new ArrayList<>(dictionary.size());
+            for (final SAMSequenceRecord sequence : dictionary.getSequences()) {
+                contigs.add(new SimpleInterval(sequence.getSequenceName(), 1, sequence.getSequenceLength()));
+            }
+            return IntervalUtils.cutToShards(contigs, shardSize);
+        } finally {
+            CloserUtil.close(reader);
+        }
+    }
+
+    private static SamReader open(final File input, final File referenceSequence) {
+        return SamReaderFactory.makeDefault().referenceSequence(referenceSequence).open(input);
+    }
+
+    /**
+     * Gives the records that start in the shard to the collector.
+     */
+    private static <C> void collectShard(final SamReader reader, final ReferenceSequenceFileWalker walker, final SimpleInterval shard,
+                                         final C collector, final BiConsumer<C, SAMRecordAndReference> acceptRecord) {
+        try (final SAMRecordIterator records = reader.query(shard.getContig(), shard.getStart(), shard.getEnd(), false)) {
+            ReferenceSequence ref = null;
+            while (records.hasNext()) {
+                final SAMRecord record = records.next();
+                // the records that start before the shard belong to an earlier one
+                if (record.getAlignmentStart() < shard.getStart()) {
+                    continue;
+                }
+                if (walker != null && ref == null) {
+                    ref = walker.get(record.getReferenceIndex());
+                }
+                acceptRecord.accept(collector, new SAMRecordAndReference(record, ref));
+            }
+        }
+    }
+
+    private static <C> void collectUnplaced(final SamReader reader, final C collector, final BiConsumer<C, SAMRecordAndReference> acceptRecord) {
+        try (final SAMRecordIterator records = reader.queryUnmapped()) {
+            while (records.hasNext()) {
+                acceptRecord.accept(collector, new SAMRecordAndReference(records.next(), null));
+            }
+        }
+    }
+
+    private static void awaitShards(final Future<Void> result) {
+        try {
+            result.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new GATKException("Problem collecting a shard", e.getCause());
+        } catch (final InterruptedException e) {
+            throw new GATKException("Interrupted while collecting the shards", e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.broadinstitute.hellbender.tools;
 
+import htsjdk.samtools.SAMFlag;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
 import org.broadinstitute.hellbender.cmdline.programgroups.ReadProgramGroup;
 import org.broadinstitute.hellbender.engine.FeatureContext;
@@ -131,6 +132,61 @@ public final class FlagStat extends ReadWalker {
             return this;
         }
 
+        /**
+         * Adds count reads with the given SAM flags, as if each was added with {@link #add(GATKRead)}.
+         * @param flags the SAM flags of the reads
+         * @param mappingQuality the mapping quality of the reads (only compared with the threshold of 5)
+         * @param mateOnDifferentContig whether the reads and their mates are mapped to different contigs
+         * @param count the number of reads
+         */
+        public FlagStatus add( final int flags, final int mappingQuality, final boolean mateOnDifferentContig, final long count ) {
+            this.readCount += count;
+
+            final boolean unmapped = (flags & SAMFlag.READ_UNMAPPED.intValue()) != 0;
+            if ( (flags & SAMFlag.READ_FAILS_VENDOR_QUALITY_CHECK.intValue()) != 0 ) {
+                this.QC_failure += count;
+            }
+            if ( (flags & SAMFlag.DUPLICATE_READ.intValue()) != 0 ) {
+                this.duplicates += count;
+            }
+            if ( ! unmapped ) {
+                this.mapped += count;
+            }
+            if ( (flags & SAMFlag.READ_PAIRED.intValue()) != 0 ) {
+                this.paired_in_sequencing += count;
+
+                if ( (flags & SAMFlag.SECOND_OF_PAIR.intValue()) != 0 ) {
+                    this.read2 += count;
+                }
+                else if ( (flags & SAMFlag.FIRST_OF_PAIR.intValue()) != 0 ) {
+                    this.read1 += count;
+                }
+
+                if ( (flags & SAMFlag.PROPER_PAIR.intValue()) != 0 ) {
+                    this.properly_paired += count;
+                }
+
+                final boolean mateUnmapped = (flags & SAMFlag.MATE_UNMAPPED.intValue()) != 0;
+                if ( ! unmapped && ! mateUnmapped ) {
+                    this.with_itself_and_mate_mapped += count;
+
+                    if ( mateOnDifferentContig ) {
+                        this.with_mate_mapped_to_a_different_chr += count;
+
+                        if ( mappingQuality >= 5 ) {
+                            this.with_mate_mapped_to_a_different_chr_maq_greaterequal_than_5 += count;
+                        }
+                    }
+                }
+
+                if ( ! unmapped && mateUnmapped ) {
+                    this.singletons += count;
+                }
+            }
+
+            return this;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -13,14 +13,23 @@ import htsjdk.samtools.util.CoordMath;
 import htsjdk.samtools.util.Histogram;
 import htsjdk.samtools.util.SequenceUtil;
 import htsjdk.samtools.util.StringUtil;
+import org.broadinstitute.hellbender.metrics.IntHistogram;
 import org.broadinstitute.hellbender.metrics.MetricAccumulationLevel;
+import org.broadinstitute.hellbender.metrics.MultiLevelReducibleCollector;
 import org.broadinstitute.hellbender.metrics.PerUnitMetricCollector;
 import org.broadinstitute.hellbender.metrics.SAMRecordAndReference;
-import org.broadinstitute.hellbender.metrics.SAMRecordAndReferenceMultiLevelCollector;
+import org.broadinstitute.hellbender.utils.Utils;
 
+import java.io.Serializable;
 import java.util.*;
 
-public final class AlignmentSummaryMetricsCollector extends SAMRecordAndReferenceMultiLevelCollector<AlignmentSummaryMetrics,  Long> {
+/**
+ * Collects AlignmentSummaryMetrics on the specified accumulation levels. The collectors of parts of the input can be
+ * combined (see {@link #combine(AlignmentSummaryMetricsCollector, AlignmentSummaryMetricsCollector)}) before finish().
+ */
+public final class AlignmentSummaryMetricsCollector
+        extends MultiLevelReducibleCollector<AlignmentSummaryMetrics, Long, SAMRecordAndReference, AlignmentSummaryMetricsCollector.GroupAlignmentSummaryMetricsPerUnitMetricCollector> {
+    private static final long serialVersionUID = 1L;
 
     // If we have a reference sequence, collect metrics on how well we aligned to it
     private final boolean doRefMetrics;
@@ -61,10 +70,39 @@ public final class AlignmentSummaryMetricsCollector extends SAMRecordAndReferenc
     }
 
     @Override
-    protected PerUnitMetricCollector<AlignmentSummaryMetrics, Long, SAMRecordAndReference> makeChildCollector(String sample, String library, String readGroup) {
+    protected SAMRecordAndReference makeArg(final SAMRecord samRec, final ReferenceSequence refSeq) {
+        return new SAMRecordAndReference(samRec, refSeq);
+    }
+
+    @Override
+    protected GroupAlignmentSummaryMetricsPerUnitMetricCollector makeChildCollector(String sample, String library, String readGroup) {
         return new GroupAlignmentSummaryMetricsPerUnitMetricCollector(sample, library, readGroup);
     }
 
+    /**
+     * Combine two AlignmentSummaryMetricsCollector objects and return a single AlignmentSummaryMetricsCollector
+     * object representing the combined results. NOTE: this implementation is destructive in that it
+     * merges the source into the target and returns the target as the combined object.
+     * @param target target destination of combined metrics. May not be null.
+     * @param source source of metrics to be combined into target. May not be null.
+     * @return single object representing the combined source and target objects
+     */
+    public AlignmentSummaryMetricsCollector combine(final AlignmentSummaryMetricsCollector target, final AlignmentSummaryMetricsCollector source) {
+        Utils.nonNull(target);
+        Utils.nonNull(source);
+        target.combine(source);
+        return target;
+    }
+
+    @Override
+    public GroupAlignmentSummaryMetricsPerUnitMetricCollector combineUnit(
+            final GroupAlignmentSummaryMetricsPerUnitMetricCollector collector1,
+            final GroupAlignmentSummaryMetricsPerUnitMetricCollector collector2) {
+        Utils.nonNull(collector1);
+        Utils.nonNull(collector2);
+        return collector1.combine(collector2);
+    }
+
     @Override
     public void acceptRecord(final SAMRecord rec, final ReferenceSequence ref) {
         if (!rec.isSecondaryOrSupplementary()) {
@@ -124,7 +162,7 @@ public final class AlignmentSummaryMetricsCollector extends SAMRecordAndReferenc
         return false;
     }
 
-    private class GroupAlignmentSummaryMetricsPerUnitMetricCollector implements PerUnitMetricCollector<AlignmentSummaryMetrics, Long, SAMRecordAndReference> {
+    final class GroupAlignmentSummaryMetricsPerUnitMetricCollector implements PerUnitMetricCollector<AlignmentSummaryMetrics, Long, SAMRecordAndReference> {
         private static final long serialVersionUID = 1L;
 
         final IndividualAlignmentSummaryMetricsCollector unpairedCollector;
@@ -164,6 +202,21 @@ public final class AlignmentSummaryMetricsCollector extends SAMRecordAndReferenc
             }
         }
 
+        /**
+         * Adds the counts of a collector of the same unit, which has seen other records, to the counts of this one.
+         * NOTE: this is destructive, it returns this collector.
+         */
+        public GroupAlignmentSummaryMetricsPerUnitMetricCollector combine(final GroupAlignmentSummaryMetricsPerUnitMetricCollector source) {
+            Utils.nonNull(source);
+            Utils.validateArg(Objects.equals(sample, source.sample) && Objects.equals(library, source.library) && Objects.equals(readGroup, source.readGroup),
+                    "the collectors to combine must be of the same unit");
+            unpairedCollector.combine(source.unpairedCollector);
+            firstOfPairCollector.combine(source.firstOfPairCollector);
+            secondOfPairCollector.combine(source.secondOfPairCollector);
+            pairCollector.combine(source.pairCollector);
+            return this;
+        }
+
         @Override
         public void finish() {
             // Let the collectors do any summary computations etc.
@@ -195,9 +248,11 @@ public final class AlignmentSummaryMetricsCollector extends SAMRecordAndReferenc
         /**
          * Class that counts reads that match various conditions
          */
-        private class IndividualAlignmentSummaryMetricsCollector {
+        private class IndividualAlignmentSummaryMetricsCollector implements Serializable {
+            private static final long serialVersionUID = 1L;
+
             private long numPositiveStrand = 0;
-            private final Histogram<Integer> readLengthHistogram = new Histogram<>();
+            private final IntHistogram readLengthHistogram = new IntHistogram();
             private final AlignmentSummaryMetrics metrics;
             private long chimeras;
             private long chimerasDenominator;
@@ -206,9 +261,9 @@ public final class AlignmentSummaryMetricsCollector extends SAMRecordAndReferenc
 
             private long nonBisulfiteAlignedBases = 0;
             private long hqNonBisulfiteAlignedBases = 0;
-            private final Histogram<Long> mismatchHistogram = new Histogram<>();
-            private final Histogram<Long> hqMismatchHistogram = new Histogram<>();
-            private final Histogram<Integer> badCycleHistogram = new Histogram<>();
+            private final IntHistogram mismatchHistogram = new IntHistogram();
+            private final IntHistogram hqMismatchHistogram = new IntHistogram();
+            private final IntHistogram badCycleHistogram = new IntHistogram();
 
             public IndividualAlignmentSummaryMetricsCollector(final AlignmentSummaryMetrics.Category pairingCategory,
                                                               final String sample,
@@ -230,6 +285,36 @@ public final class AlignmentSummaryMetricsCollector extends SAMRecordAndReferenc
                 collectReadData(record, ref);
                 collectQualityData(record, ref);
             }
+
+            /**
+             * Adds the counts of the source, which has to be of the same category, to the counts of this collector.
+             * The derived metrics are computed from the counts in onComplete().
+             */
+            public void combine(final IndividualAlignmentSummaryMetricsCollector source) {
+                metrics.TOTAL_READS += source.metrics.TOTAL_READS;
+                metrics.PF_READS += source.metrics.PF_READS;
+                metrics.PF_NOISE_READS += source.metrics.PF_NOISE_READS;
+                metrics.PF_READS_ALIGNED += source.metrics.PF_READS_ALIGNED;
+                metrics.PF_ALIGNED_BASES += source.metrics.PF_ALIGNED_BASES;
+                metrics.PF_HQ_ALIGNED_READS += source.metrics.PF_HQ_ALIGNED_READS;
+                metrics.PF_HQ_ALIGNED_BASES += source.metrics.PF_HQ_ALIGNED_BASES;
+                metrics.PF_HQ_ALIGNED_Q20_BASES += source.metrics.PF_HQ_ALIGNED_Q20_BASES;
+                metrics.READS_ALIGNED_IN_PAIRS += source.metrics.READS_ALIGNED_IN_PAIRS;
+
+                numPositiveStrand += source.numPositiveStrand;
+                chimeras += source.chimeras;
+                chimerasDenominator += source.chimerasDenominator;
+                adapterReads += source.adapterReads;
+                indels += source.indels;
+                nonBisulfiteAlignedBases += source.nonBisulfiteAlignedBases;
+                hqNonBisulfiteAlignedBases += source.hqNonBisulfiteAlignedBases;
+
+                readLengthHistogram.addHistogram(source.readLengthHistogram);
+                mismatchHistogram.addHistogram(source.mismatchHistogram);
+                hqMismatchHistogram.addHistogram(source.hqMismatchHistogram);
+                badCycleHistogram.addHistogram(source.badCycleHistogram);
+            }
+
             @SuppressWarnings("unchecked")
             public void onComplete() {
                 //summarize read data
@@ -237,12 +322,12 @@ public final class AlignmentSummaryMetricsCollector extends SAMRecordAndReferenc
                 {
                     metrics.PCT_PF_READS = (double) metrics.PF_READS / (double) metrics.TOTAL_READS;
                     metrics.PCT_ADAPTER = this.adapterReads / (double) metrics.PF_READS;
-                    metrics.MEAN_READ_LENGTH = readLengthHistogram.getMean();
+                    metrics.MEAN_READ_LENGTH = readLengthHistogram.toHistogram().getMean();
 
                     //Calculate BAD_CYCLES
                     metrics.BAD_CYCLES = 0;
 
-                    for (final Histogram.Bin<Integer> cycleBin : badCycleHistogram.values()) {
+                    for (final Histogram.Bin<Integer> cycleBin : badCycleHistogram.toHistogram().values()) {
                         final double badCyclePercentage = cycleBin.getValue() / metrics.TOTAL_READS;
                         if (badCyclePercentage >= .8) {
                             metrics.BAD_CYCLES++;
@@ -255,9 +340,10 @@ public final class AlignmentSummaryMetricsCollector extends SAMRecordAndReferenc
                         if (metrics.PF_READS_ALIGNED > 0) metrics.STRAND_BALANCE = numPositiveStrand / (double) metrics.PF_READS_ALIGNED;
                         if (this.chimerasDenominator > 0) metrics.PCT_CHIMERAS = this.chimeras / (double) this.chimerasDenominator;
 
-                        if (nonBisulfiteAlignedBases > 0) metrics.PF_MISMATCH_RATE = mismatchHistogram.getSum() / (double) nonBisulfiteAlignedBases;
-                        metrics.PF_HQ_MEDIAN_MISMATCHES = hqMismatchHistogram.getMedian();
-                        if (hqNonBisulfiteAlignedBases > 0) metrics.PF_HQ_ERROR_RATE = hqMismatchHistogram.getSum() / (double) hqNonBisulfiteAlignedBases;
+                        final Histogram<Integer> hqMismatches = hqMismatchHistogram.toHistogram();
+                        if (nonBisulfiteAlignedBases > 0) metrics.PF_MISMATCH_RATE = mismatchHistogram.toHistogram().getSum() / (double) nonBisulfiteAlignedBases;
+                        metrics.PF_HQ_MEDIAN_MISMATCHES = hqMismatches.getMedian();
+                        if (hqNonBisulfiteAlignedBases > 0) metrics.PF_HQ_ERROR_RATE = hqMismatches.getSum() / (double) hqNonBisulfiteAlignedBases;
                         if (metrics.PF_ALIGNED_BASES > 0) metrics.PF_INDEL_RATE = this.indels / (double) metrics.PF_ALIGNED_BASES;
                     }
                 }
@@ -321,8 +407,8 @@ public final class AlignmentSummaryMetricsCollector extends SAMRecordAndReferenc
                     final byte[] refBases = reference.getBases();
                     final byte[] qualities  = record.getBaseQualities();
                     final int refLength = refBases.length;
-                    long mismatchCount   = 0;
-                    long hqMismatchCount = 0;
+                    int mismatchCount   = 0;
+                    int hqMismatchCount = 0;
 
                     for (final AlignmentBlock alignmentBlock : record.getAlignmentBlocks()) {
                         final int readIndex = alignmentBlock.getReadStart() - 1;
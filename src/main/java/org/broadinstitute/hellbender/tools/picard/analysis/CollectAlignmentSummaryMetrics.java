@@ -74,8 +74,32 @@ public final class CollectAlignmentSummaryMetrics extends SinglePassSamProgram {
     @Argument(shortName="BS", doc="Whether the SAM/BAM/CRAM file consists of bisulfite sequenced reads.  ")
     public boolean IS_BISULFITE_SEQUENCED = false;
 
+    @Argument(doc = "The number of threads to collect the metrics on. With more than one, and an indexed input, the genome " +
+            "is cut into shards, which are collected at the same time and combined.")
+    public int NUM_THREADS = 1;
+
     private AlignmentSummaryMetricsCollector collector;
 
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (NUM_THREADS < 1) {
+            return new String[]{"NUM_THREADS was set to " + NUM_THREADS + ". It must be at least 1."};
+        }
+        return super.customCommandLineValidation();
+    }
+
+    /**
+     * Collects the metrics in shards on NUM_THREADS threads, if there are more than one, or else in one pass.
+     */
+    @Override
+    protected Object doWork() {
+        return doWorkInShards(NUM_THREADS,
+                this::newCollector,
+                (collector, record) -> collector.acceptRecord(record.getSamRecord(), record.getReferenceSequence()),
+                (target, source) -> target.combine(target, source),
+                collector -> this.collector = collector);
+    }
+
     @Override
     protected void setup(final SAMFileHeader header, final File samFile) {
         IOUtil.assertFileIsWritable(OUTPUT);
@@ -85,8 +109,12 @@ public final class CollectAlignmentSummaryMetrics extends SinglePassSamProgram {
                     "in the file are aligned then alignment summary metrics collection will fail.");
         }
 
+        collector = newCollector(header);
+    }
+
+    private AlignmentSummaryMetricsCollector newCollector(final SAMFileHeader header) {
         final boolean doRefMetrics = REFERENCE_SEQUENCE != null;
-        collector = new AlignmentSummaryMetricsCollector(METRIC_ACCUMULATION_LEVEL, header.getReadGroups(), doRefMetrics,
+        return new AlignmentSummaryMetricsCollector(METRIC_ACCUMULATION_LEVEL, header.getReadGroups(), doRefMetrics,
                 ADAPTER_SEQUENCE, MAX_INSERT_SIZE,  IS_BISULFITE_SEQUENCED);
     }
 
@@ -7,11 +7,11 @@ import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.QualityUtil;
 import htsjdk.samtools.util.SequenceUtil;
-import htsjdk.samtools.util.StringUtil;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
 import org.broadinstitute.hellbender.cmdline.programgroups.QCProgramGroup;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.R.RScriptExecutor;
 import org.broadinstitute.hellbender.utils.io.Resource;
 
@@ -65,26 +65,57 @@ public final class CollectGcBiasMetrics extends SinglePassSamProgram {
     @Argument(doc = "Should an output plot be created")
     public boolean PRODUCE_PLOT = false;
 
-    // Used to keep track of the total clusters as this is kinda important for bias
-    private int totalClusters = 0;
-    private int totalAlignedReads = 0;
-    // Histograms to track the number of windows at each GC, and the number of read starts
-    // at windows of each GC. Need 101 to get from 0-100.
-    private static final int WINDOWS = 101;
-    private final int[] windowsByGc = new int[WINDOWS];
-    private final int[] readsByGc = new int[WINDOWS];
-    private final long[] basesByGc = new long[WINDOWS];
-    private final long[] errorsByGc = new long[WINDOWS];
-    private static int lastContig = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
-    private byte[] gc;
-    private byte[] refBases;
+    @Argument(doc = "A GC window index of the reference, made by CreateGcWindowIndex with the same WINDOW_SIZE, " +
+            "to read the GC of the windows from rather than computing it from the reference.", optional = true)
+    public File GC_WINDOW_INDEX;
+
+    @Argument(doc = "The number of threads to collect the metrics on. With more than one, and an indexed input, the genome " +
+            "is cut into shards, which are collected at the same time and combined.")
+    public int NUM_THREADS = 1;
+
+    private GcWindowIndex gcWindowIndex;
+    private GcBiasCollector collector;
     private String saveHeader;
 
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (NUM_THREADS < 1) {
+            return new String[]{"NUM_THREADS was set to " + NUM_THREADS + ". It must be at least 1."};
+        }
+        return super.customCommandLineValidation();
+    }
+
+    /**
+     * Collects the metrics in shards on NUM_THREADS threads, if there are more than one, or else in one pass.
+     */
+    @Override
+    protected Object doWork() {
+        return doWorkInShards(NUM_THREADS,
+                header -> newCollector(),
+                (collector, record) -> collector.acceptRecord(record.getSamRecord(), record.getReferenceSequence()),
+                GcBiasCollector::combine,
+                collector -> this.collector = collector);
+    }
+
     @Override
     protected void setup(final SAMFileHeader header, final File samFile) {
         IOUtil.assertFileIsWritable(CHART_OUTPUT);
         if (SUMMARY_OUTPUT != null) IOUtil.assertFileIsWritable(SUMMARY_OUTPUT);
         saveHeader = header.getReadGroups().get(0).getLibrary();
+        if (GC_WINDOW_INDEX != null) {
+            IOUtil.assertFileIsReadable(GC_WINDOW_INDEX);
+            gcWindowIndex = GcWindowIndex.open(GC_WINDOW_INDEX);
+            if (gcWindowIndex.getWindowSize() != WINDOW_SIZE) {
+                throw new UserException.BadInput("The GC window index " + GC_WINDOW_INDEX.getAbsolutePath() + " has windows of " +
+                        gcWindowIndex.getWindowSize() + " bases, but WINDOW_SIZE is " + WINDOW_SIZE);
+            }
+            SequenceUtil.assertSequenceDictionariesEqual(header.getSequenceDictionary(), gcWindowIndex.getSequenceDictionary());
+        }
+        collector = newCollector();
+    }
+
+    private GcBiasCollector newCollector() {
+        return new GcBiasCollector(WINDOW_SIZE, IS_BISULFITE_SEQUENCED, gcWindowIndex);
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -92,34 +123,7 @@ public final class CollectGcBiasMetrics extends SinglePassSamProgram {
     ////////////////////////////////////////////////////////////////////////////
     @Override
     protected void acceptRead(final SAMRecord rec, final ReferenceSequence ref) {
-        //if read is unaligned then ref is passed in as null
-        if (!rec.getReadPairedFlag() || rec.getFirstOfPairFlag()) ++this.totalClusters;
-        if (ref!=null) {
-            //only do the recalculation of gc if current ref is different from last ref
-            if (ref.getContigIndex() != lastContig) {
-                refBases = ref.getBases();
-                StringUtil.toUpperCase(refBases);
-                final int refLength = refBases.length;
-                final int lastWindowStart = refLength - WINDOW_SIZE;
-                gc = calculateAllGcs(refBases, windowsByGc, lastWindowStart);
-                lastContig = ref.getContigIndex();
-            }
-            if (!rec.getReadPairedFlag() || rec.getFirstOfPairFlag()) ++this.totalClusters;
-            if (!rec.getReadUnmappedFlag()) {
-                final int pos = rec.getReadNegativeStrandFlag() ? rec.getAlignmentEnd() - WINDOW_SIZE : rec.getAlignmentStart();
-                ++this.totalAlignedReads;
-                if (pos > 0) {
-                    final int windowGc = gc[pos];
-                    if (windowGc >= 0) {
-                        ++readsByGc[windowGc];
-                        basesByGc[windowGc] += rec.getReadLength();
-                        errorsByGc[windowGc] +=
-                                SequenceUtil.countMismatches(rec, refBases, IS_BISULFITE_SEQUENCED) +
-                                        SequenceUtil.countInsertedBases(rec) + SequenceUtil.countDeletedBases(rec);
-                    }
-                }
-            }
-        }
+        collector.acceptRecord(rec, ref);
     }
 
     /////////////////////////////////////////////////////////////////////////////
@@ -127,6 +131,10 @@ public final class CollectGcBiasMetrics extends SinglePassSamProgram {
     /////////////////////////////////////////////////////////////////////////////
     @Override
     protected void finish () {
+        final int[] windowsByGc = collector.getWindowsByGc();
+        final int[] readsByGc = collector.getReadsByGc();
+        final long[] basesByGc = collector.getBasesByGc();
+        final long[] errorsByGc = collector.getErrorsByGc();
         final MetricsFile<GcBiasDetailMetrics, ?> metricsFile = getMetricsFile();
         final double totalWindows = sum(windowsByGc);
         final double totalReads = sum(readsByGc);
@@ -154,8 +162,8 @@ public final class CollectGcBiasMetrics extends SinglePassSamProgram {
             final MetricsFile<GcBiasSummaryMetrics, ?> summaryMetricsFile = getMetricsFile();
             final GcBiasSummaryMetrics summary = new GcBiasSummaryMetrics();
             summary.WINDOW_SIZE = this.WINDOW_SIZE;
-            summary.TOTAL_CLUSTERS = this.totalClusters;
-            summary.ALIGNED_READS = this.totalAlignedReads;
+            summary.TOTAL_CLUSTERS = collector.getTotalClusters();
+            summary.ALIGNED_READS = collector.getTotalAlignedReads();
             calculateDropoutMetrics(metricsFile.getMetrics(), summary);
 
             summaryMetricsFile.addMetric(summary);
@@ -165,8 +173,8 @@ public final class CollectGcBiasMetrics extends SinglePassSamProgram {
         // Plot the results
         final NumberFormat fmt = NumberFormat.getIntegerInstance();
         fmt.setGroupingUsed(true);
-        final String subtitle = "Total clusters: " + fmt.format(this.totalClusters) +
-                ", Aligned reads: " + fmt.format(this.totalAlignedReads);
+        final String subtitle = "Total clusters: " + fmt.format(collector.getTotalClusters()) +
+                ", Aligned reads: " + fmt.format(collector.getTotalAlignedReads());
         String title = INPUT.getName().replace(".duplicates_marked", "").replace(".aligned.bam", "");
         title += "." + saveHeader;
         if (PRODUCE_PLOT){
@@ -217,53 +225,4 @@ public final class CollectGcBiasMetrics extends SinglePassSamProgram {
         summary.AT_DROPOUT = atDropout;
         summary.GC_DROPOUT = gcDropout;
     }
-
-    /** Calculcate all the GC values for all windows. */
-    private byte[] calculateAllGcs(final byte[] refBases, final int[] windowsByGc, final int lastWindowStart) {
-        final int refLength = refBases.length;
-        final byte[] gc = new byte[refLength + 1];
-        final CalculateGcState state = new CalculateGcState();
-        for (int i = 1; i < lastWindowStart; ++i) {
-            final int windowEnd = i + WINDOW_SIZE;
-            final int windowGc = calculateGc(refBases, i, windowEnd, state);
-            gc[i] = (byte) windowGc;
-            if (windowGc != -1) windowsByGc[windowGc]++;
-        }
-        return gc;
-    }
-
-    /**
-     * Calculates GC as a number from 0 to 100 in the specified window. If the window includes
-     * more than five no-calls then -1 is returned.
-     */
-    private int calculateGc(final byte[] bases, final int startIndex, final int endIndex, final CalculateGcState state) {
-        if (state.init) {
-            state.init = false;
-            state.gcCount = 0;
-            state.nCount = 0;
-            for (int i = startIndex; i < endIndex; ++i) {
-                final byte base = bases[i];
-                if (base == 'G' || base == 'C') ++state.gcCount;
-                else if (base == 'N') ++state.nCount;
-            }
-        } else {
-            final byte newBase = bases[endIndex - 1];
-            if (newBase == 'G' || newBase == 'C') ++state.gcCount;
-            else if (newBase == 'N') ++state.nCount;
-
-            if (state.priorBase == 'G' || state.priorBase == 'C') --state.gcCount;
-            else if (state.priorBase == 'N') --state.nCount;
-        }
-        state.priorBase = bases[startIndex];
-        if (state.nCount > 4) return -1;
-        else return (state.gcCount * 100) / (endIndex - startIndex);
-    }
-
-    /** Keeps track of current GC calculation state. */
-    class CalculateGcState {
-        boolean init = true;
-        int nCount;
-        int gcCount;
-        byte priorBase;
-    }
 }
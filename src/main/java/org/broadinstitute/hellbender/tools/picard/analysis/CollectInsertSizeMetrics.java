@@ -7,6 +7,7 @@ import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.util.IOUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.ArgumentCollection;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
 import org.broadinstitute.hellbender.cmdline.programgroups.QCProgramGroup;
@@ -33,6 +34,10 @@ public final class CollectInsertSizeMetrics extends SinglePassSamProgram {
     @ArgumentCollection
     public InsertSizeMetricsArgumentCollection insertSizeArgs = new InsertSizeMetricsArgumentCollection();
 
+    @Argument(doc = "The number of threads to collect the metrics on. With more than one, and an indexed input, the genome " +
+            "is cut into shards, which are collected at the same time and combined.")
+    public int NUM_THREADS = 1;
+
     // Calculates InsertSizeMetrics for all METRIC_ACCUMULATION_LEVELs provided
     private InsertSizeMetricsCollector insertSizeCollector;
 
@@ -53,9 +58,25 @@ public final class CollectInsertSizeMetrics extends SinglePassSamProgram {
                      ". It must be between 0 and 0.5 so all data categories don't get discarded."};
          }
 
+         if (NUM_THREADS < 1) {
+             return new String[]{"NUM_THREADS was set to " + NUM_THREADS + ". It must be at least 1."};
+         }
+
          return super.customCommandLineValidation();
     }
 
+    /**
+     * Collects the metrics in shards on NUM_THREADS threads, if there are more than one, or else in one pass.
+     */
+    @Override
+    protected Object doWork() {
+        return doWorkInShards(NUM_THREADS,
+                header -> new InsertSizeMetricsCollector(insertSizeArgs, header),
+                (collector, record) -> acceptRead(collector, record.getSamRecord(), record.getReferenceSequence()),
+                (target, source) -> target.combine(target, source),
+                collector -> insertSizeCollector = collector);
+    }
+
     @Override
     protected boolean usesNoRefReads() { return false; }
 
@@ -73,9 +94,13 @@ public final class CollectInsertSizeMetrics extends SinglePassSamProgram {
 
     @Override
     protected void acceptRead(final SAMRecord record, final ReferenceSequence ref) {
+        acceptRead(insertSizeCollector, record, ref);
+    }
+
+    private void acceptRead(final InsertSizeMetricsCollector collector, final SAMRecord record, final ReferenceSequence ref) {
         // InsertSizeMetricsCollector assumes that any records passed have already been filtered
         if (insertSizeMetricsReadFilter.test(new SAMRecordToGATKReadAdapter(record))) {
-            insertSizeCollector.acceptRecord(record, ref);
+            collector.acceptRecord(record, ref);
         }
     }
 
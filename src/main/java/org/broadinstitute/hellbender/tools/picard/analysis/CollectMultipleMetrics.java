@@ -98,6 +98,10 @@ public final class CollectMultipleMetrics extends PicardCommandLineProgram {
     @Argument(doc = "List of metrics programs to apply during the pass through the SAM file.")
     public List<Program> PROGRAM = CollectionUtil.makeList(Program.values());
 
+    @Argument(doc = "If true, run each metrics program on its own thread, so the pass over the input takes as long as the " +
+            "slowest program rather than the sum of all of them.")
+    public boolean RUN_PROGRAMS_IN_PARALLEL = false;
+
     /**
      * Contents of PROGRAM list is transferred to this list during command-line validation, so that an outside
      * developer can invoke this class programmatically and provide alternative Programs to run by calling
@@ -139,7 +143,7 @@ public final class CollectMultipleMetrics extends PicardCommandLineProgram {
             programs.add(instance);
         }
 
-        SinglePassSamProgram.makeItSo(INPUT, REFERENCE_SEQUENCE, ASSUME_SORTED, STOP_AFTER, programs);
+        SinglePassSamProgram.makeItSo(INPUT, REFERENCE_SEQUENCE, ASSUME_SORTED, STOP_AFTER, programs, RUN_PROGRAMS_IN_PARALLEL);
 
         return null;
     }
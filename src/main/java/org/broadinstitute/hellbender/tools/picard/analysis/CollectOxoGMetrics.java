@@ -191,7 +191,13 @@ public final class CollectOxoGMetrics extends PicardCommandLineProgram {
         }
 
         // Setup the calculators
-        final Set<String> contexts = CONTEXTS.isEmpty() ? makeContextStrings(CONTEXT_SIZE) : CONTEXTS;
+        final Set<String> contexts;
+        if (CONTEXTS.isEmpty()) {
+            contexts = makeContextStrings(CONTEXT_SIZE);
+            logger.info("Generated " + contexts.size() + " context strings.");
+        } else {
+            contexts = CONTEXTS;
+        }
         final ListMap<String, Calculator> calculators = new ListMap<>();
         for (final String context : contexts) {
             for (final String library : libraries) {
@@ -253,7 +259,7 @@ public final class CollectOxoGMetrics extends PicardCommandLineProgram {
 
             final List<Calculator> calculatorsForContext = calculators.get(context);
             if (calculatorsForContext == null) continue; // happens if we get ambiguous bases in the reference
-            for (final Calculator calc : calculatorsForContext) calc.accept(info, base);
+            for (final Calculator calc : calculatorsForContext) calc.accept(computeAlleleFraction(info, base, calc.library), base);
 
             // See if we need to stop
             if (++sites % 100 == 0) {
@@ -280,7 +286,10 @@ public final class CollectOxoGMetrics extends PicardCommandLineProgram {
         return null;
     }
 
-    private Set<String> makeContextStrings(final int contextSize) {
+    /**
+     * @return all the contexts of CONTEXT_SIZE bases on each side of a C
+     */
+    public static Set<String> makeContextStrings(final int contextSize) {
         final Set<String> contexts = new HashSet<>();
 
         for (final byte[] kmer : generateAllKmers(2 * contextSize + 1)) {
@@ -289,24 +298,88 @@ public final class CollectOxoGMetrics extends PicardCommandLineProgram {
             }
         }
 
-        logger.info("Generated " + contexts.size() + " context strings.");
         return contexts;
     }
 
     /** A little class for counting alleles. */
-    private static class Counts {
+    public static final class Counts {
         int controlA;
         int oxidatedA;
         int controlC;
         int oxidatedC;
 
-        int total() { return controlC + oxidatedC + controlA + oxidatedA; }
+        public int total() { return controlC + oxidatedC + controlA + oxidatedA; }
+
+        public void clear() {
+            controlA = 0;
+            oxidatedA = 0;
+            controlC = 0;
+            oxidatedC = 0;
+        }
+
+        /**
+         * Counts a base of a read at a C or G reference base, if it is the reference allele or the A or T
+         * alternative allele.
+         */
+        public void add(final SAMRecord samrec, final byte base, final byte refBase) {
+            final byte altBase = (refBase == 'C') ? (byte) 'A' : (byte) 'T';
+
+            // Get the read base in "as read" orientation
+            final byte baseAsRead = samrec.getReadNegativeStrandFlag() ? SequenceUtil.complement(base) : base;
+            final int read = samrec.getReadPairedFlag() && samrec.getSecondOfPairFlag() ? 2 : 1;
+
+            // Figure out how to count the alternative allele. If the damage is caused by oxidation of G
+            // during shearing (in non-rnaseq data), then we know that:
+            //     G>T observation is always in read 1
+            //     C>A observation is always in read 2
+            // But if the substitution is from other causes the distribution of A/T across R1/R2 will be
+            // random.
+            if (base == refBase) {
+                if (baseAsRead == 'G' && read == 1) ++oxidatedC;
+                else if (baseAsRead == 'G' && read == 2) ++controlC;
+                else if (baseAsRead == 'C' && read == 1) ++controlC;
+                else if (baseAsRead == 'C' && read == 2) ++oxidatedC;
+            } else if (base == altBase) {
+                if (baseAsRead == 'T' && read == 1) ++oxidatedA;
+                else if (baseAsRead == 'T' && read == 2) ++controlA;
+                else if (baseAsRead == 'A' && read == 1) ++controlA;
+                else if (baseAsRead == 'A' && read == 2) ++oxidatedA;
+            }
+        }
+    }
+
+    /**
+     * Gets the counts of the alleles of a library at a site.
+     */
+    private Counts computeAlleleFraction(final SamLocusIterator.LocusInfo info, final byte refBase, final String library) {
+        final Counts counts = new Counts();
+
+        for (final SamLocusIterator.RecordAndOffset rec : info.getRecordAndPositions()) {
+            final byte qual;
+            final SAMRecord samrec = rec.getRecord();
+
+            if (USE_OQ) {
+                final byte[] oqs = samrec.getOriginalBaseQualities();
+                if (oqs != null) qual = oqs[rec.getOffset()];
+                else qual = rec.getBaseQuality();
+            } else {
+                qual = rec.getBaseQuality();
+            }
+
+            // Skip if below qual, or if library isn't a match
+            if (qual < MINIMUM_QUALITY_SCORE) continue;
+            if (!library.equals(getOrElse(samrec.getReadGroup().getLibrary(), UNKNOWN_LIBRARY))) continue;
+
+            counts.add(samrec, rec.getReadBase(), refBase);
+        }
+
+        return counts;
     }
 
     /**
      * Class that calculated CpCG metrics for a specific library.
      */
-    private class Calculator {
+    public static final class Calculator {
         private final String library;
         private final String context;
 
@@ -321,14 +394,15 @@ public final class CollectOxoGMetrics extends PicardCommandLineProgram {
         long refGcontrolC = 0;
         long refGoxidatedC = 0;
 
-        Calculator(final String library, final String context) {
+        public Calculator(final String library, final String context) {
             this.library = library;
             this.context = context;
         }
 
-        void accept(final SamLocusIterator.LocusInfo info, final byte refBase) {
-            final Counts counts = computeAlleleFraction(info, refBase);
-
+        /**
+         * Adds the counts of the alleles at a site.
+         */
+        public void accept(final Counts counts, final byte refBase) {
             if (counts.total() > 0) {
                 // Things calculated on all sites with coverage
                 this.sites++;
@@ -348,7 +422,7 @@ public final class CollectOxoGMetrics extends PicardCommandLineProgram {
             }
         }
 
-        CpcgMetrics finish() {
+        public CpcgMetrics finish() {
             final CpcgMetrics m = new CpcgMetrics();
             m.LIBRARY = this.library;
             m.CONTEXT = this.context;
@@ -387,55 +461,5 @@ public final class CollectOxoGMetrics extends PicardCommandLineProgram {
 
             return m;
         }
-
-        /**
-         *
-         */
-        private Counts computeAlleleFraction(final SamLocusIterator.LocusInfo info, final byte refBase) {
-            final Counts counts = new Counts();
-            final byte altBase = (refBase == 'C') ? (byte) 'A' : (byte) 'T';
-
-            for (final SamLocusIterator.RecordAndOffset rec : info.getRecordAndPositions()) {
-                final byte qual;
-                final SAMRecord samrec = rec.getRecord();
-
-                if (USE_OQ) {
-                    final byte[] oqs = samrec.getOriginalBaseQualities();
-                    if (oqs != null) qual = oqs[rec.getOffset()];
-                    else qual = rec.getBaseQuality();
-                } else {
-                    qual = rec.getBaseQuality();
-                }
-
-                // Skip if below qual, or if library isn't a match
-                if (qual < MINIMUM_QUALITY_SCORE) continue;
-                if (!this.library.equals(getOrElse(samrec.getReadGroup().getLibrary(), UNKNOWN_LIBRARY))) continue;
-
-                // Get the read base, and get it in "as read" orientation
-                final byte base = rec.getReadBase();
-                final byte baseAsRead = samrec.getReadNegativeStrandFlag() ? SequenceUtil.complement(base) : base;
-                final int read = samrec.getReadPairedFlag() && samrec.getSecondOfPairFlag() ? 2 : 1;
-
-                // Figure out how to count the alternative allele. If the damage is caused by oxidation of G
-                // during shearing (in non-rnaseq data), then we know that:
-                //     G>T observation is always in read 1
-                //     C>A observation is always in read 2
-                // But if the substitution is from other causes the distribution of A/T across R1/R2 will be
-                // random.
-                if (base == refBase) {
-                    if (baseAsRead == 'G' && read == 1) ++counts.oxidatedC;
-                    else if (baseAsRead == 'G' && read == 2) ++counts.controlC;
-                    else if (baseAsRead == 'C' && read == 1) ++counts.controlC;
-                    else if (baseAsRead == 'C' && read == 2) ++counts.oxidatedC;
-                } else if (base == altBase) {
-                    if (baseAsRead == 'T' && read == 1) ++counts.oxidatedA;
-                    else if (baseAsRead == 'T' && read == 2) ++counts.controlA;
-                    else if (baseAsRead == 'A' && read == 1) ++counts.controlA;
-                    else if (baseAsRead == 'A' && read == 2) ++counts.oxidatedA;
-                }
-            }
-
-            return counts;
-        }
     }
 }
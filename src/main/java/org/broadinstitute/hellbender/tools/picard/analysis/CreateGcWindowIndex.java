@@ -0,0 +1,57 @@
+package org.broadinstitute.hellbender.tools.picard.analysis;
+
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.IOUtil;
+import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
+import org.broadinstitute.hellbender.cmdline.PicardCommandLineProgram;
+import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.cmdline.programgroups.FastaProgramGroup;
+
+import java.io.File;
+
+/**
+ * Computes the GC of the windows of a reference once, and writes them to a {@link GcWindowIndex}, which
+ * {@link CollectGcBiasMetrics} can read with GC_WINDOW_INDEX rather than scanning the reference for every input.
+ */
+@CommandLineProgramProperties(
+        summary = "Computes the GC content of the windows of a reference, as CollectGcBiasMetrics bins reads by it, " +
+                "and writes it to an index that CollectGcBiasMetrics can read with GC_WINDOW_INDEX.",
+        oneLineSummary = "Creates a GC window index of a reference for CollectGcBiasMetrics",
+        programGroup = FastaProgramGroup.class
+)
+public final class CreateGcWindowIndex extends PicardCommandLineProgram {
+
+    @Argument(fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME,
+            shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc = "The GC window index to write.")
+    public File OUTPUT;
+
+    @Argument(doc = "The size of windows on the genome, which must be the WINDOW_SIZE of CollectGcBiasMetrics.")
+    public int WINDOW_SIZE = 100;
+
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (REFERENCE_SEQUENCE == null) {
+            return new String[]{"A reference is required to create a GC window index."};
+        }
+        if (WINDOW_SIZE < 1) {
+            return new String[]{"WINDOW_SIZE was set to " + WINDOW_SIZE + ". It must be at least 1."};
+        }
+        return super.customCommandLineValidation();
+    }
+
+    @Override
+    protected Object doWork() {
+        IOUtil.assertFileIsReadable(REFERENCE_SEQUENCE);
+        IOUtil.assertFileIsWritable(OUTPUT);
+        final ReferenceSequenceFile reference = ReferenceSequenceFileFactory.getReferenceSequenceFile(REFERENCE_SEQUENCE);
+        try {
+            GcWindowIndex.write(reference, WINDOW_SIZE, OUTPUT);
+        } finally {
+            CloserUtil.close(reference);
+        }
+        return null;
+    }
+}
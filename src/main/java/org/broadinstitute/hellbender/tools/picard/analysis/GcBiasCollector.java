@@ -0,0 +1,135 @@
+package org.broadinstitute.hellbender.tools.picard.analysis;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.util.SequenceUtil;
+import htsjdk.samtools.util.StringUtil;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts, for CollectGcBiasMetrics, the windows at each GC of the contigs that have reads, and the read starts, bases
+ * and errors of the aligned reads in the windows of each GC.
+ *
+ * The collectors of parts of the input can be combined with {@link #combine}. The windows of a contig are counted once
+ * even if the reads of the contig were seen by several collectors.
+ */
+final class GcBiasCollector {
+    // Need 101 to get from 0-100.
+    private static final int WINDOWS = GcWindowIndex.GC_BINS;
+
+    private final int windowSize;
+    private final boolean isBisulfiteSequenced;
+    private final GcWindowIndex gcWindowIndex;
+
+    // Used to keep track of the total clusters as this is kinda important for bias
+    private int totalClusters = 0;
+    private int totalAlignedReads = 0;
+    // the number of windows at each GC, of each contig that has reads
+    private final Map<Integer, int[]> windowsByGcOfContig = new LinkedHashMap<>();
+    // the number of read starts, bases and errors at windows of each GC
+    private final int[] readsByGc = new int[WINDOWS];
+    private final long[] basesByGc = new long[WINDOWS];
+    private final long[] errorsByGc = new long[WINDOWS];
+    private int lastContig = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
+    // the GC of the window that starts at each position of the current contig
+    private ByteBuffer gc;
+    private byte[] refBases;
+
+    /**
+     * @param gcWindowIndex the index to read the GC of the windows from, or null to compute it from the reference
+     */
+    GcBiasCollector(final int windowSize, final boolean isBisulfiteSequenced, final GcWindowIndex gcWindowIndex) {
+        this.windowSize = windowSize;
+        this.isBisulfiteSequenced = isBisulfiteSequenced;
+        this.gcWindowIndex = gcWindowIndex;
+    }
+
+    void acceptRecord(final SAMRecord rec, final ReferenceSequence ref) {
+        //if read is unaligned then ref is passed in as null
+        if (!rec.getReadPairedFlag() || rec.getFirstOfPairFlag()) ++this.totalClusters;
+        if (ref!=null) {
+            //only do the recalculation of gc if current ref is different from last ref
+            if (ref.getContigIndex() != lastContig) {
+                refBases = ref.getBases();
+                StringUtil.toUpperCase(refBases);
+                final int[] contigWindowsByGc;
+                if (gcWindowIndex != null) {
+                    gc = gcWindowIndex.getGcs(ref.getContigIndex());
+                    contigWindowsByGc = gcWindowIndex.getWindowsByGc(ref.getContigIndex());
+                } else {
+                    contigWindowsByGc = new int[WINDOWS];
+                    gc = ByteBuffer.wrap(GcWindowIndex.calculateAllGcs(refBases, windowSize, contigWindowsByGc));
+                }
+                windowsByGcOfContig.putIfAbsent(ref.getContigIndex(), contigWindowsByGc);
+                lastContig = ref.getContigIndex();
+            }
+            if (!rec.getReadPairedFlag() || rec.getFirstOfPairFlag()) ++this.totalClusters;
+            if (!rec.getReadUnmappedFlag()) {
+                final int pos = rec.getReadNegativeStrandFlag() ? rec.getAlignmentEnd() - windowSize : rec.getAlignmentStart();
+                ++this.totalAlignedReads;
+                if (pos > 0) {
+                    final int windowGc = gc.get(pos);
+                    if (windowGc >= 0) {
+                        ++readsByGc[windowGc];
+                        basesByGc[windowGc] += rec.getReadLength();
+                        errorsByGc[windowGc] +=
+                                SequenceUtil.countMismatches(rec, refBases, isBisulfiteSequenced) +
+                                        SequenceUtil.countInsertedBases(rec) + SequenceUtil.countDeletedBases(rec);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the counts of the source, a collector of another part of the input, to this collector.
+     * @return this collector
+     */
+    GcBiasCollector combine(final GcBiasCollector source) {
+        totalClusters += source.totalClusters;
+        totalAlignedReads += source.totalAlignedReads;
+        source.windowsByGcOfContig.forEach(windowsByGcOfContig::putIfAbsent);
+        for (int i = 0; i < WINDOWS; ++i) {
+            readsByGc[i] += source.readsByGc[i];
+            basesByGc[i] += source.basesByGc[i];
+            errorsByGc[i] += source.errorsByGc[i];
+        }
+        return this;
+    }
+
+    int getTotalClusters() {
+        return totalClusters;
+    }
+
+    int getTotalAlignedReads() {
+        return totalAlignedReads;
+    }
+
+    /**
+     * @return the number of windows at each GC, over the contigs that have reads
+     */
+    int[] getWindowsByGc() {
+        final int[] windowsByGc = new int[WINDOWS];
+        for (final int[] contigWindowsByGc : windowsByGcOfContig.values()) {
+            for (int i = 0; i < WINDOWS; ++i) {
+                windowsByGc[i] += contigWindowsByGc[i];
+            }
+        }
+        return windowsByGc;
+    }
+
+    int[] getReadsByGc() {
+        return readsByGc;
+    }
+
+    long[] getBasesByGc() {
+        return basesByGc;
+    }
+
+    long[] getErrorsByGc() {
+        return errorsByGc;
+    }
+}
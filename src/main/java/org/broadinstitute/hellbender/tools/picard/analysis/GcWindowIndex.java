@@ -0,0 +1,216 @@
+package org.broadinstitute.hellbender.tools.picard.analysis;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.util.StringUtil;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The GC content of the windows of a reference, as {@link CollectGcBiasMetrics} bins reads by it, computed once and
+ * kept in a file that can be memory-mapped, so that the reference doesn't have to be scanned for every input.
+ *
+ * For each contig, the index holds the GC of the window of WINDOW_SIZE bases that starts at each position, from 0 to
+ * 100, or -1 if the window has more than four Ns, and the number of windows of the contig at each GC. See
+ * {@link #calculateAllGcs} for the windows.
+ *
+ * The file has a header (a magic number, the version, the window size, the number of contigs and the offset of the
+ * table of contigs), then the GCs of every contig, one byte per position, then the table of contigs, which gives the
+ * name, the length, the offset of the GCs and the number of windows at each GC of every contig.
+ */
+public final class GcWindowIndex {
+    // Need 101 to get from 0-100.
+    public static final int GC_BINS = 101;
+
+    private static final int MAGIC = 0x47435749; // "GCWI"
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 4 * 4 + 8;
+
+    private final int windowSize;
+    private final SAMSequenceDictionary dictionary;
+    private final List<ByteBuffer> gcs;
+    private final List<int[]> windowsByGc;
+
+    private GcWindowIndex(final int windowSize, final SAMSequenceDictionary dictionary, final List<ByteBuffer> gcs, final List<int[]> windowsByGc) {
+        this.windowSize = windowSize;
+        this.dictionary = dictionary;
+        this.gcs = gcs;
+        this.windowsByGc = windowsByGc;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * @return the names and lengths of the contigs of the reference
+     */
+    public SAMSequenceDictionary getSequenceDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the GC of the window that starts at each position of the contig, indexed by position
+     */
+    public ByteBuffer getGcs(final int contigIndex) {
+        return gcs.get(contigIndex).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the number of windows of the contig at each GC
+     */
+    public int[] getWindowsByGc(final int contigIndex) {
+        return windowsByGc.get(contigIndex).clone();
+    }
+
+    /**
+     * Maps the GCs of every contig of an index into memory.
+     */
+    public static GcWindowIndex open(final File file) {
+        Utils.nonNull(file);
+        try (final RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.length() < HEADER_LENGTH || in.readInt() != MAGIC) {
+                throw new UserException.MalformedFile(file, "Not a GC window index");
+            }
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new UserException.MalformedFile(file, "Unsupported version of GC window index: " + version);
+            }
+            final int windowSize = in.readInt();
+            final int numContigs = in.readInt();
+            in.seek(in.readLong());
+
+            final FileChannel channel = in.getChannel();
+            final List<SAMSequenceRecord> sequences = new ArrayList<>(numContigs);
+            final List<ByteBuffer> gcs = new ArrayList<>(numContigs);
+            final List<int[]> windowsByGc = new ArrayList<>(numContigs);
+            for (int i = 0; i < numContigs; i++) {
+                final String name = in.readUTF();
+                final int length = in.readInt();
+                final long offset = in.readLong();
+                final int[] windows = new int[GC_BINS];
+                for (int gc = 0; gc < GC_BINS; gc++) {
+                    windows[gc] = in.readInt();
+                }
+                sequences.add(new SAMSequenceRecord(name, length));
+                gcs.add(channel.map(FileChannel.MapMode.READ_ONLY, offset, length + 1));
+                windowsByGc.add(windows);
+            }
+            return new GcWindowIndex(windowSize, new SAMSequenceDictionary(sequences), gcs, windowsByGc);
+        } catch (final IOException e) {
+            throw new UserException.CouldNotReadInputFile(file, e);
+        }
+    }
+
+    /**
+     * Computes the GCs of the windows of every contig of the reference, one contig at a time, and writes them to an index.
+     */
+    public static void write(final ReferenceSequenceFile reference, final int windowSize, final File output) {
+        Utils.nonNull(reference);
+        Utils.nonNull(output);
+        Utils.validateArg(windowSize > 0, "the window size must be positive");
+        try (final RandomAccessFile out = new RandomAccessFile(output, "rw")) {
+            out.setLength(0);
+            out.seek(HEADER_LENGTH);
+
+            final ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+            final DataOutputStream table = new DataOutputStream(tableBytes);
+            int numContigs = 0;
+            for (ReferenceSequence sequence = reference.nextSequence(); sequence != null; sequence = reference.nextSequence()) {
+                final byte[] bases = sequence.getBases();
+                StringUtil.toUpperCase(bases);
+                final int[] windowsByGc = new int[GC_BINS];
+                final byte[] gc = calculateAllGcs(bases, windowSize, windowsByGc);
+
+                table.writeUTF(sequence.getName());
+                table.writeInt(bases.length);
+                table.writeLong(out.getFilePointer());
+                for (final int windows : windowsByGc) {
+                    table.writeInt(windows);
+                }
+                out.write(gc);
+                numContigs++;
+            }
+            table.flush();
+
+            final long tableOffset = out.getFilePointer();
+            out.write(tableBytes.toByteArray());
+            out.seek(0);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(windowSize);
+            out.writeInt(numContigs);
+            out.writeLong(tableOffset);
+        } catch (final IOException e) {
+            throw new UserException.CouldNotCreateOutputFile(output, e);
+        }
+    }
+
+    /**
+     * Calculates the GC of the windows that start at each position of a contig, and adds them to the number of
+     * windows at each GC.
+     *
+     * @param refBases the upper case bases of the contig
+     * @return the GC of the window that starts at each position, indexed by position
+     */
+    public static byte[] calculateAllGcs(final byte[] refBases, final int windowSize, final int[] windowsByGc) {
+        final int refLength = refBases.length;
+        final int lastWindowStart = refLength - windowSize;
+        final byte[] gc = new byte[refLength + 1];
+        final CalculateGcState state = new CalculateGcState();
+        for (int i = 1; i < lastWindowStart; ++i) {
+            final int windowEnd = i + windowSize;
+            final int windowGc = calculateGc(refBases, i, windowEnd, state);
+            gc[i] = (byte) windowGc;
+            if (windowGc != -1) windowsByGc[windowGc]++;
+        }
+        return gc;
+    }
+
+    /**
+     * Calculates GC as a number from 0 to 100 in the specified window. If the window includes
+     * more than five no-calls then -1 is returned.
+     */
+    private static int calculateGc(final byte[] bases, final int startIndex, final int endIndex, final CalculateGcState state) {
+        if (state.init) {
+            state.init = false;
+            state.gcCount = 0;
+            state.nCount = 0;
+            for (int i = startIndex; i < endIndex; ++i) {
+                final byte base = bases[i];
+                if (base == 'G' || base == 'C') ++state.gcCount;
+                else if (base == 'N') ++state.nCount;
+            }
+        } else {
+            final byte newBase = bases[endIndex - 1];
+            if (newBase == 'G' || newBase == 'C') ++state.gcCount;
+            else if (newBase == 'N') ++state.nCount;
+
+            if (state.priorBase == 'G' || state.priorBase == 'C') --state.gcCount;
+            else if (state.priorBase == 'N') --state.nCount;
+        }
+        state.priorBase = bases[startIndex];
+        if (state.nCount > 4) return -1;
+        else return (state.gcCount * 100) / (endIndex - startIndex);
+    }
+
+    /** Keeps track of current GC calculation state. */
+    private static final class CalculateGcState {
+        boolean init = true;
+        int nCount;
+        int gcCount;
+        byte priorBase;
+    }
+}
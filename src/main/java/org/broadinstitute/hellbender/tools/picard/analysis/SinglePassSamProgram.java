@@ -16,11 +16,24 @@ import org.apache.logging.log4j.LogManager;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.PicardCommandLineProgram;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.metrics.SAMRecordAndReference;
+import org.broadinstitute.hellbender.metrics.ShardedCollection;
 import org.broadinstitute.hellbender.utils.runtime.ProgressLogger;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Super class that is designed to provide some consistent structure between subclasses that
@@ -45,20 +58,83 @@ public abstract class SinglePassSamProgram extends PicardCommandLineProgram {
     private static final Logger logger = LogManager.getLogger();
 
     /**
-     * Final implementation of doWork() that checks and loads the input and optionally reference
+     * Implementation of doWork() that checks and loads the input and optionally reference
      * sequence files and the runs the sublcass through the setup() acceptRead() and finish() steps.
+     * Subclasses that can collect their input in some other way (e.g. in shards) may override it.
      */
     @Override
-    protected final Object doWork() {
+    protected Object doWork() {
+        return doWorkInOnePass();
+    }
+
+    private Object doWorkInOnePass() {
         makeItSo(INPUT, REFERENCE_SEQUENCE, ASSUME_SORTED, STOP_AFTER, Arrays.asList(this));
         return null;
     }
 
+    /**
+     * Implementation of doWork() for the subclasses whose collectors can be combined, that collects the input in
+     * shards on numThreads threads with {@link ShardedCollection}, between the setup() and finish() steps. The input
+     * is collected in one pass, as by the default doWork(), if there is one thread, if STOP_AFTER is set or if the input
+     * has no index.
+     *
+     * @param newCollector makes an empty collector for a shard, given the header of the input, after setup()
+     * @param acceptRecord gives a record to a collector, as acceptRead() gives it to the collector of the program
+     * @param combine combines two collectors of adjacent parts of the input, and returns the result
+     * @param setCollector makes the combined collector of all the shards the one that finish() reports on
+     */
+    protected final <C> Object doWorkInShards(final int numThreads,
+                                              final Function<SAMFileHeader, C> newCollector,
+                                              final BiConsumer<C, SAMRecordAndReference> acceptRecord,
+                                              final BinaryOperator<C> combine,
+                                              final Consumer<C> setCollector) {
+        if (numThreads == 1) {
+            return doWorkInOnePass();
+        }
+        if (STOP_AFTER > 0) {
+            logger.warn("STOP_AFTER does not apply to shards, so the metrics are collected in one pass.");
+            return doWorkInOnePass();
+        }
+
+        IOUtil.assertFileIsReadable(INPUT);
+        final SamReader in = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(INPUT);
+        final SAMFileHeader header = in.getFileHeader();
+        final boolean hasIndex = in.hasIndex();
+        CloserUtil.close(in);
+        if (!hasIndex) {
+            logger.warn("The input " + INPUT.getName() + " has no index, so the metrics are collected in one pass.");
+            return doWorkInOnePass();
+        }
+
+        setup(header, INPUT);
+        setCollector.accept(ShardedCollection.collect(INPUT, REFERENCE_SEQUENCE, numThreads, ShardedCollection.DEFAULT_SHARD_SIZE, usesNoRefReads(),
+                () -> newCollector.apply(header), acceptRecord, combine));
+        finish();
+        return null;
+    }
+
     public static void makeItSo(final File input,
                                 final File referenceSequence,
                                 final boolean assumeSorted,
                                 final long stopAfter,
                                 final Collection<SinglePassSamProgram> programs) {
+        makeItSo(input, referenceSequence, assumeSorted, stopAfter, programs, false);
+    }
+
+    /**
+     * Runs the programs through the setup() acceptRead() and finish() steps over one pass of the input.
+     *
+     * @param runInParallel if true, and there are several programs, each program accepts the records on its own thread.
+     *                      The records are decoded once on the thread that reads the input and handed to the programs
+     *                      in batches, through bounded queues, so the pass takes as long as the slowest program rather
+     *                      than all of them. The programs must not modify the records.
+     */
+    public static void makeItSo(final File input,
+                                final File referenceSequence,
+                                final boolean assumeSorted,
+                                final long stopAfter,
+                                final Collection<SinglePassSamProgram> programs,
+                                final boolean runInParallel) {
 
         // Setup the standard inputs
         IOUtil.assertFileIsReadable(input);
@@ -101,29 +177,48 @@ public abstract class SinglePassSamProgram extends PicardCommandLineProgram {
 
 
         final ProgressLogger progress = new ProgressLogger(logger);
+        final ParallelPrograms parallelPrograms = runInParallel && programs.size() > 1 ? new ParallelPrograms(programs) : null;
 
-        for (final SAMRecord rec : in) {
-            final ReferenceSequence ref;
-            if (walker == null || rec.getReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
-                ref = null;
-            } else {
-                ref = walker.get(rec.getReferenceIndex());
-            }
+        try {
+            for (final SAMRecord rec : in) {
+                final ReferenceSequence ref;
+                if (walker == null || rec.getReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+                    ref = null;
+                } else {
+                    ref = walker.get(rec.getReferenceIndex());
+                }
 
-            for (final SinglePassSamProgram program : programs) {
-                program.acceptRead(rec, ref);
-            }
+                if (parallelPrograms != null) {
+                    parallelPrograms.acceptRead(rec, ref);
+                    // stop reading if a program failed, its exception is thrown below
+                    if (parallelPrograms.hasFailed()) {
+                        break;
+                    }
+                } else {
+                    for (final SinglePassSamProgram program : programs) {
+                        program.acceptRead(rec, ref);
+                    }
+                }
 
-            progress.record(rec);
+                progress.record(rec);
+
+                // See if we need to terminate early?
+                if (stopAfter > 0 && progress.getCount() >= stopAfter) {
+                    break;
+                }
 
-            // See if we need to terminate early?
-            if (stopAfter > 0 && progress.getCount() >= stopAfter) {
-                break;
+                // And see if we're into the unmapped reads at the end
+                if (!anyUseNoRefReads && rec.getReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+                    break;
+                }
             }
 
-            // And see if we're into the unmapped reads at the end
-            if (!anyUseNoRefReads && rec.getReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
-                break;
+            if (parallelPrograms != null) {
+                parallelPrograms.awaitCompletion();
+            }
+        } finally {
+            if (parallelPrograms != null) {
+                parallelPrograms.shutdownNow();
             }
         }
 
@@ -134,6 +229,121 @@ public abstract class SinglePassSamProgram extends PicardCommandLineProgram {
         }
     }
 
+    /**
+     * Runs each of a number of programs on its own thread, and hands them the records in batches.
+     */
+    private static final class ParallelPrograms {
+        private static final int BATCH_SIZE = 1000;
+        // the number of batches that can wait for each program, which bounds how far ahead of the slowest program the reading goes
+        private static final int QUEUED_BATCHES = 8;
+        private static final List<RecordAndReference> END_OF_INPUT = Collections.emptyList();
+
+        private final List<BlockingQueue<List<RecordAndReference>>> queues = new ArrayList<>();
+        private final List<Future<Void>> results = new ArrayList<>();
+        private final ExecutorService executor;
+        private volatile boolean failed = false;
+        private List<RecordAndReference> batch = new ArrayList<>(BATCH_SIZE);
+
+        ParallelPrograms(final Collection<SinglePassSamProgram> programs) {
+            executor = Executors.newFixedThreadPool(programs.size());
+            for (final SinglePassSamProgram program : programs) {
+                final BlockingQueue<List<RecordAndReference>> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+                queues.add(queue);
+                results.add(executor.submit(() -> run(program, queue)));
+            }
+        }
+
+        /**
+         * Makes the program accept the records of the batches in the queue until the end of the input. If the program
+         * fails, the rest of the batches are still taken from the queue, so that the reading doesn't block on it.
+         */
+        private Void run(final SinglePassSamProgram program, final BlockingQueue<List<RecordAndReference>> queue) throws InterruptedException {
+            RuntimeException failure = null;
+            for (List<RecordAndReference> records = queue.take(); records != END_OF_INPUT; records = queue.take()) {
+                if (failure != null) {
+                    continue;
+                }
+                try {
+                    for (final RecordAndReference record : records) {
+                        program.acceptRead(record.rec, record.ref);
+                    }
+                } catch (final RuntimeException e) {
+                    failure = e;
+                    failed = true;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return null;
+        }
+
+        void acceptRead(final SAMRecord rec, final ReferenceSequence ref) {
+            // decode the lazily decoded fields of the record here, so that the programs only read it
+            rec.getCigar();
+            rec.getReadBases();
+            rec.getBaseQualities();
+            rec.getAttributes();
+            rec.getAlignmentEnd();
+            rec.getAlignmentBlocks();
+            batch.add(new RecordAndReference(rec, ref));
+            if (batch.size() == BATCH_SIZE) {
+                dispatch(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+
+        boolean hasFailed() {
+            return failed;
+        }
+
+        /**
+         * Hands the last records to the programs and waits for them to accept all the records.
+         */
+        void awaitCompletion() {
+            if (!batch.isEmpty()) {
+                dispatch(batch);
+            }
+            dispatch(END_OF_INPUT);
+            for (final Future<Void> result : results) {
+                try {
+                    result.get();
+                } catch (final ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new GATKException("Problem running a program", e.getCause());
+                } catch (final InterruptedException e) {
+                    throw new GATKException("Interrupted while waiting for the programs", e);
+                }
+            }
+        }
+
+        void shutdownNow() {
+            executor.shutdownNow();
+        }
+
+        private void dispatch(final List<RecordAndReference> records) {
+            try {
+                for (final BlockingQueue<List<RecordAndReference>> queue : queues) {
+                    queue.put(records);
+                }
+            } catch (final InterruptedException e) {
+                throw new GATKException("Interrupted while handing records to the programs", e);
+            }
+        }
+    }
+
+    private static final class RecordAndReference {
+        private final SAMRecord rec;
+        private final ReferenceSequence ref;
+
+        RecordAndReference(final SAMRecord rec, final ReferenceSequence ref) {
+            this.rec = rec;
+            this.ref = ref;
+        }
+    }
+
     /** Can be overriden and set to false if the section of unmapped reads at the end of the file isn't needed. */
     protected boolean usesNoRefReads() { return true; }
 
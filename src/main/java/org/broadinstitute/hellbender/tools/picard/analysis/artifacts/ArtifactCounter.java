@@ -14,9 +14,19 @@ import java.util.*;
  * Keeps track of artifact counts, and extracts metrics once accumulation is finished.
  */
 final class ArtifactCounter {
+    private static final int R1_POS = 0;
+    private static final int R1_NEG = 1;
+    private static final int R2_POS = 2;
+    private static final int R2_NEG = 3;
+
     private final String sampleAlias;
     private final String library;
 
+    // the counts of the bases of each full context and called base, broken down by read1/read2 and
+    // positive/negative strand, which are added to the accumulators when counting is finished
+    private final int contextLength;
+    private final long[] counts;
+
     private final Set<String> fullContexts;
     private final Map<String, String> leadingContextMap;
     private final Map<String, String> trailingContextMap;
@@ -34,6 +44,8 @@ final class ArtifactCounter {
     public ArtifactCounter(final String sampleAlias, final String library, final int contextSize, final boolean expectedTandemReads) {
         this.sampleAlias = sampleAlias;
         this.library = library;
+        this.contextLength = 2 * contextSize + 1;
+        this.counts = new long[ContextEncoding.numContexts(contextLength) * 4 * 4];
 
         // define the contexts
         this.fullContexts = new HashSet<>();
@@ -76,19 +88,24 @@ final class ArtifactCounter {
     }
 
     /**
-     * Add a record to all the accumulators.
+     * Count a base of a record.
+     *
+     * @param refContext the code of the reference context of the base, see {@link ContextEncoding}
+     * @param calledBase the code of the called base
      */
-    public void countRecord(final String refContext, final char calledBase, final SAMRecord rec) {
-        this.fullContextAccumulator.countRecord(refContext, calledBase, rec);
-        this.halfContextAccumulator.countRecord(this.leadingContextMap.get(refContext), calledBase, rec);
-        this.halfContextAccumulator.countRecord(this.trailingContextMap.get(refContext), calledBase, rec);
-        this.zeroContextAccumulator.countRecord(this.zeroContextMap.get(refContext), calledBase, rec);
+    public void countRecord(final int refContext, final int calledBase, final SAMRecord rec) {
+        final boolean isNegativeStrand = rec.getReadNegativeStrandFlag();
+        final boolean isReadTwo = rec.getReadPairedFlag() && rec.getSecondOfPairFlag();
+        final int category = isReadTwo ? (isNegativeStrand ? R2_NEG : R2_POS) : (isNegativeStrand ? R1_NEG : R1_POS);
+        this.counts[(((refContext << 2) | calledBase) << 2) | category]++;
     }
 
     /**
      * Stop counting, tally things up, and extract metrics.
      */
     public void finish() {
+        addCountsToAccumulators();
+
         final ListMap<Transition, DetailPair> allDetailMetrics = getDetailMetrics();
         final Map<Transition, SummaryPair> allSummaryMetrics = getSummaryMetrics();
 
@@ -190,6 +207,30 @@ final class ArtifactCounter {
         return summaryMetricsMap;
     }
 
+    /**
+     * Add the counts of each full context to all the accumulators. The half and zero contexts are each made of
+     * several full contexts, so their counts are the sums of those of the full contexts.
+     */
+    private void addCountsToAccumulators() {
+        for (int contextCode = 0; contextCode < ContextEncoding.numContexts(contextLength); contextCode++) {
+            final String refContext = ContextEncoding.decode(contextCode, contextLength);
+            for (int calledBaseCode = 0; calledBaseCode < 4; calledBaseCode++) {
+                final int index = ((contextCode << 2) | calledBaseCode) << 2;
+                final long r1Pos = this.counts[index + R1_POS];
+                final long r1Neg = this.counts[index + R1_NEG];
+                final long r2Pos = this.counts[index + R2_POS];
+                final long r2Neg = this.counts[index + R2_NEG];
+                if (r1Pos + r1Neg + r2Pos + r2Neg == 0) continue;
+
+                final char calledBase = ContextEncoding.decode(calledBaseCode, 1).charAt(0);
+                this.fullContextAccumulator.addCounts(refContext, calledBase, r1Pos, r1Neg, r2Pos, r2Neg);
+                this.halfContextAccumulator.addCounts(this.leadingContextMap.get(refContext), calledBase, r1Pos, r1Neg, r2Pos, r2Neg);
+                this.halfContextAccumulator.addCounts(this.trailingContextMap.get(refContext), calledBase, r1Pos, r1Neg, r2Pos, r2Neg);
+                this.zeroContextAccumulator.addCounts(this.zeroContextMap.get(refContext), calledBase, r1Pos, r1Neg, r2Pos, r2Neg);
+            }
+        }
+    }
+
     private ListMap<Transition, DetailPair> getDetailMetrics() {
         return this.fullContextAccumulator.calculateMetrics(this.sampleAlias, this.library);
     }
@@ -10,12 +10,16 @@ import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.IntervalList;
 import htsjdk.samtools.util.IntervalListReferenceSequenceMask;
+import htsjdk.samtools.util.ListMap;
 import htsjdk.samtools.util.StringUtil;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
 import org.broadinstitute.hellbender.cmdline.programgroups.QCProgramGroup;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.tools.picard.analysis.CollectOxoGMetrics;
+import org.broadinstitute.hellbender.tools.picard.analysis.CollectOxoGMetrics.Calculator;
+import org.broadinstitute.hellbender.tools.picard.analysis.CollectOxoGMetrics.CpcgMetrics;
 import org.broadinstitute.hellbender.tools.picard.analysis.SinglePassSamProgram;
 import org.broadinstitute.hellbender.tools.picard.analysis.artifacts.SequencingArtifactMetrics.BaitBiasDetailMetrics;
 import org.broadinstitute.hellbender.tools.picard.analysis.artifacts.SequencingArtifactMetrics.BaitBiasSummaryMetrics;
@@ -41,6 +45,9 @@ import static htsjdk.samtools.util.CodeUtil.getOrElse;
  * For a deeper explanation, see Costello et al. 2013:
  * http://www.ncbi.nlm.nih.gov/pubmed/23303777
  *
+ * With OXOG_OUTPUT, the CpCG metrics of {@link CollectOxoGMetrics} are also counted, from the same reference contexts
+ * in the same pass over the reads, rather than by running CollectOxoGMetrics over the input again.
+ *
  * @author mattsooknah
  *
  */
@@ -92,6 +99,12 @@ public final class CollectSequencingArtifactMetrics extends SinglePassSamProgram
                   "However, the summary metrics output will still take all contexts into consideration.", optional = true)
     public Set<String> CONTEXTS_TO_PRINT = new HashSet<>();
 
+    @Argument(doc = "If specified, also write the CpCG metrics of CollectOxoGMetrics to this file, counted in the same pass " +
+            "over the reads, for all the contexts of CONTEXT_SIZE. The reads are filtered as for the other metrics, except that " +
+            "reads failing the vendor quality check are counted, as CollectOxoGMetrics counts them. The input must be " +
+            "coordinate sorted.", optional = true)
+    public File OXOG_OUTPUT;
+
     private static final String UNKNOWN_LIBRARY = "UnknownLibrary";
     private static final String UNKNOWN_SAMPLE = "UnknownSample";
 
@@ -103,10 +116,14 @@ public final class CollectSequencingArtifactMetrics extends SinglePassSamProgram
     private IntervalListReferenceSequenceMask intervalMask;
     private DbSnpBitSetUtil dbSnpMask;
     private SamRecordFilter recordFilter;
+    private SamRecordFilter cpcgRecordFilter;
 
     private final Set<String> samples = new HashSet<>();
     private final Set<String> libraries = new HashSet<>();
     private final Map<String, ArtifactCounter> artifactCounters = new HashMap<>();
+    private final ListMap<String, Calculator> cpcgCalculators = new ListMap<>();
+    private final Map<String, CpcgCounter> cpcgCounters = new HashMap<>();
+    private int lastContigIndex = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
 
     @Override
     protected String[] customCommandLineValidation() {
@@ -140,6 +157,12 @@ public final class CollectSequencingArtifactMetrics extends SinglePassSamProgram
         IOUtil.assertFileIsWritable(preAdapterDetailsOut);
         IOUtil.assertFileIsWritable(baitBiasSummaryOut);
         IOUtil.assertFileIsWritable(baitBiasDetailsOut);
+        if (OXOG_OUTPUT != null) {
+            IOUtil.assertFileIsWritable(OXOG_OUTPUT);
+            if (header.getSortOrder() != SAMFileHeader.SortOrder.coordinate) {
+                throw new UserException.BadInput("The input must be coordinate sorted to count the CpCG metrics with OXOG_OUTPUT");
+            }
+        }
 
         for (final SAMReadGroupRecord rec : header.getReadGroups()) {
             samples.add(getOrElse(rec.getSample(), UNKNOWN_SAMPLE));
@@ -158,7 +181,6 @@ public final class CollectSequencingArtifactMetrics extends SinglePassSamProgram
 
         // set record-level filters
         final List<SamRecordFilter> filters = new ArrayList<>();
-        filters.add(new FailsVendorReadQualityFilter());
         filters.add(new NotPrimaryAlignmentFilter());
         filters.add(new DuplicateReadFilter());
         filters.add(new AlignedFilter(true)); // discard unmapped reads
@@ -167,6 +189,8 @@ public final class CollectSequencingArtifactMetrics extends SinglePassSamProgram
             final int effectiveMaxInsertSize = (MAXIMUM_INSERT_SIZE == 0) ? Integer.MAX_VALUE : MAXIMUM_INSERT_SIZE;
             filters.add(new InsertSizeFilter(MINIMUM_INSERT_SIZE, effectiveMaxInsertSize));
         }
+        cpcgRecordFilter = new AggregateFilter(new ArrayList<>(filters));
+        filters.add(0, new FailsVendorReadQualityFilter());
         recordFilter = new AggregateFilter(filters);
 
         // set up the artifact counters
@@ -174,12 +198,38 @@ public final class CollectSequencingArtifactMetrics extends SinglePassSamProgram
         for (final String library : libraries) {
             artifactCounters.put(library, new ArtifactCounter(sampleAlias, library, CONTEXT_SIZE, TANDEM_READS));
         }
+
+        // set up the CpCG calculators, in the order in which CollectOxoGMetrics writes them
+        if (OXOG_OUTPUT != null) {
+            final Map<String, Map<String, Calculator>> calculatorsByLibrary = new HashMap<>();
+            for (final String context : CollectOxoGMetrics.makeContextStrings(CONTEXT_SIZE)) {
+                for (final String library : libraries) {
+                    final Calculator calculator = new Calculator(library, context);
+                    cpcgCalculators.add(context, calculator);
+                    calculatorsByLibrary.computeIfAbsent(library, l -> new HashMap<>()).put(context, calculator);
+                }
+            }
+            calculatorsByLibrary.forEach((library, calculators) -> cpcgCounters.put(library, new CpcgCounter(CONTEXT_SIZE, calculators)));
+        }
     }
 
     @Override
     protected void acceptRead(final SAMRecord rec, final ReferenceSequence ref) {
+        // no read after this one can cover the sites before its start
+        if (OXOG_OUTPUT != null && !rec.getReadUnmappedFlag()) {
+            if (rec.getReferenceIndex() != lastContigIndex) {
+                cpcgCounters.values().forEach(CpcgCounter::finishSites);
+                lastContigIndex = rec.getReferenceIndex();
+            }
+            for (final CpcgCounter counter : cpcgCounters.values()) {
+                counter.finishSitesBefore(rec.getAlignmentStart());
+            }
+        }
+
         // see if the whole read should be skipped
-        if (recordFilter.filterOut(rec)) return;
+        final boolean countArtifacts = !recordFilter.filterOut(rec);
+        final boolean countCpcg = OXOG_OUTPUT != null && !cpcgRecordFilter.filterOut(rec);
+        if (!countArtifacts && !countCpcg) return;
 
         // check read group + library
         final String library = (rec.getReadGroup() == null) ? UNKNOWN_LIBRARY : getOrElse(rec.getReadGroup().getLibrary(), UNKNOWN_LIBRARY);
@@ -189,6 +239,7 @@ public final class CollectSequencingArtifactMetrics extends SinglePassSamProgram
         }
 
         // iterate over aligned positions
+        final int contextFullLength = 2 * CONTEXT_SIZE + 1;
         for (final AlignmentBlock block : rec.getAlignmentBlocks()) {
             for (int offset = 0; offset < block.getLength(); offset++) {
                 // remember, these are 1-based!
@@ -210,26 +261,49 @@ public final class CollectSequencingArtifactMetrics extends SinglePassSamProgram
 
                 // skip the ends of the reference
                 final int contextStartIndex = refPos - CONTEXT_SIZE - 1;
-                final int contextFullLength = 2 * CONTEXT_SIZE + 1;
                 if (contextStartIndex < 0 || contextStartIndex + contextFullLength > ref.length()) continue;
 
-                // skip contexts with N bases
-                final String context = StringUtil.bytesToString(ref.getBases(), contextStartIndex, contextFullLength).toUpperCase();
-                if (context.contains("N")) continue;
+                // skip contexts with N (or other ambiguous) bases
+                final int context = ContextEncoding.encode(ref.getBases(), contextStartIndex, contextFullLength);
+                if (context == -1) continue;
 
                 // skip low BQ sites
                 if (failsBaseQualityCutoff(readPos, rec)) continue;
 
-                // skip N bases in read
-                final char readBase = Character.toUpperCase((char) rec.getReadBases()[readPos - 1]);
-                if (readBase == 'N') continue;
+                // skip N (or other ambiguous) bases in read
+                final byte readBase = rec.getReadBases()[readPos - 1];
+                final int readBaseCode = ContextEncoding.encodeBase(readBase);
+                if (readBaseCode == -1) continue;
 
                 // count the base!
-                artifactCounters.get(library).countRecord(context, readBase, rec);
+                if (countArtifacts) {
+                    artifactCounters.get(library).countRecord(context, readBaseCode, rec);
+                }
+                if (countCpcg) {
+                    countCpcgBase(refPos, context, readBase, rec, ref, library);
+                }
             }
         }
     }
 
+    /**
+     * Counts a base for the CpCG metrics, which, as CollectOxoGMetrics does, skip the sites within two bases of the
+     * ends of the reference and count the contexts of G reference bases reverse complemented, with a C at the center.
+     */
+    private void countCpcgBase(final int refPos, final int context, final byte readBase, final SAMRecord rec,
+                               final ReferenceSequence ref, final String library) {
+        if (refPos < 3 || refPos > ref.length() - 3) return;
+
+        final int contextFullLength = 2 * CONTEXT_SIZE + 1;
+        final byte refBase = StringUtil.toUpperCase(ref.getBases()[refPos - 1]);
+        final int cContext;
+        if (refBase == 'C') cContext = context;
+        else if (refBase == 'G') cContext = ContextEncoding.reverseComplement(context, contextFullLength);
+        else return;
+
+        cpcgCounters.get(library).countBase(refPos, cContext, refBase, readBase, rec);
+    }
+
     @Override
     protected void finish() {
         final MetricsFile<PreAdapterSummaryMetrics, Integer> preAdapterSummaryMetricsFile = getMetricsFile();
@@ -262,6 +336,21 @@ public final class CollectSequencingArtifactMetrics extends SinglePassSamProgram
         preAdapterSummaryMetricsFile.write(preAdapterSummaryOut);
         baitBiasDetailMetricsFile.write(baitBiasDetailsOut);
         baitBiasSummaryMetricsFile.write(baitBiasSummaryOut);
+
+        if (OXOG_OUTPUT != null) {
+            cpcgCounters.values().forEach(CpcgCounter::finishSites);
+
+            final MetricsFile<CpcgMetrics, Integer> cpcgMetricsFile = getMetricsFile();
+            final String sampleAlias = StringUtil.join(",", new ArrayList<>(samples));
+            for (final List<Calculator> calculators : cpcgCalculators.values()) {
+                for (final Calculator calculator : calculators) {
+                    final CpcgMetrics metrics = calculator.finish();
+                    metrics.SAMPLE_ALIAS = sampleAlias;
+                    cpcgMetricsFile.addMetric(metrics);
+                }
+            }
+            cpcgMetricsFile.write(OXOG_OUTPUT);
+        }
     }
 
     @Override
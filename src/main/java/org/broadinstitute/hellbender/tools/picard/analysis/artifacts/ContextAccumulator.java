@@ -1,6 +1,5 @@
 package org.broadinstitute.hellbender.tools.picard.analysis.artifacts;
 
-import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.util.ListMap;
 import htsjdk.samtools.util.SequenceUtil;
 
@@ -33,10 +32,15 @@ final class ContextAccumulator {
         }
     }
 
-    public void countRecord(final String refContext, final char calledBase, final SAMRecord rec) {
+    /**
+     * Adds the counts of the bases called as calledBase in the given reference context, broken down by read1/read2
+     * and positive/negative strand.
+     */
+    public void addCounts(final String refContext, final char calledBase,
+                          final long r1Pos, final long r1Neg, final long r2Pos, final long r2Neg) {
         final char refBase = getCentralBase(refContext);
         final Transition transition = Transition.transitionOf(refBase, calledBase);
-        this.artifactMap.get(transition).get(refContext).countRecord(rec);
+        this.artifactMap.get(transition).get(refContext).addCounts(r1Pos, r1Neg, r2Pos, r2Neg);
     }
 
     /**
@@ -116,16 +120,11 @@ final class ContextAccumulator {
         private long R2_POS = 0;
         private long R2_NEG = 0;
 
-        private void countRecord(final SAMRecord rec) {
-            final boolean isNegativeStrand = rec.getReadNegativeStrandFlag();
-            final boolean isReadTwo = rec.getReadPairedFlag() && rec.getSecondOfPairFlag();
-            if (isReadTwo) {
-                if (isNegativeStrand) this.R2_NEG++;
-                else this.R2_POS++;
-            } else {
-                if (isNegativeStrand) this.R1_NEG++;
-                else this.R1_POS++;
-            }
+        private void addCounts(final long r1Pos, final long r1Neg, final long r2Pos, final long r2Neg) {
+            this.R1_POS += r1Pos;
+            this.R1_NEG += r1Neg;
+            this.R2_POS += r2Pos;
+            this.R2_NEG += r2Neg;
         }
     }
 }
@@ -0,0 +1,82 @@
+package org.broadinstitute.hellbender.tools.picard.analysis.artifacts;
+
+import java.util.Arrays;
+
+/**
+ * Encodes sequence contexts as ints, two bits per base with the first base in the highest bits, so that counts can be
+ * kept in arrays indexed by context rather than in maps keyed by context strings.
+ */
+final class ContextEncoding {
+    private static final byte[] BASES = {'A', 'C', 'G', 'T'};
+
+    private static final int[] BASE_CODES = new int[256];
+    static {
+        Arrays.fill(BASE_CODES, -1);
+        for (int code = 0; code < BASES.length; code++) {
+            BASE_CODES[BASES[code]] = code;
+            BASE_CODES[Character.toLowerCase(BASES[code])] = code;
+        }
+    }
+
+    private ContextEncoding() {}
+
+    /**
+     * @return the number of contexts of the given length
+     */
+    static int numContexts(final int length) {
+        return 1 << (2 * length);
+    }
+
+    /**
+     * @return the code of a base, 0 to 3 for A, C, G and T in either case, or -1 for any other base
+     */
+    static int encodeBase(final byte base) {
+        return BASE_CODES[base & 0xff];
+    }
+
+    /**
+     * @return the code of the context of the given length that starts at the given index, or -1 if the context has
+     * a base other than A, C, G or T
+     */
+    static int encode(final byte[] bases, final int start, final int length) {
+        int code = 0;
+        for (int i = start; i < start + length; i++) {
+            final int baseCode = encodeBase(bases[i]);
+            if (baseCode == -1) {
+                return -1;
+            }
+            code = (code << 2) | baseCode;
+        }
+        return code;
+    }
+
+    /**
+     * @return the upper case context of the given length with the given code
+     */
+    static String decode(final int code, final int length) {
+        final byte[] bases = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bases[i] = BASES[(code >> (2 * (length - 1 - i))) & 3];
+        }
+        return new String(bases);
+    }
+
+    /**
+     * @return the code of the central base of a context of the given length
+     */
+    static int centralBase(final int code, final int length) {
+        return (code >> (2 * (length / 2))) & 3;
+    }
+
+    /**
+     * @return the code of the reverse complement of a context of the given length
+     */
+    static int reverseComplement(final int code, final int length) {
+        int reverseComplement = 0;
+        for (int i = 0; i < length; i++) {
+            // with A, C, G, T coded as 0 to 3, the complement of a base is 3 minus its code
+            reverseComplement = (reverseComplement << 2) | (3 - ((code >> (2 * i)) & 3));
+        }
+        return reverseComplement;
+    }
+}
@@ -0,0 +1,118 @@
+package org.broadinstitute.hellbender.tools.picard.analysis.artifacts;
+
+import htsjdk.samtools.SAMRecord;
+import org.broadinstitute.hellbender.tools.picard.analysis.CollectOxoGMetrics.Calculator;
+import org.broadinstitute.hellbender.tools.picard.analysis.CollectOxoGMetrics.Counts;
+
+import java.util.Map;
+
+/**
+ * Counts the CpCG metrics of {@link org.broadinstitute.hellbender.tools.picard.analysis.CollectOxoGMetrics} for one
+ * library from the bases of coordinate-sorted reads, rather than from the pileups of a locus iterator.
+ *
+ * The metrics count the sites that have a base, so the counts of a site are kept until no later read can cover it,
+ * i.e. until a read starts after it, and are then given to the calculator of its context.
+ */
+final class CpcgCounter {
+    private static final int INITIAL_WINDOW_SIZE = 1024;
+
+    private final int contextLength;
+    private final Calculator[] calculators;
+
+    // the sites from windowStart to windowEnd (exclusive), at index (position & windowMask)
+    private int windowStart = 0;
+    private int windowEnd = 0;
+    private int windowMask;
+    private Counts[] siteCounts;
+    private byte[] siteRefBases;
+    private int[] siteContexts;
+
+    /**
+     * @param contextSize the number of bases on each side of the C of the contexts
+     * @param calculators the calculators of the library, by context, with a C at the center
+     */
+    CpcgCounter(final int contextSize, final Map<String, Calculator> calculators) {
+        this.contextLength = 2 * contextSize + 1;
+        this.calculators = new Calculator[ContextEncoding.numContexts(contextLength)];
+        for (final Map.Entry<String, Calculator> entry : calculators.entrySet()) {
+            final String context = entry.getKey();
+            this.calculators[ContextEncoding.encode(context.getBytes(), 0, context.length())] = entry.getValue();
+        }
+        allocateWindow(INITIAL_WINDOW_SIZE);
+    }
+
+    private void allocateWindow(final int size) {
+        windowMask = size - 1;
+        siteCounts = new Counts[size];
+        for (int i = 0; i < size; i++) {
+            siteCounts[i] = new Counts();
+        }
+        siteRefBases = new byte[size];
+        siteContexts = new int[size];
+    }
+
+    /**
+     * Counts a base of a read at a C or G reference base.
+     *
+     * @param position the position of the base, which must not be before the start of the last read
+     * @param refContext the code of the reference context, with a C at the center (reverse complemented if the
+     *                   reference base is a G)
+     */
+    void countBase(final int position, final int refContext, final byte refBase, final byte base, final SAMRecord rec) {
+        if (position >= windowStart + windowMask + 1) {
+            growWindow(position - windowStart + 1);
+        }
+        final int index = position & windowMask;
+        final Counts counts = siteCounts[index];
+        counts.add(rec, base, refBase);
+        if (counts.total() > 0) {
+            siteRefBases[index] = refBase;
+            siteContexts[index] = refContext;
+            windowEnd = Math.max(windowEnd, position + 1);
+        }
+    }
+
+    private void growWindow(final int minSize) {
+        final Counts[] oldCounts = siteCounts;
+        final byte[] oldRefBases = siteRefBases;
+        final int[] oldContexts = siteContexts;
+        final int oldMask = windowMask;
+
+        int size = windowMask + 1;
+        while (size < minSize) {
+            size *= 2;
+        }
+        allocateWindow(size);
+        for (int position = windowStart; position < windowEnd; position++) {
+            siteCounts[position & windowMask] = oldCounts[position & oldMask];
+            siteRefBases[position & windowMask] = oldRefBases[position & oldMask];
+            siteContexts[position & windowMask] = oldContexts[position & oldMask];
+        }
+    }
+
+    /**
+     * Gives the counts of the sites before the given position, which no later read can cover, to the calculators.
+     */
+    void finishSitesBefore(final int position) {
+        final int end = Math.min(position, windowEnd);
+        for (int site = windowStart; site < end; site++) {
+            final int index = site & windowMask;
+            final Counts counts = siteCounts[index];
+            if (counts.total() > 0) {
+                calculators[siteContexts[index]].accept(counts, siteRefBases[index]);
+                counts.clear();
+            }
+        }
+        windowStart = Math.max(windowStart, position);
+        windowEnd = Math.max(windowEnd, windowStart);
+    }
+
+    /**
+     * Gives the counts of all the sites to the calculators, at the end of a contig.
+     */
+    void finishSites() {
+        finishSitesBefore(windowEnd);
+        windowStart = 0;
+        windowEnd = 0;
+    }
+}
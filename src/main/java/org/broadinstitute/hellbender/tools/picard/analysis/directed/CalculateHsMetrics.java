@@ -60,7 +60,8 @@ public final class CalculateHsMetrics extends CollectTargetedMetrics<HsMetrics,
                                               final File perTargetCoverage,
                                               final IntervalList targetIntervals,
                                               final IntervalList probeIntervals,
-                                              final String probeSetName) {
-        return new HsMetricCollector(accumulationLevels, samRgRecords, refFile, perTargetCoverage, targetIntervals, probeIntervals, probeSetName);
+                                              final String probeSetName,
+                                              final boolean sweepSortedInput) {
+        return new HsMetricCollector(accumulationLevels, samRgRecords, refFile, perTargetCoverage, targetIntervals, probeIntervals, probeSetName, sweepSortedInput);
     }
 }
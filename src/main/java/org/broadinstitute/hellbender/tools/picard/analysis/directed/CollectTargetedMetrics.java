@@ -1,5 +1,6 @@
 package org.broadinstitute.hellbender.tools.picard.analysis.directed;
 
+import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SamReader;
@@ -14,6 +15,7 @@ import htsjdk.samtools.util.SequenceUtil;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.PicardCommandLineProgram;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.metrics.MetricAccumulationLevel;
 import org.broadinstitute.hellbender.metrics.MultiLevelMetrics;
 import org.broadinstitute.hellbender.utils.runtime.ProgressLogger;
@@ -42,6 +44,7 @@ public abstract class CollectTargetedMetrics<METRIC extends MultiLevelMetrics, C
      * A factory method for the TargetMetricsCollector to use this time.  Examples of TargetMetricsCollector:
      * (TargetedPcrMetricsCollector, HsMetricsCalculator)
      *
+     * @param sweepSortedInput whether the collector should sweep along the targets, as the input is coordinate sorted
      * @return A TargetMetricsCollector to which we will pass SAMRecords
      */
     protected abstract COLLECTOR makeCollector(final Set<MetricAccumulationLevel> accumulationLevels,
@@ -50,7 +53,8 @@ public abstract class CollectTargetedMetrics<METRIC extends MultiLevelMetrics, C
                                                final File perTargetCoverage,
                                                final IntervalList targetIntervals,
                                                final IntervalList probeIntervals,
-                                               final String probeSetName);
+                                               final String probeSetName,
+                                               final boolean sweepSortedInput);
 
     @Argument(shortName = "TI", doc = "An interval list file that contains the locations of the targets.")
     public List<File> TARGET_INTERVALS;
@@ -69,6 +73,10 @@ public abstract class CollectTargetedMetrics<METRIC extends MultiLevelMetrics, C
     @Argument(optional = true, doc = "An optional file to output per target coverage information to.")
     public File PER_TARGET_COVERAGE;
 
+    @Argument(doc = "If true, the input must be coordinate sorted, and the targets are swept along with the reads, so that " +
+            "the per-base coverage of a target is only kept while the reads are over it, rather than for all the targets.")
+    public boolean USE_SORTED_SWEEP = false;
+
     /**
      * Asserts that files are readable and writable and then fires off an
      * HsMetricsCalculator instance to do the real work.
@@ -91,6 +99,11 @@ public abstract class CollectTargetedMetrics<METRIC extends MultiLevelMetrics, C
                 getProbeIntervals().getHeader().getSequenceDictionary()
         );
 
+        if (USE_SORTED_SWEEP && reader.getFileHeader().getSortOrder() != SAMFileHeader.SortOrder.coordinate) {
+            throw new UserException.BadInput("USE_SORTED_SWEEP needs a coordinate sorted input, but the sort order of " +
+                    INPUT.getAbsolutePath() + " is " + reader.getFileHeader().getSortOrder());
+        }
+
         ReferenceSequenceFile ref = null;
         if (REFERENCE_SEQUENCE != null) {
             IOUtil.assertFileIsReadable(REFERENCE_SEQUENCE);
@@ -108,7 +121,8 @@ public abstract class CollectTargetedMetrics<METRIC extends MultiLevelMetrics, C
                 PER_TARGET_COVERAGE,
                 targetIntervals,
                 getProbeIntervals(),
-                getProbeSetName()
+                getProbeSetName(),
+                USE_SORTED_SWEEP
         );
 
         final ProgressLogger progress = new ProgressLogger(logger);
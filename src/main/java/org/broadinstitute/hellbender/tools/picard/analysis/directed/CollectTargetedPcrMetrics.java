@@ -54,7 +54,8 @@ public final class CollectTargetedPcrMetrics extends CollectTargetedMetrics<Targ
                                                         final File perTargetCoverage,
                                                         final IntervalList targetIntervals,
                                                         final IntervalList probeIntervals,
-                                                        final String probeSetName) {
-        return new TargetedPcrMetricsCollector(accumulationLevels, samRgRecords, refFile, perTargetCoverage, targetIntervals, probeIntervals, probeSetName);
+                                                        final String probeSetName,
+                                                        final boolean sweepSortedInput) {
+        return new TargetedPcrMetricsCollector(accumulationLevels, samRgRecords, refFile, perTargetCoverage, targetIntervals, probeIntervals, probeSetName, sweepSortedInput);
     }
 }
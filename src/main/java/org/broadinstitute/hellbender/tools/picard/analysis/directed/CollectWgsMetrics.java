@@ -4,6 +4,8 @@ import htsjdk.samtools.AlignmentBlock;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.filter.AggregateFilter;
+import htsjdk.samtools.filter.FilteringSamIterator;
 import htsjdk.samtools.filter.SamRecordFilter;
 import htsjdk.samtools.filter.SecondaryAlignmentFilter;
 import htsjdk.samtools.metrics.MetricBase;
@@ -64,6 +66,10 @@ public final class CollectWgsMetrics extends PicardCommandLineProgram {
     @Argument(doc = "Determines whether to include the base quality histogram in the metrics file.")
     public boolean INCLUDE_BQ_HISTOGRAM = false;
 
+    @Argument(doc = "If true, count the coverage from the aligned blocks of the reads rather than from the pileup at each locus, " +
+            "which is much faster and gives the same metrics. Requires a coordinate-sorted input.")
+    public boolean USE_FAST_ALGORITHM = false;
+
     /** Metrics for evaluating the performance of whole genome sequencing experiments. */
     public static class WgsMetrics extends MetricBase {
         /** The number of non-N bases in the genome reference over which coverage will be evaluated. */
@@ -136,7 +142,6 @@ public final class CollectWgsMetrics extends PicardCommandLineProgram {
             SequenceUtil.assertSequenceDictionariesEqual(in.getFileHeader().getSequenceDictionary(), refWalker.getSequenceDictionary());
         }
 
-        final SamLocusIterator iterator = new SamLocusIterator(in);
         final List<SamRecordFilter> filters = new ArrayList<>();
         final CountingFilter dupeFilter = new CountingDuplicateFilter();
         final CountingFilter mapqFilter = new CountingMapQFilter(MINIMUM_MAPPING_QUALITY);
@@ -145,11 +150,6 @@ public final class CollectWgsMetrics extends PicardCommandLineProgram {
         filters.add(dupeFilter);
         filters.add(pairFilter);
         filters.add(new SecondaryAlignmentFilter()); // Not a counting filter because we never want to count reads twice
-        iterator.setSamFilters(filters);
-        iterator.setEmitUncoveredLoci(true);
-        iterator.setMappingQualityScoreCutoff(0); // Handled separately because we want to count bases
-        iterator.setQualityScoreCutoff(0);        // Handled separately because we want to count bases
-        iterator.setIncludeNonPfReads(false);
 
         final int max = COVERAGE_CAP;
         final long[] HistogramArray = new long[max + 1];
@@ -162,35 +162,50 @@ public final class CollectWgsMetrics extends PicardCommandLineProgram {
         long basesExcludedByOverlap = 0;
         long basesExcludedByCapping = 0;
 
-        // Loop through all the loci
-        while (iterator.hasNext()) {
-            final SamLocusIterator.LocusInfo info = iterator.next();
-
-            // Check that the reference is not N
-            final ReferenceSequence ref = refWalker.get(info.getSequenceIndex());
-            final byte base = ref.getBases()[info.getPosition() - 1];
-            if (base == 'N') continue;
-
-            // Figure out the coverage while not counting overlapping reads twice, and excluding various things
-            final Set<String> readNames = new HashSet<>(info.getRecordAndPositions().size());
-            int pileupSize = 0;
-            for (final SamLocusIterator.RecordAndOffset recs : info.getRecordAndPositions()) {
-
-                if (recs.getBaseQuality() < MINIMUM_BASE_QUALITY)                   { ++basesExcludedByBaseq;   continue; }
-                if (!readNames.add(recs.getRecord().getReadName()))                 { ++basesExcludedByOverlap; continue; }
-                pileupSize++;
-                if (pileupSize <= max) {
-                    baseQHistogramArray[recs.getRecord().getBaseQualities()[recs.getOffset()]]++;
+        if (USE_FAST_ALGORITHM) {
+            final FastWgsCoverageCounter coverageCounter = new FastWgsCoverageCounter(MINIMUM_BASE_QUALITY, max, HistogramArray, baseQHistogramArray, STOP_AFTER);
+            coverageCounter.countCoverage(new FilteringSamIterator(in.iterator(), new AggregateFilter(filters)), refWalker, in.getFileHeader().getSequenceDictionary(), progress);
+            basesExcludedByBaseq = coverageCounter.getBasesExcludedByBaseq();
+            basesExcludedByOverlap = coverageCounter.getBasesExcludedByOverlap();
+            basesExcludedByCapping = coverageCounter.getBasesExcludedByCapping();
+        } else {
+            final SamLocusIterator iterator = new SamLocusIterator(in);
+            iterator.setSamFilters(filters);
+            iterator.setEmitUncoveredLoci(true);
+            iterator.setMappingQualityScoreCutoff(0); // Handled separately because we want to count bases
+            iterator.setQualityScoreCutoff(0);        // Handled separately because we want to count bases
+            iterator.setIncludeNonPfReads(false);
+
+            // Loop through all the loci
+            while (iterator.hasNext()) {
+                final SamLocusIterator.LocusInfo info = iterator.next();
+
+                // Check that the reference is not N
+                final ReferenceSequence ref = refWalker.get(info.getSequenceIndex());
+                final byte base = ref.getBases()[info.getPosition() - 1];
+                if (base == 'N') continue;
+
+                // Figure out the coverage while not counting overlapping reads twice, and excluding various things
+                final Set<String> readNames = new HashSet<>(info.getRecordAndPositions().size());
+                int pileupSize = 0;
+                for (final SamLocusIterator.RecordAndOffset recs : info.getRecordAndPositions()) {
+
+                    if (recs.getBaseQuality() < MINIMUM_BASE_QUALITY)                   { ++basesExcludedByBaseq;   continue; }
+                    if (!readNames.add(recs.getRecord().getReadName()))                 { ++basesExcludedByOverlap; continue; }
+                    pileupSize++;
+                    if (pileupSize <= max) {
+                        baseQHistogramArray[recs.getRecord().getBaseQualities()[recs.getOffset()]]++;
+                    }
                 }
-            }
 
-            final int depth = Math.min(readNames.size(), max);
-            if (depth < readNames.size()) basesExcludedByCapping += readNames.size() - max;
-            HistogramArray[depth]++;
+                final int depth = Math.min(readNames.size(), max);
+                if (depth < readNames.size()) basesExcludedByCapping += readNames.size() - max;
+                HistogramArray[depth]++;
 
-            // Record progress and perhaps stop
-            progress.record(info.getSequenceName(), info.getPosition());
-            if (usingStopAfter && ++counter > stopAfter) break;
+                // Record progress and perhaps stop
+                progress.record(info.getSequenceName(), info.getPosition());
+                if (usingStopAfter && ++counter > stopAfter) break;
+            }
         }
 
         // Construct and write the outputs
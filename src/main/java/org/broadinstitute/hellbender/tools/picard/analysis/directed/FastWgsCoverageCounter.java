@@ -0,0 +1,265 @@
+package org.broadinstitute.hellbender.tools.picard.analysis.directed;
+
+import htsjdk.samtools.AlignmentBlock;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.reference.ReferenceSequenceFileWalker;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.runtime.ProgressLogger;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Counts the coverage histogram and the base quality histogram of {@link CollectWgsMetrics} from the reads directly,
+ * rather than from the pileups of a {@link htsjdk.samtools.util.SamLocusIterator}.
+ *
+ * The bases of each read that pass the base quality filter are added to the depths in a window of positions, which
+ * are added to the coverage histogram as the reads go past them. A base is not counted if an earlier alignment with
+ * the same name (the mate, or another part of a chimeric alignment) counted a base at the same position, so only the
+ * alignments that may overlap a later one keep the positions they counted, until the reads go past their end.
+ *
+ * The counts are the same as the locus iterator gives for coordinate-sorted reads, which must have passed the filters
+ * of CollectWgsMetrics.
+ */
+final class FastWgsCoverageCounter {
+    private static final int INITIAL_WINDOW_SIZE = 1 << 16;
+
+    private final int minimumBaseQuality;
+    private final int coverageCap;
+    private final long[] depthHistogram;
+    private final long[] baseQHistogram;
+    private final long stopAfter;
+
+    private long basesExcludedByBaseq = 0;
+    private long basesExcludedByOverlap = 0;
+    private long basesExcludedByCapping = 0;
+    private long lociCounted = 0;
+    private boolean stopped = false;
+
+    // the contig that we are in, and its bases
+    private int contigIndex = -1;
+    private String contigName;
+    private byte[] contigBases;
+
+    // the uncapped depths of the positions from windowStart on, indexed by position modulo the size of the window
+    private int[] window = new int[INITIAL_WINDOW_SIZE];
+    private int windowStart;
+
+    // the alignments that a later alignment with the same name may overlap, by name and by end
+    private final Map<String, List<CountedAlignment>> countedByName = new HashMap<>();
+    private final PriorityQueue<CountedAlignment> countedByEnd = new PriorityQueue<>(Comparator.comparingInt(alignment -> alignment.end));
+
+    /**
+     * @param depthHistogram the histogram of capped depths to add to, of size coverageCap + 1
+     * @param baseQHistogram the histogram of the qualities of the counted bases to add to
+     * @param stopAfter the number of loci to stop after, or a non-positive number to go through the whole genome
+     */
+    FastWgsCoverageCounter(final int minimumBaseQuality, final int coverageCap, final long[] depthHistogram, final long[] baseQHistogram, final long stopAfter) {
+        this.minimumBaseQuality = minimumBaseQuality;
+        this.coverageCap = coverageCap;
+        this.depthHistogram = depthHistogram;
+        this.baseQHistogram = baseQHistogram;
+        this.stopAfter = stopAfter;
+    }
+
+    long getBasesExcludedByBaseq() { return basesExcludedByBaseq; }
+
+    long getBasesExcludedByOverlap() { return basesExcludedByOverlap; }
+
+    long getBasesExcludedByCapping() { return basesExcludedByCapping; }
+
+    /**
+     * Counts the coverage of every locus of the sequences of the dictionary that is not an N in the reference.
+     * @param reads the filtered reads, in coordinate order; unmapped reads and reads that fail the vendor quality check are skipped
+     */
+    void countCoverage(final Iterator<SAMRecord> reads, final ReferenceSequenceFileWalker refWalker,
+                       final SAMSequenceDictionary dictionary, final ProgressLogger progress) {
+        while (reads.hasNext() && !stopped) {
+            final SAMRecord read = reads.next();
+            if (read.getReadUnmappedFlag() || read.getReadFailsVendorQualityCheckFlag()) {
+                continue;
+            }
+            if (read.getReferenceIndex() < contigIndex || read.getReferenceIndex() == contigIndex && read.getAlignmentStart() < windowStart) {
+                throw new UserException.BadInput("The reads must be sorted by coordinate, but " + read.getReadName() + " is out of order");
+            }
+            while (contigIndex < read.getReferenceIndex() && !stopped) {
+                nextContig(refWalker, progress);
+            }
+            countLociBefore(read.getAlignmentStart(), progress);
+            if (!stopped) {
+                addRead(read);
+            }
+        }
+        while (!stopped) {
+            countLociBefore(contigIndex == -1 ? 1 : contigBases.length + 1, progress);
+            if (stopped || contigIndex + 1 >= dictionary.size()) {
+                break;
+            }
+            nextContig(refWalker, progress);
+        }
+    }
+
+    /**
+     * Counts the rest of the loci of the contig we are in, if any, and moves to the next one.
+     */
+    private void nextContig(final ReferenceSequenceFileWalker refWalker, final ProgressLogger progress) {
+        if (contigIndex != -1) {
+            countLociBefore(contigBases.length + 1, progress);
+            if (stopped) {
+                return;
+            }
+        }
+        contigIndex++;
+        contigName = refWalker.getSequenceDictionary().getSequence(contigIndex).getSequenceName();
+        contigBases = refWalker.get(contigIndex).getBases();
+        windowStart = 1;
+        countedByName.clear();
+        countedByEnd.clear();
+    }
+
+    /**
+     * Adds the loci of the contig before the given position, which no later read covers, to the coverage histogram.
+     */
+    private void countLociBefore(final int position, final ProgressLogger progress) {
+        if (contigIndex == -1) {
+            return;
+        }
+        final int end = Math.min(position, contigBases.length + 1);
+        final int mask = window.length - 1;
+        for (; windowStart < end; windowStart++) {
+            final int index = windowStart & mask;
+            final int depth = window[index];
+            window[index] = 0;
+            if (contigBases[windowStart - 1] == 'N') {
+                continue;
+            }
+            if (depth > coverageCap) {
+                basesExcludedByCapping += depth - coverageCap;
+                depthHistogram[coverageCap]++;
+            } else {
+                depthHistogram[depth]++;
+            }
+            progress.record(contigName, windowStart);
+            if (stopAfter > 0 && ++lociCounted >= stopAfter) {
+                windowStart++;
+                stopped = true;
+                return;
+            }
+        }
+    }
+
+    private void addRead(final SAMRecord read) {
+        while (!countedByEnd.isEmpty() && countedByEnd.peek().end < read.getAlignmentStart()) {
+            final CountedAlignment expired = countedByEnd.poll();
+            final List<CountedAlignment> sameName = countedByName.get(expired.name);
+            sameName.remove(expired);
+            if (sameName.isEmpty()) {
+                countedByName.remove(expired.name);
+            }
+        }
+        final List<CountedAlignment> earlier = countedByName.isEmpty() ? null : countedByName.get(read.getReadName());
+        final CountedAlignment counted = mayBeOverlappedLater(read) ? new CountedAlignment(read) : null;
+
+        ensureWindowCovers(read.getAlignmentEnd());
+        final int mask = window.length - 1;
+        final byte[] qualities = read.getBaseQualities();
+        for (final AlignmentBlock block : read.getAlignmentBlocks()) {
+            final int blockEnd = Math.min(block.getReferenceStart() + block.getLength() - 1, contigBases.length);
+            for (int position = block.getReferenceStart(), offset = block.getReadStart() - 1; position <= blockEnd; position++, offset++) {
+                if (contigBases[position - 1] == 'N') {
+                    continue;
+                }
+                final byte quality = qualities[offset];
+                if (quality < minimumBaseQuality) {
+                    basesExcludedByBaseq++;
+                    continue;
+                }
+                if (earlier != null && isCounted(earlier, position)) {
+                    basesExcludedByOverlap++;
+                    continue;
+                }
+                if (counted != null) {
+                    counted.positions.set(position - counted.start);
+                }
+                // only the first bases up to the cap go into the base quality histogram
+                if (++window[position & mask] <= coverageCap) {
+                    baseQHistogram[quality]++;
+                }
+            }
+        }
+
+        if (counted != null) {
+            countedByName.computeIfAbsent(counted.name, name -> new ArrayList<>(2)).add(counted);
+            countedByEnd.add(counted);
+        }
+    }
+
+    /**
+     * @return true if a later read, in coordinate order, with the same name may overlap this one: a mate that starts
+     * within the read, or another part of a chimeric alignment
+     */
+    private static boolean mayBeOverlappedLater(final SAMRecord read) {
+        if (read.getAttribute(SAMTag.SA.name()) != null) {
+            return true;
+        }
+        return read.getReadPairedFlag() && !read.getMateUnmappedFlag() &&
+                read.getReferenceIndex().equals(read.getMateReferenceIndex()) &&
+                read.getMateAlignmentStart() >= read.getAlignmentStart() &&
+                read.getMateAlignmentStart() <= read.getAlignmentEnd();
+    }
+
+    private static boolean isCounted(final List<CountedAlignment> alignments, final int position) {
+        for (final CountedAlignment alignment : alignments) {
+            if (position >= alignment.start && position <= alignment.end && alignment.positions.get(position - alignment.start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Grows the window, if need be, so that it holds the positions from windowStart to the given position.
+     */
+    private void ensureWindowCovers(final int position) {
+        final long size = (long) position - windowStart + 1;
+        if (size <= window.length) {
+            return;
+        }
+        int newLength = window.length;
+        while (newLength < size) {
+            newLength <<= 1;
+        }
+        final int[] newWindow = new int[newLength];
+        final int mask = window.length - 1;
+        final int newMask = newLength - 1;
+        for (int p = windowStart; p < windowStart + window.length; p++) {
+            newWindow[p & newMask] = window[p & mask];
+        }
+        window = newWindow;
+    }
+
+    /**
+     * The positions at which an alignment counted a base.
+     */
+    private static final class CountedAlignment {
+        private final String name;
+        private final int start;
+        private final int end;
+        private final BitSet positions;
+
+        CountedAlignment(final SAMRecord read) {
+            this.name = read.getReadName();
+            this.start = read.getAlignmentStart();
+            this.end = read.getAlignmentEnd();
+            this.positions = new BitSet(end - start + 1);
+        }
+    }
+}
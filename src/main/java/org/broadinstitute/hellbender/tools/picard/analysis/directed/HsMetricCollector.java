@@ -22,6 +22,10 @@ public final class HsMetricCollector extends TargetMetricsCollector<HsMetrics> {
         super(accumulationLevels, samRgRecords, refFile, perTargetCoverage, targetIntervals, probeIntervals, probeSetName);
     }
 
+    public HsMetricCollector(final Set<MetricAccumulationLevel> accumulationLevels, final List<SAMReadGroupRecord> samRgRecords, final ReferenceSequenceFile refFile, final File perTargetCoverage, final IntervalList targetIntervals, final IntervalList probeIntervals, final String probeSetName, final boolean sweepSortedInput) {
+        super(accumulationLevels, samRgRecords, refFile, perTargetCoverage, targetIntervals, probeIntervals, probeSetName, sweepSortedInput);
+    }
+
     @Override
     public HsMetrics convertMetric(final TargetMetrics targetMetrics) {
         final HsMetrics hsMetrics = new HsMetrics();
@@ -3,6 +3,7 @@ package org.broadinstitute.hellbender.tools.picard.analysis.directed;
 import htsjdk.samtools.AlignmentBlock;
 import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.metrics.MetricBase;
 import htsjdk.samtools.metrics.MetricsFile;
@@ -20,6 +21,7 @@ import htsjdk.samtools.util.StringUtil;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.metrics.MetricAccumulationLevel;
 import org.broadinstitute.hellbender.metrics.MultiLevelMetrics;
 import org.broadinstitute.hellbender.metrics.PerUnitMetricCollector;
@@ -48,6 +50,9 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
     // What is considered "near" to the bait
     private static final int NEAR_PROBE_DISTANCE = 250;
 
+    // The depths at which the PCT_TARGET_BASES_*X metrics count the target bases
+    private static final int[] DEPTH_THRESHOLDS = {2, 10, 20, 30, 40, 50, 100};
+
     //If perTargetCoverage != null then coverage is computed for each specified target and output to this file
     private final File perTargetCoverage;
 
@@ -85,6 +90,13 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
     private final Map<Interval, Coverage> coverageByTargetForRead;
     private final Coverage [] cov;
 
+    //If true, the records are coordinate sorted, and the coverage of the targets is kept only while the reads are over them
+    private final boolean sweepSortedInput;
+
+    //The unique targets, in order, and the index of the contig of each of them
+    private final List<Interval> uniqueTargets;
+    private final int[] targetContigIndices;
+
     //Converts a targetMetric into a more specific metric of METRIC_TYPE
     public abstract METRIC_TYPE convertMetric(final TargetMetrics targetMetrics);
 
@@ -156,7 +168,20 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
 
     public TargetMetricsCollector(final Set<MetricAccumulationLevel> accumulationLevels, final List<SAMReadGroupRecord> samRgRecords, final ReferenceSequenceFile refFile,
                                   final File perTargetCoverage, final IntervalList targetIntervals, final IntervalList probeIntervals, final String probeSetName) {
+        this(accumulationLevels, samRgRecords, refFile, perTargetCoverage, targetIntervals, probeIntervals, probeSetName, false);
+    }
+
+    /**
+     * @param sweepSortedInput if true, the records must be coordinate sorted, with the sequence dictionary of the targets.
+     *                         The targets that the reads are over are then found by sweeping along the sorted targets,
+     *                         rather than with an overlap detector, and the per-base coverage of a target is kept only
+     *                         from the first read that reaches it to the first read that starts past it.
+     */
+    public TargetMetricsCollector(final Set<MetricAccumulationLevel> accumulationLevels, final List<SAMReadGroupRecord> samRgRecords, final ReferenceSequenceFile refFile,
+                                  final File perTargetCoverage, final IntervalList targetIntervals, final IntervalList probeIntervals, final String probeSetName,
+                                  final boolean sweepSortedInput) {
         this.perTargetCoverage = perTargetCoverage;
+        this.sweepSortedInput = sweepSortedInput;
         this.probeSetName = probeSetName;
 
         this.allProbes  = probeIntervals;
@@ -172,11 +197,20 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
         this.targetDetector.addAll(uniqueTargets, uniqueTargets);
         this.targetTerritory = Interval.countBases(uniqueTargets);
 
-        // Populate the coverage by target map
+        this.uniqueTargets = uniqueTargets;
+        this.targetContigIndices = new int[uniqueTargets.size()];
+        final SAMSequenceDictionary targetDictionary = this.allTargets.getHeader().getSequenceDictionary();
+        for (int t = 0; t < uniqueTargets.size(); ++t) {
+            this.targetContigIndices[t] = targetDictionary.getSequenceIndex(uniqueTargets.get(t).getContig());
+        }
+
+        // Populate the coverage by target map, unless the targets are swept, in which case the per unit collectors
+        // only make the coverage of the targets that the reads are over
+        final List<Interval> coverageTargets = sweepSortedInput ? Collections.emptyList() : uniqueTargets;
         int i = 0;
-        cov = new Coverage[uniqueTargets.size()];
-        this.coverageByTargetForRead = new LinkedHashMap<>(uniqueTargets.size() * 2, 0.5f);
-        for (final Interval target : uniqueTargets) {
+        cov = new Coverage[coverageTargets.size()];
+        this.coverageByTargetForRead = new LinkedHashMap<>(coverageTargets.size() * 2, 0.5f);
+        for (final Interval target : coverageTargets) {
             final Coverage coverage = new Coverage(target, 0);
             this.coverageByTargetForRead.put(target, coverage);
             cov[i++] = coverage;
@@ -231,9 +265,20 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
         private final Map<Interval,Double> intervalToGc;
         private File perTargetOutput;
 
-        // A Map to accumulate per-bait-region (i.e. merge of overlapping targets) coverage. */
+        // The targets, in the order of the per target output
+        private final List<Interval> targets;
+
+        // A Map to accumulate per-bait-region (i.e. merge of overlapping targets) coverage, unless the targets are swept. */
         private final Map<Interval, Coverage> coverageByTarget;
 
+        // When the targets are swept, the targets that the reads have reached and not yet gone past, in order, the index
+        // of the next target to reach, and the summary of the coverage of the targets that the reads have gone past
+        private final Deque<ActiveTarget> activeTargets;
+        private int nextTarget = 0;
+        private int lastContigIndex = -1;
+        private int lastStart = 0;
+        private final TargetCoverageSummary sweptCoverage;
+
         private final TargetMetrics metrics = new TargetMetrics();
 
         /**
@@ -253,9 +298,19 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
             metrics.TARGET_TERRITORY = targetTerritory;
             metrics.GENOME_SIZE      = genomeSize;
 
-            this.coverageByTarget = new LinkedHashMap<>(coverageTargets.size() * 2, 0.5f);
-            for (Interval target : coverageTargets) {
-                this.coverageByTarget.put(target, new Coverage(target,0));
+            if (sweepSortedInput) {
+                this.targets = uniqueTargets;
+                this.coverageByTarget = null;
+                this.activeTargets = new ArrayDeque<>();
+                this.sweptCoverage = new TargetCoverageSummary(uniqueTargets.size());
+            } else {
+                this.targets = new ArrayList<>(coverageTargets);
+                this.coverageByTarget = new LinkedHashMap<>(coverageTargets.size() * 2, 0.5f);
+                for (Interval target : coverageTargets) {
+                    this.coverageByTarget.put(target, new Coverage(target,0));
+                }
+                this.activeTargets = null;
+                this.sweptCoverage = null;
             }
 
             this.intervalToGc = intervalToGc;
@@ -289,7 +344,7 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
 
             if (!rec.getReadUnmappedFlag()) {
                 final Interval read = new Interval(rec.getReferenceName(), rec.getAlignmentStart(), rec.getAlignmentEnd());
-                targets = targetDetector.getOverlaps(read);
+                targets = sweepSortedInput ? null : targetDetector.getOverlaps(read);
                 probes   = probeDetector.getOverlaps(read);
             }
             else {
@@ -329,20 +384,12 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
             final boolean mappedInPair = rec.getReadPairedFlag() && !rec.getMateUnmappedFlag();
 
             // Find the target overlaps
-            if (targets != null && !targets.isEmpty()) {
+            if (sweepSortedInput) {
+                addSweptTargetCoverage(rec, mappedInPair);
+            }
+            else if (targets != null && !targets.isEmpty()) {
                 for (final Interval target : targets) {
-                    final Coverage coverage = this.coverageByTarget.get(target);
-
-                    for (final AlignmentBlock block : rec.getAlignmentBlocks()) {
-                        final int end = CoordMath.getEnd(block.getReferenceStart(), block.getLength());
-                        for (int pos=block.getReferenceStart(); pos<=end; ++ pos) {
-                            if (pos >= target.getStart() && pos <= target.getEnd()) {
-                                ++this.metrics.ON_TARGET_BASES;
-                                if (mappedInPair) ++this.metrics.ON_TARGET_FROM_PAIR_BASES;
-                                coverage.addBase(pos - target.getStart());
-                            }
-                        }
-                    }
+                    addTargetCoverage(rec, target, this.coverageByTarget.get(target), mappedInPair);
                 }
             }
 
@@ -371,6 +418,81 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
 
         }
 
+        /** Adds the bases of the record that are in the target to its coverage. */
+        private void addTargetCoverage(final SAMRecord rec, final Interval target, final Coverage coverage, final boolean mappedInPair) {
+            for (final AlignmentBlock block : rec.getAlignmentBlocks()) {
+                final int end = CoordMath.getEnd(block.getReferenceStart(), block.getLength());
+                for (int pos=block.getReferenceStart(); pos<=end; ++ pos) {
+                    if (pos >= target.getStart() && pos <= target.getEnd()) {
+                        ++this.metrics.ON_TARGET_BASES;
+                        if (mappedInPair) ++this.metrics.ON_TARGET_FROM_PAIR_BASES;
+                        coverage.addBase(pos - target.getStart());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Moves the sweep to the start of the record, summarizing the targets that end before it, reaches the targets
+         * that start within the record, and adds the record to the coverage of the targets it is over.
+         */
+        private void addSweptTargetCoverage(final SAMRecord rec, final boolean mappedInPair) {
+            final int contigIndex = rec.getReferenceIndex();
+            final int start = rec.getAlignmentStart();
+            if (contigIndex < lastContigIndex || (contigIndex == lastContigIndex && start < lastStart)) {
+                throw new UserException.BadInput("The records must be coordinate sorted to sweep the targets, but " +
+                        rec.getReadName() + " is out of order");
+            }
+            lastContigIndex = contigIndex;
+            lastStart = start;
+
+            // the unique targets don't overlap, so the active targets end in the order they start
+            while (!activeTargets.isEmpty() && isBefore(activeTargets.peekFirst().index, contigIndex, start)) {
+                final ActiveTarget passed = activeTargets.pollFirst();
+                sweptCoverage.add(passed.index, passed.coverage);
+            }
+            while (nextTarget < uniqueTargets.size() && isBefore(nextTarget, contigIndex, start)) {
+                sweptCoverage.addUncovered(nextTarget, uniqueTargets.get(nextTarget).length());
+                ++nextTarget;
+            }
+
+            final int end = rec.getAlignmentEnd();
+            while (nextTarget < uniqueTargets.size() && targetContigIndices[nextTarget] == contigIndex &&
+                    uniqueTargets.get(nextTarget).getStart() <= end) {
+                activeTargets.addLast(new ActiveTarget(nextTarget, uniqueTargets.get(nextTarget)));
+                ++nextTarget;
+            }
+            for (final ActiveTarget active : activeTargets) {
+                if (active.target.getStart() > end) break;
+                addTargetCoverage(rec, active.target, active.coverage, mappedInPair);
+            }
+        }
+
+        /** Returns true if the target ends before the position of the contig. */
+        private boolean isBefore(final int targetIndex, final int contigIndex, final int position) {
+            return targetContigIndices[targetIndex] < contigIndex ||
+                    (targetContigIndices[targetIndex] == contigIndex && uniqueTargets.get(targetIndex).getEnd() < position);
+        }
+
+        /** Summarizes the coverage of all the targets. */
+        private TargetCoverageSummary summarizeTargetCoverage() {
+            if (sweepSortedInput) {
+                while (!activeTargets.isEmpty()) {
+                    final ActiveTarget passed = activeTargets.pollFirst();
+                    sweptCoverage.add(passed.index, passed.coverage);
+                }
+                for (; nextTarget < uniqueTargets.size(); ++nextTarget) {
+                    sweptCoverage.addUncovered(nextTarget, uniqueTargets.get(nextTarget).length());
+                }
+                return sweptCoverage;
+            }
+            final TargetCoverageSummary summary = new TargetCoverageSummary(targets.size());
+            for (int t = 0; t < targets.size(); ++t) {
+                summary.add(t, this.coverageByTarget.get(targets.get(t)));
+            }
+            return summary;
+        }
+
         @Override
         public void finish() {
             metrics.PCT_PF_READS         = metrics.PF_READS / (double) metrics.TOTAL_READS;
@@ -385,92 +507,35 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
             metrics.MEAN_PROBE_COVERAGE   = metrics.ON_PROBE_BASES / (double) metrics.PROBE_TERRITORY;
             metrics.FOLD_ENRICHMENT       = (metrics.ON_PROBE_BASES/ denominator) / ((double) metrics.PROBE_TERRITORY / metrics.GENOME_SIZE);
 
-            calculateTargetCoverageMetrics();
-            calculateGcMetrics();
+            final TargetCoverageSummary coverage = summarizeTargetCoverage();
+            calculateTargetCoverageMetrics(coverage);
+            calculateGcMetrics(coverage);
         }
 
         /** Calculates how much additional sequencing is needed to raise 80% of bases to the mean for the lane. */
-        private void calculateTargetCoverageMetrics() {
-            final short[] depths = new short[(int) this.metrics.TARGET_TERRITORY];  // may not use entire array
-            int zeroCoverageTargets = 0;
-            int depthIndex = 0;
-            double totalCoverage = 0;
-            int basesConsidered = 0;
-
-            for (final Coverage c : this.coverageByTarget.values()) {
-                if (!c.hasCoverage()) {
-                    ++zeroCoverageTargets;
-                    continue;
-                }
-
-                final short[] targetDepths = c.getDepths();
-                basesConsidered += targetDepths.length;
-
-                for (final short depth : targetDepths) {
-                    depths[depthIndex++] = depth;
-                    totalCoverage += depth;
-                }
-            }
-
-            this.metrics.MEAN_TARGET_COVERAGE = totalCoverage / basesConsidered;
-
-            // Sort the array (ASCENDING) and then find the base the coverage value that lies at the 80%
-            // line, which is actually at 20% into the array now
-            Arrays.sort(depths);
-            // Note.  basesConsidered can be between 0 and depths.length inclusive.  indexOf80thPercentile will be -1 in the latter case
-            final int indexOf80thPercentile = Math.max((depths.length - 1 - basesConsidered) + (int) (basesConsidered * 0.2), 0);
-            final int coverageAt80thPercentile = depths[indexOf80thPercentile];
+        private void calculateTargetCoverageMetrics(final TargetCoverageSummary coverage) {
+            this.metrics.MEAN_TARGET_COVERAGE = coverage.totalCoverage / (double) coverage.basesConsidered;
+
+            // Find the coverage value that lies at the 80% line of the depths of the target territory, sorted
+            // (ASCENDING), in which the bases of the targets without coverage count as 0, which is actually at 20%
+            // into the depths of the targets with coverage
+            // Note.  basesConsidered can be between 0 and the territory inclusive.  indexOf80thPercentile will be -1 in the latter case
+            final long indexOf80thPercentile = Math.max((this.metrics.TARGET_TERRITORY - 1 - coverage.basesConsidered) + (long) (coverage.basesConsidered * 0.2), 0);
+            final int coverageAt80thPercentile = coverage.getSortedDepth(indexOf80thPercentile, this.metrics.TARGET_TERRITORY);
             this.metrics.FOLD_80_BASE_PENALTY = this.metrics.MEAN_TARGET_COVERAGE / coverageAt80thPercentile;
-            this.metrics.ZERO_CVG_TARGETS_PCT = zeroCoverageTargets / (double) allTargets.getIntervals().size();
+            this.metrics.ZERO_CVG_TARGETS_PCT = coverage.zeroCoverageTargets / (double) allTargets.getIntervals().size();
 
             // Now do the "how many bases at X" calculations.
-            int totalTargetBases = 0;
-            int targetBases2x  = 0;
-            int targetBases10x = 0;
-            int targetBases20x = 0;
-	        int targetBases30x = 0;
-	        int targetBases40x = 0;
-	        int targetBases50x = 0;
-	        int targetBases100x = 0;
-
-            for (final Coverage c : this.coverageByTarget.values()) {
-                for (final short depth : c.getDepths()) {
-                    ++totalTargetBases;
-
-                    if (depth >= 2) {
-                        ++targetBases2x;
-                        if (depth >=10) {
-                            ++targetBases10x;
-                            if (depth >= 20) {
-                                ++targetBases20x;
-                                if (depth >=30) {
-                                    ++targetBases30x;
-	                                if (depth >=40) {
-		                                ++targetBases40x;
-		                                if (depth >=50) {
-			                                ++targetBases50x;
-			                                if (depth >=100) {
-				                                ++targetBases100x;
-			                                }
-		                                }
-	                                }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-
-            this.metrics.PCT_TARGET_BASES_2X  = (double) targetBases2x  / (double) totalTargetBases;
-            this.metrics.PCT_TARGET_BASES_10X = (double) targetBases10x / (double) totalTargetBases;
-            this.metrics.PCT_TARGET_BASES_20X = (double) targetBases20x / (double) totalTargetBases;
-	        this.metrics.PCT_TARGET_BASES_30X = (double) targetBases30x / (double) totalTargetBases;
-	        this.metrics.PCT_TARGET_BASES_40X = (double) targetBases40x / (double) totalTargetBases;
-	        this.metrics.PCT_TARGET_BASES_50X = (double) targetBases50x / (double) totalTargetBases;
-	        this.metrics.PCT_TARGET_BASES_100X = (double) targetBases100x / (double) totalTargetBases;
+            this.metrics.PCT_TARGET_BASES_2X  = coverage.getFractionOfBasesAtDepth(0);
+            this.metrics.PCT_TARGET_BASES_10X = coverage.getFractionOfBasesAtDepth(1);
+            this.metrics.PCT_TARGET_BASES_20X = coverage.getFractionOfBasesAtDepth(2);
+            this.metrics.PCT_TARGET_BASES_30X = coverage.getFractionOfBasesAtDepth(3);
+            this.metrics.PCT_TARGET_BASES_40X = coverage.getFractionOfBasesAtDepth(4);
+            this.metrics.PCT_TARGET_BASES_50X = coverage.getFractionOfBasesAtDepth(5);
+            this.metrics.PCT_TARGET_BASES_100X = coverage.getFractionOfBasesAtDepth(6);
         }
 
-        private void calculateGcMetrics() {
+        private void calculateGcMetrics(final TargetCoverageSummary coverage) {
             if (this.intervalToGc != null) {
                 log.info("Calculating GC metrics");
 
@@ -492,18 +557,18 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
                 final long[] targetBasesByGc  = new long[bins];
                 final long[] alignedBasesByGc = new long[bins];
 
-                for (final Map.Entry<Interval,Coverage> entry : this.coverageByTarget.entrySet()) {
-                    final Interval interval = entry.getKey();
-                    final Coverage cov = entry.getValue();
+                for (int t = 0; t < this.targets.size(); ++t) {
+                    final Interval interval = this.targets.get(t);
+                    final int total = coverage.totalByTarget[t];
 
                     final double gcDouble = this.intervalToGc.get(interval);
                     final int gc = (int) Math.round(gcDouble * 100);
 
                     targetBasesByGc[gc]  += interval.length();
-                    alignedBasesByGc[gc] += cov.getTotal();
+                    alignedBasesByGc[gc] += total;
 
                     if (out != null) {
-                        final double coverage = cov.getTotal() / (double) interval.length();
+                        final double meanCoverage = total / (double) interval.length();
 
                         out.println(interval.getContig() + "\t" +
                                     interval.getStart() + "\t" +
@@ -511,8 +576,8 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
                                     interval.length() + "\t" +
                                     interval.getName() + "\t" +
                                     fmt.format(gcDouble) + "\t" +
-                                    fmt.format(coverage) + "\t" +
-                                    fmt.format(coverage / this.metrics.MEAN_TARGET_COVERAGE)
+                                    fmt.format(meanCoverage) + "\t" +
+                                    fmt.format(meanCoverage / this.metrics.MEAN_TARGET_COVERAGE)
                         );
                     }
                 }
@@ -550,6 +615,90 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
         }
     }
 
+    /** A target that the sweep has reached, with its coverage. */
+    private static final class ActiveTarget {
+        private final int index;
+        private final Interval target;
+        private final Coverage coverage;
+
+        ActiveTarget(final int index, final Interval target) {
+            this.index = index;
+            this.target = target;
+            this.coverage = new Coverage(target, 0);
+        }
+    }
+
+    /**
+     * What the metrics need of the depths of the targets, to which the coverage of the targets is added one target at
+     * a time, so that the depths of a target can be dropped once they have been added.
+     */
+    private static final class TargetCoverageSummary {
+        // The number of bases at each depth, their total and their sum, of the targets with coverage (see Coverage.hasCoverage)
+        private final long[] basesConsideredByDepth = new long[Short.MAX_VALUE + 1];
+        private long basesConsidered = 0;
+        private long totalCoverage = 0;
+        private int zeroCoverageTargets = 0;
+
+        // The number of bases of all the targets, and of those at the depth of each of DEPTH_THRESHOLDS or more
+        private long totalTargetBases = 0;
+        private final long[] targetBasesAtDepth = new long[DEPTH_THRESHOLDS.length];
+
+        // The total coverage of each target
+        private final int[] totalByTarget;
+
+        TargetCoverageSummary(final int numTargets) {
+            this.totalByTarget = new int[numTargets];
+        }
+
+        void add(final int targetIndex, final Coverage coverage) {
+            final short[] depths = coverage.getDepths();
+            final boolean hasCoverage = coverage.hasCoverage();
+            if (!hasCoverage) {
+                ++zeroCoverageTargets;
+            }
+            for (final short depth : depths) {
+                if (hasCoverage) {
+                    ++basesConsideredByDepth[depth];
+                    totalCoverage += depth;
+                }
+                for (int i = 0; i < DEPTH_THRESHOLDS.length && depth >= DEPTH_THRESHOLDS[i]; ++i) {
+                    ++targetBasesAtDepth[i];
+                }
+            }
+            if (hasCoverage) {
+                basesConsidered += depths.length;
+            }
+            totalTargetBases += depths.length;
+            totalByTarget[targetIndex] = coverage.getTotal();
+        }
+
+        /** Adds a target that no read is over. */
+        void addUncovered(final int targetIndex, final int length) {
+            ++zeroCoverageTargets;
+            totalTargetBases += length;
+            totalByTarget[targetIndex] = 0;
+        }
+
+        /**
+         * Returns the depth at the index into the depths of the territory sorted in ascending order, in which the
+         * bases that are not considered (see above) are at depth 0.
+         */
+        int getSortedDepth(final long index, final long territory) {
+            long remaining = index - (territory - basesConsidered);
+            for (int depth = 0; depth < basesConsideredByDepth.length && remaining >= 0; ++depth) {
+                if (remaining < basesConsideredByDepth[depth]) {
+                    return depth;
+                }
+                remaining -= basesConsideredByDepth[depth];
+            }
+            return 0;
+        }
+
+        double getFractionOfBasesAtDepth(final int thresholdIndex) {
+            return (double) targetBasesAtDepth[thresholdIndex] / (double) totalTargetBases;
+        }
+    }
+
     /**
      * A simple class that is used to store the coverage information about an interval.
      *
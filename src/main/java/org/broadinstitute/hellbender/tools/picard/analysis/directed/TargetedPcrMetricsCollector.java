@@ -22,6 +22,10 @@ public final class TargetedPcrMetricsCollector extends TargetMetricsCollector<Ta
         super(accumulationLevels, samRgRecords, refFile, perTargetCoverage, targetIntervals, probeIntervals, probeSetName);
     }
 
+    public TargetedPcrMetricsCollector(final Set<MetricAccumulationLevel> accumulationLevels, final List<SAMReadGroupRecord> samRgRecords, final ReferenceSequenceFile refFile, final File perTargetCoverage, final IntervalList targetIntervals, final IntervalList probeIntervals, final String probeSetName, final boolean sweepSortedInput) {
+        super(accumulationLevels, samRgRecords, refFile, perTargetCoverage, targetIntervals, probeIntervals, probeSetName, sweepSortedInput);
+    }
+
     @Override
     public TargetedPcrMetrics convertMetric(TargetMetrics targetMetrics) {
         final TargetedPcrMetrics pcrMetrics = new TargetedPcrMetrics();
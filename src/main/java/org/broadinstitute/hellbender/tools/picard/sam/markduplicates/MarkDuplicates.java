@@ -55,6 +55,18 @@ public final class MarkDuplicates extends AbstractMarkDuplicatesCommandLineProgr
     @Argument(doc = "Report Memory Stats at various times during the run")
     public boolean reportMemoryStats = false;
 
+    @Argument(doc = "If true, mark duplicates in a single pass over the input, resolving each set of duplicates within a sliding " +
+            "genomic window instead of sorting the read ends on disk and reading the input twice. The input must be coordinate " +
+            "sorted and have mate cigar (MC) tags on all paired records whose mate is mapped (see RevertOriginalBaseQualitiesAndAddMateCigar).",
+            optional = true)
+    public boolean STREAMING_WITH_MATE_CIGAR = false;
+
+    @Argument(doc = "Only used with STREAMING_WITH_MATE_CIGAR. The maximum distance between the alignment start and the unclipped 5' " +
+            "position of any record, which determines how far the records are buffered. Set this number to -1 to use twice " +
+            "the length of the first mapped read (or 100, whichever is larger).",
+            optional = true)
+    public int MINIMUM_DISTANCE = -1;
+
 
     private SortingCollection<ReadEndsForMarkDuplicates> pairSort;
     private SortingCollection<ReadEndsForMarkDuplicates> fragSort;
@@ -78,6 +90,10 @@ public final class MarkDuplicates extends AbstractMarkDuplicatesCommandLineProgr
         IOUtil.assertFileIsWritable(OUTPUT);
         IOUtil.assertFileIsWritable(METRICS_FILE);
 
+        if (STREAMING_WITH_MATE_CIGAR) {
+            return doWorkInSinglePass();
+        }
+
         reportMemoryStats("Start of doWork");
         logger.info("Reading input file and constructing read end information.");
         buildSortedReadEndLists();
@@ -113,34 +129,9 @@ public final class MarkDuplicates extends AbstractMarkDuplicatesCommandLineProgr
                     while (iterator.hasNext()) {
                         final SAMRecord rec = iterator.next();
                         if (!rec.isSecondaryOrSupplementary()) {
-                            final String library = LibraryIdGenerator.getLibraryName(header, rec);
-                            DuplicationMetrics metrics = libraryIdGenerator.getMetricsByLibrary(library);
-                            if (metrics == null) {
-                                metrics = new DuplicationMetrics();
-                                metrics.LIBRARY = library;
-                                libraryIdGenerator.addMetricsByLibrary(library, metrics);
-                            }
-
-                            // First bring the simple metrics up to date
-                            if (rec.getReadUnmappedFlag()) {
-                                ++metrics.UNMAPPED_READS;
-                            } else if (!rec.getReadPairedFlag() || rec.getMateUnmappedFlag()) {
-                                ++metrics.UNPAIRED_READS_EXAMINED;
-                            } else {
-                                ++metrics.READ_PAIRS_EXAMINED; // will need to be divided by 2 at the end
-                            }
-
-
                             if (recordInFileIndex == nextDuplicateIndex) {
                                 rec.setDuplicateReadFlag(true);
 
-                                // Update the duplication metrics
-                                if (!rec.getReadPairedFlag() || rec.getMateUnmappedFlag()) {
-                                    ++metrics.UNPAIRED_READ_DUPLICATES;
-                                } else {
-                                    ++metrics.READ_PAIR_DUPLICATES;// will need to be divided by 2 at the end
-                                }
-
                                 // Now try and figure out the next duplicate index
                                 if (this.duplicateIndexes.hasNext()) {
                                     nextDuplicateIndex = this.duplicateIndexes.next();
@@ -154,13 +145,7 @@ public final class MarkDuplicates extends AbstractMarkDuplicatesCommandLineProgr
                         }
                         recordInFileIndex++;
 
-                        if (!this.REMOVE_DUPLICATES || !rec.getDuplicateReadFlag()) {
-                            if (PROGRAM_RECORD_ID != null) {
-                                rec.setAttribute(SAMTag.PG.name(), chainedPgIds.get(rec.getStringAttribute(SAMTag.PG.name())));
-                            }
-                            out.addAlignment(rec);
-                            progress.record(rec);
-                        }
+                        updateMetricsAndWrite(header, rec, out, chainedPgIds, progress);
                     }
                 }
                 this.duplicateIndexes.cleanup();
@@ -176,6 +161,104 @@ public final class MarkDuplicates extends AbstractMarkDuplicatesCommandLineProgr
         return null;
     }
 
+    /**
+     * Marks duplicates in a single pass over the input, see {@link MateCigarDuplicateMarker}.
+     */
+    private Object doWorkInSinglePass() {
+        logger.info("Marking duplicates in a single pass using mate cigars.");
+        try (final SamHeaderAndIterator headerAndIterator = openInputs()) {
+            final SAMFileHeader header = headerAndIterator.header;
+            this.libraryIdGenerator = new LibraryIdGenerator(header);
+
+            final SAMFileHeader outputHeader = ReadUtils.cloneSAMFileHeader(header);
+            outputHeader.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+            for (final String comment : COMMENT) outputHeader.addComment(comment);
+
+            // The records can't be examined before the header is written, so chain a new PG record to every PG record
+            // in the header, and to records without a PG tag.
+            if (PROGRAM_RECORD_ID != null) {
+                pgIdsSeen.add(null);
+                for (final SAMProgramRecord programRecord : header.getProgramRecords()) {
+                    pgIdsSeen.add(programRecord.getId());
+                }
+            }
+            final Map<String, String> chainedPgIds = getChainedPgIds(outputHeader);
+
+            try (final SAMFileWriter out = createSAMWriter(OUTPUT, REFERENCE_SEQUENCE, outputHeader, true)) {
+                final ProgressLogger progress = new ProgressLogger(logger, (int) 1e7, "Written");
+                final MateCigarDuplicateMarker marker = new MateCigarDuplicateMarker(libraryIdGenerator,
+                        this.opticalDuplicatesArgumentCollection.READ_NAME_REGEX == null ? null : opticalDuplicateFinder,
+                        DUPLICATE_SCORING_STRATEGY, MINIMUM_DISTANCE,
+                        (index, rec) -> buildReadEnds(header, index, rec),
+                        rec -> updateMetricsAndWrite(header, rec, out, chainedPgIds, progress));
+
+                try (final CloseableIterator<SAMRecord> iterator = headerAndIterator.iterator) {
+                    while (iterator.hasNext()) {
+                        marker.add(iterator.next());
+                    }
+                }
+                marker.finish();
+
+                logger.info("Marked " + marker.getNumDuplicates() + " records as duplicates. " + marker.getNumPairsWaitingForMate() + " pairs never matched.");
+                reportMemoryStats("Before output close");
+            }
+            reportMemoryStats("After output close");
+        }
+
+        if (this.opticalDuplicatesArgumentCollection.READ_NAME_REGEX == null) {
+            logger.warn("Skipped optical duplicate cluster discovery; library size estimation may be inaccurate!");
+        } else {
+            logger.info("Found " + (this.libraryIdGenerator.getNumberOfOpticalDuplicateClusters()) + " optical duplicate clusters.");
+        }
+
+        finalizeAndWriteMetrics(libraryIdGenerator);
+
+        return null;
+    }
+
+    /**
+     * Updates the duplication metrics for a record whose duplicate flag is final, and writes it to the output
+     * unless it is a duplicate that should be removed.
+     */
+    private void updateMetricsAndWrite(final SAMFileHeader header, final SAMRecord rec, final SAMFileWriter out,
+                                       final Map<String, String> chainedPgIds, final ProgressLogger progress) {
+        if (!rec.isSecondaryOrSupplementary()) {
+            final String library = LibraryIdGenerator.getLibraryName(header, rec);
+            DuplicationMetrics metrics = libraryIdGenerator.getMetricsByLibrary(library);
+            if (metrics == null) {
+                metrics = new DuplicationMetrics();
+                metrics.LIBRARY = library;
+                libraryIdGenerator.addMetricsByLibrary(library, metrics);
+            }
+
+            // First bring the simple metrics up to date
+            if (rec.getReadUnmappedFlag()) {
+                ++metrics.UNMAPPED_READS;
+            } else if (!rec.getReadPairedFlag() || rec.getMateUnmappedFlag()) {
+                ++metrics.UNPAIRED_READS_EXAMINED;
+            } else {
+                ++metrics.READ_PAIRS_EXAMINED; // will need to be divided by 2 at the end
+            }
+
+            if (rec.getDuplicateReadFlag()) {
+                // Update the duplication metrics
+                if (!rec.getReadPairedFlag() || rec.getMateUnmappedFlag()) {
+                    ++metrics.UNPAIRED_READ_DUPLICATES;
+                } else {
+                    ++metrics.READ_PAIR_DUPLICATES;// will need to be divided by 2 at the end
+                }
+            }
+        }
+
+        if (!this.REMOVE_DUPLICATES || !rec.getDuplicateReadFlag()) {
+            if (PROGRAM_RECORD_ID != null) {
+                rec.setAttribute(SAMTag.PG.name(), chainedPgIds.get(rec.getStringAttribute(SAMTag.PG.name())));
+            }
+            out.addAlignment(rec);
+            progress.record(rec);
+        }
+    }
+
     @VisibleForTesting
     long numOpticalDuplicates() { return ((long) this.libraryIdGenerator.getOpticalDuplicatesByLibraryIdMap().getSumOfValues()); } // cast as long due to returning a double
 
@@ -0,0 +1,385 @@
+package org.broadinstitute.hellbender.tools.picard.sam.markduplicates;
+
+import htsjdk.samtools.DuplicateScoringStrategy;
+import htsjdk.samtools.ReservedTagConstants;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMUtils;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.read.markduplicates.AbstractMarkDuplicatesCommandLineProgram;
+import org.broadinstitute.hellbender.utils.read.markduplicates.LibraryIdGenerator;
+import org.broadinstitute.hellbender.utils.read.markduplicates.OpticalDuplicateFinder;
+import org.broadinstitute.hellbender.utils.read.markduplicates.ReadEnds;
+import org.broadinstitute.hellbender.utils.read.markduplicates.ReadEndsForMarkDuplicates;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Marks duplicates in a single pass over coordinate-sorted records that have mate cigar (MC) tags.
+ *
+ * The mate cigar gives the unclipped 5' position of the mate as soon as the first end of a pair is seen, so every
+ * fragment and pair can be put into its duplicate set right away, using the same keys as {@link MarkDuplicates}.
+ * The alignment start of a record is never more than minimumDistance away from its unclipped 5' position, so once
+ * the input has moved more than minimumDistance past the 5' position of a duplicate set no more records can join it,
+ * and the set is resolved. Records are held back until their duplicate flag is known and are then passed on in
+ * input order, so the memory used is bounded by the records within the window (plus the name of every pair whose
+ * second end has not been seen yet), and nothing is spilled to disk.
+ *
+ * The score of a pair is computed from its first end and the mate cigar (see
+ * {@link DuplicateScoringStrategy#computeDuplicateScore(SAMRecord, DuplicateScoringStrategy.ScoringStrategy, boolean)}),
+ * since the second end is not available when the pair is scored. For TOTAL_MAPPED_REFERENCE_LENGTH this is the
+ * same as the score used by the sorting implementation; for SUM_OF_BASE_QUALITIES only the first end is counted,
+ * so a different representative may be chosen among the pairs of a duplicate set (the number of duplicates is the same).
+ */
+final class MateCigarDuplicateMarker {
+
+    /**
+     * Builds the read ends of a single record, see {@link MarkDuplicates}.
+     */
+    @FunctionalInterface
+    interface ReadEndsBuilder {
+        ReadEndsForMarkDuplicates build(long index, SAMRecord rec);
+    }
+
+    /** Orders fragment duplicate sets by 5' position first, which is the order in which they are resolved. */
+    private static final Comparator<ReadEndsForMarkDuplicates> FRAGMENT_KEY_ORDER = (lhs, rhs) -> {
+        int retval = Integer.compare(lhs.read1ReferenceIndex, rhs.read1ReferenceIndex);
+        if (retval == 0) retval = Integer.compare(lhs.read1Coordinate, rhs.read1Coordinate);
+        if (retval == 0) retval = Short.compare(lhs.libraryId, rhs.libraryId);
+        if (retval == 0) retval = Byte.compare(lhs.orientation, rhs.orientation);
+        return retval;
+    };
+
+    /** Orders pair duplicate sets by the 5' position of their first end first, which is the order in which they are resolved. */
+    private static final Comparator<ReadEndsForMarkDuplicates> PAIR_KEY_ORDER = (lhs, rhs) -> {
+        int retval = FRAGMENT_KEY_ORDER.compare(lhs, rhs);
+        if (retval == 0) retval = Integer.compare(lhs.read2ReferenceIndex, rhs.read2ReferenceIndex);
+        if (retval == 0) retval = Integer.compare(lhs.read2Coordinate, rhs.read2Coordinate);
+        return retval;
+    };
+
+    private final LibraryIdGenerator libraryIdGenerator;
+    private final OpticalDuplicateFinder opticalDuplicateFinder;
+    private final DuplicateScoringStrategy.ScoringStrategy scoringStrategy;
+    private final ReadEndsBuilder readEndsBuilder;
+    private final Consumer<SAMRecord> output;
+    private int minimumDistance;
+
+    private final Deque<PendingRecord> pendingRecords = new ArrayDeque<>();
+    private final TreeMap<ReadEndsForMarkDuplicates, FragmentSet> fragmentSets = new TreeMap<>(FRAGMENT_KEY_ORDER);
+    private final TreeMap<ReadEndsForMarkDuplicates, PairSet> pairSets = new TreeMap<>(PAIR_KEY_ORDER);
+    private final Map<String, PendingPair> pairsWaitingForMate = new HashMap<>();
+
+    private long index = 0;
+    private int lastReferenceIndex = 0;
+    private int lastAlignmentStart = 0;
+    private boolean seenUnplacedRecord = false;
+    private long numDuplicates = 0;
+
+    /**
+     * @param libraryIdGenerator library ids and optical duplicate counts
+     * @param opticalDuplicateFinder the optical duplicate finder, or null if optical duplicates should not be counted
+     * @param scoringStrategy the scoring strategy for choosing the non-duplicate among candidates
+     * @param minimumDistance the maximum distance between the alignment start and the unclipped 5' position of any record,
+     *                        or -1 to use twice the length of the first mapped read (and at least 100)
+     * @param readEndsBuilder builds the read ends of a single record
+     * @param output receives every record, with its duplicate flag set, in input order
+     */
+    MateCigarDuplicateMarker(final LibraryIdGenerator libraryIdGenerator,
+                             final OpticalDuplicateFinder opticalDuplicateFinder,
+                             final DuplicateScoringStrategy.ScoringStrategy scoringStrategy,
+                             final int minimumDistance,
+                             final ReadEndsBuilder readEndsBuilder,
+                             final Consumer<SAMRecord> output) {
+        this.libraryIdGenerator = libraryIdGenerator;
+        this.opticalDuplicateFinder = opticalDuplicateFinder;
+        this.scoringStrategy = scoringStrategy;
+        this.minimumDistance = minimumDistance;
+        this.readEndsBuilder = readEndsBuilder;
+        this.output = output;
+    }
+
+    /**
+     * Adds the next record of the input. The record is passed to the output once its duplicate flag is known.
+     */
+    public void add(final SAMRecord rec) {
+        checkCoordinateOrder(rec);
+
+        final PendingRecord pending = new PendingRecord(rec);
+        pendingRecords.add(pending);
+
+        if (rec.getReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+            // the unplaced unmapped reads are at the end, no more records can join any duplicate set
+            resolveAllSets();
+        } else {
+            resolveSetsBefore(rec.getReferenceIndex(), rec.getAlignmentStart());
+        }
+
+        if (rec.isSecondaryOrSupplementary()) {
+            pending.resolved = true;
+        } else if (rec.getReadUnmappedFlag()) {
+            pending.resolve(false);
+        } else {
+            addToDuplicateSets(pending);
+        }
+
+        index++;
+        flush();
+    }
+
+    /**
+     * Resolves all the remaining duplicate sets and passes all the remaining records to the output.
+     */
+    public void finish() {
+        resolveAllSets();
+        flush();
+        if (!pendingRecords.isEmpty()) {
+            throw new GATKException("Not all records were resolved, first unresolved: " + pendingRecords.peekFirst().record);
+        }
+    }
+
+    /**
+     * @return the number of records marked as duplicates so far
+     */
+    public long getNumDuplicates() {
+        return numDuplicates;
+    }
+
+    /**
+     * @return the number of pairs whose second end has not been seen (yet)
+     */
+    public int getNumPairsWaitingForMate() {
+        return pairsWaitingForMate.size();
+    }
+
+    private void checkCoordinateOrder(final SAMRecord rec) {
+        final int referenceIndex = rec.getReferenceIndex();
+        if (referenceIndex == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+            seenUnplacedRecord = true;
+            return;
+        }
+        if (seenUnplacedRecord || referenceIndex < lastReferenceIndex
+                || (referenceIndex == lastReferenceIndex && rec.getAlignmentStart() < lastAlignmentStart)) {
+            throw new UserException.BadInput("Records must be coordinate sorted to mark duplicates in a single pass, but found " + rec.getReadName() + " out of order");
+        }
+        lastReferenceIndex = referenceIndex;
+        lastAlignmentStart = rec.getAlignmentStart();
+    }
+
+    private void addToDuplicateSets(final PendingRecord pending) {
+        final SAMRecord rec = pending.record;
+        if (minimumDistance < 0) {
+            minimumDistance = Math.max(100, 2 * rec.getReadLength());
+        }
+
+        final ReadEndsForMarkDuplicates fragmentEnd = readEndsBuilder.build(index, rec);
+        checkDistance(rec, rec.getAlignmentStart(), fragmentEnd.read1Coordinate);
+        fragmentSets.computeIfAbsent(fragmentEnd, k -> new FragmentSet()).add(fragmentEnd, pending);
+
+        if (!fragmentEnd.isPaired()) {
+            return;
+        }
+
+        final String key = rec.getAttribute(ReservedTagConstants.READ_GROUP_ID) + ":" + rec.getReadName();
+        final PendingPair firstEnd = pairsWaitingForMate.remove(key);
+        if (firstEnd != null) {
+            firstEnd.addSecondEnd(pending);
+            return;
+        }
+
+        if (SAMUtils.getMateCigar(rec) == null) {
+            throw new UserException.BadInput("Read " + rec.getReadName() + " has no mate cigar (MC) tag, which is required to mark duplicates in a single pass. " +
+                    "Mate cigars can be added with RevertOriginalBaseQualitiesAndAddMateCigar.");
+        }
+
+        // the mate has not been seen yet, fill in its end from the mate information
+        final ReadEndsForMarkDuplicates pairedEnds = readEndsBuilder.build(index, rec);
+        final boolean negativeStrand = rec.getReadNegativeStrandFlag();
+        final boolean mateNegativeStrand = rec.getMateNegativeStrandFlag();
+        final int mateReferenceIndex = rec.getMateReferenceIndex();
+        final int mateCoordinate = mateNegativeStrand ? SAMUtils.getMateUnclippedEnd(rec) : SAMUtils.getMateUnclippedStart(rec);
+        checkDistance(rec, rec.getMateAlignmentStart(), mateCoordinate);
+
+        // Set orientationForOpticalDuplicates, which always goes by the first then the second end for the strands.
+        if (rec.getFirstOfPairFlag()) {
+            pairedEnds.orientationForOpticalDuplicates = ReadEnds.getOrientationByte(negativeStrand, mateNegativeStrand);
+        } else {
+            pairedEnds.orientationForOpticalDuplicates = ReadEnds.getOrientationByte(mateNegativeStrand, negativeStrand);
+        }
+
+        // If the mate is actually later, just add the mate data, else flip the reads
+        if (mateReferenceIndex > pairedEnds.read1ReferenceIndex ||
+                (mateReferenceIndex == pairedEnds.read1ReferenceIndex && mateCoordinate >= pairedEnds.read1Coordinate)) {
+            pairedEnds.read2ReferenceIndex = mateReferenceIndex;
+            pairedEnds.read2Coordinate = mateCoordinate;
+            pairedEnds.orientation = ReadEnds.getOrientationByte(negativeStrand, mateNegativeStrand);
+        } else {
+            pairedEnds.read2ReferenceIndex = pairedEnds.read1ReferenceIndex;
+            pairedEnds.read2Coordinate = pairedEnds.read1Coordinate;
+            pairedEnds.read2IndexInFile = pairedEnds.read1IndexInFile;
+            pairedEnds.read1ReferenceIndex = mateReferenceIndex;
+            pairedEnds.read1Coordinate = mateCoordinate;
+            pairedEnds.read1IndexInFile = -1;
+            pairedEnds.orientation = ReadEnds.getOrientationByte(mateNegativeStrand, negativeStrand);
+        }
+        pairedEnds.score = DuplicateScoringStrategy.computeDuplicateScore(rec, scoringStrategy, true);
+
+        final PendingPair pair = new PendingPair(pending);
+        pairsWaitingForMate.put(key, pair);
+        pairSets.computeIfAbsent(pairedEnds, k -> new PairSet()).add(pairedEnds, pair);
+    }
+
+    private void checkDistance(final SAMRecord rec, final int alignmentStart, final int unclippedFivePrimePosition) {
+        if (Math.abs(alignmentStart - unclippedFivePrimePosition) > minimumDistance) {
+            throw new UserException.BadInput("Read " + rec.getReadName() + " (or its mate) has an unclipped 5' position that is more than " + minimumDistance +
+                    " bases away from its alignment start. Increase MINIMUM_DISTANCE to mark duplicates in a single pass.");
+        }
+    }
+
+    /**
+     * Resolves the duplicate sets that no record at or after the given position can join.
+     */
+    private void resolveSetsBefore(final int referenceIndex, final int alignmentStart) {
+        while (!fragmentSets.isEmpty() && isBefore(fragmentSets.firstKey(), referenceIndex, alignmentStart)) {
+            fragmentSets.pollFirstEntry().getValue().resolve();
+        }
+        while (!pairSets.isEmpty() && isBefore(pairSets.firstKey(), referenceIndex, alignmentStart)) {
+            pairSets.pollFirstEntry().getValue().resolve();
+        }
+    }
+
+    private boolean isBefore(final ReadEndsForMarkDuplicates key, final int referenceIndex, final int alignmentStart) {
+        return key.read1ReferenceIndex < referenceIndex ||
+                (key.read1ReferenceIndex == referenceIndex && key.read1Coordinate + minimumDistance < alignmentStart);
+    }
+
+    private void resolveAllSets() {
+        while (!fragmentSets.isEmpty()) {
+            fragmentSets.pollFirstEntry().getValue().resolve();
+        }
+        while (!pairSets.isEmpty()) {
+            pairSets.pollFirstEntry().getValue().resolve();
+        }
+    }
+
+    private void flush() {
+        while (!pendingRecords.isEmpty() && pendingRecords.peekFirst().resolved) {
+            output.accept(pendingRecords.pollFirst().record);
+        }
+    }
+
+    /**
+     * A record waiting for its duplicate flag.
+     */
+    private final class PendingRecord {
+        private final SAMRecord record;
+        private boolean resolved = false;
+
+        private PendingRecord(final SAMRecord record) {
+            this.record = record;
+        }
+
+        private void resolve(final boolean isDuplicate) {
+            record.setDuplicateReadFlag(isDuplicate);
+            resolved = true;
+            if (isDuplicate) {
+                numDuplicates++;
+            }
+        }
+    }
+
+    /**
+     * The ends of a pair: the first end is always known, the second end may not have been seen yet.
+     * Once the pair is resolved only the decision is kept, until the second end shows up.
+     */
+    private static final class PendingPair {
+        private PendingRecord firstEnd;
+        private PendingRecord secondEnd;
+        private Boolean isDuplicate = null;
+
+        private PendingPair(final PendingRecord firstEnd) {
+            this.firstEnd = firstEnd;
+        }
+
+        private void addSecondEnd(final PendingRecord secondEnd) {
+            if (isDuplicate == null) {
+                this.secondEnd = secondEnd;
+            } else {
+                secondEnd.resolve(isDuplicate);
+            }
+        }
+
+        private void resolve(final boolean isDuplicate) {
+            this.isDuplicate = isDuplicate;
+            firstEnd.resolve(isDuplicate);
+            firstEnd = null;
+            if (secondEnd != null) {
+                secondEnd.resolve(isDuplicate);
+                secondEnd = null;
+            }
+        }
+    }
+
+    /**
+     * Fragments that share library, 5' position and orientation. If any of them belongs to a pair, all the unpaired
+     * fragments are duplicates, otherwise all but the best scoring one are.
+     */
+    private static final class FragmentSet {
+        private final List<PendingRecord> unpaired = new ArrayList<>(1);
+        private boolean containsPairs = false;
+        private int best = -1;
+        private short bestScore = 0;
+
+        private void add(final ReadEndsForMarkDuplicates end, final PendingRecord pending) {
+            if (end.isPaired()) {
+                containsPairs = true;
+            } else {
+                if (best == -1 || end.score > bestScore) {
+                    best = unpaired.size();
+                    bestScore = end.score;
+                }
+                unpaired.add(pending);
+            }
+        }
+
+        private void resolve() {
+            for (int i = 0; i < unpaired.size(); i++) {
+                unpaired.get(i).resolve(containsPairs || i != best);
+            }
+        }
+    }
+
+    /**
+     * Pairs that share library, 5' positions and orientation. All but the best scoring pair are duplicates.
+     */
+    private final class PairSet {
+        private final List<ReadEndsForMarkDuplicates> ends = new ArrayList<>(1);
+        private final List<PendingPair> pairs = new ArrayList<>(1);
+        private int best = -1;
+
+        private void add(final ReadEndsForMarkDuplicates end, final PendingPair pair) {
+            if (best == -1 || end.score > ends.get(best).score) {
+                best = ends.size();
+            }
+            ends.add(end);
+            pairs.add(pair);
+        }
+
+        private void resolve() {
+            for (int i = 0; i < pairs.size(); i++) {
+                pairs.get(i).resolve(i != best);
+            }
+            if (opticalDuplicateFinder != null && ends.size() > 1) {
+                AbstractMarkDuplicatesCommandLineProgram.trackOpticalDuplicates(ends, opticalDuplicateFinder, libraryIdGenerator);
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.broadinstitute.hellbender.engine.spark.SparkCommandLineProgram;
 import org.broadinstitute.hellbender.engine.spark.datasources.ReadsSparkSource;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.tools.spark.transforms.bqsr.BaseRecalibratorEngineSparkWrapper;
+import org.broadinstitute.hellbender.tools.spark.transforms.bqsr.ReadGroupRecalibrationTables;
 import org.broadinstitute.hellbender.tools.walkers.bqsr.BaseRecalibrator;
 import org.broadinstitute.hellbender.utils.IntervalUtils;
 import org.broadinstitute.hellbender.utils.SequenceDictionaryUtils;
@@ -68,6 +69,15 @@ public class BaseRecalibratorSparkSharded extends SparkCommandLineProgram {
     @Argument(doc = "the known variants. Must be local.", shortName = "knownSites", fullName = "knownSites", optional = false)
     private List<String> knownVariants;
 
+    @Argument(doc = "aggregate the recalibration tables by read group across the executors instead of reducing whole tables; " +
+            "recommended for inputs with many read groups", shortName = "aggregateByReadGroup", fullName = "aggregateByReadGroup", optional = true)
+    private boolean aggregateByReadGroup = false;
+
+    @Argument(doc = "the number of reads to aim for in each shard, estimated from the index of the input, so that shards " +
+            "are smaller where the coverage is high; 0 to cut the intervals into shards of fixed size instead",
+            shortName = "targetReadsPerShard", fullName = "targetReadsPerShard", optional = true)
+    private int targetReadsPerShard = AddContextDataToReadSparkOptimized.defaultTargetReadsPerShard;
+
     // output can be local or GCS.
     @Argument(doc = "Path to save the final recalibration tables to.",
               shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, optional = false)
@@ -106,19 +116,24 @@ public class BaseRecalibratorSparkSharded extends SparkCommandLineProgram {
         List<GATKVariant> variants = VariantsSource.getVariantsList(localVariants);
 
         // get reads, reference, variants
-        JavaRDD<ContextShard> readsWithContext = AddContextDataToReadSparkOptimized.add(ctx, intervals, bam, variants, auth, readFilterToApply, rds);
+        JavaRDD<ContextShard> readsWithContext = AddContextDataToReadSparkOptimized.add(ctx, intervals, bam, variants, auth, readFilterToApply, rds, targetReadsPerShard);
 
         // run BaseRecalibratorEngine.
         BaseRecalibratorEngineSparkWrapper recal = new BaseRecalibratorEngineSparkWrapper(readsHeaderBcast, refDictionaryBcast, bqsrArgs);
         JavaRDD<RecalibrationTables> tables = readsWithContext.mapPartitions(s->recal.apply(s));
 
         final RecalibrationTables emptyRecalibrationTable = new RecalibrationTables(new StandardCovariateList(bqsrArgs, readsHeader));
-        final RecalibrationTables table = tables.treeAggregate(emptyRecalibrationTable,
-                RecalibrationTables::inPlaceCombine,
-                RecalibrationTables::inPlaceCombine,
-                Math.max(1, (int)(Math.log(tables.partitions().size()) / Math.log(2))));
-
-        BaseRecalibrationEngine.finalizeRecalibrationTables(table);
+        final RecalibrationTables table;
+        if (aggregateByReadGroup) {
+            table = ReadGroupRecalibrationTables.aggregateByReadGroup(tables, emptyRecalibrationTable);
+        } else {
+            table = tables.treeAggregate(emptyRecalibrationTable,
+                    RecalibrationTables::inPlaceCombine,
+                    RecalibrationTables::inPlaceCombine,
+                    Math.max(1, (int)(Math.log(tables.partitions().size()) / Math.log(2))));
+
+            BaseRecalibrationEngine.finalizeRecalibrationTables(table);
+        }
 
         try {
             BaseRecalibratorEngineSparkWrapper.saveTextualReport(outputTablesPath, readsHeader, table, bqsrArgs, auth);
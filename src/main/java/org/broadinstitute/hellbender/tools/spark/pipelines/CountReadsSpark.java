@@ -1,14 +1,13 @@
 package org.broadinstitute.hellbender.tools.spark.pipelines;
 
-import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
 import org.broadinstitute.hellbender.cmdline.programgroups.SparkProgramGroup;
+import org.broadinstitute.hellbender.engine.spark.FlatRead;
 import org.broadinstitute.hellbender.engine.spark.GATKSparkTool;
 import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
-import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 import java.io.PrintStream;
 
@@ -29,9 +28,8 @@ public final class CountReadsSpark extends GATKSparkTool {
 
     @Override
     protected void runTool(final JavaSparkContext ctx) {
-        final JavaRDD<GATKRead> reads = getReads();
-
-        final long count = reads.count();
+        // the count runs on the binary rows of the narrow projection of the reads
+        final long count = FlatRead.toDataset(getReads()).count();
         System.out.println(count);
 
         if(out != null) {
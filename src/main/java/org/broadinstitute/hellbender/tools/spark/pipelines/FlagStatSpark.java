@@ -1,17 +1,21 @@
 package org.broadinstitute.hellbender.tools.spark.pipelines;
 
-import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.functions;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
 import org.broadinstitute.hellbender.cmdline.programgroups.SparkProgramGroup;
+import org.broadinstitute.hellbender.engine.spark.FlatRead;
 import org.broadinstitute.hellbender.engine.spark.GATKSparkTool;
 import org.broadinstitute.hellbender.tools.FlagStat.FlagStatus;
 import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
-import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 import java.io.PrintStream;
+import java.util.List;
 
 @CommandLineProgramProperties(summary ="runs FlagStat on Spark",
         oneLineSummary = "FlagStat on Spark",
@@ -30,9 +34,7 @@ public final class FlagStatSpark extends GATKSparkTool {
 
     @Override
     protected void runTool(final JavaSparkContext ctx) {
-        final JavaRDD<GATKRead> reads = getReads();
-
-        final FlagStatus result = reads.aggregate(new FlagStatus(), FlagStatus::add, FlagStatus::merge);
+        final FlagStatus result = flagStat(FlatRead.toDataset(getReads()));
         System.out.println(result);
 
         if(out != null ) {
@@ -41,4 +43,26 @@ public final class FlagStatSpark extends GATKSparkTool {
             }
         }
     }
+
+    /**
+     * Counts the reads by the columns that the flagstat depends on (the flags, the mapping quality up to 5 and whether
+     * the mate is on another contig), which Spark does on the binary rows, and adds up the counts of the few
+     * distinct keys.
+     */
+    static FlagStatus flagStat(final Dataset<FlatRead> reads) {
+        final DataFrame columns = reads.toDF();
+        final List<Row> counts = columns.groupBy(
+                columns.col("flags"),
+                functions.least(columns.col("mappingQuality"), functions.lit(5)),
+                columns.col("contig").notEqual(columns.col("mateContig")))
+                .count()
+                .collectAsList();
+
+        final FlagStatus result = new FlagStatus();
+        for (final Row row : counts) {
+            // the comparison is null unless the read and its mate are both mapped, and only then is it looked at
+            result.add(row.getInt(0), row.getInt(1), !row.isNullAt(2) && row.getBoolean(2), row.getLong(3));
+        }
+        return result;
+    }
 }
@@ -20,7 +20,6 @@ import scala.Tuple2;
 
 import java.io.*;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * SparkTool to identify 63-mers in the reference that occur more than 3 times.
@@ -34,6 +33,7 @@ public final class FindBadGenomicKmersSpark extends GATKSparkTool {
     private static final int REF_RECORD_LEN = 10000;
     // assuming we have ~1Gb/core, we can process ~1M kmers per partition
     private static final int REF_RECORDS_PER_PARTITION = 1024*1024 / REF_RECORD_LEN;
+    private static final int KMERS_PER_PARTITION_GUESS = REF_RECORD_LEN * REF_RECORDS_PER_PARTITION;
 
     @Argument(doc = "file for ubiquitous kmer output", shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME,
             fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME)
@@ -86,17 +86,25 @@ public final class FindBadGenomicKmersSpark extends GATKSparkTool {
 
     /**
      * Turn a text file of overlapping records from a reference sequence into an RDD, and do a classic map/reduce:
-     * Kmerize, mapping to a pair <kmer,1>, reduce by summing values by key, filter out <kmer,N> where
-     * N <= MAX_KMER_FREQ, and collect the high frequency kmers back in the driver.
+     * Kmerize, counting the kmers of each partition in an SVKmerCounter and mapping each to a pair <kmer,count>,
+     * reduce by summing values by key, filter out <kmer,N> where N <= MAX_KMER_FREQ, and collect the high frequency
+     * kmers back in the driver.
      */
     @VisibleForTesting static List<SVKmer> processRefRDD( final int kSize,
                                                           final double minEntropy,
                                                           final JavaRDD<byte[]> refRDD ) {
         return refRDD
-                .flatMapToPair(seq ->
-                        SVKmerizerWithLowComplexityFilter.stream(seq, kSize, minEntropy)
-                                .map(kmer -> new Tuple2<>(kmer.canonical(kSize), 1))
-                                .collect(Collectors.toCollection(() -> new ArrayList<>(seq.length))))
+                .mapPartitionsToPair(seqItr -> {
+                    final SVKmerCounter kmerCounter = new SVKmerCounter(KMERS_PER_PARTITION_GUESS);
+                    while ( seqItr.hasNext() ) {
+                        SVKmerizerWithLowComplexityFilter.stream(seqItr.next(), kSize, minEntropy)
+                                .map(kmer -> kmer.canonical(kSize))
+                                .forEach(kmerCounter::increment);
+                    }
+                    final List<Tuple2<SVKmer, Integer>> kmerCounts = new ArrayList<>(kmerCounter.size());
+                    kmerCounter.forEach((kmer, count) -> kmerCounts.add(new Tuple2<>(kmer, count)));
+                    return kmerCounts;
+                })
                 .reduceByKey(Integer::sum)
                 .filter(kv -> kv._2 > MAX_KMER_FREQ)
                 .map(kv -> kv._1)
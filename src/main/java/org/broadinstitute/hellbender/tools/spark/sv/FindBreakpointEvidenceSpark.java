@@ -18,7 +18,9 @@ import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
 import org.broadinstitute.hellbender.cmdline.programgroups.SparkProgramGroup;
 import org.broadinstitute.hellbender.engine.spark.GATKSparkTool;
 import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.tools.spark.sv.RunSGAViaProcessBuilderOnSpark.ContigsCollection;
 import org.broadinstitute.hellbender.tools.spark.utils.*;
+import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import scala.Tuple2;
@@ -28,6 +30,7 @@ import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Tool to describe reads that support a hypothesis of a genomic breakpoint.
@@ -38,6 +41,8 @@ import java.util.stream.IntStream;
 public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
     private static final long serialVersionUID = 1L;
 
+    @VisibleForTesting static final String ASSEMBLED_CONTIGS_FILE_NAME = "assembledContigs.txt";
+
     //--------- parameters ----------
     @VisibleForTesting static final Params defaultParams =
             new Params(
@@ -57,7 +62,10 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
                     600000,                  // KmerCleaner guess for number of unique error-free kmers per partition
                     7,                       // guess for ratio of total reads in assembly to evidentiary reads in interval
                     100000000,               // maximum FASTQ size
-                    0                        // exclusion interval extra padding
+                    0,                       // exclusion interval extra padding
+                    1,                       // minimizer window size (1 means every kmer)
+                    2,                       // local assembly minimum kmer count
+                    100                      // local assembly minimum contig length
             );
 
     @Argument(doc = "Kmer size.", fullName = "kSize")
@@ -119,9 +127,43 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
     @Argument(doc = "Exclusion interval padding.", fullName = "exclusionIntervalPadding")
     private int exclusionIntervalPadding = defaultParams.exclusionIntervalPadding;
 
+    /**
+     * Kmerizing every read, and probing the map of interval kmers with every kmer, to find the reads to assemble
+     * is the slowest stage of the tool.  With a window size w larger than 1, each read is first probed with just its
+     * window minimizers (the kmer with the smallest hash in each window of w successive kmers) against the minimizers
+     * of the interval reads, so that only about 2/(w+1) of the kmers are probed.  Only the reads with a matching
+     * minimizer go on to probe the map of interval kmers with every kmer, as they would with w=1, so the kmers to
+     * ignore and the kmer cleaning apply just as they do with w=1.  A read that shares w+K-1 bases with a read of an
+     * interval, or overlaps it end to end, without a mismatch, still shares a minimizer with it.  A base error inside a
+     * shorter overlap is another matter: the kmers on either side of the error are still shared, so w=1 finds the
+     * read, but they may not be minimizers of either read, so a larger w may miss it.  Some sensitivity to reads with
+     * short, error-containing overlaps is traded for speed.
+     */
+    @Argument(doc = "Use only the minimizer of each window of this many successive kmers to find reads to assemble. "+
+            "Larger windows probe fewer kmers, but may miss a read whose only shared kmers lie in a short overlap "+
+            "broken by a base error.  1 uses every kmer.", fullName = "minimizerWindowSize", optional = true)
+    private int minimizerWindowSize = defaultParams.minimizerWindowSize;
+
+    @Argument(doc = "Minimum count of a kmer used in local assembly.", fullName = "assemblyMinKmerCount", optional = true)
+    private int assemblyMinKmerCount = defaultParams.assemblyMinKmerCount;
+
+    @Argument(doc = "Minimum length of a contig produced by local assembly.", fullName = "assemblyMinContigLength",
+            optional = true)
+    private int assemblyMinContigLength = defaultParams.assemblyMinContigLength;
+
     @Argument(doc = "Include read mapping location in FASTQ files.", fullName = "includeMappingLocation")
     private boolean includeMappingLocation = true;
 
+    /**
+     * Rather than writing a FASTQ file of the reads of each interval for assembly by SGA (see
+     * RunSGAViaProcessBuilderOnSpark), assemble the reads of each interval in memory with SVLocalAssembler, and write
+     * the contigs of all the intervals to a single file in the output directory, in the format read by
+     * AlignContigsAndCallBreakpointsSpark.
+     */
+    @Argument(doc = "Assemble the reads of each interval in-process, rather than writing FASTQ files.",
+            fullName = "localAssembly", optional = true)
+    private boolean localAssembly = false;
+
     // --------- locations ----------
 
     @Argument(doc = "directory for fastq output", shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME,
@@ -188,7 +230,8 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
                             minEvidenceCount, totalKmersPerPartitionGuess, minKmerCountWithinPartition,
                             uniqueErrorFreeKmersPerPartitionGuess, minHighFrequencyKmerCount,
                             cleanerMaxIntervals, cleanerMinKmerCount, cleanerMaxKmerCount, cleanerKmersPerPartitionGuess,
-                            assemblyToMappedSizeRatioGuess, maxFASTQSize, exclusionIntervalPadding);
+                            assemblyToMappedSizeRatioGuess, maxFASTQSize, exclusionIntervalPadding,
+                            minimizerWindowSize, assemblyMinKmerCount, assemblyMinContigLength);
 
         final PipelineOptions pipelineOptions = getAuthenticatedGCSOptions();
         final JavaRDD<GATKRead> unfilteredReads = getUnfilteredReads();
@@ -206,6 +249,22 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
         // supplement the template names with other reads that share kmers
         addAssemblyQNames(params, ctx, kmersToIgnoreFile, qNamesMultiMap, allPrimaryLines, locations, pipelineOptions);
 
+        if ( localAssembly ) {
+            // assemble the reads of each interval
+            final String contigsFile = outputDir + "/" + ASSEMBLED_CONTIGS_FILE_NAME;
+            final List<Tuple2<Integer, String>> intervalDispositions =
+                    assembleIntervals(params, ctx, qNamesMultiMap, allPrimaryLines, intervals.size(),
+                                        contigsFile, pipelineOptions);
+
+            // record the intervals
+            if ( locations.intervalFile != null ) {
+                writeIntervalFile(locations.intervalFile, pipelineOptions, header, intervals, intervalDispositions);
+            }
+
+            log("Wrote assembled contigs.");
+            return;
+        }
+
         // write a FASTQ file for each interval
         final String outDir = outputDir;
         final int maxFastqSize = maxFASTQSize;
@@ -222,6 +281,66 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
         log("Wrote FASTQs for assembly.");
     }
 
+    /**
+     * Assemble the reads of each interval where they're gathered, and write the contigs to a file.
+     * As for the FASTQs, an interval whose reads come to more than maxFASTQSize bytes of FASTQ isn't assembled.
+     * @return the disposition of each interval
+     */
+    @VisibleForTesting static List<Tuple2<Integer, String>> assembleIntervals(
+            final Params params,
+            final JavaSparkContext ctx,
+            final HopscotchUniqueMultiMap<String, Integer, QNameAndInterval> qNamesMultiMap,
+            final JavaRDD<GATKRead> reads,
+            final int nIntervals,
+            final String contigsFile,
+            final PipelineOptions pipelineOptions ) {
+        final int assemblyKSize = params.kSize;
+        final int minKmerCount = params.assemblyMinKmerCount;
+        final int minContigLength = params.assemblyMinContigLength;
+        final int maxFastqSize = params.maxFASTQSize;
+        final List<Tuple2<Integer, String>> intervalContigs =
+                generateFastqs(ctx, qNamesMultiMap, reads, nIntervals, false,
+                                intervalAndFastqBytes ->
+                                        assembleFastqs(intervalAndFastqBytes, assemblyKSize, minKmerCount,
+                                                        minContigLength, maxFastqSize));
+        final List<Tuple2<Integer, String>> assembledIntervalContigs = new ArrayList<>(intervalContigs.size());
+        final List<Tuple2<Integer, String>> intervalDispositions = new ArrayList<>(intervalContigs.size());
+        for ( final Tuple2<Integer, String> intervalAndContigs : intervalContigs ) {
+            final String packedFasta = intervalAndContigs._2();
+            final String disposition;
+            if ( packedFasta == null ) {
+                disposition = "not assembled -- FASTQ larger than " + maxFastqSize + " bytes.";
+            } else {
+                assembledIntervalContigs.add(intervalAndContigs);
+                final int nContigs =
+                        packedFasta.isEmpty() ? 0 : ContigsCollection.fromPackedFasta(packedFasta).getContents().size();
+                disposition = nContigs + " contigs in " + contigsFile;
+            }
+            intervalDispositions.add(new Tuple2<>(intervalAndContigs._1(), disposition));
+        }
+        writeAssembledContigs(contigsFile, pipelineOptions, assembledIntervalContigs);
+        return intervalDispositions;
+    }
+
+    /**
+     * Write the contigs of each interval as a line with the interval ID, a tab, and the contigs as packed FASTA,
+     * as RunSGAViaProcessBuilderOnSpark does, so that AlignContigsAndCallBreakpointsSpark can read them.
+     */
+    private static void writeAssembledContigs( final String contigsFile,
+                                               final PipelineOptions pipelineOptions,
+                                               final List<Tuple2<Integer, String>> intervalContigs ) {
+        final List<Tuple2<Integer, String>> sortedIntervalContigs = new ArrayList<>(intervalContigs);
+        sortedIntervalContigs.sort(Comparator.comparing(Tuple2::_1));
+        try (final OutputStreamWriter writer = new OutputStreamWriter(new BufferedOutputStream(
+                BucketUtils.createFile(contigsFile, pipelineOptions)))) {
+            for ( final Tuple2<Integer, String> intervalAndContigs : sortedIntervalContigs ) {
+                writer.write(intervalAndContigs._1() + "\t" + intervalAndContigs._2() + "\n");
+            }
+        } catch (final IOException ioe) {
+            throw new GATKException("Can't write assembled contigs file " + contigsFile, ioe);
+        }
+    }
+
     /** write a file describing each interval */
     private static void writeIntervalFile( final String intervalFile,
                                            final PipelineOptions pipelineOptions,
@@ -332,7 +451,7 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
      * get the template names of all reads sharing these kmers (regardless of where or if they're mapped),
      * and add these template names to the set of names for each interval.
      */
-    private void addAssemblyQNames(
+    @VisibleForTesting void addAssemblyQNames(
             final Params params,
             final JavaSparkContext ctx,
             final String kmersToIgnoreFile,
@@ -344,13 +463,17 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
         final JavaRDD<GATKRead> goodPrimaryLines =
                 allPrimaryLines.filter(read -> !read.isDuplicate() && !read.failsVendorQualityCheck());
 
-        qNamesMultiMap.addAll(
-                getAssemblyQNames(
-                        params,
-                        ctx,
-                        getKmerAndIntervalsSet(params, ctx, kmersToIgnoreFile, qNamesMultiMap,
-                                                goodPrimaryLines, locations, pipelineOptions),
-                        goodPrimaryLines));
+        final HopscotchUniqueMultiMap<SVKmer, Integer, KmerAndInterval> kmerMultiMap =
+                getKmerAndIntervalsSet(params, ctx, kmersToIgnoreFile, qNamesMultiMap,
+                                        goodPrimaryLines, locations, pipelineOptions);
+
+        HopscotchSet<SVKmer> minimizerSet = null;
+        if ( params.minimizerWindowSize > 1 ) {
+            minimizerSet = new HopscotchSet<>(getIntervalMinimizers(params, ctx, qNamesMultiMap, goodPrimaryLines));
+            log("Discovered " + minimizerSet.size() + " minimizers.");
+        }
+
+        qNamesMultiMap.addAll(getAssemblyQNames(params, ctx, kmerMultiMap, minimizerSet, goodPrimaryLines));
 
         if ( locations.qNamesAssemblyFile != null ) {
             dumpQNames(locations.qNamesAssemblyFile, pipelineOptions, qNamesMultiMap);
@@ -427,6 +550,25 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
         return result;
     }
 
+    /**
+     * assemble the reads of an interval, and return its contigs as packed FASTA,
+     * or null if the reads are too many to assemble (more than maxFastqSize bytes of FASTQ, as for writeFastq)
+     */
+    @VisibleForTesting static Tuple2<Integer, String> assembleFastqs( final Tuple2<Integer, List<byte[]>> intervalAndFastqs,
+                                                                      final int kSize,
+                                                                      final int minKmerCount,
+                                                                      final int minContigLength,
+                                                                      final int maxFastqSize ) {
+        final int fastqSize = intervalAndFastqs._2.stream().mapToInt(fastqRec -> fastqRec.length).sum();
+        if ( fastqSize > maxFastqSize ) return new Tuple2<>(intervalAndFastqs._1(), null);
+        final List<byte[]> sequences = new ArrayList<>(intervalAndFastqs._2.size());
+        for ( final byte[] fastqRecord : intervalAndFastqs._2 ) {
+            sequences.add(SVFastqUtils.getSequence(fastqRecord));
+        }
+        final SVLocalAssembler assembler = new SVLocalAssembler(kSize, minKmerCount, minContigLength);
+        return new Tuple2<>(intervalAndFastqs._1(), assembler.assemble(sequences).toPackedFasta());
+    }
+
     /** write a FASTQ file for an assembly */
     @VisibleForTesting static Tuple2<Integer, String> writeFastq( final Tuple2<Integer, List<byte[]>> intervalAndFastqs,
                                     final String outputDir, final int maxFastqSize ) {
@@ -446,29 +588,65 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
 
     /**
      * Grab template names for all reads that contain kmers associated with a given breakpoint.
+     * If there's a set of the minimizers of the interval reads, only the reads with one of those minimizers are
+     * checked for the kmers.
      */
     @VisibleForTesting static List<QNameAndInterval> getAssemblyQNames(
             final Params params,
             final JavaSparkContext ctx,
             final HopscotchUniqueMultiMap<SVKmer, Integer, KmerAndInterval> kmerMultiMap,
+            final HopscotchSet<SVKmer> minimizerSet,
             final JavaRDD<GATKRead> reads ) {
         final Broadcast<HopscotchUniqueMultiMap<SVKmer, Integer, KmerAndInterval>> broadcastKmerMultiMap =
                 ctx.broadcast(kmerMultiMap);
+        final Broadcast<HopscotchSet<SVKmer>> broadcastMinimizerSet =
+                minimizerSet == null ? null : ctx.broadcast(minimizerSet);
 
         final int kSize = params.kSize;
         final double minEntropy = params.minEntropy;
+        final int minimizerWindowSize = params.minimizerWindowSize;
         final List<QNameAndInterval> qNames =
             reads
                 .mapPartitions(readItr ->
                         new MapPartitioner<>(readItr,
-                                new QNamesForKmersFinder(kSize, minEntropy, broadcastKmerMultiMap.value())), false)
+                                new QNamesForKmersFinder(kSize, minEntropy, minimizerWindowSize,
+                                                        broadcastKmerMultiMap.value(),
+                                                        broadcastMinimizerSet == null ? null :
+                                                                broadcastMinimizerSet.value())), false)
                 .collect();
 
         broadcastKmerMultiMap.destroy();
+        if ( broadcastMinimizerSet != null ) broadcastMinimizerSet.destroy();
 
         return qNames;
     }
 
+    /** find the window minimizers of the reads of the intervals */
+    @VisibleForTesting static List<SVKmer> getIntervalMinimizers(
+            final Params params,
+            final JavaSparkContext ctx,
+            final HopscotchUniqueMultiMap<String, Integer, QNameAndInterval> qNamesMultiMap,
+            final JavaRDD<GATKRead> reads ) {
+        final Broadcast<HopscotchUniqueMultiMap<String, Integer, QNameAndInterval>> broadcastQNameAndIntervalsMultiMap =
+                ctx.broadcast(qNamesMultiMap);
+
+        final int kSize = params.kSize;
+        final double minEntropy = params.minEntropy;
+        final int minimizerWindowSize = params.minimizerWindowSize;
+        final List<SVKmer> minimizers =
+            reads
+                .filter(read -> broadcastQNameAndIntervalsMultiMap.value().findEach(read.getName()).hasNext())
+                .flatMap(read ->
+                        getProbeKmers(read.getBases(), kSize, minEntropy, minimizerWindowSize)
+                                .collect(Collectors.toList()))
+                .distinct()
+                .collect();
+
+        broadcastQNameAndIntervalsMultiMap.destroy();
+
+        return minimizers;
+    }
+
     /** find kmers for each interval */
     @VisibleForTesting static List<KmerAndInterval> getKmerIntervals(
             final Params params,
@@ -781,6 +959,9 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
         public final int assemblyToMappedSizeRatioGuess;
         public final int maxFASTQSize;
         public final int exclusionIntervalPadding;
+        public final int minimizerWindowSize;
+        public final int assemblyMinKmerCount;
+        public final int assemblyMinContigLength;
 
         public Params( final int kSize, final double minEntropy, final int minEvidenceMapQ,
                        final int minEvidenceMatchLength, final int maxIntervalCoverage, final int minEvidenceCount,
@@ -789,7 +970,9 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
                        final int cleanerMaxIntervals, final int cleanerMinKmerCount,
                        final int cleanerMaxKmerCount, final int cleanerKmersPerPartitionGuess,
                        final int assemblyToMappedSizeRatioGuess, final int maxFASTQSize,
-                       final int exclusionIntervalPadding ) {
+                       final int exclusionIntervalPadding, final int minimizerWindowSize,
+                       final int assemblyMinKmerCount, final int assemblyMinContigLength ) {
+            Utils.validateArg(minimizerWindowSize > 0, "the minimizer window size must be positive");
             this.kSize = kSize;
             this.minEntropy = minEntropy;
             this.minEvidenceMapQ = minEvidenceMapQ;
@@ -807,6 +990,9 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
             this.assemblyToMappedSizeRatioGuess = assemblyToMappedSizeRatioGuess;
             this.maxFASTQSize = maxFASTQSize;
             this.exclusionIntervalPadding = exclusionIntervalPadding;
+            this.minimizerWindowSize = minimizerWindowSize;
+            this.assemblyMinKmerCount = assemblyMinKmerCount;
+            this.assemblyMinContigLength = assemblyMinContigLength;
         }
     }
 
@@ -1173,8 +1359,12 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
         private int count;
 
         KmerAndCount( final SVKmer kmer ) {
+            this(kmer, 1);
+        }
+
+        KmerAndCount( final SVKmer kmer, final int count ) {
             super(kmer);
-            this.count = 1;
+            this.count = count;
         }
 
         private KmerAndCount(final Kryo kryo, final Input input ) {
@@ -1221,61 +1411,56 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
     }
 
     /**
-     * Kmerizes reads into a big Set, ignores those that occur only once (i.e., < MIN_KMER_COUNT),
+     * Kmerizes reads into a big SVKmerCounter, ignores those that occur only once (i.e., < MIN_KMER_COUNT),
      * and returns a Kmer and occurrence count for the rest.
      */
     private final static class KmerCounter implements Iterable<KmerAndCount> {
-        private final HopscotchMap<SVKmer, Integer, KmerAndCount> kmerMap;
+        private final List<KmerAndCount> kmerCounts;
 
         KmerCounter( final Iterator<GATKRead> readItr,
                      final int kSize,
                      final double minEntropy,
                      final int totalKmersPerPartitionGuess,
                      final int minKmerCountWithinPartition ) {
-            final HopscotchMap<SVKmer, Integer, KmerAndCount> kmerMap = new HopscotchMap<>(totalKmersPerPartitionGuess);
+            final SVKmerCounter kmerCounter = new SVKmerCounter(totalKmersPerPartitionGuess);
             while ( readItr.hasNext() ) {
                 SVKmerizerWithLowComplexityFilter.stream(readItr.next().getBases(), kSize, minEntropy)
                         .map(kmer -> kmer.canonical(kSize))
-                        .forEach(kmer -> {
-                            final KmerAndCount kmerAndCount = kmerMap.find(kmer);
-                            if ( kmerAndCount != null ) kmerAndCount.incrementCount();
-                            else kmerMap.add(new KmerAndCount(kmer));
-                        });
+                        .forEach(kmerCounter::increment);
             }
-            final Iterator<KmerAndCount> kmerItr = kmerMap.iterator();
-            while ( kmerItr.hasNext() ) {
-                if ( kmerItr.next().getCount() < minKmerCountWithinPartition ) kmerItr.remove();
-            }
-            this.kmerMap = kmerMap;
+            kmerCounts = getKmerCounts(kmerCounter, minKmerCountWithinPartition);
         }
 
         @Override
-        public Iterator<KmerAndCount> iterator() { return kmerMap.iterator(); }
+        public Iterator<KmerAndCount> iterator() { return kmerCounts.iterator(); }
     }
 
     /**
      * Returns kmers that occur very frequently (>= MAX_KMER_COUNT).
      */
     private final static class KmerReducer implements Iterable<KmerAndCount> {
-        private final HopscotchMap<SVKmer, Integer, KmerAndCount> kmerMap;
+        private final List<KmerAndCount> kmerCounts;
 
         KmerReducer( final Iterator<KmerAndCount> kmerItr,
                      final int uniqueErrorFreeKmersPerPartitionGuess, final int minHighFrequencyKmerCount ) {
-            kmerMap = new HopscotchMap<>(uniqueErrorFreeKmersPerPartitionGuess);
+            final SVKmerCounter kmerCounter = new SVKmerCounter(uniqueErrorFreeKmersPerPartitionGuess);
             while ( kmerItr.hasNext() ) {
                 final KmerAndCount kmerAndCount = kmerItr.next();
-                final KmerAndCount tableKmerAndCount = kmerMap.find(kmerAndCount.getKey());
-                if ( tableKmerAndCount != null ) tableKmerAndCount.incrementCount(kmerAndCount.getCount());
-                else kmerMap.add(kmerAndCount);
-            }
-            final Iterator<KmerAndCount> kmerItr2 = kmerMap.iterator();
-            while ( kmerItr2.hasNext() ) {
-                if ( kmerItr2.next().getCount() < minHighFrequencyKmerCount ) kmerItr2.remove();
+                kmerCounter.increment(kmerAndCount, kmerAndCount.getCount());
             }
+            kmerCounts = getKmerCounts(kmerCounter, minHighFrequencyKmerCount);
         }
 
         @Override
-        public Iterator<KmerAndCount> iterator() { return kmerMap.iterator(); }
+        public Iterator<KmerAndCount> iterator() { return kmerCounts.iterator(); }
+    }
+
+    /** Makes a KmerAndCount for each kmer that has been counted at least minCount times. */
+    private static List<KmerAndCount> getKmerCounts( final SVKmerCounter kmerCounter, final int minCount ) {
+        kmerCounter.removeCountsBelow(minCount);
+        final List<KmerAndCount> kmerCounts = new ArrayList<>(kmerCounter.size());
+        kmerCounter.forEach((kmer, count) -> kmerCounts.add(new KmerAndCount(kmer, count)));
+        return kmerCounts;
     }
 
     /**
@@ -1309,6 +1494,20 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
         public Iterator<KmerAndInterval> iterator() { return kmerMultiMap.iterator(); }
     }
 
+    /**
+     * The canonical kmers of a read that are used to find other reads of the same interval: all of them, or, if the
+     * minimizerWindowSize is larger than 1, just the window minimizers.
+     * The minimizers are picked from all the kmers, before any are ignored or cleaned away, so that the minimizers of
+     * the interval reads and those of the probing reads are picked the same way.
+     */
+    private static Stream<SVKmer> getProbeKmers( final byte[] bases, final int kSize, final double minEntropy,
+                                                 final int minimizerWindowSize ) {
+        final Stream<SVKmer> kmers =
+                SVKmerizerWithLowComplexityFilter.stream(bases, kSize, minEntropy).map(kmer -> kmer.canonical(kSize));
+        if ( minimizerWindowSize == 1 ) return kmers;
+        return SVMinimizerFinder.getMinimizers(kmers.iterator(), minimizerWindowSize).stream();
+    }
+
     /**
      * Class that acts as a mapper from a stream of reads to a stream of <intervalId,read> pairs.
      * It knows which breakpoint(s) a read belongs to (if any) by kmerizing the read, and looking up each SVKmer in
@@ -1317,22 +1516,30 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
     private static final class QNamesForKmersFinder implements Function<GATKRead, Iterator<QNameAndInterval>> {
         private final int kSize;
         private final double minEntropy;
+        private final int minimizerWindowSize;
         private final HopscotchUniqueMultiMap<SVKmer, Integer, KmerAndInterval> kmerMultiMap;
+        private final HopscotchSet<SVKmer> minimizerSet;
         private final Set<Integer> intervalIdSet = new HashSet<>();
         private final List<QNameAndInterval> qNameAndIntervalList = new ArrayList<>();
         private final Iterator<QNameAndInterval> emptyIterator = Collections.emptyIterator();
 
-        QNamesForKmersFinder( final int kSize, final double minEntropy,
-                              final HopscotchUniqueMultiMap<SVKmer, Integer, KmerAndInterval> kmerMultiMap ) {
+        /** the minimizerSet may be null, in which case every read is checked for the kmers */
+        QNamesForKmersFinder( final int kSize, final double minEntropy, final int minimizerWindowSize,
+                              final HopscotchUniqueMultiMap<SVKmer, Integer, KmerAndInterval> kmerMultiMap,
+                              final HopscotchSet<SVKmer> minimizerSet ) {
             this.kSize = kSize;
             this.minEntropy = minEntropy;
+            this.minimizerWindowSize = minimizerWindowSize;
             this.kmerMultiMap = kmerMultiMap;
+            this.minimizerSet = minimizerSet;
         }
 
         public Iterator<QNameAndInterval> apply(final GATKRead read) {
+            if ( minimizerSet != null &&
+                    getProbeKmers(read.getBases(), kSize, minEntropy, minimizerWindowSize)
+                            .noneMatch(minimizerSet::contains) ) return emptyIterator;
             intervalIdSet.clear();
-            SVKmerizerWithLowComplexityFilter.stream(read.getBases(), kSize, minEntropy)
-                    .map( kmer -> kmer.canonical(kSize) )
+            getProbeKmers(read.getBases(), kSize, minEntropy, 1)
                     .forEach( kmer -> {
                         final Iterator<KmerAndInterval> itr = kmerMultiMap.findEach(kmer);
                         while ( itr.hasNext() ) {
@@ -9,6 +9,7 @@ import org.broadinstitute.hellbender.utils.read.ReadUtils;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -32,6 +33,15 @@ public class SVFastqUtils {
         return rec.getBytes();
     }
 
+    /** Extract the bases of a FASTQ record, i.e., its second line. */
+    public static byte[] getSequence( final byte[] fastqRecord ) {
+        int start = 0;
+        while ( fastqRecord[start++] != '\n' ) {}
+        int end = start;
+        while ( fastqRecord[end] != '\n' ) ++end;
+        return Arrays.copyOfRange(fastqRecord, start, end);
+    }
+
     /**
      * Sort a list of FASTQ records.  (Probably ought to be an ArrayList for memory-efficiency.)
      * This puts them into proper order for an interleaved FASTQ file (since the FASTQ record begins with the
@@ -50,7 +50,7 @@ public class SVKmer implements Comparable<SVKmer> {
 
     public SVKmer( final SVKmer that ) { this.valHigh = that.valHigh; this.valLow = that.valLow; }
 
-    private SVKmer( final long valHigh, final long valLow ) { this.valHigh = valHigh; this.valLow = valLow; }
+    SVKmer( final long valHigh, final long valLow ) { this.valHigh = valHigh; this.valLow = valLow; }
 
     protected SVKmer( final Kryo kryo, final Input input ) {
         valHigh = input.readLong();
@@ -131,6 +131,10 @@ public class SVKmer implements Comparable<SVKmer> {
         return reverseComplement(kSize);
     }
 
+    // the two K-bit halves, for collections that keep kmers as pairs of longs rather than as objects
+    final long getValHigh() { return valHigh; }
+    final long getValLow() { return valLow; }
+
     public final Base firstBase( final int kSize ) { return Base.values()[(int)(valHigh >> (kSize-2))]; }
     public final Base lastBase() { return Base.values()[(int)(valLow & 3)]; }
 
@@ -145,6 +149,10 @@ public class SVKmer implements Comparable<SVKmer> {
 
     @Override
     public final int hashCode() {
+        return hashCode(valHigh, valLow);
+    }
+
+    static int hashCode( final long valHigh, final long valLow ) {
         // 32-bit FNV-1a algorithm
         return fnvLong(fnvLong((int)2166136261L, valHigh), valLow);
     }
@@ -0,0 +1,123 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Counts SVKmers in an open-addressing hash table that keeps the two longs of each kmer and its count in parallel
+ * primitive arrays, rather than as an object per kmer in a HopscotchMap.
+ * A slot costs 20 bytes, and there is no object per kmer for the garbage collector to trace, where a kmer and its count
+ * cost a 32-byte object plus its bucket in a HopscotchMap.
+ * The table is sized to a power of 2, probed linearly, and doubled when it is 3/4 full.
+ * Kmers can't be removed, but a table can be copied without the kmers that have low counts.
+ */
+public final class SVKmerCounter {
+    private static final double LOAD_FACTOR = .75;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] valHighs;
+    private long[] valLows;
+    // an empty slot has a count of 0
+    private int[] counts;
+    private int mask;
+    private int size;
+
+    /** make a counter for a specified number of distinct kmers (or good guess) */
+    public SVKmerCounter( final int nKmersGuess ) {
+        Utils.validateArg(nKmersGuess >= 0, "the number of kmers must not be negative");
+        allocate(capacityFor(nKmersGuess));
+    }
+
+    private static int capacityFor( final int nKmers ) {
+        int capacity = 16;
+        while ( capacity < MAX_CAPACITY && capacity * LOAD_FACTOR < nKmers ) capacity <<= 1;
+        return capacity;
+    }
+
+    private void allocate( final int capacity ) {
+        valHighs = new long[capacity];
+        valLows = new long[capacity];
+        counts = new int[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    /** the number of distinct kmers */
+    public int size() { return size; }
+
+    public void increment( final SVKmer kmer ) { increment(kmer, 1); }
+
+    /** add a positive count to a kmer */
+    public void increment( final SVKmer kmer, final int count ) {
+        Utils.validateArg(count > 0, "the count must be positive");
+        increment(kmer.getValHigh(), kmer.getValLow(), count);
+    }
+
+    private void increment( final long valHigh, final long valLow, final int count ) {
+        int idx = slotOf(valHigh, valLow);
+        if ( counts[idx] != 0 ) {
+            counts[idx] += count;
+            return;
+        }
+        if ( size + 1 > counts.length * LOAD_FACTOR ) {
+            resize(counts.length << 1);
+            idx = slotOf(valHigh, valLow);
+        }
+        valHighs[idx] = valHigh;
+        valLows[idx] = valLow;
+        counts[idx] = count;
+        size += 1;
+    }
+
+    /** the count of a kmer, which is 0 if it has never been counted */
+    public int getCount( final SVKmer kmer ) {
+        return counts[slotOf(kmer.getValHigh(), kmer.getValLow())];
+    }
+
+    /** drop the kmers that have a count less than minCount */
+    public void removeCountsBelow( final int minCount ) {
+        int nKept = 0;
+        for ( final int count : counts ) {
+            if ( count != 0 && count >= minCount ) nKept += 1;
+        }
+        rehash(capacityFor(nKept), minCount);
+    }
+
+    /** give each kmer and its count to a consumer, in no particular order */
+    public void forEach( final ObjIntConsumer<SVKmer> consumer ) {
+        for ( int idx = 0; idx != counts.length; ++idx ) {
+            if ( counts[idx] != 0 ) consumer.accept(new SVKmer(valHighs[idx], valLows[idx]), counts[idx]);
+        }
+    }
+
+    // the slot that holds the kmer, or the empty slot where it belongs
+    private int slotOf( final long valHigh, final long valLow ) {
+        int idx = SVKmer.hashCode(valHigh, valLow) & mask;
+        while ( counts[idx] != 0 && (valHighs[idx] != valHigh || valLows[idx] != valLow) ) {
+            idx = (idx + 1) & mask;
+        }
+        return idx;
+    }
+
+    private void resize( final int capacity ) {
+        if ( counts.length >= MAX_CAPACITY ) throw new IllegalStateException("Too many kmers to count.");
+        rehash(capacity, 1);
+    }
+
+    private void rehash( final int capacity, final int minCount ) {
+        final long[] oldValHighs = valHighs;
+        final long[] oldValLows = valLows;
+        final int[] oldCounts = counts;
+        allocate(capacity);
+        for ( int idx = 0; idx != oldCounts.length; ++idx ) {
+            if ( oldCounts[idx] != 0 && oldCounts[idx] >= minCount ) {
+                final int newIdx = slotOf(oldValHighs[idx], oldValLows[idx]);
+                valHighs[newIdx] = oldValHighs[idx];
+                valLows[newIdx] = oldValLows[idx];
+                counts[newIdx] = oldCounts[idx];
+                size += 1;
+            }
+        }
+    }
+}
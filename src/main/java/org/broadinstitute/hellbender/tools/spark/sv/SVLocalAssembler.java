@@ -0,0 +1,129 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import htsjdk.samtools.util.SequenceUtil;
+import org.broadinstitute.hellbender.tools.spark.sv.RunSGAViaProcessBuilderOnSpark.ContigsCollection;
+import org.broadinstitute.hellbender.tools.spark.utils.HopscotchSet;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.broadinstitute.hellbender.tools.spark.sv.SVKmer.Base;
+
+/**
+ * A small de Bruijn graph assembler for the reads of a single breakpoint interval, so that the assembly can be done
+ * in memory, right where the reads are gathered, rather than by running SGA on a FASTQ file as
+ * RunSGAViaProcessBuilderOnSpark does.
+ *
+ * The canonical kmers of the reads are counted, and those that occur fewer than minKmerCount times (which are mostly
+ * sequencing errors) are dropped.  Dead-end branches of fewer than K kmers (which are mostly errors near the ends of
+ * reads) are clipped, and the contigs are the unbranched paths through the graph of the remaining kmers that are at
+ * least minContigLength bases long.
+ * The contigs are named as "sga assemble" names them, so AlignContigsAndCallBreakpointsSpark can read them.
+ */
+public final class SVLocalAssembler {
+    private static final char[] BASE_CHARS = {'A', 'C', 'G', 'T'};
+
+    private final int kSize;
+    private final int minKmerCount;
+    private final int minContigLength;
+
+    public SVLocalAssembler( final int kSize, final int minKmerCount, final int minContigLength ) {
+        Utils.validateArg((kSize & 1) != 0, "K must be odd to assemble canonical kmers.");
+        Utils.validateArg(minKmerCount > 0, "the minimum kmer count must be positive");
+        this.kSize = kSize;
+        this.minKmerCount = minKmerCount;
+        this.minContigLength = minContigLength;
+    }
+
+    /** assemble some sequences into contigs */
+    public ContigsCollection assemble( final List<byte[]> sequences ) {
+        final HopscotchSet<SVKmer> kmers = getSolidKmers(sequences);
+        clipTips(kmers);
+        final List<String> fastaLines = new ArrayList<>();
+        for ( final String contig : getUnitigs(kmers) ) {
+            if ( contig.length() < minContigLength ) continue;
+            fastaLines.add(">contig-" + fastaLines.size()/2 + " " + contig.length() + " 0");
+            fastaLines.add(contig);
+        }
+        return new ContigsCollection(fastaLines);
+    }
+
+    /** the canonical kmers that occur at least minKmerCount times */
+    private HopscotchSet<SVKmer> getSolidKmers( final List<byte[]> sequences ) {
+        final SVKmerCounter kmerCounter = new SVKmerCounter(sequences.stream().mapToInt(seq -> seq.length).sum());
+        for ( final byte[] seq : sequences ) {
+            SVKmerizer.stream(seq, kSize).map(kmer -> kmer.canonical(kSize)).forEach(kmerCounter::increment);
+        }
+        kmerCounter.removeCountsBelow(minKmerCount);
+        final HopscotchSet<SVKmer> kmers = new HopscotchSet<>(kmerCounter.size());
+        kmerCounter.forEach(( kmer, count ) -> kmers.add(kmer));
+        return kmers;
+    }
+
+    /** remove the unitigs of fewer than K kmers that are a dead end on one side, but joined to the graph on the other */
+    private void clipTips( final HopscotchSet<SVKmer> kmers ) {
+        final List<String> tips = new ArrayList<>();
+        for ( final String unitig : getUnitigs(kmers) ) {
+            if ( unitig.length() - kSize + 1 >= kSize ) continue;
+            final SVKmer firstKmer = SVKmerizer.toKmer(unitig.substring(0, kSize));
+            final SVKmer lastKmer = SVKmerizer.toKmer(unitig.substring(unitig.length() - kSize));
+            final int nPredecessors = countPredecessors(firstKmer, kmers);
+            final int nSuccessors = countSuccessors(lastKmer, kmers);
+            if ( (nPredecessors == 0) != (nSuccessors == 0) ) tips.add(unitig);
+        }
+        for ( final String tip : tips ) {
+            SVKmerizer.stream(tip, kSize).map(kmer -> kmer.canonical(kSize)).forEach(kmers::remove);
+        }
+    }
+
+    /** the maximal unbranched paths through the graph, in the order of their least kmer (to be deterministic) */
+    private List<String> getUnitigs( final HopscotchSet<SVKmer> kmers ) {
+        final List<SVKmer> sortedKmers = new ArrayList<>(kmers);
+        sortedKmers.sort(SVKmer::compareTo);
+        final HopscotchSet<SVKmer> visited = new HopscotchSet<>(kmers.size());
+        final List<String> unitigs = new ArrayList<>();
+        for ( final SVKmer kmer : sortedKmers ) {
+            if ( !visited.add(kmer) ) continue;
+            final String leftExtension = extend(kmer.reverseComplement(kSize), kmers, visited);
+            final String rightExtension = extend(kmer, kmers, visited);
+            unitigs.add(SequenceUtil.reverseComplement(leftExtension) + kmer.toString(kSize) + rightExtension);
+        }
+        return unitigs;
+    }
+
+    /**
+     * Walk forward from a kmer as long as the path is unbranched, marking the kmers as visited, and return the bases
+     * that were added.
+     */
+    private String extend( SVKmer kmer, final HopscotchSet<SVKmer> kmers, final HopscotchSet<SVKmer> visited ) {
+        final StringBuilder sb = new StringBuilder();
+        while ( true ) {
+            SVKmer next = null;
+            for ( final Base base : Base.values() ) {
+                final SVKmer successor = kmer.successor(base, kSize);
+                if ( kmers.contains(successor.canonical(kSize)) ) {
+                    if ( next != null ) return sb.toString();
+                    next = successor;
+                }
+            }
+            if ( next == null || countPredecessors(next, kmers) != 1 || !visited.add(next.canonical(kSize)) ) {
+                return sb.toString();
+            }
+            sb.append(BASE_CHARS[(int)next.lastBase().value]);
+            kmer = next;
+        }
+    }
+
+    private int countSuccessors( final SVKmer kmer, final HopscotchSet<SVKmer> kmers ) {
+        int nSuccessors = 0;
+        for ( final Base base : Base.values() ) {
+            if ( kmers.contains(kmer.successor(base, kSize).canonical(kSize)) ) nSuccessors += 1;
+        }
+        return nSuccessors;
+    }
+
+    private int countPredecessors( final SVKmer kmer, final HopscotchSet<SVKmer> kmers ) {
+        return countSuccessors(kmer.reverseComplement(kSize), kmers);
+    }
+}
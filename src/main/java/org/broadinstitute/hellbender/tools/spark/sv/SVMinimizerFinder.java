@@ -0,0 +1,86 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Picks the window minimizers from a sequence of kmers: the kmer with the smallest rank in each window of
+ * windowSize consecutive kmers, where the rank is a hash of the kmer (so that low-complexity kmers like poly-A aren't
+ * favored, as they would be by the natural order).
+ *
+ * Two sequences that share windowSize consecutive kmers share the minimizer of that window, so indexing and probing
+ * only the minimizers still finds every pair of sequences that share windowSize+K-1 bases, while touching
+ * only about 2/(windowSize+1) of the kmers.
+ * The minimizers of the shorter windows at each end of the sequence (its first and last j kmers, for j less than
+ * windowSize) are included, too, so two sequences that overlap end to end share a minimizer however short the
+ * overlap is, as long as it holds a kmer.
+ * Both guarantees are for exact matches only.  A mismatch inside the shared bases leaves the kmers on either side of it
+ * shared, but if they are too few to fill a window they need not be minimizers of either sequence, so the two
+ * sequences may share a kmer without sharing a minimizer.  Only a windowSize of 1 finds every shared kmer.
+ * If the kmers are canonical, a sequence and its reverse complement have the same minimizers.
+ */
+public final class SVMinimizerFinder {
+    private SVMinimizerFinder() {}
+
+    /**
+     * Returns the minimizer of each window of windowSize consecutive kmers, and of each shorter window at the ends of
+     * the sequence, in order, without repeating a minimizer that's shared by successive windows.
+     */
+    public static List<SVKmer> getMinimizers( final Iterator<SVKmer> kmerItr, final int windowSize ) {
+        Utils.validateArg(windowSize > 0, "the window size must be positive");
+        final List<SVKmer> kmers = new ArrayList<>();
+        kmerItr.forEachRemaining(kmers::add);
+        final int nKmers = kmers.size();
+        final List<SVKmer> minimizers = new ArrayList<>(windowSize == 1 ? nKmers : 2*nKmers/(windowSize+1) + 16);
+        if ( windowSize == 1 ) {
+            minimizers.addAll(kmers);
+            return minimizers;
+        }
+
+        final long[] ranks = new long[nKmers];
+        for ( int idx = 0; idx != nKmers; ++idx ) {
+            ranks[idx] = rank(kmers.get(idx));
+        }
+
+        // indices of the kmers of the current window that might yet become minimizers, in increasing order of rank
+        final int[] candidates = new int[nKmers];
+        int head = 0;
+        int tail = 0;
+        int lastMinimizerIdx = -1;
+        // the windows that end at each kmer: the short ones at the start of the sequence, and then the full ones
+        for ( int idx = 0; idx != nKmers; ++idx ) {
+            while ( tail > head && ranks[candidates[tail-1]] > ranks[idx] ) tail -= 1;
+            candidates[tail++] = idx;
+            if ( candidates[head] <= idx - windowSize ) head += 1;
+            final int minimizerIdx = candidates[head];
+            if ( minimizerIdx != lastMinimizerIdx ) {
+                minimizers.add(kmers.get(minimizerIdx));
+                lastMinimizerIdx = minimizerIdx;
+            }
+        }
+        // the short windows at the end of the sequence, which lose a kmer at their start at each step
+        for ( int start = Math.max(1, nKmers - windowSize + 1); start < nKmers; ++start ) {
+            if ( candidates[head] < start ) head += 1;
+            final int minimizerIdx = candidates[head];
+            if ( minimizerIdx != lastMinimizerIdx ) {
+                minimizers.add(kmers.get(minimizerIdx));
+                lastMinimizerIdx = minimizerIdx;
+            }
+        }
+        return minimizers;
+    }
+
+    /** a 64-bit mix of the kmer's bits (the finalizer of MurmurHash3) */
+    static long rank( final SVKmer kmer ) {
+        long bits = kmer.getValHigh() * 0x9E3779B97F4A7C15L ^ kmer.getValLow();
+        bits ^= bits >>> 33;
+        bits *= 0xff51afd7ed558ccdL;
+        bits ^= bits >>> 33;
+        bits *= 0xc4ceb9fe1a85ec53L;
+        bits ^= bits >>> 33;
+        return bits;
+    }
+}
@@ -7,6 +7,7 @@ import org.apache.spark.api.java.JavaRDD;
 import org.broadinstitute.hellbender.engine.ReadContextData;
 import org.broadinstitute.hellbender.engine.ReferenceDataSource;
 import org.broadinstitute.hellbender.engine.ReferenceMemorySource;
+import org.broadinstitute.hellbender.tools.spark.transforms.bqsr.ReadGroupRecalibrationTables;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.recalibration.*;
 import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
@@ -20,6 +21,15 @@ import java.util.Arrays;
 public final class BaseRecalibratorSparkFn {
 
     public static RecalibrationReport apply( final JavaPairRDD<GATKRead, ReadContextData> readsWithContext, final SAMFileHeader header, final SAMSequenceDictionary referenceDictionary, final RecalibrationArgumentCollection recalArgs ) {
+        return apply(readsWithContext, header, referenceDictionary, recalArgs, false);
+    }
+
+    /**
+     * @param aggregateByReadGroup if true, the per-partition tables are aggregated by read group across the executors
+     *                             (see {@link ReadGroupRecalibrationTables}) instead of being tree-reduced as whole tables.
+     *                             This keeps the driver memory bounded by the size of the final tables when there are many read groups.
+     */
+    public static RecalibrationReport apply( final JavaPairRDD<GATKRead, ReadContextData> readsWithContext, final SAMFileHeader header, final SAMSequenceDictionary referenceDictionary, final RecalibrationArgumentCollection recalArgs, final boolean aggregateByReadGroup ) {
         JavaRDD<RecalibrationTables> unmergedTables = readsWithContext.mapPartitions(readWithContextIterator -> {
             final BaseRecalibrationEngine bqsr = new BaseRecalibrationEngine(recalArgs, header);
             bqsr.logCovariatesUsed();
@@ -37,12 +47,17 @@ public final class BaseRecalibratorSparkFn {
         });
 
         final RecalibrationTables emptyRecalibrationTable = new RecalibrationTables(new StandardCovariateList(recalArgs, header));
-        final RecalibrationTables combinedTables = unmergedTables.treeAggregate(emptyRecalibrationTable,
-                RecalibrationTables::inPlaceCombine,
-                RecalibrationTables::inPlaceCombine,
-                Math.max(1, (int)(Math.log(unmergedTables.partitions().size()) / Math.log(2))));
+        final RecalibrationTables combinedTables;
+        if ( aggregateByReadGroup ) {
+            combinedTables = ReadGroupRecalibrationTables.aggregateByReadGroup(unmergedTables, emptyRecalibrationTable);
+        } else {
+            combinedTables = unmergedTables.treeAggregate(emptyRecalibrationTable,
+                    RecalibrationTables::inPlaceCombine,
+                    RecalibrationTables::inPlaceCombine,
+                    Math.max(1, (int)(Math.log(unmergedTables.partitions().size()) / Math.log(2))));
 
-        BaseRecalibrationEngine.finalizeRecalibrationTables(combinedTables);
+            BaseRecalibrationEngine.finalizeRecalibrationTables(combinedTables);
+        }
 
         final QuantizationInfo quantizationInfo = new QuantizationInfo(combinedTables, recalArgs.QUANTIZING_LEVELS);
 
@@ -0,0 +1,132 @@
+package org.broadinstitute.hellbender.tools.spark.transforms.bqsr;
+
+import org.apache.spark.api.java.JavaRDD;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+import org.broadinstitute.hellbender.utils.recalibration.BaseRecalibrationEngine;
+import org.broadinstitute.hellbender.utils.recalibration.RecalDatum;
+import org.broadinstitute.hellbender.utils.recalibration.RecalUtils;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationTables;
+import scala.Tuple2;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The cells of a {@link RecalibrationTables} that belong to a single read group.
+ *
+ * Every recalibration table is indexed by read group first, so the cells of one read group can be
+ * stored in tables of the same shape whose read group dimension has size 1. This lets Spark aggregate
+ * the recalibration data with reduceByKey, keyed by read group, instead of tree-reducing whole
+ * RecalibrationTables (which are sized by the total number of read groups) on every executor and on the driver.
+ */
+public final class ReadGroupRecalibrationTables implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // in the same order as the tables of the originating RecalibrationTables; read group key is always 0
+    private final List<NestedIntegerArray<RecalDatum>> tables;
+
+    private ReadGroupRecalibrationTables(final RecalibrationTables shapeOf) {
+        tables = new ArrayList<>(shapeOf.numTables());
+        for (final NestedIntegerArray<RecalDatum> table : shapeOf) {
+            final int[] dimensions = Arrays.copyOf(table.getDimensions(), table.getDimensions().length);
+            dimensions[0] = 1;
+            tables.add(new NestedIntegerArray<>(dimensions));
+        }
+    }
+
+    /**
+     * Splits the tables into one ReadGroupRecalibrationTables per read group that has data.
+     * The RecalDatum objects are shared with the original tables, not copied.
+     *
+     * @return pairs of read group key and the cells of that read group
+     */
+    public static List<Tuple2<Integer, ReadGroupRecalibrationTables>> splitByReadGroup(final RecalibrationTables recalibrationTables) {
+        Utils.nonNull(recalibrationTables);
+        final Map<Integer, ReadGroupRecalibrationTables> byReadGroup = new LinkedHashMap<>();
+        for (int i = 0; i < recalibrationTables.numTables(); i++) {
+            for (final NestedIntegerArray.Leaf<RecalDatum> leaf : recalibrationTables.getTable(i).getAllLeaves()) {
+                final int readGroupKey = leaf.keys[0];
+                final ReadGroupRecalibrationTables readGroupTables = byReadGroup.computeIfAbsent(readGroupKey, k -> new ReadGroupRecalibrationTables(recalibrationTables));
+                leaf.keys[0] = 0;
+                readGroupTables.tables.get(i).put(leaf.value, leaf.keys);
+            }
+        }
+
+        final List<Tuple2<Integer, ReadGroupRecalibrationTables>> result = new ArrayList<>(byReadGroup.size());
+        byReadGroup.forEach((readGroupKey, readGroupTables) -> result.add(new Tuple2<>(readGroupKey, readGroupTables)));
+        return result;
+    }
+
+    /**
+     * Combines the right tables into the left tables, in-place (without making a copy)
+     *
+     * @return modified version of left with the contents of right incorporated into it
+     */
+    public static ReadGroupRecalibrationTables inPlaceCombine(final ReadGroupRecalibrationTables left, final ReadGroupRecalibrationTables right) {
+        Utils.nonNull(left);
+        Utils.nonNull(right);
+        Utils.validateArg(left.tables.size() == right.tables.size(), "Attempting to merge ReadGroupRecalibrationTables with different sizes");
+
+        for (int i = 0; i < left.tables.size(); i++) {
+            RecalUtils.combineTables(left.tables.get(i), right.tables.get(i));
+        }
+        return left;
+    }
+
+    /**
+     * Computes the derived read group table and rounds the values, see {@link BaseRecalibrationEngine#finalizeRecalibrationTables}.
+     * Must be called once, after all the data for this read group has been combined.
+     *
+     * @return this object, finalized
+     */
+    public ReadGroupRecalibrationTables finalizeData() {
+        BaseRecalibrationEngine.finalizeRecalibrationTables(tables.get(0), tables.get(1), tables);
+        return this;
+    }
+
+    /**
+     * Puts all the cells of this read group into the given tables, under the given read group key.
+     */
+    public void addTo(final RecalibrationTables recalibrationTables, final int readGroupKey) {
+        Utils.nonNull(recalibrationTables);
+        Utils.validateArg(recalibrationTables.numTables() == tables.size(), "Attempting to add ReadGroupRecalibrationTables to RecalibrationTables of a different size");
+        for (int i = 0; i < tables.size(); i++) {
+            final NestedIntegerArray<RecalDatum> target = recalibrationTables.getTable(i);
+            for (final NestedIntegerArray.Leaf<RecalDatum> leaf : tables.get(i).getAllLeaves()) {
+                leaf.keys[0] = readGroupKey;
+                target.put(leaf.value, leaf.keys);
+            }
+        }
+    }
+
+    /**
+     * Aggregates per-partition recalibration tables by read group across the executors and only collects the
+     * finalized cells of each read group to the driver.
+     *
+     * @param unmergedTables un-finalized tables, typically one per partition
+     * @param emptyTables empty tables of the right shape, which are filled and returned
+     * @return emptyTables, filled with the finalized data (no further finalization is needed)
+     */
+    public static RecalibrationTables aggregateByReadGroup(final JavaRDD<RecalibrationTables> unmergedTables, final RecalibrationTables emptyTables) {
+        Utils.nonNull(unmergedTables);
+        Utils.nonNull(emptyTables);
+        Utils.validateArg(emptyTables.isEmpty(), "the tables to fill must be empty");
+
+        final int numReducers = Math.max(1, unmergedTables.partitions().size());
+        final List<Tuple2<Integer, ReadGroupRecalibrationTables>> finalizedByReadGroup = unmergedTables
+                .flatMapToPair(ReadGroupRecalibrationTables::splitByReadGroup)
+                .reduceByKey(ReadGroupRecalibrationTables::inPlaceCombine, numReducers)
+                .mapValues(ReadGroupRecalibrationTables::finalizeData)
+                .collect();
+
+        for (final Tuple2<Integer, ReadGroupRecalibrationTables> readGroupTables : finalizedByReadGroup) {
+            readGroupTables._2().addTo(emptyTables, readGroupTables._1());
+        }
+        return emptyTables;
+    }
+}
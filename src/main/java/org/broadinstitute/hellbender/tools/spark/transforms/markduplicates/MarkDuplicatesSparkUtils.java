@@ -2,7 +2,9 @@ package org.broadinstitute.hellbender.tools.spark.transforms.markduplicates;
 
 import com.google.common.collect.*;
 import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.metrics.MetricsFile;
+import org.apache.spark.Partitioner;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.broadinstitute.hellbender.engine.AuthHolder;
@@ -28,75 +30,151 @@ public class MarkDuplicatesSparkUtils {
     // Used to set an attribute on the GATKRead marking this read as an optical duplicate.
     public static final String OPTICAL_DUPLICATE_TOTAL_ATTRIBUTE_NAME = "OD";
 
+    // The mark of a read that is not a duplicate, see markPairedEnds.
+    static final int NON_DUPLICATE_MARK = 0;
+
+    // The library id of reads without a library, see constructLibraryIds.
+    static final short UNKNOWN_LIBRARY_ID = 0;
+
+    // A read index is the partition index in the high bits and the position within the partition in the low bits.
+    private static final int READ_INDEX_PARTITION_SHIFT = 32;
+    private static final long READ_INDEX_POSITION_MASK = (1L << READ_INDEX_PARTITION_SHIFT) - 1;
+
     /**
-     * (0) filter: remove unpaired reads and reads with an unmapped mate.
-     * (1) keyReadsByName: label each read with its read group and read name.
-     * (2) GroupByKey: group together reads with the same group and name.
-     * (3) keyPairedEndsWithAlignmentInfo:
-     *   (a) Sort each group of reads (see GATKOrder below).
-     *   (b) Pair consecutive reads into PairedEnds. In most cases there will only be two reads
+     * Orders read summaries like {@link ReadCoordinateComparator} orders the reads, for reads that are not duplicates.
+     */
+    static final Comparator<ReadEndSummary> COORDINATE_ORDER = new ReadEndSummaryCoordinateOrder();
+
+    /**
+     * (0) summarizeReads: replace each read with a {@link ReadEndSummary} that refers to the read by its index,
+     *     and label it with its read group and read name.
+     * (1) GroupByKey: group together summaries with the same group and name.
+     * (2) keyPairedEndsWithAlignmentInfo:
+     *   (a) Sort each group of summaries (see GATKOrder below).
+     *   (b) Pair consecutive summaries into PairedEnds. In most cases there will only be two reads
      *       with the same name. TODO: explain why there might be more.
-     *   (c) Label each read with alignment information: Library, reference index,
+     *   (c) Label each pair with a {@link BinaryReadsKey}: Library, reference index,
      *       stranded unclipped start and reverse strand.
-     *   (d) Leftover reads are emitted, unmodified, as an unpaired end.
-     * (4) GroupByKey: Group PairedEnds that share alignment information. These pairs
-     *     are duplicates of each other.
-     * (5) markDuplicatePairs:
-     *   (a) For each group created by (4), sort the pairs by score and mark all but the
-     *       highest scoring as duplicates.
+     *   (d) Leftover reads are emitted as an unpaired end.
+     * (3) markPairedEnds:
+     *   (a) CombineByKey: find the highest scoring of the PairedEnds that share alignment information
+     *       (these pairs are duplicates of each other), and mark it as the representative of its set.
      *   (b) Determine which duplicates are optical duplicates and increase the overall count.
+     * (4) markReads: send the marks to the partitions the reads came from, sorted by read index,
+     *     and set them on the reads in a single pass over each partition.
+     *
+     * Only the summaries, the best candidates and the marks are shuffled, never the reads. In exchange, the reads are computed twice,
+     * so they must be deterministic (which reads loaded from a file are).
      */
     static JavaRDD<GATKRead> transformReads(final SAMFileHeader header, final MarkDuplicatesScoringStrategy scoringStrategy, final OpticalDuplicateFinder finder, final JavaRDD<GATKRead> reads, final int numReducers) {
+        final JavaPairRDD<String, ReadEndSummary> keyedSummaries = summarizeReads(header, scoringStrategy, reads);
 
-        JavaPairRDD<String, Iterable<GATKRead>> keyedReads;
+        JavaPairRDD<String, Iterable<ReadEndSummary>> groupedSummaries;
         if (SAMFileHeader.SortOrder.queryname.equals(header.getSortOrder())) {
             // reads are already sorted by name, so perform grouping within the partition (no shuffle)
-            keyedReads = spanReadsByKey(header, reads);
+            groupedSummaries = spanByNameAndKey(keyedSummaries.mapToPair(keyed -> new Tuple2<>(keyed._2().getName(), keyed)));
         } else {
             // sort by group and name (incurs a shuffle)
-            JavaPairRDD<String, GATKRead> keyReadPairs = reads.mapToPair(read -> new Tuple2<>(ReadsKey.keyForRead(header, read), read));
-            keyedReads = keyReadPairs.groupByKey(numReducers);
+            groupedSummaries = keyedSummaries.groupByKey(numReducers);
         }
 
-        JavaPairRDD<String, Iterable<PairedEnds>> keyedPairs = keyedReads.flatMapToPair(keyedRead -> {
-            List<Tuple2<String, PairedEnds>> out = Lists.newArrayList();
+        JavaPairRDD<BinaryReadsKey, PairedEnds> keyedEnds = groupedSummaries.flatMapToPair(keyedRead -> {
+            List<Tuple2<BinaryReadsKey, PairedEnds>> out = Lists.newArrayList();
             // Write each read out as a pair with only the first slot filled
-            for (GATKRead read : keyedRead._2()) {
-                read.setIsDuplicate(false);
+            for (ReadEndSummary read : keyedRead._2()) {
                 final PairedEnds pair = PairedEnds.of(read);
-                out.add(new Tuple2<>(pair.keyForFragment(header), pair));
+                out.add(new Tuple2<>(pair.keyForFragment(), pair));
             }
             // Write each paired read with a mapped mate as a pair
-            final List<GATKRead> sorted = Lists.newArrayList(Iterables.filter(keyedRead._2(), read -> ReadUtils.readHasMappedMate(read)));
-            sorted.sort(new GATKOrder(header));
+            final List<ReadEndSummary> sorted = Lists.newArrayList(Iterables.filter(keyedRead._2(), ReadEndSummary::hasMappedMate));
+            sorted.sort(new GATKOrder());
             PairedEnds pair = null;
             //Records are sorted, we iterate over them and pair them up.
-            for (final GATKRead record : sorted) {
+            for (final ReadEndSummary record : sorted) {
                 if (pair == null) {                                //first in pair
                     pair = PairedEnds.of(record);
                 } else {                                           //second in pair
                     pair.and(record);
-                    out.add(new Tuple2<>(pair.key(header), pair));
+                    out.add(new Tuple2<>(pair.key(), pair));
                     pair = null;                                   //back to first
                 }
             }
             if (pair != null) {                                    //left over read
-                out.add(new Tuple2<>(pair.key(header), pair));
+                out.add(new Tuple2<>(pair.key(), pair));
             }
             return out;
-        }).groupByKey(numReducers);
+        });
 
-        return markPairedEnds(keyedPairs, scoringStrategy, finder, header);
+        return markReads(reads, markPairedEnds(keyedEnds, finder, numReducers));
+    }
+
+    /**
+     * Replaces each read with its summary, keyed by read group and name (see {@link ReadsKey#keyForRead}).
+     * The index of a read is the index of its partition in the high 32 bits and its position within the partition
+     * in the low 32 bits, so it can be computed without a pass over the data (unlike zipWithIndex).
+     */
+    static JavaPairRDD<String, ReadEndSummary> summarizeReads(final SAMFileHeader header, final MarkDuplicatesScoringStrategy scoringStrategy, final JavaRDD<GATKRead> reads) {
+        final Map<String, Short> libraryIds = constructLibraryIds(header);
+        return reads.mapPartitionsWithIndex((partitionIndex, partitionReads) -> {
+            final long firstIndex = (long) partitionIndex << READ_INDEX_PARTITION_SHIFT;
+            return new AbstractIterator<Tuple2<String, ReadEndSummary>>() {
+                private long nextIndex = firstIndex;
+
+                @Override
+                protected Tuple2<String, ReadEndSummary> computeNext() {
+                    if (!partitionReads.hasNext()) {
+                        return endOfData();
+                    }
+                    final GATKRead read = partitionReads.next();
+                    final String library = ReadUtils.getLibrary(read, header);
+                    final short libraryId = library == null ? UNKNOWN_LIBRARY_ID : libraryIds.get(library);
+                    final ReadEndSummary summary = new ReadEndSummary(nextIndex++, read, header, libraryId, scoringStrategy);
+                    return new Tuple2<>(ReadsKey.keyForRead(header, read), summary);
+                }
+            };
+        }, true).mapToPair(keyed -> keyed);
+    }
+
+    /**
+     * Assigns an id to each library in the header, in sorted order, so that the ids are the same on every executor.
+     * Reads without a library get {@link #UNKNOWN_LIBRARY_ID}.
+     */
+    static Map<String, Short> constructLibraryIds(final SAMFileHeader header) {
+        final SortedSet<String> libraries = new TreeSet<>();
+        for (final SAMReadGroupRecord readGroup : header.getReadGroups()) {
+            if (readGroup.getLibrary() != null) {
+                libraries.add(readGroup.getLibrary());
+            }
+        }
+        if (libraries.size() >= Short.MAX_VALUE) {
+            throw new GATKException("Too many libraries to mark duplicates: " + libraries.size());
+        }
+        final Map<String, Short> libraryIds = new HashMap<>();
+        short nextId = UNKNOWN_LIBRARY_ID + 1;
+        for (final String library : libraries) {
+            libraryIds.put(library, nextId++);
+        }
+        return libraryIds;
     }
 
     static JavaPairRDD<String, Iterable<GATKRead>> spanReadsByKey(final SAMFileHeader header, final JavaRDD<GATKRead> reads) {
-        JavaPairRDD<String, GATKRead> nameReadPairs = reads.mapToPair(read -> new Tuple2<>(read.getName(), read));
-        return spanByKey(nameReadPairs).flatMapToPair(namedRead -> {
-            // for each name, separate reads by key (group name)
-            List<Tuple2<String, Iterable<GATKRead>>> out = Lists.newArrayList();
-            ListMultimap<String, GATKRead> multi = LinkedListMultimap.create();
-            for (GATKRead read : namedRead._2()) {
-                multi.put(ReadsKey.keyForRead(header, read), read);
+        return spanByNameAndKey(reads.mapToPair(read -> new Tuple2<>(read.getName(), new Tuple2<>(ReadsKey.keyForRead(header, read), read))));
+    }
+
+    /**
+     * Groups values that are sorted by name, and then separates the values of each name by key (group name),
+     * without a shuffle.
+     * @param namedValues the input RDD, with pairs of key and value for each name
+     * @param <V> type of values
+     * @return an RDD where each the values for each key are grouped into an iterable collection
+     */
+    private static <V> JavaPairRDD<String, Iterable<V>> spanByNameAndKey(final JavaPairRDD<String, Tuple2<String, V>> namedValues) {
+        return spanByKey(namedValues).flatMapToPair(namedValue -> {
+            // for each name, separate values by key (group name)
+            List<Tuple2<String, Iterable<V>>> out = Lists.newArrayList();
+            ListMultimap<String, V> multi = LinkedListMultimap.create();
+            for (Tuple2<String, V> keyedValue : namedValue._2()) {
+                multi.put(keyedValue._1(), keyedValue._2());
             }
             for (String key : multi.keySet()) {
                 // list from Multimap is not serializable by Kryo, so put in a new array list
@@ -155,109 +233,211 @@ public class MarkDuplicatesSparkUtils {
         };
     }
 
-    static JavaRDD<GATKRead> markPairedEnds(final JavaPairRDD<String, Iterable<PairedEnds>> keyedPairs,
-                                            final MarkDuplicatesScoringStrategy scoringStrategy,
-                                            final OpticalDuplicateFinder finder, final SAMFileHeader header) {
-        return keyedPairs.flatMap(keyedPair -> {
-            Iterable<PairedEnds> pairedEnds = keyedPair._2();
-            final ImmutableListMultimap<Boolean, PairedEnds> paired = Multimaps.index(pairedEnds, pair -> pair.second() != null);
+    /**
+     * Marks the duplicates in each set of PairedEnds that share a key.
+     *
+     * Instead of grouping all the candidates of a set, only the best scoring candidate of each set is kept
+     * (see {@link BestPairedEnds}), so Spark combines the candidates map-side and never materializes a whole set.
+     * As a consequence, the representatives are marked rather than the duplicates.
+     * Optical duplicates are counted in a separate pass over the locations of the pairs, only if a finder is given.
+     *
+     * @return the marks, by read index: {@link #NON_DUPLICATE_MARK} for a read that is not a duplicate, or the (positive)
+     * number of optical duplicates for the representative read of a set of duplicate pairs. Reads without a mark are duplicates.
+     */
+    static JavaPairRDD<Long, Integer> markPairedEnds(final JavaPairRDD<BinaryReadsKey, PairedEnds> keyedEnds,
+                                                    final OpticalDuplicateFinder finder, final int numReducers) {
+        // As in Picard, unpaired ends left alone.
+        final JavaPairRDD<Long, Integer> unpairedEnds = keyedEnds
+                .filter(keyedEnd -> isUnpairedEnd(keyedEnd._1(), keyedEnd._2()))
+                .mapToPair(keyedEnd -> new Tuple2<>(keyedEnd._2().first().getIndex(), NON_DUPLICATE_MARK));
+
+        // Each key corresponds to either fragments or paired ends, not a mixture of both.
+        final JavaPairRDD<BinaryReadsKey, BestPairedEnds> bestByKey = keyedEnds
+                .filter(keyedEnd -> !isUnpairedEnd(keyedEnd._1(), keyedEnd._2()))
+                .combineByKey(BestPairedEnds::new, BestPairedEnds::add, BestPairedEnds::merge, numReducers);
+
+        final JavaPairRDD<Long, Integer> representatives;
+        if (finder == null) {
+            representatives = bestByKey.flatMapToPair(best -> best._2().representativeMarks(0));
+        } else {
+            // both are partitioned by key into numReducers partitions, so the join doesn't shuffle
+            representatives = bestByKey.leftOuterJoin(countOpticalDuplicates(keyedEnds, finder, numReducers))
+                    .flatMapToPair(best -> best._2()._1().representativeMarks(best._2()._2().or(0)));
+        }
+        return representatives.union(unpairedEnds);
+    }
+
+    private static boolean isUnpairedEnd(final BinaryReadsKey key, final PairedEnds pairedEnds) {
+        return !key.isFragment() && pairedEnds.second() == null;
+    }
 
-            // Each key corresponds to either fragments or paired ends, not a mixture of both.
+    /**
+     * Counts the optical duplicates of each set of duplicate pairs, from the locations of the pairs.
+     *
+     * @return the number of optical duplicates by key, only for the keys that have any
+     */
+    static JavaPairRDD<BinaryReadsKey, Integer> countOpticalDuplicates(final JavaPairRDD<BinaryReadsKey, PairedEnds> keyedEnds,
+                                                                       final OpticalDuplicateFinder finder, final int numReducers) {
+        return keyedEnds.filter(keyedEnd -> !keyedEnd._1().isFragment() && keyedEnd._2().second() != null)
+                .mapValues(pair -> {
+                    // Both elements in the pair have the same name
+                    finder.addLocationInformation(pair.first().getName(), pair);
+                    return new Tuple2<>(pair.getOrientationForOpticalDuplicates(), new PhysicalLocationForMateCigar(pair));
+                })
+                .groupByKey(numReducers)
+                .mapValues(locations -> {
+                    // Split by orientation and count duplicates in each group separately.
+                    final ListMultimap<Byte, PhysicalLocationForMateCigar> groupByOrientation = ArrayListMultimap.create();
+                    for (final Tuple2<Byte, PhysicalLocationForMateCigar> location : locations) {
+                        groupByOrientation.put(location._1(), location._2());
+                    }
+                    if (groupByOrientation.containsKey(ReadEnds.FR) && groupByOrientation.containsKey(ReadEnds.RF)){
+                        final List<PhysicalLocationForMateCigar> peFR = new ArrayList<>(groupByOrientation.get(ReadEnds.FR));
+                        final List<PhysicalLocationForMateCigar> peRF = new ArrayList<>(groupByOrientation.get(ReadEnds.RF));
+                        return countOpticalDuplicates(finder, peFR) +  countOpticalDuplicates(finder, peRF);
+                    } else {
+                        return countOpticalDuplicates(finder, new ArrayList<>(groupByOrientation.values()));
+                    }
+                })
+                .filter(opticalDuplicates -> opticalDuplicates._2() > 0);
+    }
 
-            if (ReadsKey.isFragment(keyedPair._1())) { // fragments
-                return handleFragments(pairedEnds, scoringStrategy, header);
+    private static int countOpticalDuplicates(OpticalDuplicateFinder finder, List<PhysicalLocationForMateCigar> locations) {
+        final boolean[] opticalDuplicateFlags = finder.findOpticalDuplicates(locations);
+        int numOpticalDuplicates = 0;
+        for (final boolean b : opticalDuplicateFlags) {
+            if (b) {
+                numOpticalDuplicates++;
             }
+        }
+        return numOpticalDuplicates;
+    }
 
-            List<GATKRead> out = Lists.newArrayList();
+    /**
+     * The best scoring candidate of a set of duplicates seen so far and, for fragments, whether any of the
+     * fragments belongs to a read with a mapped mate (in which case all the fragments are duplicates).
+     * Adding candidates and merging these is associative and commutative, so it can be done in any order.
+     */
+    static final class BestPairedEnds implements Serializable {
+        private static final long serialVersionUID = 1L;
 
-            // As in Picard, unpaired ends left alone.
-            for (final PairedEnds pair : paired.get(false)) {
-                out.add(pair.first());
-            }
+        /**
+         * Orders the candidates from best to worst: by score, using the coordinates for tie-breaking.
+         */
+        private static final Comparator<PairedEnds> CANDIDATE_ORDER =
+                Comparator.comparing(PairedEnds::score).reversed()
+                        .thenComparing((o1, o2) -> COORDINATE_ORDER.compare(o1.first(), o2.first()));
 
-            // Order by score using ReadCoordinateComparator for tie-breaking.
-            Comparator<PairedEnds> pairedEndsComparator =
-                    Comparator.<PairedEnds, Integer>comparing(pe -> pe.score(scoringStrategy)).reversed()
-                            .thenComparing((o1, o2) -> new ReadCoordinateComparator(header).compare(o1.first(), o2.first()));
-            final List <PairedEnds> scored = paired.get(true).stream().sorted(pairedEndsComparator).collect(Collectors.toList());
+        private PairedEnds best;
+        private boolean containsPairs = false;
 
-            final PairedEnds best = Iterables.getFirst(scored, null);
-            if (best == null) {
-                return out;
-            }
+        BestPairedEnds(final PairedEnds candidate) {
+            add(candidate);
+        }
 
-            // Mark everyone who's not best as a duplicate
-            for (final PairedEnds pair : Iterables.skip(scored, 1)) {
-                pair.first().setIsDuplicate(true);
-                pair.second().setIsDuplicate(true);
+        BestPairedEnds add(final PairedEnds candidate) {
+            if (candidate.second() == null && candidate.first().hasMappedMate()) {
+                containsPairs = true;
+            } else if (best == null || CANDIDATE_ORDER.compare(candidate, best) < 0) {
+                best = candidate;
             }
+            return this;
+        }
 
-            // Now, add location information to the paired ends
-            for (final PairedEnds pair : scored) {
-                // Both elements in the pair have the same name
-                finder.addLocationInformation(pair.first().getName(), pair);
+        BestPairedEnds merge(final BestPairedEnds other) {
+            containsPairs |= other.containsPairs;
+            if (other.best != null && (best == null || CANDIDATE_ORDER.compare(other.best, best) < 0)) {
+                best = other.best;
             }
+            return this;
+        }
 
-            // This must happen last, as findOpticalDuplicates mutates the list.
-            // Split by orientation and count duplicates in each group separately.
-            final ImmutableListMultimap<Byte, PairedEnds> groupByOrientation = Multimaps.index(scored, pe -> pe.getOrientationForOpticalDuplicates());
-            final int numOpticalDuplicates;
-            if (groupByOrientation.containsKey(ReadEnds.FR) && groupByOrientation.containsKey(ReadEnds.RF)){
-                final List<PairedEnds> peFR = new ArrayList<>(groupByOrientation.get(ReadEnds.FR));
-                final List<PairedEnds> peRF = new ArrayList<>(groupByOrientation.get(ReadEnds.RF));
-                numOpticalDuplicates = countOpticalDuplicates(finder, peFR) +  countOpticalDuplicates(finder, peRF);
-            } else {
-                numOpticalDuplicates = countOpticalDuplicates(finder, scored);
-            }
-            best.first().setAttribute(OPTICAL_DUPLICATE_TOTAL_ATTRIBUTE_NAME, numOpticalDuplicates);
+        PairedEnds getBest() {
+            return best;
+        }
 
-            for (final PairedEnds pair : scored) {
-                out.add(pair.first());
-                out.add(pair.second());
+        /**
+         * @param numOpticalDuplicates the number of optical duplicates in the set, recorded on the representative
+         * @return the marks for the reads of the representative of the set, empty if all the candidates are duplicates
+         */
+        List<Tuple2<Long, Integer>> representativeMarks(final int numOpticalDuplicates) {
+            final List<Tuple2<Long, Integer>> marks = new ArrayList<>(2);
+            if (best == null || containsPairs) {
+                // There are paired ends so we mark all fragments as duplicates.
+                return marks;
             }
-            return out;
-        });
-    }
-
-    private static int countOpticalDuplicates(OpticalDuplicateFinder finder, List<PairedEnds> scored) {
-        final boolean[] opticalDuplicateFlags = finder.findOpticalDuplicates(scored);
-        int numOpticalDuplicates = 0;
-        for (final boolean b : opticalDuplicateFlags) {
-            if (b) {
-                numOpticalDuplicates++;
+            marks.add(new Tuple2<>(best.first().getIndex(), numOpticalDuplicates));
+            if (best.second() != null) {
+                marks.add(new Tuple2<>(best.second().getIndex(), NON_DUPLICATE_MARK));
             }
+            return marks;
         }
-        return numOpticalDuplicates;
     }
 
-    private static List<GATKRead> handleFragments(Iterable<PairedEnds> pairedEnds, final MarkDuplicatesScoringStrategy scoringStrategy, final SAMFileHeader header) {
-        List<GATKRead> reads = Lists.newArrayList();
-
-        final Iterable<GATKRead> transform = Iterables.transform(pairedEnds, pair -> pair.first());
-        Iterable<GATKRead> readsCopy = Iterables.transform(transform, GATKRead::copy);
-        final Map<Boolean, List<GATKRead>> byPairing = StreamSupport.stream(readsCopy.spliterator(), false).collect(Collectors.partitioningBy(
-                read -> ReadUtils.readHasMappedMate(read)
-        ));
-        // Note the we emit only fragments from this mapper.
-        if (byPairing.get(true).isEmpty()) {
-            // There are no paired reads, mark all but the highest scoring fragment as duplicate.
-            Comparator<GATKRead> fragmentsComparator = Comparator.<GATKRead, Integer>comparing(read -> scoringStrategy.score(read)).reversed().thenComparing(new ReadCoordinateComparator(header));
-            List <GATKRead> frags = byPairing.get(false).stream().sorted(fragmentsComparator).collect(Collectors.toList());
-            if (!frags.isEmpty()) {
-                reads.add(frags.get(0));                        //highest score - just emit
-                for (final GATKRead record : Iterables.skip(frags, 1)) {  //lower   scores - mark as dups and emit
-                    record.setIsDuplicate(true);
-                    reads.add(record);
+    /**
+     * Sets the duplicate flag (and the optical duplicate count) on every read, from the marks computed by
+     * {@link #markPairedEnds}. The marks are sent to the partition of their read and sorted by read index,
+     * so each partition of reads is zipped with its marks in a single pass.
+     */
+    static JavaRDD<GATKRead> markReads(final JavaRDD<GATKRead> reads, final JavaPairRDD<Long, Integer> marks) {
+        final JavaPairRDD<Long, Integer> sortedMarks = marks.repartitionAndSortWithinPartitions(new ReadIndexPartitioner(reads.partitions().size()));
+        return reads.zipPartitions(sortedMarks, (partitionReads, partitionMarks) -> () -> markingIterator(partitionReads, partitionMarks));
+    }
+
+    /**
+     * An iterator that sets the marks on the reads of a partition.
+     * @param reads the reads of a partition, in their original order
+     * @param marks the marks for the reads of the same partition, sorted by read index
+     * @return an iterator over the marked reads
+     */
+    static Iterator<GATKRead> markingIterator(final Iterator<GATKRead> reads, final Iterator<Tuple2<Long, Integer>> marks) {
+        final PeekingIterator<Tuple2<Long, Integer>> iter = Iterators.peekingIterator(marks);
+        return new AbstractIterator<GATKRead>() {
+            private long position = 0;
+
+            @Override
+            protected GATKRead computeNext() {
+                if (!reads.hasNext()) {
+                    if (iter.hasNext()) {
+                        throw new GATKException("Found a duplicate mark for a read that does not exist: " + iter.peek()._1());
+                    }
+                    return endOfData();
                 }
+                final GATKRead read = reads.next();
+                read.setIsDuplicate(true);
+                if (iter.hasNext() && (iter.peek()._1() & READ_INDEX_POSITION_MASK) == position) {
+                    final int mark = iter.next()._2();
+                    read.setIsDuplicate(false);
+                    if (mark != NON_DUPLICATE_MARK) {
+                        read.setAttribute(OPTICAL_DUPLICATE_TOTAL_ATTRIBUTE_NAME, mark);
+                    }
+                }
+                position++;
+                return read;
             }
-        } else {
-            // There are paired ends so we mark all fragments as duplicates.
-            for (final GATKRead record : byPairing.get(false)) {
-                record.setIsDuplicate(true);
-                reads.add(record);
-            }
+        };
+    }
+
+    /**
+     * Sends each read index to the partition of the read it came from.
+     */
+    static final class ReadIndexPartitioner extends Partitioner {
+        private static final long serialVersionUID = 1L;
+        private final int numPartitions;
+
+        ReadIndexPartitioner(final int numPartitions) {
+            this.numPartitions = numPartitions;
+        }
+
+        @Override
+        public int numPartitions() {
+            return numPartitions;
+        }
+
+        @Override
+        public int getPartition(final Object key) {
+            return (int) ((Long) key >>> READ_INDEX_PARTITION_SHIFT);
         }
-        return reads;
     }
 
 
@@ -349,29 +529,24 @@ public class MarkDuplicatesSparkUtils {
     }
 
     /**
-     * GATKRead comparator that compares based on mapping position followed by SAM flags.
+     * ReadEndSummary comparator that compares based on mapping position followed by SAM flags.
+     * This is the order used to pair up the reads that have the same name.
      */
-    final static class GATKOrder implements Comparator<GATKRead>, Serializable {
+    final static class GATKOrder implements Comparator<ReadEndSummary>, Serializable {
         private static final long serialVersionUID = 1l;
-        private final SAMFileHeader header;
         // TODO: Unify with other comparators in the codebase
 
-        public GATKOrder(final SAMFileHeader header) {
-            this.header = header;
-        }
-
         @Override
-        public int compare(final GATKRead lhs, final GATKRead rhs) {
+        public int compare(final ReadEndSummary lhs, final ReadEndSummary rhs) {
             if (rhs == lhs) return 0; //shortcut
 
-            final int res1 = Integer.compare(ReadUtils.getReferenceIndex(lhs, header), ReadUtils.getReferenceIndex(rhs, header));
+            final int res1 = Integer.compare(lhs.getReferenceIndex(), rhs.getReferenceIndex());
             if (res1 != 0) return res1;
 
             final int res2 = Long.compare(lhs.getStart(), rhs.getStart());
             if (res2 != 0) return res2;
 
-            final int res3 = Boolean.compare(lhs.isDuplicate(), rhs.isDuplicate());
-            if (res3 != 0) return res3;
+            // none of the summarized reads is a duplicate, so the duplicate flag is not compared
 
             final int res4 = Boolean.compare(lhs.failsVendorQualityCheck(), rhs.failsVendorQualityCheck());
             if (res4 != 0) return res4;
@@ -396,11 +571,47 @@ public class MarkDuplicatesSparkUtils {
             final int res10 = Integer.compare(lhs.getMappingQuality(), rhs.getMappingQuality());
             if (res10 != 0) return res10;
 
-            final int res11 = Integer.compare(ReadUtils.getMateReferenceIndex(lhs, header), ReadUtils.getMateReferenceIndex(rhs, header));
+            final int res11 = Integer.compare(lhs.getMateReferenceIndex(), rhs.getMateReferenceIndex());
             if (res11 != 0) return res11;
 
             final int res12 = Long.compare(lhs.getMateStart(), rhs.getMateStart());
             return res12;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * ReadEndSummary comparator with the same tie-breaking rules as {@link ReadCoordinateComparator},
+     * for mapped reads.
+     */
+    private static final class ReadEndSummaryCoordinateOrder implements Comparator<ReadEndSummary>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int compare(final ReadEndSummary first, final ReadEndSummary second) {
+            int result = Integer.compare(first.getReferenceIndex(), second.getReferenceIndex());
+            if ( result != 0 ) { return result; }
+            result = Integer.compare(first.getStart(), second.getStart());
+            if ( result != 0 ) { return result; }
+
+            if (first.isReverseStrand() != second.isReverseStrand()) {
+                return first.isReverseStrand()? 1: -1;
+            }
+
+            if ( first.getName() != null && second.getName() != null ) {
+                result = first.getName().compareTo(second.getName());
+                if ( result != 0 ) { return result; }
+            }
+            result = Integer.compare(first.getFlags(), second.getFlags());
+            if ( result != 0 ) { return result; }
+            result = Integer.compare(first.getMappingQuality(), second.getMappingQuality());
+            if ( result != 0 ) { return result; }
+            if (first.isPaired() && second.isPaired()) {
+                result = Integer.compare(first.getMateReferenceIndex(), second.getMateReferenceIndex());
+                if ( result != 0 ) { return result; }
+                result = Integer.compare(first.getMateStart(), second.getMateStart());
+                if ( result != 0 ) { return result; }
+            }
+            return Integer.compare(first.getFragmentLength(), second.getFragmentLength());
+        }
+    }
+}
@@ -109,6 +109,13 @@ public final class BaseRecalibrator extends ReadWalker {
     @Argument(shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, doc = "The output recalibration table file to create", optional = false)
     private File recalTableFile = null;
 
+    /**
+     * The binary form holds the same data as the text form, but is much faster to load and to gather with GatherBQSRReports.
+     * All the tools that read recalibration reports accept either form.
+     */
+    @Argument(fullName = "binaryOutput", shortName = "binaryOutput", doc = "Write the recalibration table in the compact binary form instead of the text form", optional = true)
+    private boolean binaryOutput = false;
+
     private BaseRecalibrationEngine recalibrationEngine;
 
     private ReferenceDataSource referenceDataSource; // datasource for the reference. We're using a different one from the engine itself to avoid messing with its caches.
@@ -195,7 +202,11 @@ public final class BaseRecalibrator extends ReadWalker {
 
     private void generateReport() {
         try ( PrintStream recalTableStream = new PrintStream(recalTableFile) ) {
-            RecalUtils.outputRecalibrationReport(recalTableStream, recalArgs, quantizationInfo, recalibrationEngine.getFinalRecalibrationTables(), recalibrationEngine.getCovariates());
+            if (binaryOutput) {
+                RecalUtils.outputBinaryRecalibrationReport(recalTableStream, recalArgs, quantizationInfo, recalibrationEngine.getFinalRecalibrationTables(), recalibrationEngine.getCovariates());
+            } else {
+                RecalUtils.outputRecalibrationReport(recalTableStream, recalArgs, quantizationInfo, recalibrationEngine.getFinalRecalibrationTables(), recalibrationEngine.getCovariates());
+            }
         }
         catch (final IOException e) {
             throw new UserException.CouldNotCreateOutputFile(recalTableFile, e);
@@ -26,13 +26,15 @@ public final class GatherBQSRReports extends CommandLineProgram {
             shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc="File to output the gathered file to")
     public File outputReport;
 
+    @Argument(fullName = "binaryOutput", shortName = "binaryOutput", doc = "Write the gathered report in the compact binary form instead of the text form", optional = true)
+    public boolean binaryOutput = false;
 
     @Override
     protected Object doWork() {
         inputReports.forEach(IOUtil::assertFileIsReadable);
         IOUtil.assertFileIsWritable(outputReport);
 
-        RecalibrationReport.gatherReportsIntoOneFile(inputReports, outputReport);
+        RecalibrationReport.gatherReportsIntoOneFile(inputReports, outputReport, binaryOutput);
 
         return 0;
     }
@@ -148,11 +148,8 @@ public final class BQSRReadTransformer implements ReadTransformer {
         read.clearAttribute(ReadUtils.BQSR_BASE_INSERTION_QUALITIES);
         read.clearAttribute(ReadUtils.BQSR_BASE_DELETION_QUALITIES);
 
-        // get the keyset for this base using the error model
-        final int[][] fullReadKeySet = readCovariates.getKeySet(EventType.BASE_SUBSTITUTION);
-
         // the rg key is constant over the whole read, the global deltaQ is too
-        final int rgKey = fullReadKeySet[0][0];
+        final int rgKey = readCovariates.getKey(0, EventType.BASE_SUBSTITUTION, 0);
 
         final RecalDatum empiricalQualRG = recalibrationTables.getReadGroupTable().get2Keys(rgKey, BASE_SUBSTITUTION_INDEX);
 
@@ -175,14 +172,14 @@ public final class BQSRReadTransformer implements ReadTransformer {
                 continue;
             }
             Arrays.fill(empiricalQualCovsArgs, null);  //clear the array
-            final int[] keySet = fullReadKeySet[offset];
-
+            final int qualKey = readCovariates.getKey(offset, EventType.BASE_SUBSTITUTION, 1);
 
-            final RecalDatum empiricalQualQS = qualityScoreTable.get3Keys(keySet[0], keySet[1], BASE_SUBSTITUTION_INDEX);
+            final RecalDatum empiricalQualQS = qualityScoreTable.get3Keys(rgKey, qualKey, BASE_SUBSTITUTION_INDEX);
 
             for (int i = specialCovariateCount; i < totalCovariateCount; i++) {
-                if (keySet[i] >= 0) {
-                    empiricalQualCovsArgs[i - specialCovariateCount] = recalibrationTables.getTable(i).get4Keys(keySet[0], keySet[1], keySet[i], BASE_SUBSTITUTION_INDEX);
+                final int covariateKey = readCovariates.getKey(offset, EventType.BASE_SUBSTITUTION, i);
+                if (covariateKey >= 0) {
+                    empiricalQualCovsArgs[i - specialCovariateCount] = recalibrationTables.getTable(i).get4Keys(rgKey, qualKey, covariateKey, BASE_SUBSTITUTION_INDEX);
                 }
             }
             final double recalibratedQualDouble = hierarchicalBayesianQualityEstimate(epsilon, empiricalQualRG, empiricalQualQS, empiricalQualCovsArgs);
@@ -0,0 +1,101 @@
+package org.broadinstitute.hellbender.utils.read.markduplicates;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.Serializable;
+
+/**
+ * A fixed-width key for fragments and paired ends, equivalent to the String keys of {@link ReadsKey}
+ * but much cheaper to shuffle, hash and compare. Used to identify duplicates for MarkDuplicates on Spark.
+ *
+ * Each end is packed into a long as its reference index (high 32 bits) and stranded unclipped start (low 32 bits).
+ * The library id, the strands and the kind of key are packed into a third long.
+ */
+public final class BinaryReadsKey implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final long LIBRARY_MASK = 0xFFFFL;
+    private static final long FIRST_REVERSE_STRAND = 1L << 16;
+    private static final long SECOND_REVERSE_STRAND = 1L << 17;
+    private static final long HAS_SECOND = 1L << 18;
+    private static final long FRAGMENT = 1L << 19;
+
+    private final long first;
+    private final long second;
+    private final long libraryAndFlags;
+
+    private BinaryReadsKey(final long first, final long second, final long libraryAndFlags) {
+        this.first = first;
+        this.second = second;
+        this.libraryAndFlags = libraryAndFlags;
+    }
+
+    /**
+     * Makes a unique key for the fragment.
+     */
+    public static BinaryReadsKey keyForFragment(final ReadEndSummary read) {
+        Utils.nonNull(read);
+        return new BinaryReadsKey(packEnd(read), 0L, packLibraryAndStrand(read) | FRAGMENT);
+    }
+
+    /**
+     * Makes a unique key for the paired reads. The second read may be null, if its mate was not found.
+     */
+    public static BinaryReadsKey keyForPairedEnds(final ReadEndSummary first, final ReadEndSummary second) {
+        Utils.nonNull(first);
+        if (second == null) {
+            return new BinaryReadsKey(packEnd(first), 0L, packLibraryAndStrand(first));
+        }
+        return new BinaryReadsKey(packEnd(first), packEnd(second),
+                packLibraryAndStrand(first) | HAS_SECOND | (second.isReverseStrand() ? SECOND_REVERSE_STRAND : 0L));
+    }
+
+    private static long packEnd(final ReadEndSummary read) {
+        return ((long) read.getReferenceIndex() << 32) | (read.getStrandedUnclippedStart() & 0xFFFFFFFFL);
+    }
+
+    private static long packLibraryAndStrand(final ReadEndSummary read) {
+        return (read.getLibraryId() & LIBRARY_MASK) | (read.isReverseStrand() ? FIRST_REVERSE_STRAND : 0L);
+    }
+
+    /**
+     * Returns true if the key is a fragment key.
+     */
+    public boolean isFragment() {
+        return (libraryAndFlags & FRAGMENT) != 0;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final BinaryReadsKey that = (BinaryReadsKey) o;
+        return first == that.first && second == that.second && libraryAndFlags == that.libraryAndFlags;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(first);
+        result = 31 * result + Long.hashCode(second);
+        result = 31 * result + Long.hashCode(libraryAndFlags);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s|%d|%d|%d|%s",
+                isFragment() ? "f" : "p",
+                libraryAndFlags & LIBRARY_MASK,
+                (int) (first >> 32),
+                (int) first,
+                (libraryAndFlags & FIRST_REVERSE_STRAND) != 0 ? "r" : "f") +
+                ((libraryAndFlags & HAS_SECOND) == 0 ? "" : String.format("|%d|%d|%s",
+                        (int) (second >> 32),
+                        (int) second,
+                        (libraryAndFlags & SECOND_REVERSE_STRAND) != 0 ? "r" : "f"));
+    }
+}
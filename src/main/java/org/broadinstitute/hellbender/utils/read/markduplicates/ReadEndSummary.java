@@ -0,0 +1,110 @@
+package org.broadinstitute.hellbender.utils.read.markduplicates;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.ReadUtils;
+
+import java.io.Serializable;
+
+/**
+ * The parts of a mapped, primary read that are needed to mark duplicates. Mark duplicates on Spark shuffles
+ * these instead of the reads, and uses the index of the read to set the duplicate flag on the read afterwards.
+ *
+ * The duplicate flag is not stored: all the reads are considered non-duplicates before they are marked.
+ */
+public final class ReadEndSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long index;
+    private final String name;
+    private final int flags;
+    private final int referenceIndex;
+    private final int start;
+    private final int strandedUnclippedStart;
+    private final int mateReferenceIndex;
+    private final int mateStart;
+    private final int mappingQuality;
+    private final int fragmentLength;
+    private final short libraryId;
+    private final int score;
+
+    /**
+     * @param index the index of the read, which identifies it when the duplicate flags are set
+     * @param read a mapped read
+     * @param header the header of the reads
+     * @param libraryId the id of the library of the read
+     * @param scoringStrategy the scoring strategy for choosing the non-duplicate among candidates
+     */
+    public ReadEndSummary(final long index, final GATKRead read, final SAMFileHeader header, final short libraryId,
+                          final MarkDuplicatesScoringStrategy scoringStrategy) {
+        Utils.nonNull(read);
+        Utils.nonNull(header);
+        Utils.nonNull(scoringStrategy);
+        Utils.validateArg(!read.isUnmapped(), "the read must be mapped");
+        this.index = index;
+        this.name = read.getName();
+        this.flags = ReadUtils.getSAMFlagsForRead(read) & ~ReadUtils.SAM_DUPLICATE_READ_FLAG;
+        this.referenceIndex = ReadUtils.getReferenceIndex(read, header);
+        this.start = read.getStart();
+        this.strandedUnclippedStart = ReadUtils.getStrandedUnclippedStart(read);
+        this.mateReferenceIndex = read.isPaired() ? ReadUtils.getMateReferenceIndex(read, header) : -1;
+        this.mateStart = read.isPaired() ? read.getMateStart() : 0;
+        this.mappingQuality = read.getMappingQuality();
+        this.fragmentLength = read.getFragmentLength();
+        this.libraryId = libraryId;
+        this.score = scoringStrategy.score(read);
+    }
+
+    public long getIndex() { return index; }
+
+    public String getName() { return name; }
+
+    /**
+     * @return the SAM flags of the read, without the duplicate flag
+     */
+    public int getFlags() { return flags; }
+
+    public boolean isPaired() { return (flags & ReadUtils.SAM_READ_PAIRED_FLAG) != 0; }
+
+    public boolean isProperlyPaired() { return (flags & ReadUtils.SAM_PROPER_PAIR_FLAG) != 0; }
+
+    public boolean hasMappedMate() { return isPaired() && (flags & ReadUtils.SAM_MATE_UNMAPPED_FLAG) == 0; }
+
+    public boolean isReverseStrand() { return (flags & ReadUtils.SAM_READ_STRAND_FLAG) != 0; }
+
+    public boolean isFirstOfPair() { return (flags & ReadUtils.SAM_FIRST_OF_PAIR_FLAG) != 0; }
+
+    public boolean isSecondaryAlignment() { return (flags & ReadUtils.SAM_NOT_PRIMARY_ALIGNMENT_FLAG) != 0; }
+
+    public boolean isSupplementaryAlignment() { return (flags & ReadUtils.SAM_SUPPLEMENTARY_ALIGNMENT_FLAG) != 0; }
+
+    public boolean failsVendorQualityCheck() { return (flags & ReadUtils.SAM_READ_FAILS_VENDOR_QUALITY_CHECK_FLAG) != 0; }
+
+    public int getReferenceIndex() { return referenceIndex; }
+
+    public int getStart() { return start; }
+
+    /**
+     * @return the unclipped end of the read if it is on the reverse strand, its unclipped start otherwise
+     */
+    public int getStrandedUnclippedStart() { return strandedUnclippedStart; }
+
+    /**
+     * @return the reference index of the mate, or -1 if the read is not paired or its mate is unmapped
+     */
+    public int getMateReferenceIndex() { return mateReferenceIndex; }
+
+    public int getMateStart() { return mateStart; }
+
+    public int getMappingQuality() { return mappingQuality; }
+
+    public int getFragmentLength() { return fragmentLength; }
+
+    public short getLibraryId() { return libraryId; }
+
+    /**
+     * @return the score of the read under the scoring strategy it was summarized with
+     */
+    public int getScore() { return score; }
+}
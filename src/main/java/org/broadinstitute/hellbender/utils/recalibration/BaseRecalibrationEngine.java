@@ -174,8 +174,25 @@ public final class BaseRecalibrationEngine implements Serializable {
      */
     public static void finalizeRecalibrationTables( final RecalibrationTables tables ) {
         Utils.nonNull(tables);
-        final NestedIntegerArray<RecalDatum> byReadGroupTable = tables.getReadGroupTable();
-        final NestedIntegerArray<RecalDatum> byQualTable = tables.getQualityScoreTable();
+        finalizeRecalibrationTables(tables.getReadGroupTable(), tables.getQualityScoreTable(), tables);
+    }
+
+    /**
+     * Finalize the given tables, see {@link #finalizeRecalibrationTables(RecalibrationTables)}.
+     *
+     * This version works on the bare tables so that subsets of the recalibration data
+     * (eg the tables of a single read group) can be finalized independently.
+     *
+     * @param byReadGroupTable the read group table, filled by this method
+     * @param byQualTable the quality score table
+     * @param allTables all the tables (including the two above), whose values are rounded
+     */
+    public static void finalizeRecalibrationTables( final NestedIntegerArray<RecalDatum> byReadGroupTable,
+                                                    final NestedIntegerArray<RecalDatum> byQualTable,
+                                                    final Iterable<NestedIntegerArray<RecalDatum>> allTables ) {
+        Utils.nonNull(byReadGroupTable);
+        Utils.nonNull(byQualTable);
+        Utils.nonNull(allTables);
 
         // iterate over all values in the qual table
         for ( final NestedIntegerArray.Leaf<RecalDatum> leaf : byQualTable.getAllLeaves() ) {
@@ -196,12 +213,12 @@ public final class BaseRecalibrationEngine implements Serializable {
         /* To replicate the results of BQSR whether or not we save tables to disk (which we need in Spark),
          * we need to trim the numbers to a few decimal placed (that's what writing and reading does).
          */
-        roundTableValues(tables);
+        roundTableValues(allTables);
     }
 
-    private static void roundTableValues(final RecalibrationTables rt) {
-        for (int i = 0; i < rt.numTables(); i++) {
-            for (final NestedIntegerArray.Leaf<RecalDatum> leaf : rt.getTable(i).getAllLeaves()) {
+    private static void roundTableValues(final Iterable<NestedIntegerArray<RecalDatum>> tables) {
+        for (final NestedIntegerArray<RecalDatum> table : tables) {
+            for (final NestedIntegerArray.Leaf<RecalDatum> leaf : table.getAllLeaves()) {
                 leaf.value.setNumMismatches(MathUtils.roundToNDecimalPlaces(leaf.value.getNumMismatches(), RecalUtils.NUMBER_ERRORS_DECIMAL_PLACES));
                 leaf.value.setEmpiricalQuality(MathUtils.roundToNDecimalPlaces(leaf.value.getEmpiricalQuality(), RecalUtils.EMPIRICAL_QUAL_DECIMAL_PLACES));
                 leaf.value.setEstimatedQReported(MathUtils.roundToNDecimalPlaces(leaf.value.getEstimatedQReported(), RecalUtils.EMPIRICAL_Q_REPORTED_DECIMAL_PLACES));
@@ -260,18 +277,17 @@ public final class BaseRecalibrationEngine implements Serializable {
             if( ! recalInfo.skip(offset) ) {
                 for (int idx = 0; idx < cachedEventTypes.length; idx++) { //Note: we loop explicitly over cached values for speed
                     final EventType eventType = cachedEventTypes[idx];
-                    final int[] keys = readCovariates.getKeySet(offset, eventType);
                     final int eventIndex = eventType.ordinal();
                     final byte qual = recalInfo.getQual(eventType, offset);
                     final double isError = recalInfo.getErrorFraction(eventType, offset);
 
-                    final int key0 = keys[0];
-                    final int key1 = keys[1];
+                    final int key0 = readCovariates.getKey(offset, eventType, 0);
+                    final int key1 = readCovariates.getKey(offset, eventType, 1);
 
                     RecalUtils.incrementDatumOrPutIfNecessary3keys(qualityScoreTable, qual, isError, key0, key1, eventIndex);
 
                     for (int i = nSpecialCovariates; i < nCovariates; i++) {
-                        final int keyi = keys[i];
+                        final int keyi = readCovariates.getKey(offset, eventType, i);
                         if (keyi >= 0) {
                             RecalUtils.incrementDatumOrPutIfNecessary4keys(recalTables.getTable(i), qual, isError, key0, key1, keyi, eventIndex);
                         }
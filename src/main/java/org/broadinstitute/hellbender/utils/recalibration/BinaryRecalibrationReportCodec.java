@@ -0,0 +1,412 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.QualityUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+import org.broadinstitute.hellbender.utils.recalibration.covariates.ReadGroupCovariate;
+import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
+import org.broadinstitute.hellbender.utils.report.GATKReportTable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Reads and writes a compact binary form of a recalibration report: the arguments, the quantization info and the
+ * raw cells of the {@link RecalibrationTables}.
+ *
+ * The binary form holds exactly the information that the text (GATKReport) form holds, so a report loaded from
+ * either form is the same and the text report can always be produced from it with {@link RecalibrationReport#createGATKReport()}.
+ * Unlike the text form it does not need to be tokenized and parsed, which makes loading a report cheap and lets
+ * {@link #gather} merge many reports by streaming their cells directly into a single set of tables.
+ *
+ * Layout (all numbers big-endian, strings in modified UTF-8 as written by {@link DataOutputStream#writeUTF}):
+ * <pre>
+ *   magic "GATKBQSR", int version
+ *   int numArguments, (String name, String value)*
+ *   int numReadGroups, String readGroup*          (sorted, only the read groups that have data)
+ *   int numQuals, (long count, byte quantizedQual)*
+ *   int numTables, per table: int numKeys, int numCells, per cell: int key*, long observations, double errors[, double estimatedQReported]
+ * </pre>
+ * The estimated reported quality is only stored for the read group table; as in the text form, it is the
+ * quality score key for all the other tables.
+ */
+public final class BinaryRecalibrationReportCodec {
+    private static final Logger logger = LogManager.getLogger(BinaryRecalibrationReportCodec.class);
+
+    private static final byte[] MAGIC = "GATKBQSR".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+
+    private static final String NULL_VALUE = "null";
+
+    private BinaryRecalibrationReportCodec() {}
+
+    /**
+     * @return true if the file starts with the binary recalibration report magic
+     */
+    public static boolean isBinaryReport(final File file) {
+        Utils.nonNull(file);
+        try (final InputStream in = new FileInputStream(file)) {
+            return startsWithMagic(in);
+        } catch (final IOException e) {
+            throw new UserException.CouldNotReadInputFile(file, e);
+        }
+    }
+
+    /**
+     * Checks whether the stream starts with the binary recalibration report magic, without consuming it.
+     * The stream must support mark/reset.
+     */
+    public static boolean isBinaryReport(final InputStream in) {
+        Utils.nonNull(in);
+        Utils.validateArg(in.markSupported(), "the stream must support mark/reset");
+        try {
+            in.mark(MAGIC.length);
+            final boolean isBinary = startsWithMagic(in);
+            in.reset();
+            return isBinary;
+        } catch (final IOException e) {
+            throw new UserException.CouldNotReadInputFile("Couldn't read the recalibration report", e);
+        }
+    }
+
+    private static boolean startsWithMagic(final InputStream in) throws IOException {
+        final byte[] start = new byte[MAGIC.length];
+        int read = 0;
+        while (read < start.length) {
+            final int n = in.read(start, read, start.length - read);
+            if (n < 0) {
+                return false;
+            }
+            read += n;
+        }
+        return Arrays.equals(start, MAGIC);
+    }
+
+    /**
+     * Writes the report in binary form. The stream is flushed but not closed.
+     */
+    public static void write(final OutputStream out, final RecalibrationReport report) {
+        Utils.nonNull(report);
+        write(out, argumentsOf(report.getArgumentTable()), report.getQuantizationInfo(), report.getRecalibrationTables(), report.getCovariates());
+    }
+
+    /**
+     * Writes the recalibration data in binary form. The stream is flushed but not closed.
+     */
+    public static void write(final OutputStream out, final RecalibrationArgumentCollection RAC, final QuantizationInfo quantizationInfo,
+                             final RecalibrationTables recalibrationTables, final StandardCovariateList covariates) {
+        Utils.nonNull(RAC);
+        write(out, argumentsOf(RAC.generateReportTable(covariates.covariateNames())), quantizationInfo, recalibrationTables, covariates);
+    }
+
+    private static void write(final OutputStream out, final Map<String, String> arguments, final QuantizationInfo quantizationInfo,
+                              final RecalibrationTables recalibrationTables, final StandardCovariateList covariates) {
+        Utils.nonNull(out);
+        Utils.nonNull(quantizationInfo);
+        Utils.nonNull(recalibrationTables);
+        Utils.nonNull(covariates);
+
+        // Like the text report, only write the read groups that have data, sorted by name, so that
+        // the keys of a report loaded from either form are the same.
+        final ReadGroupCovariate readGroupCovariate = covariates.getReadGroupCovariate();
+        final SortedSet<String> readGroups = new TreeSet<>();
+        for (final NestedIntegerArray.Leaf<RecalDatum> leaf : recalibrationTables.getReadGroupTable().getAllLeaves()) {
+            readGroups.add(readGroupCovariate.formatKey(leaf.keys[0]));
+        }
+        final Map<String, Integer> readGroupIndex = indexOf(readGroups);
+
+        try {
+            final DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(out));
+            stream.write(MAGIC);
+            stream.writeInt(VERSION);
+
+            stream.writeInt(arguments.size());
+            for (final Map.Entry<String, String> argument : arguments.entrySet()) {
+                stream.writeUTF(argument.getKey());
+                stream.writeUTF(argument.getValue());
+            }
+
+            stream.writeInt(readGroups.size());
+            for (final String readGroup : readGroups) {
+                stream.writeUTF(readGroup);
+            }
+
+            final List<Byte> quantizedQuals = quantizationInfo.getQuantizedQuals();
+            final List<Long> counts = quantizationInfo.getEmpiricalQualCounts();
+            stream.writeInt(quantizedQuals.size());
+            for (int qual = 0; qual < quantizedQuals.size(); qual++) {
+                stream.writeLong(counts.get(qual));
+                stream.writeByte(quantizedQuals.get(qual));
+            }
+
+            stream.writeInt(recalibrationTables.numTables());
+            for (final NestedIntegerArray<RecalDatum> table : recalibrationTables) {
+                final boolean isReadGroupTable = recalibrationTables.isReadGroupTable(table);
+                final List<NestedIntegerArray.Leaf<RecalDatum>> leaves = table.getAllLeaves();
+                stream.writeInt(table.getDimensions().length);
+                stream.writeInt(leaves.size());
+                for (final NestedIntegerArray.Leaf<RecalDatum> leaf : leaves) {
+                    final Integer readGroup = readGroupIndex.get(readGroupCovariate.formatKey(leaf.keys[0]));
+                    if (readGroup == null) {
+                        throw new GATKException("read group " + readGroupCovariate.formatKey(leaf.keys[0]) + " has data in the covariate tables but not in the read group table");
+                    }
+                    stream.writeInt(readGroup);
+                    for (int i = 1; i < leaf.keys.length; i++) {
+                        stream.writeInt(leaf.keys[i]);
+                    }
+                    stream.writeLong(leaf.value.getNumObservations());
+                    stream.writeDouble(leaf.value.getNumMismatches());
+                    if (isReadGroupTable) {
+                        stream.writeDouble(leaf.value.getEstimatedQReported());
+                    }
+                }
+            }
+            stream.flush();
+        } catch (final IOException e) {
+            throw new UserException.CouldNotCreateOutputFile("Couldn't write the binary recalibration report", e);
+        }
+    }
+
+    /**
+     * Loads a report in binary form.
+     */
+    public static RecalibrationReport read(final File file) {
+        Utils.nonNull(file);
+        try (final InputStream in = new FileInputStream(file)) {
+            return read(in);
+        } catch (final IOException e) {
+            throw new UserException.CouldNotReadInputFile(file, e);
+        }
+    }
+
+    /**
+     * Loads a report in binary form. The stream is not closed.
+     */
+    public static RecalibrationReport read(final InputStream in) {
+        Utils.nonNull(in);
+        try {
+            final DataInputStream stream = new DataInputStream(new BufferedInputStream(in));
+            final Header header = readHeader(stream);
+            final RecalibrationReport report = header.newReport(new ArrayList<>(header.readGroups));
+            final int[] noRemapping = new int[header.readGroups.size()];
+            for (int i = 0; i < noRemapping.length; i++) {
+                noRemapping[i] = i;
+            }
+            readTables(stream, report.getRecalibrationTables(), noRemapping, false);
+            return report;
+        } catch (final EOFException e) {
+            throw new UserException.MalformedFile("The binary recalibration report is truncated");
+        } catch (final IOException e) {
+            throw new UserException.CouldNotReadInputFile("Couldn't read the binary recalibration report", e);
+        }
+    }
+
+    /**
+     * Gathers reports in binary form into a single report, by streaming the cells of every input into one
+     * set of tables. The quantization info is recomputed from the gathered tables.
+     * The arguments are taken from the first input, as in {@link RecalibrationReport#gatherReports(List)}.
+     *
+     * @param inputs a list of files containing binary recalibration reports
+     * @return the gathered report
+     */
+    public static RecalibrationReport gather(final List<File> inputs) {
+        Utils.nonNull(inputs);
+        Utils.nonEmpty(inputs, "Cannot gather an empty list of inputs");
+
+        // the headers are small, so read them first to find the read group keys of the gathered report
+        final Map<File, Header> headers = new LinkedHashMap<>();
+        final SortedSet<String> allReadGroups = new TreeSet<>();
+        for (final File input : inputs) {
+            try (final DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(input)))) {
+                final Header header = readHeader(stream);
+                headers.put(input, header);
+                allReadGroups.addAll(header.readGroups);
+            } catch (final EOFException e) {
+                throw new UserException.MalformedFile(input, "The binary recalibration report is truncated");
+            } catch (final IOException e) {
+                throw new UserException.CouldNotReadInputFile(input, e);
+            }
+        }
+
+        final Map<String, Integer> readGroupIndex = indexOf(allReadGroups);
+        final RecalibrationReport result = headers.get(inputs.get(0)).newReport(new ArrayList<>(allReadGroups));
+        final RecalibrationTables gatheredTables = result.getRecalibrationTables();
+
+        for (final File input : inputs) {
+            final Header header = headers.get(input);
+            if (header.readGroups.size() != allReadGroups.size()) {
+                logger.info("Missing read group(s): " + input.getAbsolutePath());
+            }
+            final int[] toGatheredKey = header.readGroups.stream().mapToInt(readGroupIndex::get).toArray();
+            try (final DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(input)))) {
+                readHeader(stream);
+                readTables(stream, gatheredTables, toGatheredKey, true);
+            } catch (final EOFException e) {
+                throw new UserException.MalformedFile(input, "The binary recalibration report is truncated");
+            } catch (final IOException e) {
+                throw new UserException.CouldNotReadInputFile(input, e);
+            }
+        }
+
+        if (result.isEmpty()) {
+            throw new GATKException("there is no usable data in any input file");
+        }
+        result.setQuantizationInfo(new QuantizationInfo(gatheredTables, result.getRAC().QUANTIZING_LEVELS));
+        return result;
+    }
+
+    /**
+     * The arguments of the report, in the order of the table rows.
+     */
+    private static Map<String, String> argumentsOf(final GATKReportTable argumentTable) {
+        final Map<String, String> arguments = new LinkedHashMap<>();
+        for (int i = 0; i < argumentTable.getNumRows(); i++) {
+            final Object value = argumentTable.get(i, RecalUtils.ARGUMENT_VALUE_COLUMN_NAME);
+            arguments.put(argumentTable.get(i, "Argument").toString(), value == null ? NULL_VALUE : value.toString());
+        }
+        return arguments;
+    }
+
+    /**
+     * Rebuilds the argument table with the same layout as {@link RecalibrationArgumentCollection#generateReportTable(String)}.
+     */
+    private static GATKReportTable argumentTableOf(final Map<String, String> arguments) {
+        final GATKReportTable argumentsTable = new GATKReportTable(RecalUtils.ARGUMENT_REPORT_TABLE_TITLE, "Recalibration argument collection values used in this run", 2, GATKReportTable.Sorting.SORT_BY_COLUMN);
+        argumentsTable.addColumn("Argument", "%s");
+        argumentsTable.addColumn(RecalUtils.ARGUMENT_VALUE_COLUMN_NAME, "");
+        for (final Map.Entry<String, String> argument : arguments.entrySet()) {
+            argumentsTable.addRowID(argument.getKey(), true);
+            argumentsTable.set(argument.getKey(), RecalUtils.ARGUMENT_VALUE_COLUMN_NAME, argument.getValue());
+        }
+        return argumentsTable;
+    }
+
+    private static Map<String, Integer> indexOf(final SortedSet<String> readGroups) {
+        final Map<String, Integer> index = new TreeMap<>();
+        for (final String readGroup : readGroups) {
+            index.put(readGroup, index.size());
+        }
+        return index;
+    }
+
+    private static Header readHeader(final DataInputStream stream) throws IOException {
+        if (!startsWithMagic(stream)) {
+            throw new UserException.MalformedFile("This is not a binary recalibration report");
+        }
+        final int version = stream.readInt();
+        if (version != VERSION) {
+            throw new UserException.MalformedFile("Unsupported binary recalibration report version " + version + ", expected " + VERSION);
+        }
+
+        final int numArguments = stream.readInt();
+        final Map<String, String> arguments = new LinkedHashMap<>(numArguments);
+        for (int i = 0; i < numArguments; i++) {
+            arguments.put(stream.readUTF(), stream.readUTF());
+        }
+
+        final int numReadGroups = stream.readInt();
+        final List<String> readGroups = new ArrayList<>(numReadGroups);
+        for (int i = 0; i < numReadGroups; i++) {
+            readGroups.add(stream.readUTF());
+        }
+
+        final int numQuals = stream.readInt();
+        if (numQuals != QualityUtils.MAX_SAM_QUAL_SCORE + 1) {
+            throw new UserException.MalformedFile("Expected " + (QualityUtils.MAX_SAM_QUAL_SCORE + 1) + " quantized qualities but found " + numQuals);
+        }
+        final List<Byte> quantizedQuals = new ArrayList<>(numQuals);
+        final List<Long> counts = new ArrayList<>(numQuals);
+        for (int i = 0; i < numQuals; i++) {
+            counts.add(stream.readLong());
+            quantizedQuals.add(stream.readByte());
+        }
+
+        return new Header(arguments, readGroups, new QuantizationInfo(quantizedQuals, counts));
+    }
+
+    /**
+     * Reads the cells of every table into the given tables, mapping the read group keys with readGroupKeyMap.
+     * If combine is true, cells that are already present are combined with the new ones, otherwise they are replaced.
+     */
+    private static void readTables(final DataInputStream stream, final RecalibrationTables recalibrationTables,
+                                   final int[] readGroupKeyMap, final boolean combine) throws IOException {
+        final int numTables = stream.readInt();
+        if (numTables != recalibrationTables.numTables()) {
+            throw new UserException.MalformedFile("Expected " + recalibrationTables.numTables() + " recalibration tables but found " + numTables);
+        }
+        for (final NestedIntegerArray<RecalDatum> table : recalibrationTables) {
+            final boolean isReadGroupTable = recalibrationTables.isReadGroupTable(table);
+            final int numKeys = stream.readInt();
+            if (numKeys != table.getDimensions().length) {
+                throw new UserException.MalformedFile("Expected " + table.getDimensions().length + " keys per cell but found " + numKeys);
+            }
+            final int numCells = stream.readInt();
+            final int[] keys = new int[numKeys];
+            for (int cell = 0; cell < numCells; cell++) {
+                keys[0] = readGroupKeyMap[stream.readInt()];
+                for (int i = 1; i < numKeys; i++) {
+                    keys[i] = stream.readInt();
+                }
+                final long numObservations = stream.readLong();
+                final double numErrors = stream.readDouble();
+                final double estimatedQReported = isReadGroupTable ? stream.readDouble() : keys[1];
+
+                final RecalDatum datum = new RecalDatum(numObservations, numErrors, (byte)1);
+                datum.setEstimatedQReported(estimatedQReported);
+
+                final RecalDatum existing = combine ? table.get(keys) : null;
+                if (existing == null) {
+                    table.put(datum, keys);
+                } else {
+                    existing.combine(datum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Everything in a binary report before the tables.
+     */
+    private static final class Header {
+        private final Map<String, String> arguments;
+        private final List<String> readGroups;
+        private final QuantizationInfo quantizationInfo;
+
+        private Header(final Map<String, String> arguments, final List<String> readGroups, final QuantizationInfo quantizationInfo) {
+            this.arguments = arguments;
+            this.readGroups = readGroups;
+            this.quantizationInfo = quantizationInfo;
+        }
+
+        /**
+         * @return an empty report with these arguments and quantization info, keyed by the given read groups
+         */
+        private RecalibrationReport newReport(final List<String> allReadGroups) {
+            final GATKReportTable argumentTable = argumentTableOf(arguments);
+            final RecalibrationArgumentCollection RAC = RecalibrationReport.initializeArgumentCollectionTable(argumentTable);
+            final StandardCovariateList covariates = new StandardCovariateList(RAC, allReadGroups);
+            return new RecalibrationReport(argumentTable, RAC, quantizationInfo, covariates, new RecalibrationTables(covariates, allReadGroups.size()));
+        }
+    }
+}
@@ -253,6 +253,10 @@ public final class QualQuantizer {
      * root nodes.  Finds this min. penalty forest via greedy search, so is not guarenteed
      * to find the optimal combination.
      *
+     * The penalty of merging two adjacent intervals only depends on those two intervals, so the candidate
+     * merges are kept in a priority queue and only the (at most two) candidates next to each merge are
+     * recomputed, instead of recomputing the penalty of every adjacent pair for every merge.
+     *
      * TODO: develop a smarter algorithm
      *
      * @return the forest of intervals with size == nLevels
@@ -272,44 +276,71 @@ public final class QualQuantizer {
         // while ( n intervals >= nLevels ):
         //   find intervals to merge with least penalty
         //   merge it
+        final PriorityQueue<MergeCandidate> candidates = new PriorityQueue<>();
+        QualInterval previous = null;
+        for ( final QualInterval interval : intervals ) {
+            if ( previous != null ) {
+                candidates.add(new MergeCandidate(previous, interval));
+            }
+            previous = interval;
+        }
+
+        int mergeOrder = 0;
         while ( intervals.size() > nLevels ) {
-            mergeLowestPenaltyIntervals(intervals);
+            final MergeCandidate minMerge = candidates.poll();
+            if ( ! minMerge.isCurrent(intervals) ) {
+                // one of the two intervals was already merged with another neighbor
+                continue;
+            }
+
+            if ( logger.isDebugEnabled() ) logger.debug("  => final min merge " + minMerge.merged);
+            intervals.remove(minMerge.left);
+            intervals.remove(minMerge.right);
+            intervals.add(minMerge.merged);
+            minMerge.merged.mergeOrder = ++mergeOrder;
+
+            final QualInterval lower = intervals.lower(minMerge.merged);
+            if ( lower != null ) {
+                candidates.add(new MergeCandidate(lower, minMerge.merged));
+            }
+            final QualInterval higher = intervals.higher(minMerge.merged);
+            if ( higher != null ) {
+                candidates.add(new MergeCandidate(minMerge.merged, higher));
+            }
+            if ( logger.isDebugEnabled() ) logger.debug("updated intervals: " + intervals);
         }
 
         return intervals;
     }
 
     /**
-     * Helper function that finds and merges together the lowest penalty pair of intervals
-     * @param intervals
+     * A possible merge of two adjacent intervals, ordered by the penalty of the merge and then from left to right,
+     * so that ties are resolved in favor of the leftmost pair.
      */
-    private void mergeLowestPenaltyIntervals(final TreeSet<QualInterval> intervals) {
-        // setup the iterators
-        final Iterator<QualInterval> it1 = intervals.iterator();
-        final Iterator<QualInterval> it1p = intervals.iterator();
-        it1p.next(); // skip one
-
-        // walk over the pairs of left and right, keeping track of the pair with the lowest merge penalty
-        QualInterval minMerge = null;
-        if ( logger.isDebugEnabled() ) logger.debug("mergeLowestPenaltyIntervals: " + intervals.size());
-        int lastMergeOrder = 0;
-        while ( it1p.hasNext() ) {
-            final QualInterval left = it1.next();
-            final QualInterval right = it1p.next();
-            final QualInterval merged = left.merge(right);
-            lastMergeOrder = Math.max(Math.max(lastMergeOrder, left.mergeOrder), right.mergeOrder);
-            if ( minMerge == null || (merged.getPenalty() < minMerge.getPenalty() ) ) {
-                if ( logger.isDebugEnabled() ) logger.debug("  Updating merge " + minMerge);
-                minMerge = merged;
-            }
+    private final class MergeCandidate implements Comparable<MergeCandidate> {
+        final QualInterval left, right, merged;
+        final double penalty;
+
+        MergeCandidate(final QualInterval left, final QualInterval right) {
+            this.left = left;
+            this.right = right;
+            this.merged = left.merge(right);
+            this.penalty = merged.getPenalty();
         }
 
-        // now actually go ahead and merge the minMerge pair
-        if ( logger.isDebugEnabled() ) logger.debug("  => final min merge " + minMerge);
-        intervals.removeAll(minMerge.subIntervals);
-        intervals.add(minMerge);
-        minMerge.mergeOrder = lastMergeOrder + 1;
-        if ( logger.isDebugEnabled() ) logger.debug("updated intervals: " + intervals);
+        /**
+         * @return true if both intervals of this candidate are still top-level intervals
+         */
+        boolean isCurrent(final TreeSet<QualInterval> intervals) {
+            // intervals are compared by qStart, so check that the top-level intervals at these positions are the same objects
+            return intervals.floor(left) == left && intervals.floor(right) == right;
+        }
+
+        @Override
+        public int compareTo(final MergeCandidate other) {
+            final int byPenalty = Double.compare(penalty, other.penalty);
+            return byPenalty != 0 ? byPenalty : Integer.compare(left.qStart, other.left.qStart);
+        }
     }
 
     /**
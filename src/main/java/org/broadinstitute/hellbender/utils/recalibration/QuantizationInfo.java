@@ -63,6 +63,10 @@ public final class QuantizationInfo implements Serializable {
         return quantizedQuals;
     }
 
+    public List<Long> getEmpiricalQualCounts() {
+        return empiricalQualCounts;
+    }
+
     public int getQuantizationLevels() {
         return quantizationLevels;
     }
@@ -87,7 +87,7 @@ public final class RecalUtils {
          */
         protected CsvPrinter(final File out, final StandardCovariateList covs)
                 throws FileNotFoundException {
-            this(new FileOutputStream(out), covs);
+            this(new BufferedOutputStream(new FileOutputStream(out)), covs);
         }
 
         /**
@@ -300,6 +300,13 @@ public final class RecalUtils {
         report.print(recalTableStream);
     }
 
+    /**
+     * Writes the recalibration report in the binary form, see {@link BinaryRecalibrationReportCodec}.
+     */
+    public static void outputBinaryRecalibrationReport(final OutputStream recalTableStream, final RecalibrationArgumentCollection RAC, final QuantizationInfo quantizationInfo, final RecalibrationTables recalibrationTables, final StandardCovariateList covariates) {
+        BinaryRecalibrationReportCodec.write(recalTableStream, RAC, quantizationInfo, recalibrationTables, covariates);
+    }
+
     /**
      * Creates a consolidated RecalibrationReport report from the tables.
      *
@@ -350,7 +357,7 @@ public final class RecalUtils {
      * @param output result plot file name.
      */
     public static void generatePlots(final File csvFile, final File maybeGzipedExampleReportFile, final File output) {
-        final File exampleReportFile = IOUtils.gunzipToTempIfNeeded(maybeGzipedExampleReportFile);
+        final File exampleReportFile = textReportFor(IOUtils.gunzipToTempIfNeeded(maybeGzipedExampleReportFile));
         final RScriptExecutor executor = new RScriptExecutor();
         executor.addScript(new Resource(SCRIPT_FILE, RecalUtils.class));
         executor.addArgs(csvFile.getAbsolutePath());
@@ -360,45 +367,110 @@ public final class RecalUtils {
         executor.exec();
     }
 
-    private static void writeCsv(final PrintStream deltaTableFile, final RecalibrationTables recalibrationTables, final String recalibrationMode, final StandardCovariateList covariates, final boolean printHeader) {
+    /**
+     * The R script reads the arguments from the text form of the report, so binary reports are written out as text first.
+     */
+    private static File textReportFor(final File reportFile) {
+        if (!BinaryRecalibrationReportCodec.isBinaryReport(reportFile)) {
+            return reportFile;
+        }
+        final File textReportFile = IOUtils.createTempFile("recalibrationReport", ".table");
+        try (final PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(textReportFile)))) {
+            new RecalibrationReport(reportFile).createGATKReport().print(out);
+        } catch (final FileNotFoundException e) {
+            throw new UserException.CouldNotCreateOutputFile(textReportFile, e);
+        }
+        return textReportFile;
+    }
 
-        final NestedIntegerArray<RecalDatum> deltaTable = createDeltaTable(recalibrationTables, covariates.size());
+    /**
+     * Writes the delta table rows of the recalibration tables: for each read group, the rows of every additional covariate
+     * (aggregated over the quality scores) followed by the rows of the quality score table.
+     *
+     * The rows are streamed out one read group at a time, so only the aggregate of one covariate table for one read group
+     * is held in memory instead of a copy of all the tables.
+     */
+    private static void writeCsv(final PrintStream deltaTableFile, final RecalibrationTables recalibrationTables, final String recalibrationMode, final StandardCovariateList covariates, final boolean printHeader) {
+        if (printHeader) {
+            printHeader(deltaTableFile);
+        }
 
-        // add the quality score table to the delta table
         final NestedIntegerArray<RecalDatum> qualTable = recalibrationTables.getQualityScoreTable();
-        for (final NestedIntegerArray.Leaf<RecalDatum> leaf : qualTable.getAllLeaves()) { // go through every element in the covariates table to create the delta table
-            final int[] newCovs = new int[4];
-            newCovs[0] = leaf.keys[0];
-            newCovs[1] = covariates.size(); // replace the covariate name with an arbitrary (unused) index for QualityScore. This is a HACK.
-            newCovs[2] = leaf.keys[1];
-            newCovs[3] = leaf.keys[2];
-            addToDeltaTable(deltaTable, newCovs, leaf.value); // add this covariate to the delta table
+        final List<NestedIntegerArray<RecalDatum>> covTables = recalibrationTables.getAdditionalTables();
+
+        // the leaves are sorted by key and the read group is the first key, so each table is consumed one read group at a time
+        final LeafCursor qualLeaves = new LeafCursor(qualTable);
+        final List<LeafCursor> covLeaves = new ArrayList<>(covTables.size());
+        for (final NestedIntegerArray<RecalDatum> covTable : covTables) {
+            covLeaves.add(new LeafCursor(covTable));
         }
 
-        // add the optional covariates to the delta table
-        for(final NestedIntegerArray<RecalDatum> covTable : recalibrationTables.getAdditionalTables()){
-            for (final NestedIntegerArray.Leaf<RecalDatum> leaf : covTable.getAllLeaves()) {
-                final int[] covs = new int[4];
-                covs[0] = leaf.keys[0];
-                covs[1] = covariates.indexByClass(recalibrationTables.getCovariateForTable(covTable).getClass()); // reset the quality score covariate to 0 from the keyset (so we aggregate all rows regardless of QS)
-                covs[2] = leaf.keys[2];
-                covs[3] = leaf.keys[3];
-                addToDeltaTable(deltaTable, covs, leaf.value); // add this covariate to the delta table
+        final int numReadGroups = qualTable.getDimensions()[0];
+        for (int readGroup = 0; readGroup < numReadGroups; readGroup++) {
+            for (int i = 0; i < covTables.size(); i++) {
+                final NestedIntegerArray<RecalDatum> covTable = covTables.get(i);
+                final LeafCursor leaves = covLeaves.get(i);
+                if (!leaves.hasReadGroup(readGroup)) {
+                    continue;
+                }
+
+                // aggregate all the rows regardless of QS
+                final int[] dimensionsOfCovTable = covTable.getDimensions();
+                final NestedIntegerArray<RecalDatum> deltaTable = new NestedIntegerArray<>(dimensionsOfCovTable[2], dimensionsOfCovTable[3]);
+                while (leaves.hasReadGroup(readGroup)) {
+                    final NestedIntegerArray.Leaf<RecalDatum> leaf = leaves.next();
+                    addToDeltaTable(deltaTable, new int[]{leaf.keys[2], leaf.keys[3]}, leaf.value);
+                }
+
+                final Covariate covariate = recalibrationTables.getCovariateForTable(covTable);
+                for (final NestedIntegerArray.Leaf<RecalDatum> leaf : deltaTable.getAllLeaves()) {
+                    printCsvRow(deltaTableFile, readGroup, covariate, leaf.keys[0], leaf.keys[1], leaf.value, recalibrationMode, covariates);
+                }
+            }
+
+            while (qualLeaves.hasReadGroup(readGroup)) {
+                final NestedIntegerArray.Leaf<RecalDatum> leaf = qualLeaves.next();
+                // print a copy so that the empirical quality is not cached in the table
+                printCsvRow(deltaTableFile, readGroup, covariates.getQualityScoreCovariate(), leaf.keys[1], leaf.keys[2], new RecalDatum(leaf.value), recalibrationMode, covariates);
             }
         }
+    }
 
-        // output the csv file
-        if (printHeader) {
-            printHeader(deltaTableFile);
+    private static void printCsvRow(final PrintStream out, final int readGroupKey, final Covariate covariate, final int covariateKey, final int eventType,
+                                    final RecalDatum datum, final String recalibrationMode, final StandardCovariateList covariates) {
+        out.print(covariates.getReadGroupCovariate().formatKey(readGroupKey));
+        out.print(',');
+        out.print(covariate.formatKey(covariateKey));
+        out.print(',');
+        out.print(covariate.parseNameForReport());
+        out.print(',');
+        out.print(EventType.eventFrom(eventType).prettyPrint());
+        out.print(',');
+        out.print(datum.stringForCSV());
+        out.print(',');
+        out.println(recalibrationMode);
+    }
+
+    /**
+     * Walks over the leaves of a table in key order.
+     */
+    private static final class LeafCursor {
+        private final List<NestedIntegerArray.Leaf<RecalDatum>> leaves;
+        private int next = 0;
+
+        LeafCursor(final NestedIntegerArray<RecalDatum> table) {
+            leaves = table.getAllLeaves();
+        }
+
+        /**
+         * @return true if the next leaf belongs to the given read group
+         */
+        boolean hasReadGroup(final int readGroup) {
+            return next < leaves.size() && leaves.get(next).keys[0] == readGroup;
         }
 
-        // print each data line
-        for (final NestedIntegerArray.Leaf<RecalDatum> leaf : deltaTable.getAllLeaves()) {
-            final List<Object> deltaKeys = generateValuesFromKeys(leaf.keys, covariates);
-            final RecalDatum deltaDatum = leaf.value;
-            deltaTableFile.print(Utils.join(",", deltaKeys));
-            deltaTableFile.print(',' + deltaDatum.stringForCSV());
-            deltaTableFile.println(',' + recalibrationMode);
+        NestedIntegerArray.Leaf<RecalDatum> next() {
+            return leaves.get(next++);
         }
     }
 
@@ -417,48 +489,6 @@ public final class RecalUtils {
         out.println(Utils.join(",", header));
     }
 
-    /*
-     * Return an initialized nested integer array with appropriate dimensions for use with the delta tables
-     *
-     * @param recalibrationTables     the recal tables
-     * @param numCovariates           the total number of covariates being used
-     * @return a non-null nested integer array
-     */
-    private static NestedIntegerArray<RecalDatum> createDeltaTable(final RecalibrationTables recalibrationTables, final int numCovariates) {
-        final int[] dimensionsForDeltaTable = new int[4];
-
-        // initialize the dimensions with those of the qual table to start with
-        final NestedIntegerArray<RecalDatum> qualTable = recalibrationTables.getQualityScoreTable();
-        final int[] dimensionsOfQualTable = qualTable.getDimensions();
-        dimensionsForDeltaTable[0] = dimensionsOfQualTable[0];    // num read groups
-        dimensionsForDeltaTable[1] = numCovariates + 1;           // num covariates
-        dimensionsForDeltaTable[2] = dimensionsOfQualTable[1];
-        dimensionsForDeltaTable[3] = dimensionsOfQualTable[2];
-
-        // now, update the dimensions based on the optional covariate tables as needed
-        for ( final NestedIntegerArray<RecalDatum> covTable : recalibrationTables.getAdditionalTables()) {
-            final int[] dimensionsOfCovTable = covTable.getDimensions();
-            dimensionsForDeltaTable[2] = Math.max(dimensionsForDeltaTable[2], dimensionsOfCovTable[2]);
-            dimensionsForDeltaTable[3] = Math.max(dimensionsForDeltaTable[3], dimensionsOfCovTable[3]);
-        }
-
-        return new NestedIntegerArray<>(dimensionsForDeltaTable);
-    }
-
-    static List<Object> generateValuesFromKeys(final int[] keys, final StandardCovariateList covariates) {
-        final List<Object> values = new ArrayList<>(4);
-        values.add(covariates.getReadGroupCovariate().formatKey(keys[0]));
-
-        final int covariateIndex = keys[1];
-        final int covariateKey = keys[2];
-        final Covariate covariate = (covariateIndex == covariates.size()) ? covariates.getQualityScoreCovariate() : covariates.get(covariateIndex);
-        values.add(covariate.formatKey(covariateKey));
-        values.add(covariate.parseNameForReport());
-        values.add(EventType.eventFrom(keys[3]).prettyPrint());
-
-        return values;
-    }
-
     /**
      * Updates the current RecalDatum element in the delta table.
      *
@@ -9,14 +9,19 @@ import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.QualityUtils;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
 import org.broadinstitute.hellbender.utils.recalibration.covariates.Covariate;
 import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
 import org.broadinstitute.hellbender.utils.report.GATKReport;
 import org.broadinstitute.hellbender.utils.report.GATKReportTable;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -40,12 +45,18 @@ public final class RecalibrationReport {
     private final GATKReportTable argumentTable; // keep the argument table untouched just for output purposes
     private final RecalibrationArgumentCollection RAC; // necessary for quantizing qualities with the same parameter
 
+    /**
+     * Loads a recalibration report in either the text (GATKReport) or the binary form, see {@link BinaryRecalibrationReportCodec}.
+     */
     public RecalibrationReport(final File recalFile) {
-        this(new GATKReport(recalFile));
+        this(load(recalFile));
     }
 
+    /**
+     * Loads a recalibration report in either the text (GATKReport) or the binary form, see {@link BinaryRecalibrationReportCodec}.
+     */
     public RecalibrationReport(final InputStream recalibrationTableStream){
-        this(new GATKReport(recalibrationTableStream));
+        this(load(recalibrationTableStream));
     }
 
     public RecalibrationReport(final GATKReport report){
@@ -73,6 +84,37 @@ public final class RecalibrationReport {
 
     }
 
+    /**
+     * Creates a report from its parts, used by {@link BinaryRecalibrationReportCodec}.
+     */
+    RecalibrationReport(final GATKReportTable argumentTable, final RecalibrationArgumentCollection RAC, final QuantizationInfo quantizationInfo,
+                        final StandardCovariateList covariates, final RecalibrationTables recalibrationTables) {
+        this.argumentTable = argumentTable;
+        this.RAC = RAC;
+        this.quantizationInfo = quantizationInfo;
+        this.covariates = covariates;
+        this.recalibrationTables = recalibrationTables;
+    }
+
+    private RecalibrationReport(final RecalibrationReport other) {
+        this(other.argumentTable, other.RAC, other.quantizationInfo, other.covariates, other.recalibrationTables);
+    }
+
+    private static RecalibrationReport load(final File recalFile) {
+        Utils.nonNull(recalFile);
+        try (final InputStream in = BucketUtils.openFile(recalFile.getPath(), null)) {
+            return load(in);
+        } catch (final IOException e) {
+            throw new UserException.CouldNotReadInputFile(recalFile, e);
+        }
+    }
+
+    private static RecalibrationReport load(final InputStream recalibrationTableStream) {
+        Utils.nonNull(recalibrationTableStream);
+        final InputStream in = recalibrationTableStream.markSupported() ? recalibrationTableStream : new BufferedInputStream(recalibrationTableStream);
+        return BinaryRecalibrationReportCodec.isBinaryReport(in) ? BinaryRecalibrationReportCodec.read(in) : new RecalibrationReport(new GATKReport(in));
+    }
+
     /**
      * Gather multiple {@link RecalibrationReport}s into a single file
      * @param inputs a list of {@link RecalibrationReport} files to gather
@@ -89,6 +131,44 @@ public final class RecalibrationReport {
         }
     }
 
+    /**
+     * Gather multiple {@link RecalibrationReport}s into a single file.
+     *
+     * If all the inputs are binary reports they are merged by streaming their cells, without parsing any text.
+     * Binary and text inputs can't be mixed.
+     *
+     * @param inputs a list of {@link RecalibrationReport} files to gather
+     * @param output a file to write the recalibration reports to
+     * @param binaryOutput write the gathered report in the binary form instead of the text form
+     */
+    public static void gatherReportsIntoOneFile(final List<File> inputs, final File output, final boolean binaryOutput) {
+        Utils.nonNull(inputs, "inputs");
+        Utils.nonNull(output, "output");
+        Utils.nonEmpty(inputs, "Cannot gather an empty list of inputs");
+
+        final long numBinaryInputs = inputs.stream().filter(BinaryRecalibrationReportCodec::isBinaryReport).count();
+        if (numBinaryInputs == 0 && !binaryOutput) {
+            gatherReportsIntoOneFile(inputs, output);
+            return;
+        }
+        if (numBinaryInputs != 0 && numBinaryInputs != inputs.size()) {
+            throw new UserException.BadInput("Cannot gather a mix of binary and text recalibration reports");
+        }
+
+        final RecalibrationReport result = numBinaryInputs == 0 ? new RecalibrationReport(gatherReports(inputs)) : BinaryRecalibrationReportCodec.gather(inputs);
+        try (final OutputStream outputStream = new FileOutputStream(output)) {
+            if (binaryOutput) {
+                BinaryRecalibrationReportCodec.write(outputStream, result);
+            } else {
+                final PrintStream outputFile = new PrintStream(outputStream);
+                result.createGATKReport().print(outputFile);
+                outputFile.flush();
+            }
+        } catch (final IOException e) {
+            throw new UserException.CouldNotCreateOutputFile(output, e);
+        }
+    }
+
     /**
      * Gathers a set of files containing {@link RecalibrationReport}s into a single {@link GATKReport}.
      *
@@ -171,6 +251,14 @@ public final class RecalibrationReport {
         return quantizationInfo;
     }
 
+    void setQuantizationInfo(final QuantizationInfo quantizationInfo) {
+        this.quantizationInfo = quantizationInfo;
+    }
+
+    GATKReportTable getArgumentTable() {
+        return argumentTable;
+    }
+
     public RecalibrationTables getRecalibrationTables() {
         return recalibrationTables;
     }
@@ -322,7 +410,7 @@ public final class RecalibrationReport {
      * @param table the GATKReportTable containing the arguments and its corresponding values
      * @return a RAC object properly initialized with all the objects in the table
      */
-    private static RecalibrationArgumentCollection initializeArgumentCollectionTable(GATKReportTable table) {
+    static RecalibrationArgumentCollection initializeArgumentCollectionTable(GATKReportTable table) {
         final RecalibrationArgumentCollection RAC = new RecalibrationArgumentCollection();
 
         final List<String> standardCovariateClassNames = new StandardCovariateList(RAC, Collections.emptyList()).getStandardCovariateClassNames();
@@ -1,41 +1,34 @@
 package org.broadinstitute.hellbender.utils.recalibration.covariates;
 
-import org.broadinstitute.hellbender.utils.LRUCache;
 import org.broadinstitute.hellbender.utils.Utils;
 
 /*
- * Use an LRU cache to keep cache of keys (int[][][]) arrays for each read length we've seen.
- * The cache allows us to avoid the expense of recreating these arrays for every read.  The LRU
- * keeps the total number of cached arrays to less than LRU_CACHE_SIZE.
+ * Holds a single flat int[] buffer for the keys of a {@link ReadCovariates}.
+ * The buffer grows to fit the longest read seen so far and is reused for every subsequent read,
+ * which allows us to avoid the expense of allocating key arrays for every read.
+ *
+ * This class is not thread-safe: use one cache per thread (eg one per transformer or recalibration engine).
  */
 public final class CovariateKeyCache {
 
-    /**
-     * How big should we let the LRU cache grow
-     */
-    private static final int LRU_CACHE_SIZE = 500;
-
-    private final LRUCache<Integer, int[][][]> keysCache = new LRUCache<>(LRU_CACHE_SIZE);
-
-    /**
-     * Get the cached value for the given readlength or null is no value is cached.
-     */
-    public int[][][] get(final int readLength) {
-        return keysCache.get(readLength);
-    }
+    private int[] keys = new int[0];
 
     /**
-     * Store the given array in the cache.
+     * Returns the shared keys buffer, growing it first if it is smaller than the given length.
+     * The contents of the returned array are unspecified.
      */
-    public void put(final int readLength, final int[][][] keys) {
-        Utils.nonNull(keys);
-        keysCache.put(readLength, keys);
+    public int[] getKeysBuffer(final int minLength) {
+        Utils.validateArg(minLength >= 0, "the length must be non-negative");
+        if (keys.length < minLength) {
+            keys = new int[minLength];
+        }
+        return keys;
     }
 
     /**
-     * Returns the size of this cache.
+     * Returns the number of keys the current buffer can hold without growing.
      */
-    public int size() {
-        return keysCache.size();
+    public int capacity() {
+        return keys.length;
     }
 }
@@ -23,17 +23,23 @@ public final class CycleCovariate implements Covariate {
     @Override
     public void recordValues(final GATKRead read, final SAMFileHeader header, final ReadCovariates values, final boolean recordIndelValues) {
         final int readLength = read.getLength();
+
+        // Same arithmetic as cycleKey but the read flags are looked up once and the cycle is updated incrementally
+        final int readOrderFactor = read.isPaired() && read.isSecondOfPair() ? -1 : 1;
+        final int increment = read.isReverseStrand() ? -readOrderFactor : readOrderFactor;
+        int cycle = read.isReverseStrand() ? readLength * readOrderFactor : readOrderFactor;
+
         //Note: duplicate the loop to void checking recordIndelValues on every iteration
         if (recordIndelValues) {
-            for (int i = 0; i < readLength; i++) {
-                final int substitutionKey = cycleKey(i, read, false, MAXIMUM_CYCLE_VALUE);
-                final int indelKey = cycleKey(i, read, true, MAXIMUM_CYCLE_VALUE);
+            final int maxCycleForIndels = readLength - CUSHION_FOR_INDELS - 1;
+            for (int i = 0; i < readLength; i++, cycle += increment) {
+                final int substitutionKey = keyFromCycle(cycle, MAXIMUM_CYCLE_VALUE);
+                final int indelKey = (i < CUSHION_FOR_INDELS || i > maxCycleForIndels) ? -1 : substitutionKey;
                 values.addCovariate(substitutionKey, indelKey, indelKey, i);
             }
         } else {
-            for (int i = 0; i < readLength; i++) {
-                final int substitutionKey = cycleKey(i, read, false, MAXIMUM_CYCLE_VALUE);
-                values.addCovariate(substitutionKey, 0, 0, i);
+            for (int i = 0; i < readLength; i++, cycle += increment) {
+                values.addCovariate(keyFromCycle(cycle, MAXIMUM_CYCLE_VALUE), 0, 0, i);
             }
         }
     }
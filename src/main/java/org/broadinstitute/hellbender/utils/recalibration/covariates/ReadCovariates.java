@@ -5,16 +5,34 @@ import org.apache.logging.log4j.Logger;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.recalibration.EventType;
 
+import java.util.Arrays;
+
 /**
  * The object temporarily held by a read that describes all of its covariates.
+ *
+ * The keys are stored in a single flat int[] laid out as event type x read offset x covariate.
+ * The array is borrowed from a {@link CovariateKeyCache} and reused for every read that goes through
+ * the same cache, so a ReadCovariates is only valid until the next one is created from the same cache.
  */
 public final class ReadCovariates {
     private static final Logger logger = LogManager.getLogger(ReadCovariates.class);
 
+    private static final int SUBSTITUTION_INDEX = EventType.BASE_SUBSTITUTION.ordinal();
+    private static final int INSERTION_INDEX = EventType.BASE_INSERTION.ordinal();
+    private static final int DELETION_INDEX = EventType.BASE_DELETION.ordinal();
+
+    /**
+     * Our keys, indexed by event type x read length x covariate, flattened into one array
+     */
+    private final int[] keys;
+
+    private final int readLength;
+    private final int numberOfCovariates;
+
     /**
-     * Our keys, indexed by event type x read length x covariate
+     * Distance in the keys array between the same (offset, covariate) cell of two consecutive event types
      */
-    private final int[][][] keys;
+    private final int eventStride;
 
     /**
      * The index of the current covariate, used by addCovariate
@@ -22,20 +40,19 @@ public final class ReadCovariates {
     private int currentCovariateIndex = 0;
 
     /**
-     * Use an LRU cache to keep cache of keys (int[][][]) arrays for each read length we've seen.
-     * The cache allows us to avoid the expense of recreating these arrays for every read.  The LRU
-     * keeps the total number of cached arrays to less than LRU_CACHE_SIZE.
+     * The keys array is taken from the given cache, which grows its single buffer as needed,
+     * so we avoid the expense of allocating a new array for every read.
      */
     public ReadCovariates(final int readLength, final int numberOfCovariates, final CovariateKeyCache keysCache) {
         Utils.nonNull(keysCache);
-        final int[][][] cachedKeys = keysCache.get(readLength);
-        if ( cachedKeys == null ) {
-            if ( logger.isDebugEnabled() ) logger.debug("Keys cache miss for length " + readLength + " cache size " + keysCache.size());
-            keys = new int[EventType.values().length][readLength][numberOfCovariates];
-            keysCache.put(readLength, keys);
-        } else {
-            keys = cachedKeys;
+        this.readLength = readLength;
+        this.numberOfCovariates = numberOfCovariates;
+        this.eventStride = readLength * numberOfCovariates;
+        final int requiredLength = EventType.values().length * eventStride;
+        if ( logger.isDebugEnabled() && keysCache.capacity() < requiredLength ) {
+            logger.debug("Growing keys buffer for length " + readLength + " to " + requiredLength + " keys");
         }
+        keys = keysCache.getKeysBuffer(requiredLength);
     }
 
     public void setCovariateIndex(final int index) {
@@ -45,8 +62,9 @@ public final class ReadCovariates {
     /**
      * Update the keys for mismatch, insertion, and deletion for the current covariate at read offset
      *
-     * NOTE: no checks are performed on the number of covariates, for performance reasons.  If the count increases
-     * after the keysCache has been accessed, this method will throw an ArrayIndexOutOfBoundsException.  This currently
+     * NOTE: no checks are performed on the number of covariates, for performance reasons.  If the current covariate
+     * index is not smaller than the number of covariates used to create this object, keys of neighbouring offsets
+     * will be overwritten or an ArrayIndexOutOfBoundsException will be thrown.  This currently
      * only occurs in the testing harness, and we don't anticipate that it will become a part of normal runs.
      *
      * @param mismatch the mismatch key value
@@ -55,24 +73,56 @@ public final class ReadCovariates {
      * @param readOffset the read offset, must be >= 0 and <= the read length used to create this ReadCovariates
      */
     public void addCovariate(final int mismatch, final int insertion, final int deletion, final int readOffset) {
-        keys[EventType.BASE_SUBSTITUTION.ordinal()][readOffset][currentCovariateIndex] = mismatch;
-        keys[EventType.BASE_INSERTION.ordinal()][readOffset][currentCovariateIndex] = insertion;
-        keys[EventType.BASE_DELETION.ordinal()][readOffset][currentCovariateIndex] = deletion;
+        final int cell = readOffset * numberOfCovariates + currentCovariateIndex;
+        keys[SUBSTITUTION_INDEX * eventStride + cell] = mismatch;
+        keys[INSERTION_INDEX * eventStride + cell] = insertion;
+        keys[DELETION_INDEX * eventStride + cell] = deletion;
+    }
+
+    /**
+     * Get the key of one covariate at read position for error model.
+     * This is the allocation-free accessor that should be used in performance-sensitive code.
+     *
+     * @param readPosition offset in the read, must be >= 0 and < the read length
+     * @param errorModel the event type
+     * @param covariateIndex index of the covariate in the {@link StandardCovariateList}
+     */
+    public int getKey(final int readPosition, final EventType errorModel, final int covariateIndex) {
+        return keys[errorModel.ordinal() * eventStride + readPosition * numberOfCovariates + covariateIndex];
+    }
+
+    /**
+     * Returns the read length used to create this object.
+     */
+    public int getReadLength() {
+        return readLength;
     }
 
     /**
-     * Get the keys for all covariates at read position for error model
+     * Get a copy of the keys for all covariates at read position for error model.
+     *
+     * Note: this allocates a new array on every call, use {@link #getKey} in loops over the read.
      *
      * @param readPosition
      * @param errorModel
      * @return
      */
     public int[] getKeySet(final int readPosition, final EventType errorModel) {
-        return keys[errorModel.ordinal()][readPosition];
+        final int from = errorModel.ordinal() * eventStride + readPosition * numberOfCovariates;
+        return Arrays.copyOfRange(keys, from, from + numberOfCovariates);
     }
 
+    /**
+     * Get a copy of the keys for all covariates at all read positions for error model.
+     *
+     * Note: this allocates new arrays on every call, use {@link #getKey} in loops over the read.
+     */
     public int[][] getKeySet(final EventType errorModel) {
-        return keys[errorModel.ordinal()];
+        final int[][] keySet = new int[readLength][];
+        for (int i = 0; i < readLength; i++) {
+            keySet[i] = getKeySet(i, errorModel);
+        }
+        return keySet;
     }
 
     // ----------------------------------------------------------------------
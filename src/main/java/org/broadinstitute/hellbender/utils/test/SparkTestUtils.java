@@ -23,8 +23,21 @@ public final class SparkTestUtils {
      * @return serialized and deserialized instance of input.  Throws exception if serialization round trip fails.
      */
     public static <T> T roundTripInKryo(final T input, final Class<?> inputClazz, final SparkConf conf) {
+        return roundTripInKryo(input, inputClazz, new KryoSerializer(conf));
+    }
+
+    /**
+     * Takes an input object and returns the value of the object after it has been serialized and then deserialized
+     * with the given Kryo serializer.
+     *
+     * @param input instance of inputClazz.  Never {@code null}
+     * @param inputClazz class to cast input
+     * @param kryoSerializer the serializer to test
+     * @param <T> class to attempt.  Same or subclass of inputClazz
+     * @return serialized and deserialized instance of input.  Throws exception if serialization round trip fails.
+     */
+    public static <T> T roundTripInKryo(final T input, final Class<?> inputClazz, final KryoSerializer kryoSerializer) {
         Utils.nonNull(input);
-        final KryoSerializer kryoSerializer = new KryoSerializer(conf);
         final SerializerInstance sparkSerializer = kryoSerializer.newInstance();
         final ClassTag<T> tag = ClassTag$.MODULE$.apply(inputClazz);
         return sparkSerializer.deserialize(sparkSerializer.serialize(input, tag), tag);
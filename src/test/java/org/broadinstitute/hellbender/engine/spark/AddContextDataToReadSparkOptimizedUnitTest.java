@@ -0,0 +1,111 @@
+package org.broadinstitute.hellbender.engine.spark;
+
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+public final class AddContextDataToReadSparkOptimizedUnitTest extends BaseTest {
+
+    private static final int TARGET = 1000;
+
+    // uniform coverage of the given number of reads per base
+    private static ToDoubleFunction<SimpleInterval> uniform(final double readsPerBase) {
+        return window -> window.size() * readsPerBase;
+    }
+
+    // sparse coverage with a spike of 100x the target in the window that holds 1:100,000
+    private static final ToDoubleFunction<SimpleInterval> SPIKE = window ->
+            window.overlaps(new SimpleInterval("1", 100_000, 100_000)) ? 100.0 * TARGET : 1;
+
+    @DataProvider(name = "densities")
+    public Object[][] densities() {
+        return new Object[][]{
+                {Arrays.asList(new SimpleInterval("1", 1, 3_000_000)), uniform(0.01)},
+                {Arrays.asList(new SimpleInterval("1", 1, 3_000_000)), uniform(0.5)},
+                {Arrays.asList(new SimpleInterval("1", 1, 3_000_000)), uniform(0)},
+                {Arrays.asList(new SimpleInterval("1", 1, 300_000)), SPIKE},
+                {Arrays.asList(new SimpleInterval("1", 12_345, 67_890), new SimpleInterval("2", 5, 5), new SimpleInterval("2", 100_000, 200_000)), uniform(0.05)},
+        };
+    }
+
+    @Test(dataProvider = "densities")
+    public void testShardsCoverTheIntervals(final List<SimpleInterval> intervals, final ToDoubleFunction<SimpleInterval> estimatedReads) {
+        final List<SimpleInterval> shards = AddContextDataToReadSparkOptimized.cutToShardsByReadDensity(intervals, estimatedReads, TARGET);
+        int shard = 0;
+        for (final SimpleInterval interval : intervals) {
+            int nextStart = interval.getStart();
+            while (nextStart <= interval.getEnd()) {
+                final SimpleInterval current = shards.get(shard++);
+                Assert.assertEquals(current.getContig(), interval.getContig());
+                Assert.assertEquals(current.getStart(), nextStart);
+                Assert.assertTrue(current.getEnd() <= interval.getEnd());
+                Assert.assertTrue(current.size() <= AddContextDataToReadSparkOptimized.maxDensityShardSize);
+                nextStart = current.getEnd() + 1;
+            }
+        }
+        Assert.assertEquals(shard, shards.size());
+    }
+
+    @Test
+    public void testUniformDensity() {
+        // 0.5 reads per base, so 2,000 bases per shard, but the windows of the index are the unit
+        final List<SimpleInterval> shards = AddContextDataToReadSparkOptimized.cutToShardsByReadDensity(
+                Collections.singletonList(new SimpleInterval("1", 1, 10 * AddContextDataToReadSparkOptimized.densityWindowSize)), uniform(0.5), TARGET);
+        // each window has 8,192 reads, so it is cut into 9 pieces
+        Assert.assertEquals(shards.size(), 10 * 9);
+        for (final SimpleInterval shard : shards) {
+            Assert.assertTrue(shard.size() >= AddContextDataToReadSparkOptimized.minDensityShardSize);
+        }
+    }
+
+    @Test
+    public void testSparseRegionsAreMerged() {
+        final List<SimpleInterval> shards = AddContextDataToReadSparkOptimized.cutToShardsByReadDensity(
+                Collections.singletonList(new SimpleInterval("1", 1, 25_000_000)), uniform(0), TARGET);
+        Assert.assertEquals(shards.size(), 3);
+        Assert.assertEquals(shards.get(0).getStart(), 1);
+        Assert.assertTrue(shards.get(0).size() <= AddContextDataToReadSparkOptimized.maxDensityShardSize);
+        Assert.assertTrue(shards.get(0).size() > AddContextDataToReadSparkOptimized.maxDensityShardSize - AddContextDataToReadSparkOptimized.densityWindowSize);
+    }
+
+    @Test
+    public void testSpikeIsSplit() {
+        final List<SimpleInterval> shards = AddContextDataToReadSparkOptimized.cutToShardsByReadDensity(
+                Collections.singletonList(new SimpleInterval("1", 1, 300_000)), SPIKE, TARGET);
+        final long spikeShards = shards.stream()
+                .filter(shard -> shard.overlaps(new SimpleInterval("1", 98_305, 114_688)))
+                .count();
+        // the window of the spike is cut as far as the minimum shard size allows
+        Assert.assertEquals(spikeShards, AddContextDataToReadSparkOptimized.densityWindowSize / AddContextDataToReadSparkOptimized.minDensityShardSize);
+        // and the sparse windows around it are put together
+        Assert.assertTrue(shards.size() < spikeShards + 4);
+    }
+
+    @Test
+    public void testCutByTheIndexOfABam() {
+        final List<SimpleInterval> intervals = Collections.singletonList(new SimpleInterval("17", 1, 1_000_000));
+        final List<SimpleInterval> shards = AddContextDataToReadSparkOptimized.cutToShardsByReadDensity(intervals, NA12878_chr17_1k_BAM, TARGET);
+        Assert.assertEquals(shards.get(0).getStart(), 1);
+        Assert.assertEquals(shards.get(shards.size() - 1).getEnd(), 1_000_000);
+        for (int i = 1; i < shards.size(); i++) {
+            Assert.assertEquals(shards.get(i).getStart(), shards.get(i - 1).getEnd() + 1);
+        }
+    }
+
+    @Test
+    public void testFixedShardsWithoutTarget() {
+        final List<SimpleInterval> intervals = Collections.singletonList(new SimpleInterval("17", 1, 2_500_000));
+        final List<SimpleInterval> shards = AddContextDataToReadSparkOptimized.cutToShardsByReadDensity(intervals, NA12878_chr17_1k_BAM, 0);
+        Assert.assertEquals(shards, Arrays.asList(
+                new SimpleInterval("17", 1, 1_000_000),
+                new SimpleInterval("17", 1_000_001, 2_000_000),
+                new SimpleInterval("17", 2_000_001, 2_500_000)));
+    }
+}
@@ -0,0 +1,114 @@
+package org.broadinstitute.hellbender.engine.spark;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFlag;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.sql.DataFrame;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class FlatReadUnitTest extends BaseTest {
+
+    private static List<GATKRead> makeReads() {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader(3, 1, 10000);
+        final List<GATKRead> reads = new ArrayList<>();
+
+        final List<GATKRead> pair = ArtificialReadUtils.createPair(header, "pair", 10, 100, 200, true, false);
+        pair.get(0).setMappingQuality(30);
+        pair.get(1).setIsDuplicate(true);
+        pair.get(1).setFailsVendorQualityCheck(true);
+        reads.addAll(pair);
+
+        final GATKRead clipped = ArtificialReadUtils.createArtificialRead(header, "clipped", 1, 500, new byte[]{'A', 'C', 'G', 'T', 'A'}, new byte[]{30, 30, 20, 20, 10}, "2S3M");
+        clipped.setIsReverseStrand(true);
+        clipped.setIsSecondaryAlignment(true);
+        reads.add(clipped);
+
+        final GATKRead placedUnmapped = ArtificialReadUtils.createArtificialUnmappedReadWithAssignedPosition(header, "2", 1000, new byte[]{'A', 'C'}, new byte[]{20, 20});
+        placedUnmapped.setName("placedUnmapped");
+        reads.add(placedUnmapped);
+
+        final GATKRead unplaced = ArtificialReadUtils.createArtificialUnmappedRead(header, new byte[]{'G', 'T'}, new byte[]{20, 20});
+        unplaced.setName("unplaced");
+        reads.add(unplaced);
+
+        final GATKRead mateUnmapped = ArtificialReadUtils.createArtificialRead(header, "mateUnmapped", 0, 50, 10);
+        mateUnmapped.setIsPaired(true);
+        mateUnmapped.setIsFirstOfPair();
+        mateUnmapped.setMateIsUnmapped();
+        reads.add(mateUnmapped);
+
+        final GATKRead mateOnOtherContig = ArtificialReadUtils.createArtificialRead(header, "mateOnOtherContig", 0, 70, 10);
+        mateOnOtherContig.setIsPaired(true);
+        mateOnOtherContig.setIsSecondOfPair();
+        mateOnOtherContig.setMatePosition("2", 300);
+        mateOnOtherContig.setMateIsReverseStrand(true);
+        reads.add(mateOnOtherContig);
+        return reads;
+    }
+
+    @DataProvider(name = "reads")
+    public Object[][] reads() {
+        final List<Object[]> data = new ArrayList<>();
+        for (final GATKRead read : makeReads()) {
+            data.add(new Object[]{read});
+        }
+        return data.toArray(new Object[data.size()][]);
+    }
+
+    @Test(dataProvider = "reads")
+    public void testProjection(final GATKRead read) {
+        final FlatRead flat = FlatRead.of(read);
+        final int flags = flat.getFlags();
+        Assert.assertEquals((flags & SAMFlag.READ_PAIRED.intValue()) != 0, read.isPaired());
+        if (read.isPaired()) {
+            Assert.assertEquals((flags & SAMFlag.PROPER_PAIR.intValue()) != 0, read.isProperlyPaired());
+            Assert.assertEquals((flags & SAMFlag.MATE_UNMAPPED.intValue()) != 0, read.mateIsUnmapped());
+            Assert.assertEquals((flags & SAMFlag.MATE_REVERSE_STRAND.intValue()) != 0, read.mateIsReverseStrand());
+            Assert.assertEquals((flags & SAMFlag.FIRST_OF_PAIR.intValue()) != 0, read.isFirstOfPair());
+            Assert.assertEquals((flags & SAMFlag.SECOND_OF_PAIR.intValue()) != 0, read.isSecondOfPair());
+        }
+        Assert.assertEquals((flags & SAMFlag.READ_UNMAPPED.intValue()) != 0, read.isUnmapped());
+        Assert.assertEquals((flags & SAMFlag.READ_REVERSE_STRAND.intValue()) != 0, read.isReverseStrand());
+        Assert.assertEquals((flags & SAMFlag.NOT_PRIMARY_ALIGNMENT.intValue()) != 0, read.isSecondaryAlignment());
+        Assert.assertEquals((flags & SAMFlag.READ_FAILS_VENDOR_QUALITY_CHECK.intValue()) != 0, read.failsVendorQualityCheck());
+        Assert.assertEquals((flags & SAMFlag.DUPLICATE_READ.intValue()) != 0, read.isDuplicate());
+        Assert.assertEquals((flags & SAMFlag.SUPPLEMENTARY_ALIGNMENT.intValue()) != 0, read.isSupplementaryAlignment());
+
+        Assert.assertEquals(flat.getMappingQuality(), read.getMappingQuality());
+        Assert.assertEquals(flat.getContig(), read.isUnmapped() ? null : read.getContig());
+        Assert.assertEquals(flat.getMateContig(), read.isPaired() && !read.mateIsUnmapped() ? read.getMateContig() : null);
+    }
+
+    @Test
+    public void testPlacedUnmappedReadHasNoContig() {
+        final GATKRead placedUnmapped = makeReads().stream().filter(read -> read.getName().equals("placedUnmapped")).findFirst().get();
+        Assert.assertEquals(placedUnmapped.getAssignedContig(), "2");
+        Assert.assertNull(FlatRead.of(placedUnmapped).getContig());
+    }
+
+    @Test(groups = "spark")
+    public void testDataset() {
+        final JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+        final List<GATKRead> reads = makeReads();
+        final DataFrame columns = FlatRead.toDataset(ctx.parallelize(reads, 2)).toDF();
+        Assert.assertEquals(columns.count(), reads.size());
+        Assert.assertEquals(columns.filter(columns.col("flags").bitwiseAND(SAMFlag.DUPLICATE_READ.intValue()).notEqual(0)).count(), 1);
+        Assert.assertEquals(columns.filter(columns.col("contig").notEqual(columns.col("mateContig"))).count(), 1);
+    }
+
+    @Test
+    public void testEncoderSchema() {
+        final List<String> fieldNames = new ArrayList<>(Arrays.asList(FlatRead.encoder().schema().fieldNames()));
+        fieldNames.sort(String::compareTo);
+        Assert.assertEquals(fieldNames, Arrays.asList("contig", "flags", "mappingQuality", "mateContig"));
+    }
+}
@@ -0,0 +1,95 @@
+package org.broadinstitute.hellbender.engine.spark;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.apache.spark.SparkConf;
+import org.apache.spark.serializer.DeserializationStream;
+import org.apache.spark.serializer.KryoSerializer;
+import org.apache.spark.serializer.SerializationStream;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
+import scala.reflect.ClassTag;
+import scala.reflect.ClassTag$;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Size and timing tests for shuffling reads with HeaderDictionaryKryoSerializer,
+ * compared to the SAMRecordToGATKReadAdapterSerializer registered by GATKRegistrator.
+ */
+public final class HeaderDictionaryKryoSerializerTimingTest {
+
+    @FunctionalInterface
+    public interface Action {
+        void execute();
+    }
+    private static double time( final Action action ) {
+        final long nanosecs = System.nanoTime();
+        action.execute();
+        return (System.nanoTime() - nanosecs)/1.E9;
+    }
+
+    private static final int N_TRIALS = 5;
+    private static final int N_READS = 1000000;
+    private static final int READ_LENGTH = 151;
+    private static final byte[] BINNED_QUALS = {2, 12, 23, 37};
+    private static final byte[] BASES = {'A', 'C', 'G', 'T'};
+    private static final ClassTag<GATKRead> TAG = ClassTag$.MODULE$.apply(GATKRead.class);
+
+    public static void main( final String[] args ) {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeaderWithGroups(25, 1, 100000000, 8);
+        final Random rng = new Random(0xdeadbeef);
+        final List<GATKRead> reads = new ArrayList<>(N_READS);
+        for ( int readId = 0; readId != N_READS; ++readId ) {
+            final byte[] bases = new byte[READ_LENGTH];
+            final byte[] quals = new byte[READ_LENGTH];
+            for ( int i = 0; i != READ_LENGTH; ++i ) {
+                bases[i] = BASES[rng.nextInt(BASES.length)];
+                // binned qualities come in long runs of the highest bin
+                quals[i] = rng.nextInt(10) == 0 ? BINNED_QUALS[rng.nextInt(BINNED_QUALS.length)] : BINNED_QUALS[3];
+            }
+            final GATKRead read = ArtificialReadUtils.createArtificialRead(header, "HWI-ST1234:8:1101:" + readId + ":" + rng.nextInt(200000),
+                    rng.nextInt(25), 1 + rng.nextInt(99000000), bases, quals, READ_LENGTH + "M");
+            read.setReadGroup(header.getReadGroups().get(rng.nextInt(8)).getId());
+            read.setAttribute("NM", rng.nextInt(5));
+            read.setAttribute("MD", Integer.toString(READ_LENGTH));
+            ((SAMRecordToGATKReadAdapter) read).getEncapsulatedSamRecord().setHeaderStrict(null);
+            reads.add(read);
+        }
+
+        final KryoSerializer defaultSerializer = new KryoSerializer(new SparkConf()
+                .set("spark.kryo.registrator", "org.broadinstitute.hellbender.engine.spark.GATKRegistrator"));
+        final KryoSerializer dictionarySerializer = new HeaderDictionaryKryoSerializer(new SparkConf()
+                .set("spark.kryo.registrator", "org.broadinstitute.hellbender.engine.spark.GATKRegistrator"), header);
+
+        for ( final KryoSerializer serializer : new KryoSerializer[]{defaultSerializer, dictionarySerializer} ) {
+            final String name = serializer.getClass().getSimpleName();
+            final List<byte[]> serialized = new ArrayList<>(N_TRIALS);
+            System.out.println(name + " serialization: " + time( () -> {
+                for ( int trialId = 0; trialId != N_TRIALS; ++trialId ) {
+                    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    final SerializationStream stream = serializer.newInstance().serializeStream(bytes);
+                    for ( final GATKRead read : reads ) {
+                        stream.writeObject(read, TAG);
+                    }
+                    stream.close();
+                    serialized.add(bytes.toByteArray());
+                }
+            }));
+            System.out.println(name + " bytes per read: " + (double)serialized.get(0).length/N_READS);
+            System.out.println(name + " deserialization: " + time( () -> {
+                for ( final byte[] bytes : serialized ) {
+                    final DeserializationStream stream = serializer.newInstance().deserializeStream(new ByteArrayInputStream(bytes));
+                    for ( int readId = 0; readId != N_READS; ++readId ) {
+                        stream.readObject(TAG);
+                    }
+                    stream.close();
+                }
+            }));
+        }
+    }
+}
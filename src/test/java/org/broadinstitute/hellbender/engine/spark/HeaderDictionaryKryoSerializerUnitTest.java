@@ -0,0 +1,147 @@
+package org.broadinstitute.hellbender.engine.spark;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import org.apache.spark.SparkConf;
+import org.apache.spark.serializer.KryoSerializer;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.broadinstitute.hellbender.utils.test.SparkTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import scala.reflect.ClassTag;
+import scala.reflect.ClassTag$;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public final class HeaderDictionaryKryoSerializerUnitTest extends BaseTest {
+
+    private static final SAMFileHeader HEADER = ArtificialReadUtils.createArtificialSamHeaderWithGroups(3, 1, 1000000, 2);
+    private static final String READ_GROUP = HEADER.getReadGroups().get(0).getId();
+    private static final int READ_LENGTH = 100;
+
+    private static KryoSerializer getSerializer() {
+        return new HeaderDictionaryKryoSerializer(new SparkConf(), HEADER);
+    }
+
+    private static GATKRead makeRead(final String name, final String contig, final int start, final byte[] quals, final String cigar) {
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(HEADER, name, contig, start,
+                Utils.dupBytes((byte) 'A', quals.length), quals, cigar);
+        return makeHeaderless(read);
+    }
+
+    private static GATKRead makeHeaderless(final GATKRead read) {
+        ((SAMRecordToGATKReadAdapter) read).getEncapsulatedSamRecord().setHeaderStrict(null);
+        return read;
+    }
+
+    private static byte[] binnedQuals() {
+        final byte[] quals = Utils.dupBytes((byte) 37, READ_LENGTH);
+        for (int i = 60; i < 70; i++) {
+            quals[i] = 25;
+        }
+        quals[READ_LENGTH - 1] = 2;
+        return quals;
+    }
+
+    private static byte[] randomQuals() {
+        final Random random = new Random(13);
+        final byte[] quals = new byte[READ_LENGTH];
+        for (int i = 0; i < quals.length; i++) {
+            quals[i] = (byte) random.nextInt(41);
+        }
+        return quals;
+    }
+
+    @DataProvider(name = "reads")
+    public Object[][] reads() {
+        final List<Object[]> reads = new ArrayList<>();
+
+        reads.add(new Object[]{makeRead("binned", "1", 100, binnedQuals(), "100M")});
+        reads.add(new Object[]{makeRead("random", "2", 100, randomQuals(), "10S80M2I8M")});
+
+        final GATKRead withTags = makeRead("withTags", "3", 1000, binnedQuals(), "50M10D50M");
+        withTags.setReadGroup(READ_GROUP);
+        withTags.setAttribute("NM", 10);
+        withTags.setAttribute("MD", "50^AAAAAAAAAA50");
+        withTags.setAttribute("BQ", Utils.dupBytes((byte) 'B', READ_LENGTH));
+        reads.add(new Object[]{withTags});
+
+        final GATKRead unknownReadGroup = makeRead("unknownReadGroup", "1", 100, binnedQuals(), "100M");
+        unknownReadGroup.setReadGroup("notInTheHeader");
+        unknownReadGroup.setAttribute("NM", 0);
+        reads.add(new Object[]{unknownReadGroup});
+
+        final GATKRead unknownContig = makeRead("unknownContig", "1", 100, binnedQuals(), "100M");
+        unknownContig.setPosition("notInTheHeader", 1);
+        reads.add(new Object[]{unknownContig});
+
+        final GATKRead pair = makeRead("pair", "1", 5000, randomQuals(), "100M");
+        pair.setIsPaired(true);
+        pair.setIsReverseStrand(true);
+        pair.setIsSecondOfPair();
+        pair.setMatePosition("2", 300);
+        pair.setFragmentLength(-4800);
+        pair.setMappingQuality(255);
+        pair.setReadGroup(HEADER.getReadGroups().get(1).getId());
+        reads.add(new Object[]{pair});
+
+        final GATKRead noQuals = makeRead("noQuals", "2", 100, binnedQuals(), "100M");
+        ((SAMRecordToGATKReadAdapter) noQuals).getEncapsulatedSamRecord().setBaseQualities(SAMRecord.NULL_QUALS);
+        reads.add(new Object[]{noQuals});
+
+        final GATKRead unmapped = makeHeaderless(ArtificialReadUtils.createArtificialUnmappedRead(HEADER,
+                Utils.dupBytes((byte) 'C', READ_LENGTH), binnedQuals()));
+        unmapped.setName("unmapped");
+        unmapped.setReadGroup(READ_GROUP);
+        reads.add(new Object[]{unmapped});
+
+        final GATKRead unmappedWithPosition = makeHeaderless(ArtificialReadUtils.createArtificialUnmappedReadWithAssignedPosition(HEADER,
+                "3", 500, Utils.dupBytes((byte) 'N', READ_LENGTH + 1), Utils.dupBytes((byte) 2, READ_LENGTH + 1)));
+        unmappedWithPosition.setName("unmappedWithPosition");
+        reads.add(new Object[]{unmappedWithPosition});
+
+        return reads.toArray(new Object[][]{});
+    }
+
+    @Test(dataProvider = "reads")
+    public void testGATKReadRoundTrip(final GATKRead read) {
+        final GATKRead roundTrippedRead = SparkTestUtils.roundTripInKryo(read, GATKRead.class, getSerializer());
+        Assert.assertEquals(roundTrippedRead, read);
+        Assert.assertEquals(roundTrippedRead.getReadGroup(), read.getReadGroup());
+        Assert.assertEquals(roundTrippedRead.getContig(), read.getContig());
+        Assert.assertEquals(roundTrippedRead.getMateContig(), read.getMateContig());
+        Assert.assertEquals(roundTrippedRead.getBaseQualities(), read.getBaseQualities());
+    }
+
+    @Test(dataProvider = "reads")
+    public void testSAMRecordRoundTrip(final GATKRead read) {
+        final SAMRecord record = read.convertToSAMRecord(null);
+        final SAMRecord roundTrippedRecord = SparkTestUtils.roundTripInKryo(record, SAMRecord.class, getSerializer());
+        Assert.assertEquals(roundTrippedRecord, record);
+
+        // the records are decoded as BAMRecords, which must round trip as well
+        final SAMRecord roundTrippedTwice = SparkTestUtils.roundTripInKryo(roundTrippedRecord, roundTrippedRecord.getClass(), getSerializer());
+        Assert.assertEquals(roundTrippedTwice, record);
+    }
+
+    @Test
+    public void testSmallerThanSAMRecordToGATKReadAdapterSerializer() {
+        final GATKRead read = makeRead("read", "1", 100, binnedQuals(), "100M");
+        read.setReadGroup(READ_GROUP);
+        final KryoSerializer defaultSerializer = new KryoSerializer(new SparkConf()
+                .set("spark.kryo.registrator", "org.broadinstitute.hellbender.engine.spark.SAMRecordToGATKReadAdapterSerializerUnitTest$TestGATKRegistrator"));
+        Assert.assertTrue(serializedSize(read, getSerializer()) < serializedSize(read, defaultSerializer));
+    }
+
+    private static int serializedSize(final GATKRead read, final KryoSerializer serializer) {
+        final ClassTag<GATKRead> tag = ClassTag$.MODULE$.apply(GATKRead.class);
+        return serializer.newInstance().serialize(read, tag).remaining();
+    }
+}
@@ -8,6 +8,7 @@ import htsjdk.samtools.SAMRecord;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.storage.StorageLevel;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.broadinstitute.hellbender.utils.variant.GATKVariant;
@@ -41,9 +42,46 @@ public class JoinReadsWithVariantsSparkUnitTest extends BaseTest {
 
         JavaRDD<GATKRead> rddReads = ctx.parallelize(reads);
         JavaRDD<GATKVariant> rddVariants = ctx.parallelize(variantList);
-        JavaPairRDD<GATKRead, Iterable<GATKVariant>> actual = joinStrategy == JoinStrategy.SHUFFLE ?
-                                                          ShuffleJoinReadsWithVariants.join(rddReads, rddVariants) :
-                                                          BroadcastJoinReadsWithVariants.join(rddReads, rddVariants);
+        JavaPairRDD<GATKRead, Iterable<GATKVariant>> actual;
+        switch (joinStrategy) {
+            case SHUFFLE:      actual = ShuffleJoinReadsWithVariants.join(rddReads, rddVariants); break;
+            case SORTED_MERGE: actual = SortedMergeJoinReadsWithVariants.join(rddReads, rddVariants); break;
+            default:           actual = BroadcastJoinReadsWithVariants.join(rddReads, rddVariants); break;
+        }
+        assertJoined(actual, kvReadiVariant);
+    }
+
+    @DataProvider(name = "readsAndVariants")
+    public Object[][] readsAndVariants(){
+        List<Object[]> testCases = new ArrayList<>();
+
+        for ( Class<?> readImplementation : Arrays.asList(Read.class, SAMRecord.class) ) {
+            ReadsPreprocessingPipelineSparkTestData testData = new ReadsPreprocessingPipelineSparkTestData(readImplementation);
+            testCases.add(new Object[]{testData.getReads(), testData.getVariants(), testData.getKvReadiVariant()});
+        }
+        return testCases.toArray(new Object[][]{});
+    }
+
+    @Test(dataProvider = "readsAndVariants", groups = "spark")
+    public void sortedMergeJoinAcrossPartitionsTest(List<GATKRead> reads, List<GATKVariant> variantList, List<KV<GATKRead, Iterable<GATKVariant>>> kvReadiVariant) {
+        JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+
+        // one read per partition, some of them without variants, and the variants in a single partition
+        JavaRDD<GATKRead> rddReads = ctx.parallelize(reads, reads.size());
+        JavaRDD<GATKVariant> rddVariants = ctx.parallelize(variantList, 1);
+        JavaPairRDD<GATKRead, Iterable<GATKVariant>> actual = SortedMergeJoinReadsWithVariants.join(rddReads, rddVariants);
+        Assert.assertEquals(actual.partitions().size(), reads.size());
+        assertJoined(actual, kvReadiVariant);
+
+        // the join leaves the persistence of the reads to the caller
+        Assert.assertEquals(rddReads.getStorageLevel(), StorageLevel.NONE());
+
+        // unsorted reads give the same result
+        List<GATKRead> reversedReads = Lists.reverse(reads);
+        assertJoined(SortedMergeJoinReadsWithVariants.join(ctx.parallelize(reversedReads, 2), rddVariants), kvReadiVariant);
+    }
+
+    private static void assertJoined(JavaPairRDD<GATKRead, Iterable<GATKVariant>> actual, List<KV<GATKRead, Iterable<GATKVariant>>> kvReadiVariant) {
         Map<GATKRead, Iterable<GATKVariant>> gatkReadIterableMap = actual.collectAsMap();
 
         Assert.assertEquals(gatkReadIterableMap.size(), kvReadiVariant.size());
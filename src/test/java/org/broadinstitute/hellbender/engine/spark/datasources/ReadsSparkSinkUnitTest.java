@@ -4,6 +4,8 @@ package org.broadinstitute.hellbender.engine.spark.datasources;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedInputStream;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
@@ -19,6 +21,7 @@ import org.broadinstitute.hellbender.utils.read.ReadCoordinateComparator;
 import org.broadinstitute.hellbender.utils.read.ReadsWriteFormat;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.broadinstitute.hellbender.utils.test.MiniClusterUtils;
+import org.seqdoop.hadoop_bam.SplittingBAMIndexer;
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -27,6 +30,8 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -113,6 +118,48 @@ public class ReadsSparkSinkUnitTest extends BaseTest {
         assertSingleShardedWritingWorks(inputBam, null, outputUrl);
     }
 
+    @Test(groups = "spark")
+    public void testWritingSplittingIndex() throws IOException {
+        final String inputBam = testDataDir + "tools/BQSR/HiSeq.1mb.1RG.2k_lines.bam";
+        final File outputFile = createTempFile("ReadsSparkSinkUnitTest_splittingIndex", ".bam");
+        final File indexFile = new File(outputFile.getAbsolutePath() + SplittingBAMIndexer.OUTPUT_FILE_EXTENSION);
+        indexFile.deleteOnExit();
+        JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+
+        ReadsSparkSource readSource = new ReadsSparkSource(ctx);
+        JavaRDD<GATKRead> rddParallelReads = readSource.getParallelReads(inputBam, null).repartition(3); // several parts
+        SAMFileHeader header = readSource.getHeader(inputBam, null, null);
+        ReadsSparkSink.writeReads(ctx, outputFile.getAbsolutePath(), null, rddParallelReads, header, ReadsWriteFormat.SINGLE, 3, true);
+
+        // the last entry is the length of the file, and every other entry must be the start of a record
+        final long[] virtualOffsets = readSplittingIndex(indexFile);
+        Assert.assertTrue(virtualOffsets.length > 1);
+        Assert.assertEquals(virtualOffsets[virtualOffsets.length - 1] >>> 16, outputFile.length());
+        try (final BlockCompressedInputStream in = new BlockCompressedInputStream(outputFile)) {
+            final BinaryCodec codec = new BinaryCodec(in);
+            for (int i = 0; i < virtualOffsets.length - 1; i++) {
+                in.seek(virtualOffsets[i]);
+                final int blockSize = codec.readInt();
+                final int referenceIndex = codec.readInt();
+                Assert.assertTrue(blockSize > 0);
+                Assert.assertTrue(referenceIndex >= -1 && referenceIndex < header.getSequenceDictionary().size());
+            }
+        }
+
+        // the splitting index is used to split the output when reading it back
+        JavaRDD<GATKRead> rddParallelReads2 = readSource.getParallelReads(outputFile.getAbsolutePath(), null, 10 * 1024);
+        Assert.assertEquals(rddParallelReads2.count(), rddParallelReads.count());
+    }
+
+    private static long[] readSplittingIndex(final File indexFile) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+        final long[] virtualOffsets = new long[buffer.remaining() / Long.BYTES];
+        for (int i = 0; i < virtualOffsets.length; i++) {
+            virtualOffsets[i] = buffer.getLong();
+        }
+        return virtualOffsets;
+    }
+
     private void assertSingleShardedWritingWorks(String inputBam, String referenceFile, String outputPath) throws IOException {
         JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
 
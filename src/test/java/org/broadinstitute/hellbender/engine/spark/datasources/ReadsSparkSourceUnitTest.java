@@ -5,6 +5,9 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import htsjdk.samtools.*;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.broadinstitute.hellbender.engine.ReadsDataSource;
@@ -17,6 +20,7 @@ import org.broadinstitute.hellbender.utils.read.ReadConstants;
 import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.broadinstitute.hellbender.utils.test.MiniClusterUtils;
+import org.seqdoop.hadoop_bam.FileVirtualSplit;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -210,6 +214,41 @@ public class ReadsSparkSourceUnitTest extends BaseTest {
         }
     }
 
+    @Test(groups = "spark")
+    public void testIntervalsReadOnlyOverlappingSplits() throws IOException {
+        final String bam = dirBQSR + "HiSeq.1mb.1RG.2k_lines.alternate.bam";
+        final int splitSize = 10 * 1024;
+        JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+        ReadsSparkSource readSource = new ReadsSparkSource(ctx);
+        List<SimpleInterval> intervals =
+                ImmutableList.of(new SimpleInterval("chr1", 10070000, 10071000), new SimpleInterval("chr1", 10095000, 10096000));
+        JavaRDD<GATKRead> reads = readSource.getParallelReads(bam, null, intervals, splitSize);
+
+        // the splits are made from the index spans of the intervals, so together they cover only part of the file
+        final Job job = Job.getInstance(ctx.hadoopConfiguration());
+        FileInputFormat.setInputPaths(job, new Path(new File(bam).toURI()));
+        final List<InputSplit> splits = new IntervalAwareBAMInputFormat().getSplits(job);
+        Assert.assertEquals(reads.partitions().size(), splits.size());
+        long splitBytes = 0;
+        for (final InputSplit split : splits) {
+            final FileVirtualSplit virtualSplit = (FileVirtualSplit) split;
+            splitBytes += (virtualSplit.getEndVirtualOffset() >>> 16) - (virtualSplit.getStartVirtualOffset() >>> 16);
+        }
+        Assert.assertTrue(splitBytes < new File(bam).length() / 2, "the splits cover " + splitBytes + " bytes");
+
+        SamReaderFactory samReaderFactory = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT);
+        try (SamReader samReader = samReaderFactory.open(new File(bam))) {
+            int seqIndex = samReader.getFileHeader().getSequenceIndex("chr1");
+            SAMRecordIterator query = samReader.query(new QueryInterval[]{new QueryInterval(seqIndex, 10070000, 10071000), new QueryInterval(seqIndex, 10095000, 10096000)}, false);
+            final List<SAMRecord> expected = Lists.newArrayList(query);
+            final List<GATKRead> actual = reads.collect();
+            Assert.assertEquals(actual.size(), expected.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(actual.get(i).getName(), expected.get(i).getReadName());
+            }
+        }
+    }
+
     /**
      * Loads Reads using samReaderFactory, then calling ctx.parallelize.
      * @param bam file to load
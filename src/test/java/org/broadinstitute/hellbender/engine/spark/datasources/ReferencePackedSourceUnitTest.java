@@ -0,0 +1,91 @@
+package org.broadinstitute.hellbender.engine.spark.datasources;
+
+import com.google.cloud.dataflow.sdk.options.PipelineOptions;
+import htsjdk.samtools.SAMSequenceDictionary;
+import org.apache.spark.SparkConf;
+import org.broadinstitute.hellbender.engine.datasources.ReferenceFileSource;
+import org.broadinstitute.hellbender.engine.datasources.ReferenceMultiSource;
+import org.broadinstitute.hellbender.engine.datasources.ReferenceSource;
+import org.broadinstitute.hellbender.engine.datasources.ReferenceWindowFunctions;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.reference.ReferenceBases;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.broadinstitute.hellbender.utils.test.SparkTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public final class ReferencePackedSourceUnitTest extends BaseTest {
+    private static final String fastaRefURL = publicTestDir + "hg19mini.fasta";
+
+    private File packed;
+    private ReferenceSource fastaRef;
+    private ReferencePackedSource packedRef;
+
+    @BeforeClass
+    public void packReference() throws IOException {
+        packed = createTempFile("hg19mini", ReferencePackedSource.PACKED_REFERENCE_EXTENSION);
+        ReferencePackedSource.pack(new File(fastaRefURL), packed);
+        fastaRef = new ReferenceFileSource(fastaRefURL);
+        packedRef = new ReferencePackedSource(packed.getAbsolutePath());
+    }
+
+    @DataProvider(name = "goodIntervals")
+    public Object[][] goodIntervals() {
+        return new Object[][]{
+                {"1:1-10"},
+                {"1:4-5"},
+                {"1:5-5"},
+                {"2:10,000-11,000"},
+                {"3:1-16000"},
+                {"4:15999-16000"},
+        };
+    }
+
+    @Test(dataProvider = "goodIntervals")
+    public void testIntervalConversion(final String intervalString) throws IOException {
+        final SimpleInterval interval = new SimpleInterval(intervalString);
+        final ReferenceBases expected = fastaRef.getReferenceBases(null, interval);
+        final ReferenceBases actual = packedRef.getReferenceBases(null, interval);
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testQueryPastContigEnd() throws IOException {
+        final ReferenceBases bases = packedRef.getReferenceBases(null, new SimpleInterval("1", 15901, 16100));
+        Assert.assertEquals(bases.getInterval(), new SimpleInterval("1", 15901, 16000));
+        Assert.assertEquals(bases.getBases().length, 100);
+    }
+
+    @Test
+    public void testSequenceDictionary() throws IOException {
+        final SAMSequenceDictionary expected = fastaRef.getReferenceSequenceDictionary(null);
+        final SAMSequenceDictionary actual = packedRef.getReferenceSequenceDictionary(null);
+        Assert.assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(actual.getSequence(i).getSequenceName(), expected.getSequence(i).getSequenceName());
+            Assert.assertEquals(actual.getSequence(i).getSequenceLength(), expected.getSequence(i).getSequenceLength());
+        }
+    }
+
+    @Test
+    public void testSerializeRoundTrip() throws IOException {
+        final PipelineOptions options = null;
+        final ReferenceMultiSource referenceMultiSource = new ReferenceMultiSource(options, packed.getAbsolutePath(), ReferenceWindowFunctions.IDENTITY_FUNCTION);
+        Assert.assertTrue(referenceMultiSource.isCompatibleWithSparkBroadcast());
+
+        // the round tripped source maps the file again
+        final ReferenceMultiSource roundTrippedReference = SparkTestUtils.roundTripInKryo(referenceMultiSource, ReferenceMultiSource.class, new SparkConf());
+        final SimpleInterval interval = new SimpleInterval("2", 5000, 5100);
+        Assert.assertEquals(roundTrippedReference.getReferenceBases(null, interval), fastaRef.getReferenceBases(null, interval));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNotPacked() throws IOException {
+        new ReferencePackedSource(fastaRefURL);
+    }
+}
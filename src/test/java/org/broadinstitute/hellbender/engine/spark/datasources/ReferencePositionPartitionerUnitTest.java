@@ -0,0 +1,158 @@
+package org.broadinstitute.hellbender.engine.spark.datasources;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.HeaderlessSAMRecordCoordinateComparator;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+public final class ReferencePositionPartitionerUnitTest extends BaseTest {
+
+    private static final SAMFileHeader HEADER = ArtificialReadUtils.createArtificialSamHeader(3, 1, 1000);
+
+    private static List<SAMRecord> makeReads() {
+        final Random random = new Random(7);
+        final List<SAMRecord> reads = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // few distinct positions, so that many reads share a key
+            final SAMRecord read = ArtificialReadUtils.createArtificialSAMRecord(HEADER, "read" + i, random.nextInt(3), 1 + random.nextInt(10) * 100, 10);
+            read.setReadNegativeStrandFlag(random.nextBoolean());
+            reads.add(read);
+        }
+        for (int i = 0; i < 50; i++) {
+            final SAMRecord unplaced = ArtificialReadUtils.createArtificialSAMRecord(HEADER, "unplaced" + i, 0, 1, 10);
+            unplaced.setReadUnmappedFlag(true);
+            unplaced.setReferenceName(SAMRecord.NO_ALIGNMENT_REFERENCE_NAME);
+            unplaced.setAlignmentStart(SAMRecord.NO_ALIGNMENT_START);
+            reads.add(unplaced);
+        }
+        for (final SAMRecord read : reads) {
+            read.setHeaderStrict(null);
+        }
+        return reads;
+    }
+
+    private static boolean isUnplaced(final SAMRecord read) {
+        return ReferencePositionPartitioner.isUnplacedKey(ReferencePositionPartitioner.getKey(read, HEADER), HEADER.getSequenceDictionary());
+    }
+
+    @Test
+    public void testKeysSortAsCoordinates() {
+        final Comparator<SAMRecord> comparator = new HeaderlessSAMRecordCoordinateComparator(HEADER);
+        final List<SAMRecord> reads = makeReads();
+        reads.sort(comparator);
+        for (int i = 0; i < reads.size() - 1; i++) {
+            // the keys of the unplaced reads only order them after the placed reads
+            if (isUnplaced(reads.get(i + 1))) {
+                continue;
+            }
+            Assert.assertTrue(ReferencePositionPartitioner.getKey(reads.get(i), HEADER) <= ReferencePositionPartitioner.getKey(reads.get(i + 1), HEADER));
+        }
+        Assert.assertEquals(reads.stream().filter(ReferencePositionPartitionerUnitTest::isUnplaced).count(), 50);
+        Assert.assertTrue(isUnplaced(reads.get(reads.size() - 1)));
+    }
+
+    @Test
+    public void testPartitionsAreInCoordinateOrder() {
+        final ReferencePositionPartitioner partitioner = new ReferencePositionPartitioner(7, HEADER.getSequenceDictionary());
+        final Comparator<SAMRecord> comparator = new HeaderlessSAMRecordCoordinateComparator(HEADER);
+        final List<SAMRecord> reads = makeReads();
+        reads.sort(comparator);
+        final boolean[] used = new boolean[partitioner.numPartitions()];
+        int previousPartition = 0;
+        for (final SAMRecord read : reads) {
+            final int partition = partitioner.getPartition(ReferencePositionPartitioner.getKey(read, HEADER));
+            Assert.assertTrue(partition >= previousPartition);
+            used[partition] = true;
+            previousPartition = partition;
+        }
+        // the positions are spread over the whole reference, and the unplaced read is last
+        for (final boolean partitionUsed : used) {
+            Assert.assertTrue(partitionUsed);
+        }
+        Assert.assertEquals(previousPartition, partitioner.numPartitions() - 1);
+    }
+
+    @Test
+    public void testUnplacedReadsAreSpread() {
+        final ReferencePositionPartitioner partitioner = new ReferencePositionPartitioner(7, 3, HEADER.getSequenceDictionary());
+        final Comparator<SAMRecord> comparator = new HeaderlessSAMRecordCoordinateComparator(HEADER);
+        final List<SAMRecord> reads = makeReads();
+        reads.sort(comparator);
+        final boolean[] used = new boolean[partitioner.numPartitions()];
+        int lastPlacedPartition = 0;
+        for (final SAMRecord read : reads) {
+            final int partition = partitioner.getPartition(ReferencePositionPartitioner.getKey(read, HEADER));
+            used[partition] = true;
+            if (isUnplaced(read)) {
+                // the unplaced reads have the last 3 partitions to themselves
+                Assert.assertTrue(partition >= 4);
+            } else {
+                Assert.assertTrue(partition >= lastPlacedPartition && partition < 4);
+                lastPlacedPartition = partition;
+            }
+        }
+        for (final boolean partitionUsed : used) {
+            Assert.assertTrue(partitionUsed);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTooManyUnplacedPartitions() {
+        new ReferencePositionPartitioner(2, 2, HEADER.getSequenceDictionary());
+    }
+
+    @Test
+    public void testPositionsPastTheEndOfTheSequence() {
+        final ReferencePositionPartitioner partitioner = new ReferencePositionPartitioner(3, HEADER.getSequenceDictionary());
+        final SAMRecord read = ArtificialReadUtils.createArtificialSAMRecord(HEADER, "read", 0, 5000, 10);
+        Assert.assertEquals(partitioner.getPartition(ReferencePositionPartitioner.getKey(read, HEADER)), 1);
+    }
+
+    @Test
+    public void testCanPartition() {
+        Assert.assertTrue(ReferencePositionPartitioner.canPartition(HEADER.getSequenceDictionary()));
+        Assert.assertFalse(ReferencePositionPartitioner.canPartition(new SAMSequenceDictionary()));
+        Assert.assertFalse(ReferencePositionPartitioner.canPartition(null));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNoSequenceLengths() {
+        new ReferencePositionPartitioner(2, new SAMSequenceDictionary());
+    }
+
+    @Test
+    public void testSortTiedReads() {
+        final Comparator<SAMRecord> comparator = new HeaderlessSAMRecordCoordinateComparator(HEADER);
+        final List<Tuple2<Long, SAMRecord>> keyedReads = new ArrayList<>();
+        for (final SAMRecord read : makeReads()) {
+            keyedReads.add(new Tuple2<>(ReferencePositionPartitioner.getKey(read, HEADER), read));
+        }
+        keyedReads.sort((a, b) -> Long.compare(a._1(), b._1()));
+
+        final List<SAMRecord> expected = new ArrayList<>();
+        keyedReads.forEach(keyedRead -> expected.add(keyedRead._2()));
+        expected.sort(comparator);
+
+        final List<SAMRecord> actual = new ArrayList<>();
+        final Iterator<SAMRecord> iter = ReadsSparkSink.sortTiedReads(keyedReads.iterator(), comparator, HEADER.getSequenceDictionary());
+        iter.forEachRemaining(actual::add);
+
+        // the placed reads are in the order of the comparator, and the unplaced reads follow in the order of their keys
+        final int numPlaced = expected.size() - 50;
+        Assert.assertEquals(actual.subList(0, numPlaced), expected.subList(0, numPlaced));
+        final List<SAMRecord> expectedUnplaced = new ArrayList<>();
+        keyedReads.subList(numPlaced, keyedReads.size()).forEach(keyedRead -> expectedUnplaced.add(keyedRead._2()));
+        Assert.assertEquals(actual.subList(numPlaced, actual.size()), expectedUnplaced);
+    }
+}
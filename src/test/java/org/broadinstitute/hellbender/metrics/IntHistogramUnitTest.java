@@ -0,0 +1,75 @@
+package org.broadinstitute.hellbender.metrics;
+
+import htsjdk.samtools.util.Histogram;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+public final class IntHistogramUnitTest extends BaseTest {
+
+    @DataProvider(name = "maxDenseBins")
+    public Object[][] maxDenseBins() {
+        return new Object[][]{{0}, {1}, {100}, {IntHistogram.DEFAULT_MAX_DENSE_BINS}};
+    }
+
+    private static void assertEqualHistograms(final Histogram<Integer> actual, final Histogram<Integer> expected) {
+        Assert.assertEquals(actual.keySet(), expected.keySet());
+        for (final Integer value : expected.keySet()) {
+            Assert.assertEquals(actual.get(value).getValue(), expected.get(value).getValue());
+        }
+        Assert.assertEquals(actual.getCount(), expected.getCount());
+        Assert.assertEquals(actual.getMean(), expected.getMean());
+        Assert.assertEquals(actual.getMedian(), expected.getMedian());
+    }
+
+    @Test(dataProvider = "maxDenseBins")
+    public void testCountsLikeHistogram(final int maxDenseBins) {
+        final Random random = new Random(11);
+        final IntHistogram intHistogram = new IntHistogram(maxDenseBins);
+        final Histogram<Integer> histogram = new Histogram<>("bin", "value");
+        for (int i = 0; i < 10000; i++) {
+            final int value = random.nextInt(300) - 20;
+            intHistogram.increment(value);
+            histogram.increment(value);
+        }
+        intHistogram.increment(Integer.MAX_VALUE, 3);
+        histogram.increment(Integer.MAX_VALUE, 3);
+
+        Assert.assertEquals(intHistogram.getCount(), 10003);
+        Assert.assertEquals(intHistogram.get(Integer.MAX_VALUE), 3);
+        Assert.assertEquals(intHistogram.get(-21), 0);
+        Assert.assertEquals(intHistogram.get(5000), 0);
+        final Histogram<Integer> converted = intHistogram.toHistogram("bin", "value");
+        Assert.assertEquals(converted.getBinLabel(), "bin");
+        Assert.assertEquals(converted.getValueLabel(), "value");
+        assertEqualHistograms(converted, histogram);
+    }
+
+    @Test(dataProvider = "maxDenseBins")
+    public void testAddHistogram(final int maxDenseBins) {
+        final Random random = new Random(13);
+        final IntHistogram first = new IntHistogram(maxDenseBins);
+        final IntHistogram second = new IntHistogram();
+        final Histogram<Integer> expected = new Histogram<>();
+        for (int i = 0; i < 1000; i++) {
+            final int value = random.nextInt(2000) - 10;
+            (random.nextBoolean() ? first : second).increment(value);
+            expected.increment(value);
+        }
+        first.addHistogram(second);
+        Assert.assertEquals(first.getCount(), 1000);
+        assertEqualHistograms(first.toHistogram(), expected);
+    }
+
+    @Test
+    public void testEmpty() {
+        final IntHistogram histogram = new IntHistogram();
+        Assert.assertTrue(histogram.isEmpty());
+        Assert.assertTrue(histogram.toHistogram().isEmpty());
+        histogram.increment(7);
+        Assert.assertFalse(histogram.isEmpty());
+    }
+}
@@ -0,0 +1,110 @@
+package org.broadinstitute.hellbender.metrics;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public final class ShardedCollectionUnitTest extends BaseTest {
+
+    /**
+     * Writes reads at random positions of two contigs, with some placed and unplaced unmapped reads, to a BAM.
+     */
+    private static File writeBam(final boolean withIndex) {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader(2, 1, 10_000);
+        header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+        final File bam = BaseTest.createTempFile("testShardedCollection", ".bam");
+        final Random random = new Random(17);
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(withIndex).makeBAMWriter(header, false, bam)) {
+            for (int i = 0; i < 2000; i++) {
+                final SAMRecord record = ArtificialReadUtils.createArtificialSAMRecord(header, "read" + i, random.nextInt(2), 1 + random.nextInt(9_900), 50);
+                if (random.nextInt(20) == 0) {
+                    setUnmapped(record);
+                }
+                writer.addAlignment(record);
+            }
+            for (int i = 0; i < 10; i++) {
+                final SAMRecord record = ArtificialReadUtils.createArtificialSAMRecord(header, "unplaced" + i, 0, 1, 50);
+                setUnmapped(record);
+                record.setReferenceIndex(SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX);
+                record.setAlignmentStart(SAMRecord.NO_ALIGNMENT_START);
+                writer.addAlignment(record);
+            }
+        }
+        return bam;
+    }
+
+    private static void setUnmapped(final SAMRecord record) {
+        record.setReadUnmappedFlag(true);
+        record.setCigarString(SAMRecord.NO_ALIGNMENT_CIGAR);
+        record.setMappingQuality(SAMRecord.NO_MAPPING_QUALITY);
+    }
+
+    private static List<String> readAll(final File bam, final boolean includeUnplacedReads) throws IOException {
+        final List<String> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(bam)) {
+            for (final SAMRecord record : reader) {
+                if (includeUnplacedReads || record.getReferenceIndex() != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+                    records.add(record.getSAMString());
+                }
+            }
+        }
+        return records;
+    }
+
+    private static List<String> collectSharded(final File bam, final int numThreads, final int shardSize, final boolean includeUnplacedReads) {
+        return ShardedCollection.collect(bam, null, numThreads, shardSize, includeUnplacedReads,
+                ArrayList::new,
+                (records, record) -> records.add(record.getSamRecord().getSAMString()),
+                (target, source) -> {
+                    target.addAll(source);
+                    return target;
+                });
+    }
+
+    @DataProvider(name = "shards")
+    public Object[][] shards() {
+        return new Object[][]{
+                {1, 10_000, true},
+                {1, 777, true},
+                {4, 777, true},
+                {4, 50, true},
+                {4, 1000, false},
+        };
+    }
+
+    @Test(dataProvider = "shards")
+    public void testEachRecordIsCollectedOnceInOrder(final int numThreads, final int shardSize, final boolean includeUnplacedReads) throws IOException {
+        final File bam = writeBam(true);
+        Assert.assertEquals(collectSharded(bam, numThreads, shardSize, includeUnplacedReads), readAll(bam, includeUnplacedReads));
+    }
+
+    @Test(expectedExceptions = UserException.BadInput.class)
+    public void testNeedsAnIndex() {
+        collectSharded(writeBam(false), 2, 1000, true);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testFailureOfAShardIsThrown() {
+        ShardedCollection.collect(writeBam(true), null, 4, 1000, false,
+                ArrayList::new,
+                (records, record) -> {
+                    throw new IllegalStateException("failed");
+                },
+                (target, source) -> target);
+    }
+}
@@ -1,8 +1,13 @@
 package org.broadinstitute.hellbender.tools.picard.analysis;
 
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.metrics.MetricsFile;
 import org.broadinstitute.hellbender.CommandLineProgramTest;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -11,6 +16,9 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Tests CollectAlignmentSummaryStatistics
@@ -488,4 +496,43 @@ public final class CollectAlignmentSummaryMetricsTest extends CommandLineProgram
 
     }
 
+
+    @DataProvider(name="shardedfiles")
+    public Object[][] shardedFiles() {
+        return new Object[][] {
+                {"summary_alignment_stats_test.sam", "summary_alignment_stats_test.fasta"},
+                {"summary_alignment_stats_test_multiple.sam", null}
+        };
+    }
+
+    @Test(dataProvider = "shardedfiles")
+    public void testShardsGiveTheSameMetrics(final String inputFile, final String referenceFile) throws IOException {
+        final File input = BaseTest.createTempFile("alignmentMetrics.indexed", ".bam");
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(new File(TEST_DATA_DIR, inputFile));
+             final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(reader.getFileHeader(), true, input)) {
+            reader.forEach(writer::addAlignment);
+        }
+        final List<String> args = new ArrayList<>(Arrays.asList(
+                "--input", input.getAbsolutePath(),
+                "--METRIC_ACCUMULATION_LEVEL", "ALL_READS",
+                "--METRIC_ACCUMULATION_LEVEL", "SAMPLE",
+                "--METRIC_ACCUMULATION_LEVEL", "LIBRARY",
+                "--METRIC_ACCUMULATION_LEVEL", "READ_GROUP"
+        ));
+        if (referenceFile != null) {
+            args.addAll(Arrays.asList("--reference", new File(TEST_DATA_DIR, referenceFile).getAbsolutePath()));
+        }
+
+        final File expectedFile = BaseTest.createTempFile("alignmentMetrics", ".txt");
+        final List<String> onePassArgs = new ArrayList<>(args);
+        onePassArgs.addAll(Arrays.asList("--output", expectedFile.getAbsolutePath()));
+        runCommandLine(onePassArgs);
+
+        final File outfile = BaseTest.createTempFile("alignmentMetrics.sharded", ".txt");
+        final List<String> shardedArgs = new ArrayList<>(args);
+        shardedArgs.addAll(Arrays.asList("--output", outfile.getAbsolutePath(), "--NUM_THREADS", "2"));
+        runCommandLine(shardedArgs);
+
+        IntegrationTestSpec.assertEqualTextFiles(outfile, expectedFile, "#");
+    }
 }
@@ -0,0 +1,140 @@
+package org.broadinstitute.hellbender.tools.picard.analysis;
+
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.StringUtil;
+import org.broadinstitute.hellbender.CommandLineProgramTest;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.test.ArgumentsBuilder;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public final class CollectGcBiasMetricsIntegrationTest extends CommandLineProgramTest {
+    private static final int WINDOW_SIZE = 50;
+
+    @Override
+    public String getTestedClassName() {
+        return CollectGcBiasMetrics.class.getSimpleName();
+    }
+
+    private static File createIndex(final File refFile, final int windowSize) {
+        final File index = BaseTest.createTempFile("testCollectGcBiasMetrics", ".gcwi");
+        new CreateGcWindowIndex().instanceMain(new String[]{
+                "--reference", refFile.getAbsolutePath(),
+                "--output", index.getAbsolutePath(),
+                "--WINDOW_SIZE", Integer.toString(windowSize)
+        });
+        return index;
+    }
+
+    @Test
+    public void testIndexMatchesReference() {
+        final File refFile = new File(hg19MiniReference);
+        final GcWindowIndex index = GcWindowIndex.open(createIndex(refFile, WINDOW_SIZE));
+        Assert.assertEquals(index.getWindowSize(), WINDOW_SIZE);
+
+        final ReferenceSequenceFile reference = ReferenceSequenceFileFactory.getReferenceSequenceFile(refFile);
+        Assert.assertEquals(index.getSequenceDictionary().size(), reference.getSequenceDictionary().size());
+        for (ReferenceSequence sequence = reference.nextSequence(); sequence != null; sequence = reference.nextSequence()) {
+            final byte[] bases = sequence.getBases();
+            StringUtil.toUpperCase(bases);
+            final int[] windowsByGc = new int[GcWindowIndex.GC_BINS];
+            final byte[] gcs = GcWindowIndex.calculateAllGcs(bases, WINDOW_SIZE, windowsByGc);
+
+            final ByteBuffer indexedGcs = index.getGcs(sequence.getContigIndex());
+            Assert.assertEquals(indexedGcs.remaining(), gcs.length);
+            for (int position = 0; position < gcs.length; position++) {
+                Assert.assertEquals(indexedGcs.get(position), gcs[position]);
+            }
+            Assert.assertEquals(index.getWindowsByGc(sequence.getContigIndex()), windowsByGc);
+            Assert.assertEquals(index.getSequenceDictionary().getSequence(sequence.getContigIndex()).getSequenceLength(), bases.length);
+        }
+    }
+
+    @Test
+    public void testIndexGivesTheSameMetrics() throws IOException {
+        final File refFile = new File(hg19MiniReference);
+        final File input = writeRandomReads(refFile);
+        final File expectedFile = BaseTest.createTempFile("testCollectGcBiasMetrics.reference", ".metrics");
+        final File expectedSummaryFile = BaseTest.createTempFile("testCollectGcBiasMetrics.reference", ".summary");
+        runCommandLine(getArgs(input, refFile, expectedFile, expectedSummaryFile, null));
+
+        final File outfile = BaseTest.createTempFile("testCollectGcBiasMetrics.index", ".metrics");
+        final File summaryFile = BaseTest.createTempFile("testCollectGcBiasMetrics.index", ".summary");
+        runCommandLine(getArgs(input, refFile, outfile, summaryFile, createIndex(refFile, WINDOW_SIZE)));
+        IntegrationTestSpec.assertEqualTextFiles(outfile, expectedFile, "#");
+        IntegrationTestSpec.assertEqualTextFiles(summaryFile, expectedSummaryFile, "#");
+    }
+
+    @Test
+    public void testShardsGiveTheSameMetrics() throws IOException {
+        final File refFile = new File(hg19MiniReference);
+        final File input = BaseTest.createTempFile("testCollectGcBiasMetrics.indexed", ".bam");
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(writeRandomReads(refFile));
+             final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(reader.getFileHeader(), true, input)) {
+            reader.forEach(writer::addAlignment);
+        }
+        final File expectedFile = BaseTest.createTempFile("testCollectGcBiasMetrics.reference", ".metrics");
+        final File expectedSummaryFile = BaseTest.createTempFile("testCollectGcBiasMetrics.reference", ".summary");
+        runCommandLine(getArgs(input, refFile, expectedFile, expectedSummaryFile, null));
+
+        final File outfile = BaseTest.createTempFile("testCollectGcBiasMetrics.sharded", ".metrics");
+        final File summaryFile = BaseTest.createTempFile("testCollectGcBiasMetrics.sharded", ".summary");
+        final ArgumentsBuilder args = getArgs(input, refFile, outfile, summaryFile, null);
+        args.add("--NUM_THREADS");
+        args.add("2");
+        runCommandLine(args);
+        IntegrationTestSpec.assertEqualTextFiles(outfile, expectedFile, "#");
+        IntegrationTestSpec.assertEqualTextFiles(summaryFile, expectedSummaryFile, "#");
+    }
+
+    private static ArgumentsBuilder getArgs(final File input, final File refFile, final File outfile, final File summaryFile, final File index) {
+        final ArgumentsBuilder args = new ArgumentsBuilder();
+        args.add("--input");
+        args.add(input.getAbsolutePath());
+        args.add("--output");
+        args.add(outfile.getAbsolutePath());
+        args.add("--SUMMARY_OUTPUT");
+        args.add(summaryFile.getAbsolutePath());
+        args.add("--CHART_OUTPUT");
+        args.add(BaseTest.createTempFile("testCollectGcBiasMetrics", ".pdf").getAbsolutePath());
+        args.add("--reference");
+        args.add(refFile.getAbsolutePath());
+        args.add("--WINDOW_SIZE");
+        args.add(Integer.toString(WINDOW_SIZE));
+        if (index != null) {
+            args.add("--GC_WINDOW_INDEX");
+            args.add(index.getAbsolutePath());
+        }
+        return args;
+    }
+
+    @Test(expectedExceptions = UserException.BadInput.class)
+    public void testIndexOfOtherWindowSize() {
+        final File refFile = new File(hg19MiniReference);
+        runCommandLine(new String[]{
+                "--input", writeRandomReads(refFile).getAbsolutePath(),
+                "--output", BaseTest.createTempFile("testCollectGcBiasMetrics", ".metrics").getAbsolutePath(),
+                "--CHART_OUTPUT", BaseTest.createTempFile("testCollectGcBiasMetrics", ".pdf").getAbsolutePath(),
+                "--reference", refFile.getAbsolutePath(),
+                "--WINDOW_SIZE", Integer.toString(WINDOW_SIZE),
+                "--GC_WINDOW_INDEX", createIndex(refFile, 2 * WINDOW_SIZE).getAbsolutePath()
+        });
+    }
+
+    private static File writeRandomReads(final File refFile) {
+        return RandomReadsTestUtils.writeRandomReads(refFile, new Random(29), 2000, 60);
+    }
+}
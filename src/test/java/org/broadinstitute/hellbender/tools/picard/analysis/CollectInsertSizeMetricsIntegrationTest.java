@@ -1,5 +1,9 @@
 package org.broadinstitute.hellbender.tools.picard.analysis;
 
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.metrics.MetricsFile;
 import org.broadinstitute.hellbender.CommandLineProgramTest;
 import org.broadinstitute.hellbender.metrics.InsertSizeMetrics;
@@ -81,4 +85,45 @@ public final class CollectInsertSizeMetricsIntegrationTest extends CommandLinePr
                 "#"
         );
     }
+
+    @Test(dataProvider="metricsfiles")
+    public void testSharded(
+            final String fileName,
+            final String referenceName,
+            final boolean allLevels,
+            final String expectedResultsFile) throws IOException {
+        final File input = new File(TEST_DATA_DIR, fileName);
+        final File indexedInput = BaseTest.createTempFile("testSharded", ".bam");
+        try (final SamReader reader = SamReaderFactory.makeDefault().referenceSequence(referenceName == null ? null : new File(referenceName)).open(input);
+             final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(reader.getFileHeader(), true, indexedInput)) {
+            reader.forEach(writer::addAlignment);
+        }
+        final File outfile = BaseTest.createTempFile("test", ".insert_size_metrics");
+
+        final ArgumentsBuilder args = new ArgumentsBuilder();
+        args.add("--input");
+        args.add(indexedInput.getAbsolutePath());
+        args.add("--output");
+        args.add(outfile.getAbsolutePath());
+        args.add("--histogramPlotFile");
+        args.add(BaseTest.createTempFile("testSharded", ".pdf").getAbsolutePath());
+        args.add("--NUM_THREADS");
+        args.add("4");
+        if (allLevels) {
+            args.add("-" + "LEVEL");
+            args.add(MetricAccumulationLevel.SAMPLE.toString());
+            args.add("-" + "LEVEL");
+            args.add(MetricAccumulationLevel.LIBRARY.toString());
+            args.add("-" + "LEVEL");
+            args.add(MetricAccumulationLevel.READ_GROUP.toString());
+        }
+
+        runCommandLine(args.getArgsArray());
+
+        IntegrationTestSpec.assertEqualTextFiles(
+                outfile,
+                new File(TEST_DATA_DIR, expectedResultsFile),
+                "#"
+        );
+    }
 }
@@ -19,6 +19,7 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -138,4 +139,43 @@ public final class CollectMultipleMetricsIntegrationTest extends CommandLineProg
         }
     }
 
+    @Test(dataProvider="metricsTestFiles")
+    public void testProgramsInParallel(
+            final String fileName,
+            final String referenceName,
+            final String expectedInsertSizeResults) throws IOException {
+        final TestCustomCollector testCollector = new TestCustomCollector();
+
+        ArgumentsBuilder args = new ArgumentsBuilder();
+        String outBase = setupMultipleCollector(args, fileName, referenceName);
+        args.add("--RUN_PROGRAMS_IN_PARALLEL");
+        args.add("true");
+
+        CollectMultipleMetrics multipleCollectorTool = new CollectMultipleMetrics();
+        multipleCollectorTool.setProgramsToRun(Arrays.asList(CollectMultipleMetrics.Program.CollectInsertSizeMetrics, outbase -> testCollector));
+        multipleCollectorTool.instanceMain(args.getArgsArray());
+
+        Assert.assertEquals(testCollector.count, 52L);
+        validateInsertSizeMetrics(outBase, expectedInsertSizeResults);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testFailingProgramInParallel() throws IOException {
+        ArgumentsBuilder args = new ArgumentsBuilder();
+        setupMultipleCollector(args, "insert_size_metrics_test.bam", null);
+        args.add("--RUN_PROGRAMS_IN_PARALLEL");
+        args.add("true");
+
+        final TestCustomCollector failingCollector = new TestCustomCollector() {
+            @Override
+            protected void acceptRead(final SAMRecord rec, final ReferenceSequence ref) {
+                if (++count == 10) {
+                    throw new IllegalStateException("failing on purpose");
+                }
+            }
+        };
+        CollectMultipleMetrics multipleCollectorTool = new CollectMultipleMetrics();
+        multipleCollectorTool.setProgramsToRun(Arrays.asList(CollectMultipleMetrics.Program.CollectInsertSizeMetrics, outbase -> failingCollector));
+        multipleCollectorTool.instanceMain(args.getArgsArray());
+    }
 }
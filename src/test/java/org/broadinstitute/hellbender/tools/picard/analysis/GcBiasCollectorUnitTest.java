@@ -0,0 +1,78 @@
+package org.broadinstitute.hellbender.tools.picard.analysis;
+
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFileWalker;
+import org.broadinstitute.hellbender.metrics.ShardedCollection;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+public final class GcBiasCollectorUnitTest extends BaseTest {
+    private static final int WINDOW_SIZE = 50;
+
+    @DataProvider(name = "gcWindowIndex")
+    public Object[][] gcWindowIndex() {
+        return new Object[][]{{false}, {true}};
+    }
+
+    /**
+     * The contigs of the reference are cut into several shards each, so the windows of a contig have to be counted
+     * once even though several collectors see its reads.
+     */
+    @Test(dataProvider = "gcWindowIndex")
+    public void testShardsGiveTheSameCounts(final boolean useGcWindowIndex) throws IOException {
+        final File refFile = new File(hg19MiniReference);
+        final File bam = writeIndexedCopy(RandomReadsTestUtils.writeRandomReads(refFile, new Random(31), 2000, 60));
+        final GcWindowIndex gcWindowIndex = useGcWindowIndex ? createGcWindowIndex(refFile) : null;
+
+        final GcBiasCollector expected = new GcBiasCollector(WINDOW_SIZE, false, gcWindowIndex);
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(bam)) {
+            final ReferenceSequenceFileWalker walker = new ReferenceSequenceFileWalker(refFile);
+            for (final SAMRecord record : reader) {
+                final ReferenceSequence ref = record.getReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX ? null : walker.get(record.getReferenceIndex());
+                expected.acceptRecord(record, ref);
+            }
+        }
+
+        final GcBiasCollector actual = ShardedCollection.collect(bam, refFile, 3, 1000, true,
+                () -> new GcBiasCollector(WINDOW_SIZE, false, gcWindowIndex),
+                (collector, record) -> collector.acceptRecord(record.getSamRecord(), record.getReferenceSequence()),
+                GcBiasCollector::combine);
+
+        Assert.assertEquals(actual.getTotalClusters(), expected.getTotalClusters());
+        Assert.assertEquals(actual.getTotalAlignedReads(), expected.getTotalAlignedReads());
+        Assert.assertEquals(actual.getWindowsByGc(), expected.getWindowsByGc());
+        Assert.assertEquals(actual.getReadsByGc(), expected.getReadsByGc());
+        Assert.assertEquals(actual.getBasesByGc(), expected.getBasesByGc());
+        Assert.assertEquals(actual.getErrorsByGc(), expected.getErrorsByGc());
+    }
+
+    private static GcWindowIndex createGcWindowIndex(final File refFile) {
+        final File index = BaseTest.createTempFile("testGcBiasCollector", ".gcwi");
+        new CreateGcWindowIndex().instanceMain(new String[]{
+                "--reference", refFile.getAbsolutePath(),
+                "--output", index.getAbsolutePath(),
+                "--WINDOW_SIZE", Integer.toString(WINDOW_SIZE)
+        });
+        return GcWindowIndex.open(index);
+    }
+
+    private static File writeIndexedCopy(final File input) throws IOException {
+        final File indexedInput = BaseTest.createTempFile("testGcBiasCollector", ".bam");
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(input);
+             final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(reader.getFileHeader(), true, indexedInput)) {
+            reader.forEach(writer::addAlignment);
+        }
+        return indexedInput;
+    }
+}
@@ -0,0 +1,101 @@
+package org.broadinstitute.hellbender.tools.picard.analysis;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+/**
+ * Writes BAMs of reads at random positions of a reference, for the metrics tests that check that two ways of computing
+ * the same metrics agree on one input.
+ */
+public final class RandomReadsTestUtils {
+    public static final String READ_GROUP_ID = "rg1";
+
+    private RandomReadsTestUtils() {}
+
+    /**
+     * Writes reads at random positions of the reference, on both strands, in one read group.
+     */
+    public static File writeRandomReads(final File refFile, final Random random, final int nReads, final int readLength) {
+        return writeBam(refFile, "randomReads", (header, writer) -> {
+            for (int i = 0; i < nReads; i++) {
+                final int refIndex = random.nextInt(header.getSequenceDictionary().size());
+                final int contigLength = header.getSequenceDictionary().getSequence(refIndex).getSequenceLength();
+                final SAMRecord read = ArtificialReadUtils.createArtificialSAMRecord(header, "read" + i, refIndex, 1 + random.nextInt(contigLength - readLength), readLength);
+                read.setReadNegativeStrandFlag(random.nextBoolean());
+                read.setAttribute(SAMTag.RG.name(), READ_GROUP_ID);
+                writer.addAlignment(read);
+            }
+        });
+    }
+
+    /**
+     * Writes pairs of reads at random positions, whose mates often overlap, with random qualities and flags, in one
+     * read group. Both mates lie within the contig.
+     */
+    public static File writeRandomPairs(final File refFile, final Random random, final int nPairs, final int readLength) {
+        return writeBam(refFile, "randomPairs", (header, writer) -> {
+            for (int i = 0; i < nPairs; i++) {
+                final int refIndex = random.nextInt(header.getSequenceDictionary().size());
+                final int contigLength = header.getSequenceDictionary().getSequence(refIndex).getSequenceLength();
+                final int start = 1 + random.nextInt(contigLength - 3 * readLength);
+                final int mateStart = start + random.nextInt(readLength + readLength / 2);
+                final SAMRecord first = ArtificialReadUtils.createArtificialSAMRecord(header, "pair" + i, refIndex, start, readLength);
+                final SAMRecord second = ArtificialReadUtils.createArtificialSAMRecord(header, "pair" + i, refIndex, mateStart, readLength);
+                final boolean unpaired = random.nextInt(50) == 0;
+                final boolean duplicate = random.nextInt(20) == 0;
+                final int mappingQuality = random.nextInt(60);
+                for (final SAMRecord read : new SAMRecord[]{first, second}) {
+                    final SAMRecord mate = read == first ? second : first;
+                    read.setReadPairedFlag(!unpaired);
+                    if (!unpaired) {
+                        read.setFirstOfPairFlag(read == first);
+                        read.setSecondOfPairFlag(read == second);
+                        read.setMateReferenceIndex(refIndex);
+                        read.setMateAlignmentStart(mate.getAlignmentStart());
+                    }
+                    read.setDuplicateReadFlag(duplicate);
+                    read.setMappingQuality(mappingQuality);
+                    final byte[] qualities = new byte[readLength];
+                    for (int j = 0; j < readLength; j++) {
+                        qualities[j] = (byte) (2 + random.nextInt(39));
+                    }
+                    read.setBaseQualities(qualities);
+                    read.setAttribute(SAMTag.RG.name(), READ_GROUP_ID);
+                    writer.addAlignment(read);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes a coordinate sorted BAM over the sequence dictionary of the reference, with one read group, to a
+     * temporary file.
+     */
+    private static File writeBam(final File refFile, final String name, final BiConsumer<SAMFileHeader, SAMFileWriter> addReads) {
+        final SAMFileHeader header = new SAMFileHeader();
+        header.setSequenceDictionary(ReferenceSequenceFileFactory.getReferenceSequenceFile(refFile).getSequenceDictionary());
+        header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+        final SAMReadGroupRecord readGroup = new SAMReadGroupRecord(READ_GROUP_ID);
+        readGroup.setSample("sample");
+        readGroup.setLibrary("library");
+        header.setReadGroups(Collections.singletonList(readGroup));
+
+        final File bam = BaseTest.createTempFile(name, ".bam");
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(header, false, bam)) {
+            addReads.accept(header, writer);
+        }
+        return bam;
+    }
+}
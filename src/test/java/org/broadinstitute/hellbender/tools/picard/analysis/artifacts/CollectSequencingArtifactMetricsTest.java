@@ -4,6 +4,8 @@ import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.util.IOUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.broadinstitute.hellbender.CommandLineProgramTest;
+import org.broadinstitute.hellbender.tools.picard.analysis.CollectOxoGMetrics;
+import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
 import org.testng.Assert;
 import org.testng.annotations.AfterTest;
 import org.testng.annotations.BeforeTest;
@@ -61,6 +63,39 @@ public final class CollectSequencingArtifactMetricsTest extends CommandLineProgr
         assertAllFilesEqual(expected, actual);
     }
 
+    @DataProvider(name = "oxoG")
+    public Object[][] oxoGData() {
+        return new Object[][]{
+                {"--MIN_INS 30 --MAX_INS 30 --CONTEXT_SIZE 1"},
+                {"--MIN_INS 30 --MAX_INS 30 --CONTEXT_SIZE 0 --MINIMUM_QUALITY_SCORE 0"},
+                {"--MIN_INS 0  --MAX_INS 0  --CONTEXT_SIZE 1 --MINIMUM_MAPPING_QUALITY 0 --INCLUDE_UNPAIRED true"},
+        };
+    }
+
+    /**
+     * The CpCG metrics counted with OXOG_OUTPUT must be those of CollectOxoGMetrics.
+     */
+    @Test(dataProvider = "oxoG")
+    public void testOxoGOutputMatchesCollectOxoGMetrics(final String extraArgs) throws IOException {
+        final File actual = new File(globalTempOutputDir, "oxog_output");
+        final File oxoGActual = new File(globalTempOutputDir, "oxog_output.oxog_metrics");
+        final File oxoGExpected = new File(globalTempOutputDir, "oxog_expected.oxog_metrics");
+
+        runCommandLine(StringUtils.split("--input " + TEST_SAM.getAbsolutePath() +
+                " --output " + actual.getAbsolutePath() +
+                " --reference " + REFERENCE.getAbsolutePath() +
+                " --OXOG_OUTPUT " + oxoGActual.getAbsolutePath() +
+                " " + extraArgs));
+
+        final String oxoGArgs = extraArgs.replace("--INCLUDE_UNPAIRED true", "");
+        new CollectOxoGMetrics().instanceMain(StringUtils.split("--input " + TEST_SAM.getAbsolutePath() +
+                " --output " + oxoGExpected.getAbsolutePath() +
+                " --reference " + REFERENCE.getAbsolutePath() +
+                " " + oxoGArgs));
+
+        IntegrationTestSpec.assertEqualTextFiles(oxoGActual, oxoGExpected, "#");
+    }
+
     private void assertAllFilesEqual(final File expectedBase, final File actualBase) {
         boolean equal = areMetricsEqual(expectedBase, actualBase, SequencingArtifactMetrics.PRE_ADAPTER_SUMMARY_EXT);
         equal = equal && areMetricsEqual(expectedBase, actualBase, SequencingArtifactMetrics.PRE_ADAPTER_DETAILS_EXT);
@@ -4,6 +4,7 @@ package org.broadinstitute.hellbender.tools.picard.analysis.directed;
 import org.broadinstitute.hellbender.CommandLineProgramTest;
 import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
@@ -12,9 +13,14 @@ import java.io.IOException;
 public final class CollectTargetedPcrMetricsIntegrationTest extends CommandLineProgramTest {
     private static final File TEST_DATA_PATH = new File(getTestDataDir(), "picard/analysis/directed/CollectTargetedPcrMetrics/");
 
+    @DataProvider(name = "sweep")
+    public Object[][] sweep() {
+        return new Object[][]{{false}, {true}};
+    }
+
     //Note: the expected values were generated using picard 1.130
-    @Test
-    public void testCollect() throws IOException {
+    @Test(dataProvider = "sweep")
+    public void testCollect(final boolean useSortedSweep) throws IOException {
         final File input = new File(TEST_DATA_PATH, "microbam.bam");
         final File amplicon_intervals = new File(TEST_DATA_PATH, "lifted_Chr20test_targets.interval_list");
         final File target_intervals = new File(TEST_DATA_PATH, "lifted_Chr20test_regions_t.interval_list");
@@ -34,6 +40,7 @@ public final class CollectTargetedPcrMetricsIntegrationTest extends CommandLineP
                 "--N", "lifted_Chr20test_targets",
                 "--LEVEL", "ALL_READS",
                 "--PER_TARGET_COVERAGE", pertargetcoverageout.getAbsolutePath(),
+                "--USE_SORTED_SWEEP", Boolean.toString(useSortedSweep)
         };
         runCommandLine(args);
         IntegrationTestSpec.assertEqualTextFiles(outfile, expectedFile, "#");
@@ -2,12 +2,14 @@ package org.broadinstitute.hellbender.tools.picard.analysis.directed;
 
 import htsjdk.samtools.util.SequenceUtil;
 import org.broadinstitute.hellbender.CommandLineProgramTest;
+import org.broadinstitute.hellbender.tools.picard.analysis.RandomReadsTestUtils;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
 import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Random;
 
 public final class CollectWgsMetricsIntegrationTest extends CommandLineProgramTest {
     private static final File TEST_DATA_DIR = new File(getTestDataDir(), "picard/analysis/directed/CollectWgsMetrics");
@@ -42,4 +44,25 @@ public final class CollectWgsMetricsIntegrationTest extends CommandLineProgramTe
         };
         runCommandLine(args);
     }
+
+    @Test
+    public void testFastAlgorithmMatches() throws IOException {
+        final File refFile = new File(hg19MiniReference);
+        final File input = RandomReadsTestUtils.writeRandomPairs(refFile, new Random(13), 3000, 50);
+        final File expectedFile = BaseTest.createTempFile("testCollectWgsMetrics.locusIterator", ".metrics");
+        final File outfile = BaseTest.createTempFile("testCollectWgsMetrics.fast", ".metrics");
+        for (final boolean fast : new boolean[]{false, true}) {
+            final String[] args = {
+                    "--input", input.getAbsolutePath(),
+                    "--output", (fast ? outfile : expectedFile).getAbsolutePath(),
+                    "--reference", refFile.getAbsolutePath(),
+                    "--MINIMUM_MAPPING_QUALITY", "10",
+                    "--COVERAGE_CAP", "100",
+                    "--INCLUDE_BQ_HISTOGRAM", "TRUE",
+                    "--USE_FAST_ALGORITHM", Boolean.toString(fast)
+            };
+            runCommandLine(args);
+        }
+        IntegrationTestSpec.assertEqualTextFiles(outfile, expectedFile, "#");
+    }
 }
@@ -0,0 +1,111 @@
+package org.broadinstitute.hellbender.tools.picard.sam.markduplicates;
+
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.read.markduplicates.MarkDuplicatesTester;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.broadinstitute.hellbender.utils.test.testers.AbstractMarkDuplicatesTester;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for MarkDuplicates with STREAMING_WITH_MATE_CIGAR, which marks duplicates in a single pass over the input.
+ */
+public final class MarkDuplicatesSinglePassIntegrationTest extends BaseTest {
+
+    private static final int DEFAULT_BASE_QUALITY = 10;
+    private static final int ELIGIBLE_BASE_QUALITY = 15;
+
+    private static AbstractMarkDuplicatesTester getTester() {
+        final AbstractMarkDuplicatesTester tester = new MarkDuplicatesTester();
+        tester.addArg("--STREAMING_WITH_MATE_CIGAR", "true");
+        return tester;
+    }
+
+    @Test
+    public void testTwoMappedPairs() {
+        final AbstractMarkDuplicatesTester tester = getTester();
+        tester.addMappedPair(1, 1, 100, false, false, ELIGIBLE_BASE_QUALITY);
+        tester.addMappedPair(1, 1, 100, true, true, DEFAULT_BASE_QUALITY); // duplicate!!!
+        tester.runTest();
+    }
+
+    @Test
+    public void testTwoMappedFragments() {
+        final AbstractMarkDuplicatesTester tester = getTester();
+        tester.addMappedFragment(0, 1, false, ELIGIBLE_BASE_QUALITY);
+        tester.addMappedFragment(0, 1, true, DEFAULT_BASE_QUALITY); // duplicate!!!
+        tester.runTest();
+    }
+
+    @Test
+    public void testSingleMappedFragmentAndSingleMappedPair() {
+        final AbstractMarkDuplicatesTester tester = getTester();
+        tester.addMappedFragment(1, 1, true, DEFAULT_BASE_QUALITY); // duplicate!!!
+        tester.addMappedPair(1, 1, 100, false, false, ELIGIBLE_BASE_QUALITY);
+        tester.runTest();
+    }
+
+    @Test
+    public void testDuplicatePairsWithDistantMates() {
+        // the duplicate sets of the first ends are resolved long before the second ends are seen
+        final AbstractMarkDuplicatesTester tester = getTester();
+        tester.addMappedPair(1, 1, 100000, false, false, ELIGIBLE_BASE_QUALITY);
+        tester.addMappedPair(1, 1, 100000, true, true, DEFAULT_BASE_QUALITY); // duplicate!!!
+        tester.addMappedFragment(1, 50000, false, DEFAULT_BASE_QUALITY);
+        tester.addMappedPair(1, 60000, 60100, false, false, DEFAULT_BASE_QUALITY);
+        tester.runTest();
+    }
+
+    @Test
+    public void testDuplicatePairsWithMatesOnAnotherContig() {
+        final AbstractMarkDuplicatesTester tester = getTester();
+        tester.addMatePair("READ0", 1, 2, 100, 200, false, false, false, false, "50M", "50M", false, true, false, false, false, ELIGIBLE_BASE_QUALITY);
+        tester.addMatePair("READ1", 1, 2, 100, 200, false, false, true, true, "50M", "50M", false, true, false, false, false, DEFAULT_BASE_QUALITY); // duplicate!!!
+        tester.runTest();
+    }
+
+    @Test
+    public void testTwoMappedPairsWithSoftClipping() {
+        final AbstractMarkDuplicatesTester tester = getTester();
+        // 5'1: 2, 5'2:46+73M=118
+        // 5'1: 2, 5'2:51+68M=118
+        tester.addMappedPair(1, 2, 46, false, false, "6S42M28S", "3S73M", false, ELIGIBLE_BASE_QUALITY);
+        tester.addMappedPair(1, 2, 51, true, true, "6S42M28S", "8S68M", false, DEFAULT_BASE_QUALITY); // duplicate
+        tester.runTest();
+    }
+
+    @Test
+    public void testTwoMappedPairsWithSoftClippingFirstOfPairOnly() {
+        // unlike the default mode, the pairs are compared using the mate cigars even if the mates are missing
+        final AbstractMarkDuplicatesTester tester = getTester();
+        // 5'1: 2, 5'2:46+73M=118
+        // 5'1: 2, 5'2:51+68M=118
+        tester.addMappedPair(0, 12, 46, false, false, "6S42M28S", "3S73M", true, 50); // only add the first one
+        tester.addMappedPair(0, 12, 51, true, false, "6S42M28S", "8S68M", true, 50); // only add the first one, duplicate
+        tester.runTest();
+    }
+
+    @Test
+    public void testTwoMappedPairsAndTerminalUnmappedFragment() {
+        final AbstractMarkDuplicatesTester tester = getTester();
+        tester.addMappedPair(1, 1, 100, false, false, ELIGIBLE_BASE_QUALITY);
+        tester.addMappedPair(1, 1, 100, true, true, DEFAULT_BASE_QUALITY); // duplicate!!!
+        tester.addUnmappedFragment(-1, DEFAULT_BASE_QUALITY); // unmapped fragment at end of file
+        tester.runTest();
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testMissingMateCigar() {
+        final AbstractMarkDuplicatesTester tester = getTester();
+        tester.setNoMateCigars(true);
+        tester.addMappedPair(1, 1, 100, false, false, DEFAULT_BASE_QUALITY);
+        tester.runTest();
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testClippingLargerThanMinimumDistance() {
+        final AbstractMarkDuplicatesTester tester = getTester();
+        tester.addArg("--MINIMUM_DISTANCE", "10");
+        tester.addMappedFragment(1, 100, false, "20S30M", DEFAULT_BASE_QUALITY);
+        tester.runTest();
+    }
+}
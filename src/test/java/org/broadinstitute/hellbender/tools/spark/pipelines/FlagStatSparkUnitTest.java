@@ -0,0 +1,79 @@
+package org.broadinstitute.hellbender.tools.spark.pipelines;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.broadinstitute.hellbender.engine.spark.FlatRead;
+import org.broadinstitute.hellbender.engine.spark.SparkContextFactory;
+import org.broadinstitute.hellbender.engine.spark.datasources.ReadsSparkSource;
+import org.broadinstitute.hellbender.tools.FlagStat.FlagStatus;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public final class FlagStatSparkUnitTest extends BaseTest {
+
+    /**
+     * Pairs with random flags, mapping qualities and mate contigs, so that every count of the flagstat is exercised.
+     */
+    private static List<GATKRead> makeRandomReads() {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader(3, 1, 100000);
+        final Random random = new Random(17);
+        final List<GATKRead> reads = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final List<GATKRead> pair = ArtificialReadUtils.createPair(header, "pair" + i, 50, 1 + random.nextInt(1000), 1 + random.nextInt(1000), random.nextBoolean(), random.nextBoolean());
+            for (final GATKRead read : pair) {
+                read.setMappingQuality(random.nextInt(10));
+                read.setIsProperlyPaired(random.nextBoolean());
+                read.setIsDuplicate(random.nextInt(10) == 0);
+                read.setFailsVendorQualityCheck(random.nextInt(10) == 0);
+                read.setIsSecondaryAlignment(random.nextInt(20) == 0);
+                read.setIsSupplementaryAlignment(random.nextInt(20) == 0);
+                switch (random.nextInt(5)) {
+                    case 0:
+                        read.setMateIsUnmapped();
+                        break;
+                    case 1:
+                        read.setMatePosition(Integer.toString(random.nextInt(3)), 1 + random.nextInt(1000));
+                        break;
+                    case 2:
+                        read.setIsUnmapped();
+                        break;
+                    case 3:
+                        read.setIsPaired(false);
+                        break;
+                    default:
+                        break;
+                }
+                reads.add(read);
+            }
+        }
+        return reads;
+    }
+
+    private static void assertSameFlagStat(final JavaRDD<GATKRead> reads) {
+        final FlagStatus expected = reads.aggregate(new FlagStatus(), FlagStatus::add, FlagStatus::merge);
+        Assert.assertEquals(FlagStatSpark.flagStat(FlatRead.toDataset(reads)), expected);
+        Assert.assertEquals(FlatRead.toDataset(reads).count(), reads.count());
+    }
+
+    @Test(groups = "spark")
+    public void testRandomReadsMatchReadAggregate() {
+        final JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+        assertSameFlagStat(ctx.parallelize(makeRandomReads(), 4));
+    }
+
+    @Test(groups = "spark")
+    public void testBamMatchesReadAggregate() {
+        final JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+        final File bam = getTestFile("flag_stat.bam");
+        assertSameFlagStat(new ReadsSparkSource(ctx).getParallelReads(bam.getAbsolutePath(), null));
+    }
+}
@@ -1,14 +1,17 @@
 package org.broadinstitute.hellbender.tools.spark.sv;
 
 import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.util.SequenceUtil;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.broadcast.Broadcast;
 import org.broadinstitute.hellbender.engine.spark.SparkContextFactory;
 import org.broadinstitute.hellbender.engine.spark.datasources.ReadsSparkSource;
 import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.tools.spark.sv.RunSGAViaProcessBuilderOnSpark.ContigsCollection;
 import org.broadinstitute.hellbender.tools.spark.utils.HopscotchUniqueMultiMap;
 import org.broadinstitute.hellbender.tools.spark.utils.HopscotchSet;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.testng.Assert;
@@ -16,7 +19,9 @@ import org.testng.annotations.Test;
 import scala.Tuple2;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.stream.Collectors;
 
 public final class FindBreakpointEvidenceSparkUnitTest extends BaseTest {
     private static final ReadMetadata.ReadGroupFragmentStatistics testStats =
@@ -97,13 +102,184 @@ public final class FindBreakpointEvidenceSparkUnitTest extends BaseTest {
                 map(kmer -> new FindBreakpointEvidenceSpark.KmerAndInterval(kmer, 0))
                 .forEach(kmerAndIntervalSet::add);
         final Set<String> actualAssemblyQNames = new HashSet<>();
-        FindBreakpointEvidenceSpark.getAssemblyQNames(params, ctx, kmerAndIntervalSet, reads)
+        FindBreakpointEvidenceSpark.getAssemblyQNames(params, ctx, kmerAndIntervalSet, null, reads)
                 .stream()
                 .map(qNameAndInterval -> qNameAndInterval.getKey())
                 .forEach(actualAssemblyQNames::add);
         Assert.assertEquals(expectedAssemblyQNames, actualAssemblyQNames);
     }
 
+    @Test(groups = "spark")
+    public void minimizersFindTheSameAssemblyQNamesTest() {
+        // error-free reads from either strand of a random genome, and the reads that start in two stretches of it
+        // are the reads of two intervals
+        final Random random = new Random(31);
+        final byte[] genome = new byte[5000];
+        final byte[] bases = {'A', 'C', 'G', 'T'};
+        for ( int idx = 0; idx != genome.length; ++idx ) genome[idx] = bases[random.nextInt(bases.length)];
+        final SAMFileHeader genomeHeader = ArtificialReadUtils.createArtificialSamHeader(1, 1, genome.length);
+        final int readLength = 151;
+        final byte[] quals = new byte[readLength];
+        Arrays.fill(quals, (byte)30);
+        final List<GATKRead> genomeReadList = new ArrayList<>();
+        final List<FindBreakpointEvidenceSpark.QNameAndInterval> intervalQNames = new ArrayList<>();
+        for ( int readNo = 0; readNo != 600; ++readNo ) {
+            final int start = random.nextInt(genome.length - readLength + 1);
+            final byte[] readBases = Arrays.copyOfRange(genome, start, start + readLength);
+            if ( random.nextBoolean() ) SequenceUtil.reverseComplement(readBases);
+            final String qName = "read" + readNo;
+            genomeReadList.add(ArtificialReadUtils.createArtificialRead(genomeHeader, qName, 0, start + 1,
+                                                                        readBases, quals, readLength + "M"));
+            if ( start >= 1000 && start < 1400 ) intervalQNames.add(new FindBreakpointEvidenceSpark.QNameAndInterval(qName, 0));
+            if ( start >= 3000 && start < 3300 ) intervalQNames.add(new FindBreakpointEvidenceSpark.QNameAndInterval(qName, 1));
+        }
+        final JavaRDD<GATKRead> genomeReads = ctx.parallelize(genomeReadList, 3);
+
+        // ignore some of the kmers of the first interval, which mustn't keep the minimizers from finding reads
+        final List<SVKmer> kmersToIgnore = new ArrayList<>();
+        final List<SVKmer> intervalKmers = SVKmerizer.stream(Arrays.copyOfRange(genome, 1000, 1551), params.kSize)
+                .map(kmer -> kmer.canonical(params.kSize)).collect(Collectors.toList());
+        for ( int idx = 0; idx < intervalKmers.size(); idx += 7 ) kmersToIgnore.add(intervalKmers.get(idx));
+        final File kmersToIgnoreFile = createTempFile("kmersToIgnore", ".kmers");
+        SVUtils.writeKmersFile(params.kSize, kmersToIgnoreFile.getAbsolutePath(), null, kmersToIgnore);
+
+        final Set<FindBreakpointEvidenceSpark.QNameAndInterval> qNamesWithEveryKmer =
+                getAssemblyQNames(1, intervalQNames, genomeReads, kmersToIgnoreFile.getAbsolutePath());
+        Assert.assertTrue(qNamesWithEveryKmer.size() > intervalQNames.size());
+        for ( final int minimizerWindowSize : new int[]{2, 10, 50} ) {
+            Assert.assertEquals(
+                    getAssemblyQNames(minimizerWindowSize, intervalQNames, genomeReads, kmersToIgnoreFile.getAbsolutePath()),
+                    qNamesWithEveryKmer);
+        }
+    }
+
+    /** the template names for assembly that addAssemblyQNames finds with a given minimizer window size */
+    private Set<FindBreakpointEvidenceSpark.QNameAndInterval> getAssemblyQNames(
+            final int minimizerWindowSize,
+            final List<FindBreakpointEvidenceSpark.QNameAndInterval> intervalQNames,
+            final JavaRDD<GATKRead> genomeReads,
+            final String kmersToIgnoreFile ) {
+        final FindBreakpointEvidenceSpark.Params minimizerParams =
+                new FindBreakpointEvidenceSpark.Params(params.kSize, params.minEntropy, params.minEvidenceMapQ,
+                        params.minEvidenceMatchLength, params.maxIntervalCoverage, params.minEvidenceCount,
+                        params.totalKmersPerPartitionGuess, params.minKmerCountWithinPartition,
+                        params.uniqueErrorFreeKmersPerPartitionGuess, params.minHighFrequencyKmerCount,
+                        params.cleanerMaxIntervals, params.cleanerMinKmerCount, params.cleanerMaxKmerCount,
+                        params.cleanerKmersPerPartitionGuess, params.assemblyToMappedSizeRatioGuess,
+                        params.maxFASTQSize, params.exclusionIntervalPadding, minimizerWindowSize,
+                        params.assemblyMinKmerCount, params.assemblyMinContigLength);
+        final HopscotchUniqueMultiMap<String, Integer, FindBreakpointEvidenceSpark.QNameAndInterval> qNamesMultiMap =
+                new HopscotchUniqueMultiMap<>(intervalQNames);
+        new FindBreakpointEvidenceSpark().addAssemblyQNames(minimizerParams, ctx, kmersToIgnoreFile, qNamesMultiMap,
+                                                            genomeReads, locations, null);
+        return new HashSet<>(qNamesMultiMap);
+    }
+
+    @Test(groups = "spark")
+    public void localAssemblyTest() throws IOException {
+        // reads that tile two random sequences, one for each interval
+        final Random random = new Random(37);
+        final String[] intervalSequences = { SVTestUtils.randomSequence(random, 600), SVTestUtils.randomSequence(random, 800) };
+        final HopscotchUniqueMultiMap<String, Integer, FindBreakpointEvidenceSpark.QNameAndInterval> qNameMultiMap =
+                new HopscotchUniqueMultiMap<>();
+        final List<GATKRead> assemblyReadList = tileIntervalReads(intervalSequences, qNameMultiMap);
+
+        final File contigsFile =
+                new File(createTempDir("localAssembly"), FindBreakpointEvidenceSpark.ASSEMBLED_CONTIGS_FILE_NAME);
+        final List<Tuple2<Integer, String>> intervalDispositions =
+                FindBreakpointEvidenceSpark.assembleIntervals(params, ctx, qNameMultiMap,
+                                                              ctx.parallelize(assemblyReadList, 3),
+                                                              intervalSequences.length, contigsFile.getAbsolutePath(),
+                                                              null);
+        Assert.assertEquals(new HashSet<>(intervalDispositions),
+                            new HashSet<>(Arrays.asList(new Tuple2<>(0, "1 contigs in " + contigsFile.getAbsolutePath()),
+                                                        new Tuple2<>(1, "1 contigs in " + contigsFile.getAbsolutePath()))));
+
+        // read the file back as AlignContigsAndCallBreakpointsSpark does
+        final List<String> lines = Files.readAllLines(contigsFile.toPath());
+        Assert.assertEquals(lines.size(), intervalSequences.length);
+        for ( int intervalId = 0; intervalId != intervalSequences.length; ++intervalId ) {
+            assertAssembledLine(lines.get(intervalId), intervalId, intervalSequences[intervalId]);
+        }
+    }
+
+    @Test(groups = "spark")
+    public void localAssemblyTooBigTest() throws IOException {
+        // the second interval has more reads than the first, and only the first is small enough to assemble
+        final Random random = new Random(41);
+        final String[] intervalSequences = { SVTestUtils.randomSequence(random, 600), SVTestUtils.randomSequence(random, 800) };
+        final HopscotchUniqueMultiMap<String, Integer, FindBreakpointEvidenceSpark.QNameAndInterval> qNameMultiMap =
+                new HopscotchUniqueMultiMap<>();
+        final List<GATKRead> assemblyReadList = tileIntervalReads(intervalSequences, qNameMultiMap);
+        final int[] fastqSizes = new int[intervalSequences.length];
+        for ( final GATKRead read : assemblyReadList ) {
+            fastqSizes[qNameMultiMap.findEach(read.getName()).next().getIntervalId()] +=
+                    SVFastqUtils.readToFastqRecord(read, false).length;
+        }
+        Assert.assertTrue(fastqSizes[0] < fastqSizes[1]);
+        final int maxFASTQSize = fastqSizes[0];
+        final FindBreakpointEvidenceSpark.Params smallFastqParams =
+                new FindBreakpointEvidenceSpark.Params(params.kSize, params.minEntropy, params.minEvidenceMapQ,
+                        params.minEvidenceMatchLength, params.maxIntervalCoverage, params.minEvidenceCount,
+                        params.totalKmersPerPartitionGuess, params.minKmerCountWithinPartition,
+                        params.uniqueErrorFreeKmersPerPartitionGuess, params.minHighFrequencyKmerCount,
+                        params.cleanerMaxIntervals, params.cleanerMinKmerCount, params.cleanerMaxKmerCount,
+                        params.cleanerKmersPerPartitionGuess, params.assemblyToMappedSizeRatioGuess,
+                        maxFASTQSize, params.exclusionIntervalPadding, params.minimizerWindowSize,
+                        params.assemblyMinKmerCount, params.assemblyMinContigLength);
+
+        final File contigsFile =
+                new File(createTempDir("localAssemblyTooBig"), FindBreakpointEvidenceSpark.ASSEMBLED_CONTIGS_FILE_NAME);
+        final List<Tuple2<Integer, String>> intervalDispositions =
+                FindBreakpointEvidenceSpark.assembleIntervals(smallFastqParams, ctx, qNameMultiMap,
+                                                              ctx.parallelize(assemblyReadList, 3),
+                                                              intervalSequences.length, contigsFile.getAbsolutePath(),
+                                                              null);
+        Assert.assertEquals(new HashSet<>(intervalDispositions),
+                            new HashSet<>(Arrays.asList(
+                                    new Tuple2<>(0, "1 contigs in " + contigsFile.getAbsolutePath()),
+                                    new Tuple2<>(1, "not assembled -- FASTQ larger than " + maxFASTQSize + " bytes."))));
+
+        // the skipped interval has no line in the contigs file
+        final List<String> lines = Files.readAllLines(contigsFile.toPath());
+        Assert.assertEquals(lines.size(), 1);
+        assertAssembledLine(lines.get(0), 0, intervalSequences[0]);
+    }
+
+    /**
+     * reads that tile each of the sequences, with the reads of each sequence belonging to the interval of that index
+     */
+    private static List<GATKRead> tileIntervalReads( final String[] intervalSequences,
+                                                     final HopscotchUniqueMultiMap<String, Integer, FindBreakpointEvidenceSpark.QNameAndInterval> qNameMultiMap ) {
+        final int readLength = 151;
+        final SAMFileHeader assemblyHeader = ArtificialReadUtils.createArtificialSamHeader(1, 1, 10000);
+        final byte[] quals = new byte[readLength];
+        Arrays.fill(quals, (byte)30);
+        final List<GATKRead> assemblyReadList = new ArrayList<>();
+        for ( int intervalId = 0; intervalId != intervalSequences.length; ++intervalId ) {
+            for ( final byte[] readBases : SVTestUtils.tileReads(intervalSequences[intervalId], readLength) ) {
+                final String qName = "interval" + intervalId + "-read" + assemblyReadList.size();
+                assemblyReadList.add(ArtificialReadUtils.createArtificialRead(assemblyHeader, qName, 0, 1,
+                                                                              readBases, quals, readLength + "M"));
+                qNameMultiMap.add(new FindBreakpointEvidenceSpark.QNameAndInterval(qName, intervalId));
+            }
+        }
+        return assemblyReadList;
+    }
+
+    /** checks that a line of the contigs file holds the sequence of the interval, from either strand, as one contig */
+    private static void assertAssembledLine( final String line, final int intervalId, final String expected ) {
+        final List<Tuple2<String, String>> idAndContigs = new ArrayList<>();
+        RunSGAViaProcessBuilderOnSpark.splitAssemblyLine(line).forEach(idAndContigs::add);
+        Assert.assertEquals(idAndContigs.size(), 1);
+        Assert.assertEquals(idAndContigs.get(0)._1(), Integer.toString(intervalId));
+        final List<Tuple2<ContigsCollection.ContigID, ContigsCollection.ContigSequence>> contigs =
+                ContigsCollection.fromPackedFasta(idAndContigs.get(0)._2()).getContents();
+        Assert.assertEquals(contigs.size(), 1);
+        final String contig = contigs.get(0)._2().toString();
+        Assert.assertTrue(contig.equals(expected) || contig.equals(SequenceUtil.reverseComplement(expected)), contig);
+    }
+
     @Test(groups = "spark")
     public void generateFastqsTest() {
         final HopscotchUniqueMultiMap<String, Integer, FindBreakpointEvidenceSpark.QNameAndInterval> qNameMultiMap =
@@ -0,0 +1,84 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests for SVKmerCounter.
+ */
+public class SVKmerCounterUnitTest extends BaseTest {
+    private static final int K = 31;
+
+    private static Map<SVKmer, Integer> countKmers( final SVKmerCounter kmerCounter, final int nKmers ) {
+        final Random random = new Random(47);
+        final byte[] bases = {'A', 'C', 'G', 'T'};
+        final byte[] seq = new byte[K];
+        final Map<SVKmer, Integer> expectedCounts = new HashMap<>();
+        for ( int kmerNo = 0; kmerNo != nKmers; ++kmerNo ) {
+            // a few leading bases vary freely, so that many kmers are counted more than once
+            for ( int idx = 0; idx != K; ++idx ) seq[idx] = idx < 6 ? bases[random.nextInt(4)] : (byte)'A';
+            final SVKmer kmer = SVKmerizer.toKmer(seq);
+            final int count = random.nextInt(3) + 1;
+            kmerCounter.increment(kmer, count);
+            expectedCounts.merge(kmer, count, Integer::sum);
+        }
+        return expectedCounts;
+    }
+
+    private static void assertCounts( final SVKmerCounter kmerCounter, final Map<SVKmer, Integer> expectedCounts ) {
+        Assert.assertEquals(kmerCounter.size(), expectedCounts.size());
+        for ( final Map.Entry<SVKmer, Integer> entry : expectedCounts.entrySet() ) {
+            Assert.assertEquals(kmerCounter.getCount(entry.getKey()), entry.getValue().intValue());
+        }
+        final Map<SVKmer, Integer> actualCounts = new HashMap<>();
+        kmerCounter.forEach(( kmer, count ) -> Assert.assertNull(actualCounts.put(kmer, count)));
+        Assert.assertEquals(actualCounts, expectedCounts);
+    }
+
+    @Test
+    public void testCountsLikeHashMap() {
+        // starts small, so the table has to grow many times
+        final SVKmerCounter kmerCounter = new SVKmerCounter(0);
+        final Map<SVKmer, Integer> expectedCounts = countKmers(kmerCounter, 100000);
+        assertCounts(kmerCounter, expectedCounts);
+        Assert.assertEquals(kmerCounter.getCount(SVKmerizer.toKmer("TTTTTTTTTTTTTTTTTTTTTTTTTTTTTTT")), 0);
+    }
+
+    @Test
+    public void testIncrement() {
+        final SVKmerCounter kmerCounter = new SVKmerCounter(10);
+        final SVKmer kmer = SVKmerizer.toKmer("ACGTACGTACGT");
+        kmerCounter.increment(kmer);
+        kmerCounter.increment(kmer);
+        kmerCounter.increment(kmer, 5);
+        Assert.assertEquals(kmerCounter.size(), 1);
+        Assert.assertEquals(kmerCounter.getCount(kmer), 7);
+    }
+
+    @Test
+    public void testRemoveCountsBelow() {
+        final SVKmerCounter kmerCounter = new SVKmerCounter(1000);
+        final Map<SVKmer, Integer> expectedCounts = countKmers(kmerCounter, 50000);
+        final int minCount = 20;
+        kmerCounter.removeCountsBelow(minCount);
+        expectedCounts.values().removeIf(count -> count < minCount);
+        Assert.assertFalse(expectedCounts.isEmpty());
+        assertCounts(kmerCounter, expectedCounts);
+
+        // the table still counts after it has been rebuilt
+        final SVKmer kmer = SVKmerizer.toKmer("TTTTTTTTTTTTTTTTTTTTTTTTTTTTTTT");
+        kmerCounter.increment(kmer);
+        Assert.assertEquals(kmerCounter.getCount(kmer), 1);
+        Assert.assertEquals(kmerCounter.size(), expectedCounts.size() + 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNonPositiveIncrement() {
+        new SVKmerCounter(10).increment(SVKmerizer.toKmer("ACGT"), 0);
+    }
+}
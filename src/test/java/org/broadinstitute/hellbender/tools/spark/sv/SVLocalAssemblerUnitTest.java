@@ -0,0 +1,100 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import htsjdk.samtools.util.SequenceUtil;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.broadinstitute.hellbender.tools.spark.sv.RunSGAViaProcessBuilderOnSpark.ContigsCollection;
+
+/**
+ * Unit tests for SVLocalAssembler.
+ */
+public class SVLocalAssemblerUnitTest extends BaseTest {
+    private static final int K = SVConstants.KMER_SIZE;
+    private static final int READ_LENGTH = 151;
+
+    private static List<String> getContigSequences( final ContigsCollection contigsCollection ) {
+        final List<String> contigs = new ArrayList<>();
+        for ( final Tuple2<ContigsCollection.ContigID, ContigsCollection.ContigSequence> contig :
+                contigsCollection.getContents() ) {
+            Assert.assertTrue(contig._1().toString().startsWith(">contig-"));
+            contigs.add(contig._2().toString());
+        }
+        return contigs;
+    }
+
+    private static void assertSameStrandlessSequence( final String actual, final String expected ) {
+        Assert.assertTrue(actual.equals(expected) || actual.equals(SequenceUtil.reverseComplement(expected)), actual);
+    }
+
+    @Test
+    public void testAssembleOneSequence() {
+        final String seq = SVTestUtils.randomSequence(new Random(17), 600);
+        final ContigsCollection contigsCollection = new SVLocalAssembler(K, 2, 100).assemble(SVTestUtils.tileReads(seq, READ_LENGTH));
+        final List<String> contigs = getContigSequences(contigsCollection);
+        Assert.assertEquals(contigs.size(), 1);
+        assertSameStrandlessSequence(contigs.get(0), seq);
+
+        // the contigs survive the trip through the format read by AlignContigsAndCallBreakpointsSpark
+        final List<String> unpackedContigs =
+                getContigSequences(ContigsCollection.fromPackedFasta(contigsCollection.toPackedFasta()));
+        Assert.assertEquals(unpackedContigs, contigs);
+    }
+
+    @Test
+    public void testSequencingErrorsAreIgnored() {
+        final Random random = new Random(19);
+        final String seq = SVTestUtils.randomSequence(random, 600);
+        final List<byte[]> reads = SVTestUtils.tileReads(seq, READ_LENGTH);
+
+        // a read with an error in its middle, which makes kmers that occur once
+        final byte[] readWithError = seq.substring(100, 100 + READ_LENGTH).getBytes();
+        readWithError[75] = (byte)(readWithError[75] == 'A' ? 'C' : 'A');
+        reads.add(readWithError);
+
+        // two copies of a read with an error near its end, which make a short branch off the true path
+        final byte[] readWithTip = seq.substring(200, 200 + READ_LENGTH).getBytes();
+        readWithTip[READ_LENGTH - 5] = (byte)(readWithTip[READ_LENGTH - 5] == 'A' ? 'C' : 'A');
+        reads.add(readWithTip);
+        reads.add(readWithTip.clone());
+
+        final List<String> contigs = getContigSequences(new SVLocalAssembler(K, 2, 100).assemble(reads));
+        Assert.assertEquals(contigs.size(), 1);
+        assertSameStrandlessSequence(contigs.get(0), seq);
+    }
+
+    @Test
+    public void testAssembleSeparateSequences() {
+        final Random random = new Random(23);
+        final String seq1 = SVTestUtils.randomSequence(random, 400);
+        final String seq2 = SVTestUtils.randomSequence(random, 500);
+        final List<byte[]> reads = SVTestUtils.tileReads(seq1, READ_LENGTH);
+        reads.addAll(SVTestUtils.tileReads(seq2, READ_LENGTH));
+        final List<String> contigs = getContigSequences(new SVLocalAssembler(K, 2, 100).assemble(reads));
+        Assert.assertEquals(contigs.size(), 2);
+        final String contig1 = contigs.get(0).length() == seq1.length() ? contigs.get(0) : contigs.get(1);
+        final String contig2 = contigs.get(0).length() == seq1.length() ? contigs.get(1) : contigs.get(0);
+        assertSameStrandlessSequence(contig1, seq1);
+        assertSameStrandlessSequence(contig2, seq2);
+    }
+
+    @Test
+    public void testShortContigsAreDropped() {
+        final String seq = SVTestUtils.randomSequence(new Random(29), 300);
+        Assert.assertEquals(new SVLocalAssembler(K, 2, 100).assemble(SVTestUtils.tileReads(seq, READ_LENGTH)).getContents().size(), 1);
+        Assert.assertTrue(new SVLocalAssembler(K, 2, 301).assemble(SVTestUtils.tileReads(seq, READ_LENGTH)).getContents().isEmpty());
+        Assert.assertTrue(new SVLocalAssembler(K, 2, 100).assemble(new ArrayList<>()).getContents().isEmpty());
+    }
+
+    @Test
+    public void testGetSequence() {
+        final byte[] fastqRecord = "@read/1 mapping=1:100\nACGTN\n+\nIIIII\n".getBytes();
+        Assert.assertEquals(new String(SVFastqUtils.getSequence(fastqRecord)), "ACGTN");
+    }
+}
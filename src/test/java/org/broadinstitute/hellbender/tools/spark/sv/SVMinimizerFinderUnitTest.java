@@ -0,0 +1,144 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for SVMinimizerFinder.
+ */
+public class SVMinimizerFinderUnitTest extends BaseTest {
+    private static final int K = 11;
+
+    private static String randomSequence( final Random random, final int length ) {
+        final char[] bases = {'A', 'C', 'G', 'T'};
+        final StringBuilder sb = new StringBuilder(length);
+        for ( int idx = 0; idx != length; ++idx ) sb.append(bases[random.nextInt(bases.length)]);
+        return sb.toString();
+    }
+
+    private static String reverseComplement( final String seq ) {
+        final StringBuilder sb = new StringBuilder(seq.length());
+        for ( int idx = seq.length() - 1; idx >= 0; --idx ) {
+            switch ( seq.charAt(idx) ) {
+                case 'A': sb.append('T'); break;
+                case 'C': sb.append('G'); break;
+                case 'G': sb.append('C'); break;
+                default: sb.append('A'); break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static List<SVKmer> canonicalKmers( final String seq ) {
+        return SVKmerizer.stream(seq, K).map(kmer -> kmer.canonical(K)).collect(Collectors.toList());
+    }
+
+    private static List<SVKmer> getMinimizers( final String seq, final int windowSize ) {
+        return SVMinimizerFinder.getMinimizers(canonicalKmers(seq).iterator(), windowSize);
+    }
+
+    @DataProvider(name = "windowSizes")
+    public Object[][] getWindowSizes() {
+        return new Object[][] { {2}, {5}, {10}, {30} };
+    }
+
+    @Test
+    public void testWindowOfOne() {
+        final String seq = randomSequence(new Random(3), 100);
+        Assert.assertEquals(getMinimizers(seq, 1), canonicalKmers(seq));
+    }
+
+    @Test(dataProvider = "windowSizes")
+    public void testEachWindowHasItsMinimizer( final int windowSize ) {
+        final String seq = randomSequence(new Random(5), 300);
+        final List<SVKmer> kmers = canonicalKmers(seq);
+        final Set<SVKmer> minimizers = new HashSet<>(getMinimizers(seq, windowSize));
+        for ( int start = 0; start + windowSize <= kmers.size(); ++start ) {
+            final SVKmer windowMinimizer = kmers.subList(start, start + windowSize).stream()
+                    .min(Comparator.comparingLong(SVMinimizerFinder::rank)).get();
+            Assert.assertTrue(minimizers.contains(windowMinimizer));
+        }
+        Assert.assertTrue(minimizers.size() < kmers.size());
+    }
+
+    @Test(dataProvider = "windowSizes")
+    public void testSharedSequence( final int windowSize ) {
+        final Random random = new Random(7);
+        final String shared = randomSequence(random, windowSize + K - 1);
+        final String seq1 = randomSequence(random, 40) + shared + randomSequence(random, 25);
+        final String seq2 = randomSequence(random, 13) + shared + randomSequence(random, 50);
+        final Set<SVKmer> minimizers1 = new HashSet<>(getMinimizers(seq1, windowSize));
+        Assert.assertTrue(getMinimizers(seq2, windowSize).stream().anyMatch(minimizers1::contains));
+        Assert.assertTrue(getMinimizers(reverseComplement(seq2), windowSize).stream().anyMatch(minimizers1::contains));
+    }
+
+    @Test(dataProvider = "windowSizes")
+    public void testShortOverlaps( final int windowSize ) {
+        final Random random = new Random(13);
+        for ( int overlap = K; overlap < windowSize + K; ++overlap ) {
+            final String shared = randomSequence(random, overlap);
+            final String seq1 = randomSequence(random, 100) + shared;
+            final String seq2 = shared + randomSequence(random, 100);
+            final Set<SVKmer> minimizers1 = new HashSet<>(getMinimizers(seq1, windowSize));
+            Assert.assertTrue(getMinimizers(seq2, windowSize).stream().anyMatch(minimizers1::contains));
+            Assert.assertTrue(getMinimizers(reverseComplement(seq2), windowSize).stream().anyMatch(minimizers1::contains));
+        }
+    }
+
+    /**
+     * A base error in a short overlap leaves a few shared kmers at one end of it.  A window of 1 always finds them,
+     * but a larger window may not pick any of them as a minimizer, so some of these overlaps are missed.
+     */
+    @Test
+    public void testBaseErrorInShortOverlap() {
+        final Random random = new Random(17);
+        final int windowSize = 10;
+        final int overlap = windowSize + K - 2;
+        final int nTrials = 200;
+        int nMissed = 0;
+        for ( int trial = 0; trial != nTrials; ++trial ) {
+            final String shared = randomSequence(random, overlap);
+            // the error goes after the first kmer of the overlap, so that at least that kmer is still shared
+            final int errorPos = K + random.nextInt(overlap - K);
+            final char[] sharedWithError = shared.toCharArray();
+            sharedWithError[errorPos] = "ACGT".charAt(("ACGT".indexOf(shared.charAt(errorPos)) + 1 + random.nextInt(3)) % 4);
+            final String seq1 = randomSequence(random, 100) + shared;
+            final String seq2 = new String(sharedWithError) + randomSequence(random, 100);
+
+            final Set<SVKmer> kmers1 = new HashSet<>(getMinimizers(seq1, 1));
+            Assert.assertTrue(getMinimizers(seq2, 1).stream().anyMatch(kmers1::contains));
+
+            final Set<SVKmer> minimizers1 = new HashSet<>(getMinimizers(seq1, windowSize));
+            if ( getMinimizers(seq2, windowSize).stream().noneMatch(minimizers1::contains) ) {
+                nMissed += 1;
+            }
+        }
+        Assert.assertTrue(nMissed > 0);
+        Assert.assertTrue(nMissed < nTrials);
+    }
+
+    @Test(dataProvider = "windowSizes")
+    public void testReverseComplement( final int windowSize ) {
+        final String seq = randomSequence(new Random(9), 200);
+        Assert.assertEquals(new HashSet<>(getMinimizers(reverseComplement(seq), windowSize)),
+                            new HashSet<>(getMinimizers(seq, windowSize)));
+    }
+
+    @Test
+    public void testShortSequence() {
+        // all the windows are short ones at the ends, and one of them is the whole sequence
+        final String seq = randomSequence(new Random(11), K + 2);
+        final List<SVKmer> kmers = canonicalKmers(seq);
+        final List<SVKmer> minimizers = getMinimizers(seq, 10);
+        Assert.assertTrue(minimizers.size() <= kmers.size());
+        Assert.assertTrue(minimizers.contains(kmers.stream().min(Comparator.comparingLong(SVMinimizerFinder::rank)).get()));
+        Assert.assertTrue(minimizers.contains(kmers.get(0)));
+        Assert.assertTrue(minimizers.contains(kmers.get(kmers.size() - 1)));
+        Assert.assertTrue(getMinimizers("", 10).isEmpty());
+    }
+}
@@ -0,0 +1,40 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import htsjdk.samtools.util.SequenceUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random sequences, and reads that tile them, for the tests of the kmer-based SV code.
+ */
+final class SVTestUtils {
+    private SVTestUtils() {}
+
+    /** a random sequence of A, C, G, and T */
+    static String randomSequence( final Random random, final int length ) {
+        final char[] bases = {'A', 'C', 'G', 'T'};
+        final StringBuilder sb = new StringBuilder(length);
+        for ( int idx = 0; idx != length; ++idx ) sb.append(bases[random.nextInt(bases.length)]);
+        return sb.toString();
+    }
+
+    /**
+     * reads that tile the sequence every few bases, alternately from each strand, with two reads at each end so that
+     * every kmer occurs at least twice
+     */
+    static List<byte[]> tileReads( final String seq, final int readLength ) {
+        final List<byte[]> reads = new ArrayList<>();
+        for ( int start = 0; start + readLength <= seq.length(); start += 7 ) {
+            final String read = seq.substring(start, start + readLength);
+            reads.add(((reads.size() & 1) == 0 ? read : SequenceUtil.reverseComplement(read)).getBytes());
+        }
+        final String firstRead = seq.substring(0, readLength);
+        final String lastRead = seq.substring(seq.length() - readLength);
+        reads.add(SequenceUtil.reverseComplement(firstRead).getBytes());
+        reads.add(lastRead.getBytes());
+        reads.add(SequenceUtil.reverseComplement(lastRead).getBytes());
+        return reads;
+    }
+}
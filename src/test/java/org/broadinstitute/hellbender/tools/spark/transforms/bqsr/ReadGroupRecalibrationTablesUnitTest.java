@@ -0,0 +1,90 @@
+package org.broadinstitute.hellbender.tools.spark.transforms.bqsr;
+
+import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+import org.broadinstitute.hellbender.utils.recalibration.BaseRecalibrationEngine;
+import org.broadinstitute.hellbender.utils.recalibration.EventType;
+import org.broadinstitute.hellbender.utils.recalibration.RecalDatum;
+import org.broadinstitute.hellbender.utils.recalibration.RecalUtils;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationArgumentCollection;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationTables;
+import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import scala.Tuple2;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public final class ReadGroupRecalibrationTablesUnitTest extends BaseTest {
+    private static final int NUM_READ_GROUPS = 5;
+
+    private static StandardCovariateList makeCovariates() {
+        final List<String> readGroups = IntStream.range(0, NUM_READ_GROUPS).mapToObj(i -> "readgroup" + i).collect(Collectors.toList());
+        return new StandardCovariateList(new RecalibrationArgumentCollection(), readGroups);
+    }
+
+    // fills only the principal tables, like BaseRecalibrationEngine does before finalization
+    private static RecalibrationTables makeTables(final StandardCovariateList covariates, final int seed) {
+        final RecalibrationTables tables = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+        for ( final EventType et : EventType.values() ) {
+            for ( int rg = seed % 2; rg < NUM_READ_GROUPS; rg += 2 ) {
+                for ( int qual = 0; qual < 3; qual++ ) {
+                    final double error = (rg + qual + seed) % 3 == 0 ? 1 : 0;
+                    RecalUtils.incrementDatumOrPutIfNecessary3keys(tables.getQualityScoreTable(), (byte)(20 + qual), error, rg, qual, et.ordinal());
+                    for ( int key = 0; key < 3; key++ ) {
+                        RecalUtils.incrementDatumOrPutIfNecessary4keys(tables.getTable(2), (byte)(20 + qual), error, rg, qual, key + seed, et.ordinal());
+                        RecalUtils.incrementDatumOrPutIfNecessary4keys(tables.getTable(3), (byte)(20 + qual), error, rg, qual, key, et.ordinal());
+                    }
+                }
+            }
+        }
+        return tables;
+    }
+
+    @Test
+    public void testSplitCombineAndFinalizeMatchesWholeTables() {
+        final StandardCovariateList covariates = makeCovariates();
+
+        final RecalibrationTables expected = makeTables(covariates, 0);
+        expected.combine(makeTables(covariates, 1));
+        expected.combine(makeTables(covariates, 2));
+        BaseRecalibrationEngine.finalizeRecalibrationTables(expected);
+
+        final Map<Integer, ReadGroupRecalibrationTables> byReadGroup = new LinkedHashMap<>();
+        for ( int seed = 0; seed < 3; seed++ ) {
+            for ( final Tuple2<Integer, ReadGroupRecalibrationTables> pair : ReadGroupRecalibrationTables.splitByReadGroup(makeTables(covariates, seed)) ) {
+                byReadGroup.merge(pair._1(), pair._2(), ReadGroupRecalibrationTables::inPlaceCombine);
+            }
+        }
+        Assert.assertEquals(byReadGroup.size(), NUM_READ_GROUPS);
+
+        final RecalibrationTables actual = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+        byReadGroup.forEach((rg, tables) -> tables.finalizeData().addTo(actual, rg));
+
+        for ( int i = 0; i < expected.numTables(); i++ ) {
+            final List<NestedIntegerArray.Leaf<RecalDatum>> expectedLeaves = expected.getTable(i).getAllLeaves();
+            final NestedIntegerArray<RecalDatum> actualTable = actual.getTable(i);
+            Assert.assertFalse(expectedLeaves.isEmpty());
+            Assert.assertEquals(actualTable.getAllLeaves().size(), expectedLeaves.size(), "table " + i);
+            for ( final NestedIntegerArray.Leaf<RecalDatum> leaf : expectedLeaves ) {
+                final RecalDatum actualDatum = actualTable.get(leaf.keys);
+                Assert.assertNotNull(actualDatum);
+                Assert.assertEquals(actualDatum.getNumObservations(), leaf.value.getNumObservations());
+                Assert.assertEquals(actualDatum.getNumMismatches(), leaf.value.getNumMismatches(), 1e-6);
+                Assert.assertEquals(actualDatum.getEstimatedQReported(), leaf.value.getEstimatedQReported(), 1e-6);
+                Assert.assertEquals(actualDatum.getEmpiricalQuality(), leaf.value.getEmpiricalQuality(), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testSplitDoesNotCreateEmptyReadGroups() {
+        final RecalibrationTables tables = makeTables(makeCovariates(), 1);
+        final List<Tuple2<Integer, ReadGroupRecalibrationTables>> split = ReadGroupRecalibrationTables.splitByReadGroup(tables);
+        Assert.assertEquals(split.stream().map(Tuple2::_1).collect(Collectors.toList()), IntStream.range(0, NUM_READ_GROUPS).filter(rg -> rg % 2 == 1).boxed().collect(Collectors.toList()));
+    }
+}
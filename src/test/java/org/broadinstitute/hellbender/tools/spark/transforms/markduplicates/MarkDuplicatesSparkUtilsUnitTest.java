@@ -9,6 +9,10 @@ import org.apache.spark.api.java.JavaSparkContext;
 import org.broadinstitute.hellbender.engine.spark.SparkContextFactory;
 import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.markduplicates.BinaryReadsKey;
+import org.broadinstitute.hellbender.utils.read.markduplicates.MarkDuplicatesScoringStrategy;
+import org.broadinstitute.hellbender.utils.read.markduplicates.PairedEnds;
+import org.broadinstitute.hellbender.utils.read.markduplicates.ReadEndSummary;
 import org.broadinstitute.hellbender.utils.read.markduplicates.ReadsKey;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.testng.Assert;
@@ -16,6 +20,7 @@ import org.testng.annotations.Test;
 import scala.Tuple2;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -67,6 +72,80 @@ public class MarkDuplicatesSparkUtilsUnitTest extends BaseTest {
                 ImmutableList.of(pairIterable(key1, read1, read3), pairIterable(key2, read2, read4)));
     }
 
+    @Test(groups = "spark")
+    public void testMarkingIterator() {
+        SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        List<GATKRead> reads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            GATKRead read = ArtificialReadUtils.createArtificialRead(header, "N" + i, 0, i + 1, 20);
+            read.setIsDuplicate(i % 2 == 1);
+            reads.add(read);
+        }
+        // the partition index is in the high bits of the read index
+        final long partitionOffset = 3L << 32;
+        List<Tuple2<Long, Integer>> marks = ImmutableList.of(
+                pair(partitionOffset + 1, MarkDuplicatesSparkUtils.NON_DUPLICATE_MARK),
+                pair(partitionOffset + 2, 5));
+
+        List<GATKRead> marked = Lists.newArrayList(MarkDuplicatesSparkUtils.markingIterator(reads.iterator(), marks.iterator()));
+        Assert.assertEquals(marked, reads);
+        Assert.assertTrue(marked.get(0).isDuplicate());
+        Assert.assertFalse(marked.get(1).isDuplicate());
+        Assert.assertFalse(marked.get(1).hasAttribute(MarkDuplicatesSparkUtils.OPTICAL_DUPLICATE_TOTAL_ATTRIBUTE_NAME));
+        Assert.assertFalse(marked.get(2).isDuplicate());
+        Assert.assertEquals(marked.get(2).getAttributeAsInteger(MarkDuplicatesSparkUtils.OPTICAL_DUPLICATE_TOTAL_ATTRIBUTE_NAME), Integer.valueOf(5));
+        Assert.assertTrue(marked.get(3).isDuplicate());
+    }
+
+    @Test(groups = "spark")
+    public void testBinaryReadsKeys() {
+        SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeaderWithGroups(1, 1, 1000, 2);
+        GATKRead forward = ArtificialReadUtils.createArtificialRead(header, "N", 0, 100, 20);
+        GATKRead sameStart = ArtificialReadUtils.createArtificialRead(header, "M", 0, 100, 20);
+        GATKRead reverse = ArtificialReadUtils.createArtificialRead(header, "N", 0, 100, 20);
+        reverse.setIsReverseStrand(true);
+
+        ReadEndSummary forwardSummary = new ReadEndSummary(0, forward, header, (short) 1, MarkDuplicatesScoringStrategy.SUM_OF_BASE_QUALITIES);
+        ReadEndSummary sameStartSummary = new ReadEndSummary(1, sameStart, header, (short) 1, MarkDuplicatesScoringStrategy.SUM_OF_BASE_QUALITIES);
+        ReadEndSummary otherLibrarySummary = new ReadEndSummary(2, sameStart, header, (short) 2, MarkDuplicatesScoringStrategy.SUM_OF_BASE_QUALITIES);
+        ReadEndSummary reverseSummary = new ReadEndSummary(3, reverse, header, (short) 1, MarkDuplicatesScoringStrategy.SUM_OF_BASE_QUALITIES);
+
+        Assert.assertEquals(BinaryReadsKey.keyForFragment(forwardSummary), BinaryReadsKey.keyForFragment(sameStartSummary));
+        Assert.assertEquals(BinaryReadsKey.keyForFragment(forwardSummary).hashCode(), BinaryReadsKey.keyForFragment(sameStartSummary).hashCode());
+        Assert.assertTrue(BinaryReadsKey.keyForFragment(forwardSummary).isFragment());
+        Assert.assertNotEquals(BinaryReadsKey.keyForFragment(forwardSummary), BinaryReadsKey.keyForFragment(otherLibrarySummary));
+        Assert.assertNotEquals(BinaryReadsKey.keyForFragment(forwardSummary), BinaryReadsKey.keyForFragment(reverseSummary));
+        Assert.assertNotEquals(BinaryReadsKey.keyForFragment(forwardSummary), BinaryReadsKey.keyForPairedEnds(forwardSummary, null));
+        Assert.assertFalse(BinaryReadsKey.keyForPairedEnds(forwardSummary, null).isFragment());
+        Assert.assertNotEquals(BinaryReadsKey.keyForPairedEnds(forwardSummary, null), BinaryReadsKey.keyForPairedEnds(forwardSummary, reverseSummary));
+        Assert.assertEquals(BinaryReadsKey.keyForPairedEnds(forwardSummary, reverseSummary), BinaryReadsKey.keyForPairedEnds(sameStartSummary, reverseSummary));
+        Assert.assertNotEquals(BinaryReadsKey.keyForPairedEnds(forwardSummary, reverseSummary), BinaryReadsKey.keyForPairedEnds(forwardSummary, sameStartSummary));
+    }
+
+    @Test(groups = "spark")
+    public void testBestPairedEndsIsOrderIndependent() {
+        SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        List<PairedEnds> fragments = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            GATKRead read = ArtificialReadUtils.createArtificialRead(header, "N" + i, 0, 100, 20);
+            final byte[] quals = new byte[20];
+            Arrays.fill(quals, (byte) (i == 2 ? 30 : 20));
+            read.setBaseQualities(quals);
+            fragments.add(PairedEnds.of(new ReadEndSummary(i, read, header, (short) 1, MarkDuplicatesScoringStrategy.SUM_OF_BASE_QUALITIES)));
+        }
+
+        MarkDuplicatesSparkUtils.BestPairedEnds sequential = new MarkDuplicatesSparkUtils.BestPairedEnds(fragments.get(0));
+        for (PairedEnds fragment : fragments.subList(1, fragments.size())) {
+            sequential.add(fragment);
+        }
+        MarkDuplicatesSparkUtils.BestPairedEnds merged = new MarkDuplicatesSparkUtils.BestPairedEnds(fragments.get(3)).add(fragments.get(1))
+                .merge(new MarkDuplicatesSparkUtils.BestPairedEnds(fragments.get(2)).add(fragments.get(0)));
+
+        Assert.assertSame(sequential.getBest(), fragments.get(2));
+        Assert.assertSame(merged.getBest(), fragments.get(2));
+        Assert.assertEquals(sequential.representativeMarks(0), ImmutableList.of(pair(2L, MarkDuplicatesSparkUtils.NON_DUPLICATE_MARK)));
+    }
+
     private String getReadGroupId(final SAMFileHeader header, final int index) {
         return header.getReadGroups().get(index).getReadGroupId();
     }
@@ -18,7 +18,10 @@ import org.testng.annotations.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 public final class RecalibrationReportUnitTest extends BaseTest {
@@ -64,6 +67,50 @@ public final class RecalibrationReportUnitTest extends BaseTest {
         assertReportsAreEquivalent(originalReport, calculatedReport);
     }
 
+    @Test(dataProvider = "tables")
+    public void testGatherBinaryBQSR(List<File> inputTables, File expectedOutputTable) {
+        final List<File> binaryInputs = new ArrayList<>();
+        for (final File input : inputTables) {
+            binaryInputs.add(toBinaryReport(input));
+        }
+
+        final File textOutput = BaseTest.createTempFile("BQSRgathererTest", ".table");
+        RecalibrationReport.gatherReportsIntoOneFile(binaryInputs, textOutput, false);
+        assertReportsAreEquivalent(new GATKReport(expectedOutputTable), new GATKReport(textOutput));
+
+        final File binaryOutput = BaseTest.createTempFile("BQSRgathererTest", ".table");
+        RecalibrationReport.gatherReportsIntoOneFile(binaryInputs, binaryOutput, true);
+        Assert.assertTrue(BinaryRecalibrationReportCodec.isBinaryReport(binaryOutput));
+        assertReportsAreEquivalent(new GATKReport(expectedOutputTable), new RecalibrationReport(binaryOutput).createGATKReport());
+    }
+
+    @Test(expectedExceptions = UserException.BadInput.class)
+    public void testGatherMixedBinaryAndTextFails() {
+        final File output = BaseTest.createTempFile("BQSRgathererTest", ".table");
+        RecalibrationReport.gatherReportsIntoOneFile(Arrays.asList(toBinaryReport(recal1), recal2), output, false);
+    }
+
+    @Test
+    public void testBinaryRoundTrip() {
+        for (final File input : Arrays.asList(recal1, recal_original, recalEmpty)) {
+            final RecalibrationReport textReport = new RecalibrationReport(input);
+            final RecalibrationReport binaryReport = new RecalibrationReport(toBinaryReport(input));
+            assertReportsAreEquivalent(textReport.createGATKReport(), binaryReport.createGATKReport());
+        }
+    }
+
+    private static File toBinaryReport(final File textReport) {
+        final File binaryReport = BaseTest.createTempFile("BQSRbinary", ".table");
+        try (final FileOutputStream out = new FileOutputStream(binaryReport)) {
+            BinaryRecalibrationReportCodec.write(out, new RecalibrationReport(textReport));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Assert.assertTrue(BinaryRecalibrationReportCodec.isBinaryReport(binaryReport));
+        Assert.assertFalse(BinaryRecalibrationReportCodec.isBinaryReport(textReport));
+        return binaryReport;
+    }
+
     private static void assertReportsAreEquivalent(final GATKReport originalReport, final GATKReport calculatedReport) {
 
         final ByteArrayOutputStream original = new ByteArrayOutputStream();
@@ -0,0 +1,74 @@
+package org.broadinstitute.hellbender.utils.recalibration.covariates;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.recalibration.RecalUtils;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationArgumentCollection;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Timing and allocation tests for covariate computation.
+ * Reports the time and the number of bytes allocated per read by {@link RecalUtils#computeCovariates}.
+ */
+public final class ReadCovariatesTimingTest {
+
+    @FunctionalInterface
+    public interface Action {
+        void execute();
+    }
+
+    private static final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    private static void measure( final String name, final int nReads, final Action action ) {
+        final long threadId = Thread.currentThread().getId();
+        final long bytes = threadBean.getThreadAllocatedBytes(threadId);
+        final long nanosecs = System.nanoTime();
+        action.execute();
+        final double seconds = (System.nanoTime() - nanosecs)/1.E9;
+        final long allocated = threadBean.getThreadAllocatedBytes(threadId) - bytes;
+        System.out.println(name + ": " + seconds + " s, " + (double)allocated/nReads + " bytes allocated per read");
+    }
+
+    private static final int N_TRIALS = 5;
+    private static final int N_READS = 1000000;
+    private static final int READ_LENGTH = 151;
+
+    public static void main( final String[] args ) {
+        final SAMReadGroupRecord readGroupRecord = new SAMReadGroupRecord("RG1");
+        readGroupRecord.setPlatform("illumina");
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeaderWithReadGroup(readGroupRecord);
+        final RecalibrationArgumentCollection RAC = new RecalibrationArgumentCollection();
+        final StandardCovariateList covariates = new StandardCovariateList(RAC, Collections.singletonList("RG1"));
+
+        final Random rng = new Random(0xdeadbeef);
+        final List<GATKRead> reads = new ArrayList<>(N_READS);
+        for ( int readId = 0; readId != N_READS; ++readId ) {
+            final GATKRead read = ArtificialReadUtils.createRandomRead(header, READ_LENGTH, false);
+            read.setIsReverseStrand(rng.nextBoolean());
+            read.setReadGroup("RG1");
+            reads.add(read);
+        }
+
+        final CovariateKeyCache keyCache = new CovariateKeyCache();
+        for ( int trialId = 0; trialId != N_TRIALS; ++trialId ) {
+            measure("computeCovariates (substitutions only)", N_READS, () -> {
+                for ( final GATKRead read : reads ) {
+                    RecalUtils.computeCovariates(read, header, covariates, false, keyCache);
+                }
+            });
+            measure("computeCovariates (with indels)", N_READS, () -> {
+                for ( final GATKRead read : reads ) {
+                    RecalUtils.computeCovariates(read, header, covariates, true, keyCache);
+                }
+            });
+        }
+    }
+}
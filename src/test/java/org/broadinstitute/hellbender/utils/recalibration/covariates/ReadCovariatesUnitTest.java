@@ -6,6 +6,7 @@ import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.ReadUtils;
+import org.broadinstitute.hellbender.utils.recalibration.EventType;
 import org.broadinstitute.hellbender.utils.recalibration.RecalUtils;
 import org.broadinstitute.hellbender.utils.recalibration.RecalibrationArgumentCollection;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
@@ -84,4 +85,48 @@ public final class ReadCovariatesUnitTest extends BaseTest {
 
     }
 
+    @Test
+    public void testKeysBufferIsReused() {
+        final CovariateKeyCache keyCache = new CovariateKeyCache();
+        final int numberOfCovariates = 4;
+
+        final ReadCovariates longRead = new ReadCovariates(100, numberOfCovariates, keyCache);
+        final int capacity = keyCache.capacity();
+        Assert.assertEquals(capacity, EventType.values().length * 100 * numberOfCovariates);
+
+        // shorter reads must not grow the buffer
+        for (int length = 1; length <= 100; length++) {
+            new ReadCovariates(length, numberOfCovariates, keyCache);
+            Assert.assertEquals(keyCache.capacity(), capacity);
+        }
+        Assert.assertEquals(longRead.getReadLength(), 100);
+
+        new ReadCovariates(101, numberOfCovariates, keyCache);
+        Assert.assertTrue(keyCache.capacity() > capacity);
+    }
+
+    @Test
+    public void testGetKeyMatchesKeySet() {
+        final int readLength = 10;
+        final int numberOfCovariates = 3;
+        final ReadCovariates readCovariates = new ReadCovariates(readLength, numberOfCovariates, new CovariateKeyCache());
+        for (int cov = 0; cov < numberOfCovariates; cov++) {
+            readCovariates.setCovariateIndex(cov);
+            for (int i = 0; i < readLength; i++) {
+                readCovariates.addCovariate(100 * cov + i, 1000 + 100 * cov + i, 2000 + 100 * cov + i, i);
+            }
+        }
+
+        for (final EventType eventType : EventType.values()) {
+            for (int i = 0; i < readLength; i++) {
+                final int[] keySet = readCovariates.getKeySet(i, eventType);
+                Assert.assertEquals(keySet.length, numberOfCovariates);
+                for (int cov = 0; cov < numberOfCovariates; cov++) {
+                    Assert.assertEquals(readCovariates.getKey(i, eventType, cov), keySet[cov]);
+                    Assert.assertEquals(keySet[cov], 1000 * eventType.ordinal() + 100 * cov + i);
+                }
+            }
+        }
+    }
+
 }